@@ -32,6 +32,7 @@ public class Options
   private static int angleResolution = -1;
   private static int framesPerSecond = -1;
   private static String edgeBehavior = null;
+  private static int tiledTrace = -1;
  
   private Options()
   {
@@ -152,6 +153,18 @@ public class Options
     edgeBehavior = behavior.trim().toLowerCase();
   }
 
+  /**
+   * Selects the sparse tiled trace surface for the playground.
+   * Tiles are allocated only where the turtle draws, so very large
+   * playgrounds (e.g. for fractals) fit into a modest heap.
+   * Library value: tiles are used for playgrounds with more than 
+   * 4096 x 4096 pixels.
+   */
+  public static void setTiledTrace(boolean on)
+  {
+    tiledTrace = on ? 1 : 0;
+  }
+
   protected static int getFrameMode()
   {
     if (closingMode == null)
@@ -226,4 +239,9 @@ public class Options
       return Turtle.CLIP;
     return -1;
   }
+
+  protected static int getTiledTrace()
+  {
+    return tiledTrace;
+  }
 }
@@ -43,7 +43,7 @@ public class Playground
   private final int defaultSize = 400;  // nbHorzPix = 401, nbVertPix = 401, 
   // coordinates -200..200
   // Holds the <code>Turtle</code>s of this Playground. 
-  private Vector turtles;
+  private Vector<Turtle> turtles;
   // Holds the offscreen buffer and graphics context
   // where Turtle traces are drawn.
   private BufferedImage traceBuffer = null;
@@ -56,6 +56,9 @@ public class Playground
   // of the Turtles images.
   private BufferedImage turtleBuffer = null;
   protected Graphics2D turtleG2D = null;
+  // Flag to tell whether init() prepared the playground for turtles
+  // (a bean is initialized when its first turtle is created)
+  protected boolean isInitialized = false;
   // Flag to tell whether we have at least one Turtle shown.
   private boolean isTurtleVisible = false;
   // Flag to tell whether we use automatic repainting
@@ -67,6 +70,32 @@ public class Playground
   private Graphics2D printerG2D = null;
   private boolean isPrintScreen = false; // Indicate we are printing the playground
   private double printerScaleFactor = 1.1;  // Magnification factor for printer
+  // Holds the sparse trace surface used instead of the trace and turtle
+  // buffers for very large playgrounds (null if not used)
+  private TiledTraceBuffer traceTiles = null;
+  // Number of pixels above which the tiled trace surface is used
+  private static final long TILED_TRACE_THRESHOLD = 4096L * 4096L;
+  // Region modified since the last repaint (null if nothing to repaint)
+  private Rectangle dirtyRegion = null;
+  private boolean isFlushPending = false;
+  private final Object dirtyLock = new Object();
+  // Scratch buffer (all zero) used to erase turtles from the turtle buffer
+  private float[] alphaScratch = new float[0];
+  private final Runnable dirtyFlusher = new Runnable()
+  {
+    public void run()
+    {
+      Rectangle r;
+      synchronized (dirtyLock)
+      {
+        r = dirtyRegion;
+        dirtyRegion = null;
+        isFlushPending = false;
+      }
+      if (r != null)
+        repaint(r);
+    }
+  };
 
   /**
    * Creates a Playground with standard size and default background color.
@@ -156,7 +185,7 @@ public class Playground
     pgBufferSize = new Dimension(pgSize.width + 1, pgSize.height + 1);
     if (isBean)
     {
-      turtles = new Vector();
+      turtles = new Vector<Turtle>();
       traceBuffer = new BufferedImage(
         pgBufferSize.width,
         pgBufferSize.height,
@@ -172,9 +201,27 @@ public class Playground
       // but maybe we avoid some memory waste
       setDoubleBuffered(false);
     }
+    else if (isTiledTrace(pgBufferSize))
+    {
+      // The turtle images are painted directly in paintComponent(),
+      // so there is no turtle buffer either
+      turtles = new Vector<Turtle>();
+      if (traceTiles != null)
+        traceTiles.dispose();
+      traceTiles = new TiledTraceBuffer(pgBufferSize.width,
+        pgBufferSize.height, bkColor);
+      traceBuffer = null;
+      traceG2D = null;
+      turtleBuffer = null;
+      turtleG2D = null;
+      setBackground(bkColor);
+      setPreferredSize(pgBufferSize);
+      setDoubleBuffered(false);
+    }
     else
     {
-      turtles = new Vector();
+      turtles = new Vector<Turtle>();
+      traceTiles = null;
       traceBuffer = new BufferedImage(
         pgBufferSize.width,
         pgBufferSize.height,
@@ -198,6 +245,16 @@ public class Playground
       // but maybe we avoid some memory waste
       setDoubleBuffered(false);
     }
+    isInitialized = !isBean;
+  }
+
+  // Decides whether the sparse tiled trace surface is used
+  private boolean isTiledTrace(Dimension bufferSize)
+  {
+    int option = Options.getTiledTrace();
+    if (option != -1)
+      return option == 1;
+    return (long)bufferSize.width * bufferSize.height > TILED_TRACE_THRESHOLD;
   }
 
   /** 
@@ -266,8 +323,7 @@ public class Playground
     // This is probably due to an improper handling of fast multiple repaint requests.
     // Workaround: we wait a small amount of time (and give the thread away)
     // (No visible slow down on new machines.)
-    if (printerG2D == null && isRepaintEnabled)
-      repaint();
+    flushDirty();
 
     if (isTurtleVisible)
     {
@@ -286,6 +342,13 @@ public class Playground
    */
   public void paintTurtle(Turtle turtle)
   {
+    if (traceTiles != null)
+    {
+      // Turtle images are painted in paintComponent()
+      isTurtleVisible = true;
+      markTurtleDirty(turtle);
+      return;
+    }
     if (turtleBuffer == null)
     {
       turtleBuffer = new BufferedImage(getWidth(),
@@ -302,6 +365,7 @@ public class Playground
         turtleGraphics);
     }
     isTurtleVisible = true;
+    markTurtleDirty(turtle);
   }
 
   /** 
@@ -314,53 +378,67 @@ public class Playground
     if (color != null && turtle.turtleImg == null)
       t.setColor(color);
     isTurtleVisible = true;
-    if (printerG2D == null && isRepaintEnabled)
-      repaint();
+    markTurtleDirty(turtle);
+    flushDirty();
   }
 
   protected void spray(int density, double spread, int size, Turtle turtle)
   {
-    Color oldColor = traceG2D.getColor();
-    traceG2D.setColor(turtle.getPenColor());
+    final Color color = turtle.getPenColor();
     float oldLineWidth = turtle.getPen().getLineWidth();
     turtle.getPen().setLineWidth(1);
-    traceG2D.setStroke(turtle.getPen().getStroke());
+    final Stroke stroke = turtle.getPen().getStroke();
+    turtle.getPen().setLineWidth(oldLineWidth);
+    final Stroke penStroke = turtle.getPen().getStroke();
     Point2D.Double pt = toScreenCoords(turtle.getPos());
     int ix = (int)Math.round(pt.x);
     int iy = (int)Math.round(pt.y);
 
+    // Random points are calculated first, because the drawing may
+    // be applied to several tiles
     Random rnd = new Random();
-    if (size == 1)
+    final int[] xs = new int[density];
+    final int[] ys = new int[density];
+    Rectangle bounds = new Rectangle(ix, iy, 0, 0);
+    for (int i = 0; i < density; i++)
     {
-      Graphics g = (Graphics)traceG2D;
-      for (int i = 0; i < density; i++)
+      if (size == 1)
       {
-        int rx = ix + (int)(spread * rnd.nextGaussian());
-        int ry = iy + (int)(spread * rnd.nextGaussian());
-        g.drawLine(rx, ry, rx, ry);
-        if (printerG2D != null)
-        {
-          g = (Graphics)printerG2D;
-          g.drawLine(rx, ry, rx, ry);
-        }
+        xs[i] = ix + (int)(spread * rnd.nextGaussian());
+        ys[i] = iy + (int)(spread * rnd.nextGaussian());
       }
+      else
+      {
+        xs[i] = ix - size / 2 + (int)(spread * rnd.nextGaussian());
+        ys[i] = iy - size / 2 + (int)(spread * rnd.nextGaussian());
+      }
+      bounds.add(xs[i], ys[i]);
     }
-    else
+    final int dotSize = size;
+    bounds.grow(dotSize + 1, dotSize + 1);
+    TiledTraceBuffer.Painter painter = new TiledTraceBuffer.Painter()
     {
-      for (int i = 0; i < density; i++)
+      public void paint(Graphics2D g2D)
       {
-        int rx = ix - size / 2 + (int)(spread * rnd.nextGaussian());
-        int ry = iy - size / 2 + (int)(spread * rnd.nextGaussian());
-        traceG2D.fillOval(rx, ry, size, size);
-        if (printerG2D != null)
-          printerG2D.fillOval(rx, ry, size, size);
+        Color oldColor = g2D.getColor();
+        g2D.setColor(color);
+        g2D.setStroke(stroke);
+        for (int i = 0; i < xs.length; i++)
+        {
+          if (dotSize == 1)
+            ((Graphics)g2D).drawLine(xs[i], ys[i], xs[i], ys[i]);
+          else
+            g2D.fillOval(xs[i], ys[i], dotSize, dotSize);
+        }
+        g2D.setColor(oldColor);
+        g2D.setStroke(penStroke);
       }
-    }
-    traceG2D.setColor(oldColor);
-    turtle.getPen().setLineWidth(oldLineWidth);
-    traceG2D.setStroke(turtle.getPen().getStroke());
-    if (printerG2D == null && isRepaintEnabled)
-      repaint();;
+    };
+    paintTrace(bounds, painter);
+    if (printerG2D != null)
+      painter.paint(printerG2D);
+    markDirty(bounds);
+    flushDirty();
   }
 
   /** 
@@ -369,49 +447,53 @@ public class Playground
    */
   protected void dot(double diameter, boolean fill, Turtle turtle)
   {
-    int d = (int)Math.round(diameter);
-    Color oldColor = traceG2D.getColor();
-    traceG2D.setColor(turtle.getPenColor());
+    final int d = (int)Math.round(diameter);
+    final boolean isFill = fill;
+    final Color color = turtle.getPenColor();
     float oldLineWidth = turtle.getPen().getLineWidth();
     turtle.getPen().setLineWidth(1);
-    traceG2D.setStroke(turtle.getPen().getStroke());
+    final Stroke stroke = turtle.getPen().getStroke();
+    turtle.getPen().setLineWidth(oldLineWidth);
+    final Stroke penStroke = turtle.getPen().getStroke();
     Point2D.Double pt = toScreenCoords(turtle.getPos());
-
+    final int ix;
+    final int iy;
     if (d > 1)
     {
-      int ix = (int)Math.round(pt.x) - d / 2;
-      int iy = (int)Math.round(pt.y) - d / 2;
-      if (fill)
-        traceG2D.fillOval(ix, iy, d, d);
-      else
-        traceG2D.drawOval(ix, iy, d, d);
-
-      if (printerG2D != null)
-      {
-        if (fill)
-          printerG2D.fillOval(ix, iy, d, d);
-        else
-          printerG2D.drawOval(ix, iy, d, d);
-      }
+      ix = (int)Math.round(pt.x) - d / 2;
+      iy = (int)Math.round(pt.y) - d / 2;
     }
-    else // d = 1 -> draw one pixel, must use Graphics, not Graphics2D
+    else
     {
-      int ix = (int)Math.round(pt.x);
-      int iy = (int)Math.round(pt.y);
-      Graphics g = (Graphics)traceG2D;
-      g.drawLine(ix, iy, ix, iy);
-      if (printerG2D != null)
+      ix = (int)Math.round(pt.x);
+      iy = (int)Math.round(pt.y);
+    }
+    TiledTraceBuffer.Painter painter = new TiledTraceBuffer.Painter()
+    {
+      public void paint(Graphics2D g2D)
       {
-        g = (Graphics)printerG2D;
-        g.drawLine(ix, iy, ix, iy);
+        Color oldColor = g2D.getColor();
+        g2D.setColor(color);
+        g2D.setStroke(stroke);
+        if (d > 1)
+        {
+          if (isFill)
+            g2D.fillOval(ix, iy, d, d);
+          else
+            g2D.drawOval(ix, iy, d, d);
+        }
+        else // d = 1 -> draw one pixel, must use Graphics, not Graphics2D
+          ((Graphics)g2D).drawLine(ix, iy, ix, iy);
+        g2D.setColor(oldColor);
+        g2D.setStroke(penStroke);
       }
-    }
-
-    traceG2D.setColor(oldColor);
-    turtle.getPen().setLineWidth(oldLineWidth);
-    traceG2D.setStroke(turtle.getPen().getStroke());
-    if (printerG2D == null && isRepaintEnabled)
-      repaint();
+    };
+    Rectangle bounds = new Rectangle(ix - 1, iy - 1, d + 2, d + 2);
+    paintTrace(bounds, painter);
+    if (printerG2D != null)
+      painter.paint(printerG2D);
+    markDirty(bounds);
+    flushDirty();
   }
 
   /**
@@ -429,29 +511,7 @@ public class Playground
    */
   public boolean drawImage(String imagePath, double x, double y)
   {
-    BufferedImage bi = Turtle.getImage(imagePath);
-    if (bi == null)
-      return false;
-    if (traceBuffer == null)
-    {
-      traceBuffer = new BufferedImage(getWidth(),
-        getHeight(),
-        BufferedImage.TYPE_INT_ARGB);
-      traceG2D = traceBuffer.createGraphics();
-    }
-    Point2D.Double pt = toScreenCoords(x, y);
-    int ix = (int)Math.round(pt.x);
-    int iy = (int)Math.round(pt.y);
-    int imageWidth = bi.getWidth();
-    int imageHeight = bi.getHeight();
-    AffineTransform at = new AffineTransform();
-    at.translate(ix - imageWidth / 2, iy - imageHeight / 2);
-    traceG2D.drawImage(bi, at, null);
-    if (printerG2D != null)
-      printerG2D.drawImage(bi, at, null);
-    if (printerG2D == null && isRepaintEnabled)
-      repaint();
-    return true;
+    return drawImage(Turtle.getImage(imagePath), x, y);
   }
 
   /**
@@ -463,13 +523,7 @@ public class Playground
   {
     if (bi == null)
       return false;
-    if (traceBuffer == null)
-    {
-      traceBuffer = new BufferedImage(getWidth(),
-        getHeight(),
-        BufferedImage.TYPE_INT_ARGB);
-      traceG2D = traceBuffer.createGraphics();
-    }
+    checkTraceBuffer();
     Point2D.Double pt = toScreenCoords(x, y);
     int ix = (int)Math.round(pt.x);
     int iy = (int)Math.round(pt.y);
@@ -477,11 +531,15 @@ public class Playground
     int imageHeight = bi.getHeight();
     AffineTransform at = new AffineTransform();
     at.translate(ix - imageWidth / 2, iy - imageHeight / 2);
-    traceG2D.drawImage(bi, at, null);
+    if (traceTiles != null)
+      traceTiles.drawImage(bi, at);
+    else
+      traceG2D.drawImage(bi, at, null);
     if (printerG2D != null)
       printerG2D.drawImage(bi, at, null);
-    if (printerG2D == null && isRepaintEnabled)
-      repaint();
+    markDirty(new Rectangle(ix - imageWidth / 2 - 1, iy - imageHeight / 2 - 1,
+      imageWidth + 2, imageHeight + 2));
+    flushDirty();
     return true;
   }
 
@@ -494,41 +552,48 @@ public class Playground
   protected void arc(double radius, double startAngle,
     double extendAngle, boolean fill, Turtle turtle, int type)
   {
-    Color oldColor = traceG2D.getColor();
-    traceG2D.setColor(turtle.getPenColor());
+    final Color color = turtle.getPenColor();
     float oldLineWidth = turtle.getPen().getLineWidth();
     turtle.getPen().setLineWidth(1);
-    traceG2D.setStroke(turtle.getPen().getStroke());
+    final Stroke stroke = turtle.getPen().getStroke();
+    turtle.getPen().setLineWidth(oldLineWidth);
+    final Stroke penStroke = turtle.getPen().getStroke();
     int r = (int)Math.round(radius);
     Point2D.Double pt = toScreenCoords(turtle.getPos());
     int ix = (int)Math.round(pt.x) - r;
     int iy = (int)Math.round(pt.y) - r;
 
-    if (traceBuffer == null)
-    {
-      traceBuffer = new BufferedImage(getWidth(),
-        getHeight(),
-        BufferedImage.TYPE_INT_ARGB);
-      traceG2D = traceBuffer.createGraphics();
-    }
+    checkTraceBuffer();
 
-    Arc2D.Double arc
+    final Arc2D.Double arc
       = new Arc2D.Double(ix, iy, 2 * r, 2 * r, 90 - startAngle, -extendAngle, type);
-    if (fill)
-      traceG2D.fill(arc);
-    else
-      traceG2D.draw(arc);
+    final boolean isFill = fill;
+    TiledTraceBuffer.Painter painter = new TiledTraceBuffer.Painter()
+    {
+      public void paint(Graphics2D g2D)
+      {
+        Color oldColor = g2D.getColor();
+        g2D.setColor(color);
+        g2D.setStroke(stroke);
+        if (isFill)
+          g2D.fill(arc);
+        else
+          g2D.draw(arc);
+        g2D.setColor(oldColor);
+        g2D.setStroke(penStroke);
+      }
+    };
+    Rectangle bounds = arc.getBounds();
+    bounds.grow(2, 2);
+    paintTrace(bounds, painter);
     if (printerG2D != null)
       if (fill)
         printerG2D.fill(arc);
       else
         printerG2D.draw(arc);
 
-    traceG2D.setColor(oldColor);
-    turtle.getPen().setLineWidth(oldLineWidth);
-    traceG2D.setStroke(turtle.getPen().getStroke());
-    if (printerG2D == null && isRepaintEnabled)
-      repaint();
+    markDirty(bounds);
+    flushDirty();
   }
 
   /** 
@@ -540,8 +605,7 @@ public class Playground
     Point2D.Double pt1 = toScreenCoords(x0, y0);
     Point2D.Double pt2 = toScreenCoords(x1, y1);
     lineTo(pt1.x, pt1.y, pt2.x, pt2.y, pen);
-    if (printerG2D == null && isRepaintEnabled)
-      repaint();
+    flushDirty();
   }
 
   /** 
@@ -556,20 +620,65 @@ public class Playground
     int iy1 = (int)Math.round(y1);
     Color color = pen.getColor();
 
-    if (traceBuffer == null)
+    if (traceTiles != null)
+      traceTiles.draw(new Line2D.Double(ix0, iy0, ix1, iy1), color, pen.getStroke());
+    else
     {
-      traceBuffer = new BufferedImage(getWidth(),
-        getHeight(),
-        BufferedImage.TYPE_INT_ARGB);
-      traceG2D = traceBuffer.createGraphics();
+      checkTraceBuffer();
+      traceG2D.setColor(color);
+      traceG2D.setStroke(pen.getStroke());
+      traceG2D.drawLine(ix0, iy0, ix1, iy1);
     }
-    traceG2D.setColor(color);
-    traceG2D.setStroke(pen.getStroke());
-    traceG2D.drawLine(ix0, iy0, ix1, iy1);
     if (printerG2D != null)
     {
       printerG2D.drawLine(ix0, iy0, ix1, iy1);
     }
+    int margin = (int)Math.ceil(pen.getLineWidth() / 2) + 1;
+    markDirty(new Rectangle(Math.min(ix0, ix1) - margin,
+      Math.min(iy0, iy1) - margin,
+      Math.abs(ix1 - ix0) + 2 * margin + 1,
+      Math.abs(iy1 - iy0) + 2 * margin + 1));
+  }
+
+  // Applies the given painter to the trace buffer or,
+  // in tiled mode, to all tiles intersecting with the given bounds
+  private void paintTrace(Rectangle bounds, TiledTraceBuffer.Painter painter)
+  {
+    if (traceTiles != null)
+      traceTiles.paint(bounds, painter);
+    else
+      painter.paint(traceG2D);
+  }
+
+  // Creates the trace buffer, if not yet done (not used in tiled mode)
+  private void checkTraceBuffer()
+  {
+    if (traceBuffer == null && traceTiles == null)
+    {
+      traceBuffer = new BufferedImage(getWidth(),
+        getHeight(),
+        BufferedImage.TYPE_INT_ARGB);
+      traceG2D = traceBuffer.createGraphics();
+    }
+  }
+
+  // Returns the ARGB value of the trace pixel at the given position
+  // Throws ArrayIndexOutOfBoundsException if out of bounds
+  private int getTraceRGB(int x, int y)
+  {
+    if (traceTiles != null)
+      return traceTiles.getRGB(x, y);
+    return traceBuffer.getRGB(x, y);
+  }
+
+  // Sets the ARGB value of the trace pixel at the given position
+  // Throws ArrayIndexOutOfBoundsException if out of bounds
+  private void setTraceRGB(int x, int y, int rgb)
+  {
+    if (traceTiles != null)
+      traceTiles.setRGB(x, y, rgb);
+    else
+      traceBuffer.setRGB(x, y, rgb);
   }
 
   // A class for convenience.
@@ -642,7 +751,7 @@ public class Playground
     int startX = _startX;
     int startY = _startY;
 
-    bgColor = traceBuffer.getRGB(startX, startY);
+    bgColor = getTraceRGB(startX, startY);
 
     // If current background color same as fill color, vary 1 pixel to neighbor points
     if (bgColor == fillColor)
@@ -690,7 +799,7 @@ public class Playground
           startX = _startX - 1;
           startY = _startY - 1;
         }
-        bgColor = traceBuffer.getRGB(startX, startY);
+        bgColor = getTraceRGB(startX, startY);
         if (bgColor != fillColor)
           break;
         n++;
@@ -699,7 +808,8 @@ public class Playground
         return;
     }
 
-    traceBuffer.setRGB(startX, startY, fillColor);
+    setTraceRGB(startX, startY, fillColor);
+    Rectangle filled = new Rectangle(startX, startY, 0, 0);
     Point p = new Point(startX, startY);
     list.addElement(new Point(startX, startY));
     int d = N;
@@ -711,10 +821,11 @@ public class Playground
         Point tmp = p.add(diff[d]);
         try
         {
-          if (traceBuffer.getRGB(tmp.x, tmp.y) == bgColor)
+          if (getTraceRGB(tmp.x, tmp.y) == bgColor)
           {
             p.translate(diff[d]);
-            traceBuffer.setRGB(p.x, p.y, fillColor);
+            setTraceRGB(p.x, p.y, fillColor);
+            filled.add(p.x, p.y);
             if (printerG2D != null)
             {
               printerG2D.setColor(t.getPen().getFillColor());
@@ -752,8 +863,9 @@ public class Playground
     }
 //    traceG2D.drawLine(0, 0, 0, 0); // Workaround because on Mac the trace buffer is not drawn without this
     // Removed because a visible point will be drawn at (0,0). Test on Mac is OK (June 2016).
-    if (printerG2D == null && isRepaintEnabled)
-      repaint();
+    filled.grow(1, 1);
+    markDirty(filled);
+    flushDirty();
   }
 
   /**
@@ -766,8 +878,8 @@ public class Playground
     isTurtleVisible = true;
     for (int i = 0; i < turtles.size(); i++)
       ((Turtle)(turtles.get(i))).hideTurtle();
-    if (printerG2D == null && isRepaintEnabled)
-      repaint();
+    markDirty(new Rectangle(0, 0, getWidth(), getHeight()));
+    flushDirty();
   }
 
   /**
@@ -786,8 +898,8 @@ public class Playground
   {
     setBkColor(color);
     isTurtleVisible = true;
-    if (printerG2D == null && isRepaintEnabled)
-      repaint();
+    markDirty(new Rectangle(0, 0, getWidth(), getHeight()));
+    flushDirty();
   }
 
   /**
@@ -804,6 +916,11 @@ public class Playground
    */
   public void setBkColor(Color color)
   {
+    if (traceTiles != null)
+    {
+      traceTiles.clear(color);
+      return;
+    }
     traceG2D.setColor(color);
     traceG2D.fillRect(0, 0, getWidth(), getHeight());
     traceG2D.setBackground(color);
@@ -817,7 +934,13 @@ public class Playground
    */
   public void setBkImage(String imagePath)
   {
-    traceG2D.drawImage(Turtle.getImage(imagePath), 0, 0, null);
+    BufferedImage bi = Turtle.getImage(imagePath);
+    if (bi == null)
+      return;
+    if (traceTiles != null)
+      traceTiles.drawImage(bi, new AffineTransform());
+    else
+      traceG2D.drawImage(bi, 0, 0, null);
   }
 
   /** 
@@ -859,9 +982,43 @@ public class Playground
         10, 40);
     }
 
-    g2D.drawImage(traceBuffer, 0, 0, this);
+    if (traceTiles != null)
+    {
+      // Only the tiles in the visible part are drawn
+      traceTiles.paintTo(g2D, g.getClipBounds());
+      if (isTurtleVisible)
+        paintTurtlesTo(g2D);
+      return;
+    }
+    Rectangle clip = g.getClipBounds();
+    if (clip == null || isBean)
+    {
+      g2D.drawImage(traceBuffer, 0, 0, this);
+      if (isTurtleVisible)
+        g2D.drawImage(turtleBuffer, 0, 0, this);
+      return;
+    }
+    // Only the dirty region is composed
+    int x1 = clip.x;
+    int y1 = clip.y;
+    int x2 = clip.x + clip.width;
+    int y2 = clip.y + clip.height;
+    g2D.drawImage(traceBuffer, x1, y1, x2, y2, x1, y1, x2, y2, this);
     if (isTurtleVisible)
-      g2D.drawImage(turtleBuffer, 0, 0, this);
+      g2D.drawImage(turtleBuffer, x1, y1, x2, y2, x1, y1, x2, y2, this);
+  }
+
+  // Paints all visible turtles directly into the given graphics context
+  // (used in tiled mode, where there is no turtle buffer)
+  private void paintTurtlesTo(Graphics2D g2D)
+  {
+    for (int i = 0; i < countTurtles(); i++)
+    {
+      Turtle aTurtle = getTurtle(i);
+      TurtleRenderer renderer = aTurtle.getTurtleRenderer();
+      if (!aTurtle.isHidden() && renderer != null)
+        renderer.paint(aTurtle._getX(), aTurtle._getY(), g2D);
+    }
   }
 
   /** 
@@ -883,6 +1040,12 @@ public class Playground
    */
   public void clearTurtle(Turtle turtle)
   {
+    if (traceTiles != null)  // No turtle buffer in tiled mode
+    {
+      if (turtle != null && !turtle.isHidden())
+        markTurtleDirty(turtle);
+      return;
+    }
     if (turtle != null)
     {
       if (!turtle.isHidden())
@@ -977,17 +1140,60 @@ public class Playground
     Rectangle rim = new Rectangle(0, 0,
       im.getWidth(this),
       im.getHeight(this));
-    Rectangle r = new Rectangle();
-    if (rect.intersects(rim))
-    {
-      r = rect.intersection(rim);
-    }
-    float[] alphachannel = new float[r.width * r.height];
+    if (!rect.intersects(rim))
+      return;
+    Rectangle r = rect.intersection(rim);
+    // The scratch buffer only grows and is never written, so it remains zero
+    if (alphaScratch.length < r.width * r.height)
+      alphaScratch = new float[r.width * r.height];
     ((BufferedImage)im).getAlphaRaster().setPixels(r.x,
       r.y,
       r.width,
       r.height,
-      alphachannel);
+      alphaScratch);
+    markDirty(r);
+  }
+
+  /**
+   * Adds the given region (in screen coordinates) to the region
+   * that must be repainted. The repaint is requested by flushDirty().
+   */
+  protected void markDirty(Rectangle r)
+  {
+    if (printerG2D != null || !isRepaintEnabled)
+      return;
+    synchronized (dirtyLock)
+    {
+      if (dirtyRegion == null)
+        dirtyRegion = new Rectangle(r);
+      else
+        dirtyRegion.add(r);
+    }
+  }
+
+  // Marks the region covered by the turtle image as dirty
+  private void markTurtleDirty(Turtle turtle)
+  {
+    Rectangle bounds = getBounds(turtle);
+    if (turtle.isWrap() && !new Rectangle(0, 0, getWidth(), getHeight()).contains(bounds))
+      bounds = new Rectangle(0, 0, getWidth(), getHeight());
+    markDirty(bounds);
+  }
+
+  /**
+   * Requests a single repaint of the accumulated dirty region.
+   * Requests issued before the event dispatch thread has handled the
+   * previous one are merged, so there is at most one pending repaint.
+   */
+  protected void flushDirty()
+  {
+    synchronized (dirtyLock)
+    {
+      if (dirtyRegion == null || isFlushPending)
+        return;
+      isFlushPending = true;
+    }
+    SwingUtilities.invokeLater(dirtyFlusher);
   }
 
   /** 
@@ -1096,6 +1302,7 @@ public class Playground
 
   /** 
    * Returns the image of the turtle buffer.
+   * In tiled mode there is no turtle buffer and null is returned.
    */
   public BufferedImage getTurtleBuffer()
   {
@@ -1104,6 +1311,7 @@ public class Playground
 
   /**  
    * Returns the graphics context of the trace buffer.
+   * In tiled mode null is returned, use getTiledTraceBuffer() instead.
    */
   public Graphics2D getTraceG2D()
   {
@@ -1120,12 +1328,32 @@ public class Playground
 
   /** 
    * Returns the image of the trace buffer.
+   * In tiled mode null is returned, use getTiledTraceBuffer() instead.
    */
   public BufferedImage getTraceBuffer()
   {
     return traceBuffer;
   }
 
+  /** 
+   * Returns the sparse trace surface used for very large playgrounds.
+   * If the playground does not use tiles, null is returned.
+   * @see Options#setTiledTrace
+   */
+  public TiledTraceBuffer getTiledTraceBuffer()
+  {
+    return traceTiles;
+  }
+
+  /** 
+   * Returns true, if the traces are held in a sparse tiled surface
+   * instead of a single image.
+   */
+  public boolean isTiled()
+  {
+    return traceTiles != null;
+  }
+
   /** 
    Same as label(String text, Turtle t, char align) with align = 'l'.
    */
@@ -1147,23 +1375,37 @@ public class Playground
     Point2D.Double sc = toScreenCoords(t.getPos());
     int x = (int)Math.round(sc.x);
     int y = (int)Math.round(sc.y);
-    FontRenderContext frc = traceG2D.getFontRenderContext();
+    FontRenderContext frc = traceTiles != null
+      ? new FontRenderContext(null, false, false)
+      : traceG2D.getFontRenderContext();
     Font f = t.getFont();
-    TextLayout tl = new TextLayout(text, f, frc);
-    traceG2D.setColor(t.getPen().getColor());
+    final TextLayout tl = new TextLayout(text, f, frc);
+    final Color color = t.getPen().getColor();
     if (Character.toLowerCase(align) == 'r')
       x = x - textWidth;
     else if (Character.toLowerCase(align) == 'c')
       x = x - textWidth / 2;
-    tl.draw(traceG2D, x, y);
+    final int xText = x;
+    final int yText = y;
+    Rectangle bounds = tl.getBounds().getBounds();
+    bounds.translate(x, y);
+    bounds.grow(2, 2);
+    paintTrace(bounds, new TiledTraceBuffer.Painter()
+    {
+      public void paint(Graphics2D g2D)
+      {
+        g2D.setColor(color);
+        tl.draw(g2D, xText, yText);
+      }
+    });
     if (printerG2D != null)
     {
       printerG2D.setColor(t.getPen().getColor());
       tl.draw(printerG2D, x, y);
     }
 
-    if (printerG2D == null && isRepaintEnabled)
-      repaint();
+    markDirty(bounds);
+    flushDirty();
   }
 
   /**  
@@ -1172,7 +1414,9 @@ public class Playground
    */
   public void setAntiAliasing(boolean on)
   {
-    if (on)
+    if (traceTiles != null)
+      traceTiles.setAntiAliasing(on);
+    else if (on)
       traceG2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
         RenderingHints.VALUE_ANTIALIAS_ON);
     else
@@ -1276,7 +1520,7 @@ public class Playground
     int c = 0;
     try
     {
-      c = traceBuffer.getRGB(x, y);
+      c = getTraceRGB(x, y);
     }
     catch (ArrayIndexOutOfBoundsException ex)  // Turtle out of playground
     {
@@ -1304,7 +1548,7 @@ public class Playground
         p.addPoint((int)Math.round(p0.x), (int)Math.round(p0.y));
         p.addPoint((int)Math.round(ptStart.x), (int)Math.round(ptStart.y));
         p.addPoint((int)Math.round(ptEnd.x), (int)Math.round(ptEnd.y));
-        traceG2D.fillPolygon(p);
+        fillTracePolygon(p, t);
         break;
 
       case FILL_HORZ:
@@ -1314,7 +1558,7 @@ public class Playground
         p.addPoint((int)Math.round(ptEnd.x), (int)Math.round(ptEnd.y));
         p.addPoint((int)Math.round(ptEnd.x), yLine);
         p.addPoint((int)Math.round(ptStart.x), yLine);
-        traceG2D.fillPolygon(p);
+        fillTracePolygon(p, t);
         break;
 
       case FILL_VERT:
@@ -1324,13 +1568,38 @@ public class Playground
         p.addPoint((int)Math.round(ptEnd.x), (int)Math.round(ptEnd.y));
         p.addPoint(xLine, (int)Math.round(ptEnd.y));
         p.addPoint(xLine, (int)Math.round(ptStart.y));
-        traceG2D.fillPolygon(p);
+        fillTracePolygon(p, t);
         break;
     }
   }
 
+  // Fills the given polygon with the current trace color
+  // (in tiled mode with the pen color of the given turtle)
+  private void fillTracePolygon(Polygon p, Turtle t)
+  {
+    if (traceTiles != null)
+      traceTiles.fill(p, t.getPen().getColor());
+    else
+      traceG2D.fillPolygon(p);
+    Rectangle bounds = p.getBounds();
+    bounds.grow(1, 1);
+    markDirty(bounds);
+  }
+
   protected void fillPath(GeneralPath gp, Turtle turtle)
   {
+    if (traceTiles != null)
+    {
+      float oldLineWidth = turtle.getPen().getLineWidth();
+      turtle.getPen().setLineWidth(1);
+      gp.closePath();
+      traceTiles.fill(gp, turtle.getFillColor());
+      traceTiles.draw(gp, turtle.getPenColor(), turtle.getPen().getStroke());
+      turtle.getPen().setLineWidth(oldLineWidth);
+      markPathDirty(gp);
+      flushDirty();
+      return;
+    }
     Color oldColor = traceG2D.getColor();
     traceG2D.setColor(turtle.getFillColor());
     float oldLineWidth = turtle.getPen().getLineWidth();
@@ -1342,12 +1611,21 @@ public class Playground
     traceG2D.draw(gp);  // Draw outline again
     turtle.getPen().setLineWidth(oldLineWidth);
     traceG2D.setStroke(turtle.getPen().getStroke());
-    if (printerG2D == null && isRepaintEnabled)
-      repaint();
+    markPathDirty(gp);
+    flushDirty();
+  }
+
+  private void markPathDirty(GeneralPath gp)
+  {
+    Rectangle bounds = gp.getBounds();
+    bounds.grow(2, 2);
+    markDirty(bounds);
   }
 
   /**
    * Saves the playground (turtles and traces) in an image file.
+   * In tiled mode the image is written tile by tile without creating
+   * an image of full size.
    * @param fileName the image file path
    * @param formatName the image format (supported values: "PNG", "GIF")
    * @return true, if the operation is successful; otherwise false
@@ -1356,6 +1634,29 @@ public class Playground
   {
     if (!(formatName.toLowerCase().equals("png") || formatName.toLowerCase().equals("gif")))
       return false;
+    if (traceTiles != null)
+    {
+      traceTiles.setOverlay(new TiledTraceBuffer.Painter()
+      {
+        public void paint(Graphics2D g2D)
+        {
+          paintTurtlesTo(g2D);
+        }
+      });
+      try
+      {
+        ImageIO.write(traceTiles, formatName, new File(fileName));
+      }
+      catch (IOException ex)
+      {
+        return false;
+      }
+      finally
+      {
+        traceTiles.setOverlay(null);
+      }
+      return true;
+    }
     int w = traceBuffer.getWidth();
     int h = traceBuffer.getHeight();
     BufferedImage combined = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
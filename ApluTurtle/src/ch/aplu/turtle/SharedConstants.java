@@ -187,6 +187,12 @@
  * V3.33 - Dec 2016 Fixed: Turtle.dot(1) now draw a single pixel
                     Added: Turtle.spread()
  * V3.34 - Mar 2017 Added: TurtleFrame.setScreenLocation(), getScreenLocation(), getLastScreenLocation()
+ * V3.35 - Oct 2026 Added: Class TiledTraceBuffer, sparse trace surface used
+ *                  for very large playgrounds, Options.setTiledTrace()
+ * V3.36 - Oct 2026 Modified: Playground repaints only the dirty region, 
+ *                  repaint requests are coalesced
+ * V3.37 - Oct 2026 Added: Turtle.executeBatch(), drawLSystem() to draw
+ *                  command sequences as one single operation
  */
 package ch.aplu.turtle;
 
@@ -203,5 +209,5 @@ interface SharedConstants
     "OpenSource Free Software\n" +
     "http://www.aplu.ch\n" +
     "All rights reserved";
-  String VERSION = "3.34 - Dec 2017";
+  String VERSION = "3.37 - Oct 2026";
 }
@@ -0,0 +1,595 @@
+// TiledTraceBuffer.java
+
+/*
+ This software is part of the JEX (Java Exemplarisch) Utility Library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.turtle;
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.awt.image.*;
+import java.util.Vector;
+
+/**
+ * A sparse trace surface used by the playground for very large sizes.
+ * The surface is divided into square tiles of fixed size. A tile
+ * is only allocated when a drawing primitive touches it, blank
+ * tiles are reported with the background color and cost no memory.<br>
+ * The class implements RenderedImage, so the whole surface (together
+ * with an optional overlay like the turtle images) can be written
+ * with ImageIO without creating a full size image.
+ */
+public class TiledTraceBuffer implements RenderedImage
+{
+  /**
+   * Interface for drawing operations applied to the tiles.
+   * The graphics context is already translated, so the painter
+   * uses the coordinates of the whole surface.
+   */
+  public interface Painter
+  {
+    /**
+     * Called for every tile touched by the drawing operation.
+     */
+    void paint(Graphics2D g2D);
+  }
+
+  /**
+   * The default width and height of a tile (in pixels).
+   */
+  public static final int DEFAULT_TILE_SIZE = 256;
+  private final int width;
+  private final int height;
+  private final int tileSize;
+  private final int nbXTiles;
+  private final int nbYTiles;
+  private final BufferedImage[] tiles;
+  private final Graphics2D[] tileG2D;
+  private int nbAllocatedTiles = 0;
+  private Color bkColor;
+  private boolean isAntiAliasing = false;
+  private Painter overlay = null;
+  private BufferedImage blankTile = null;
+  private final ColorModel colorModel = ColorModel.getRGBdefault();
+  private final SampleModel sampleModel;
+  // Cache of the composed tiles of one tile row (used by getData())
+  private int composedRowIndex = -1;
+  private Raster[] composedRow;
+
+  /**
+   * Creates a tiled surface with given size, background color and
+   * default tile size.
+   */
+  public TiledTraceBuffer(int width, int height, Color bkColor)
+  {
+    this(width, height, bkColor, DEFAULT_TILE_SIZE);
+  }
+
+  /**
+   * Creates a tiled surface with given size, background color and tile size.
+   */
+  public TiledTraceBuffer(int width, int height, Color bkColor, int tileSize)
+  {
+    this.width = width;
+    this.height = height;
+    this.tileSize = tileSize;
+    this.bkColor = bkColor;
+    nbXTiles = (width + tileSize - 1) / tileSize;
+    nbYTiles = (height + tileSize - 1) / tileSize;
+    tiles = new BufferedImage[nbXTiles * nbYTiles];
+    tileG2D = new Graphics2D[nbXTiles * nbYTiles];
+    composedRow = new Raster[nbXTiles];
+    sampleModel = colorModel.createCompatibleSampleModel(tileSize, tileSize);
+  }
+
+  /**
+   * Returns the width and height of a tile (in pixels).
+   */
+  public int getTileSize()
+  {
+    return tileSize;
+  }
+
+  /**
+   * Returns the number of tiles currently allocated.
+   */
+  public int getNbAllocatedTiles()
+  {
+    return nbAllocatedTiles;
+  }
+
+  /**
+   * Returns the color of all pixels not yet touched by a drawing operation.
+   */
+  public Color getBackground()
+  {
+    return bkColor;
+  }
+
+  /**
+   * Sets antialiasing on or off for all current and future tiles.
+   */
+  public void setAntiAliasing(boolean on)
+  {
+    isAntiAliasing = on;
+    for (int i = 0; i < tileG2D.length; i++)
+    {
+      if (tileG2D[i] != null)
+        applyHints(tileG2D[i]);
+    }
+  }
+
+  /**
+   * Releases all tiles and sets the given background color.
+   */
+  public void clear(Color color)
+  {
+    for (int i = 0; i < tiles.length; i++)
+    {
+      if (tileG2D[i] != null)
+        tileG2D[i].dispose();
+      tileG2D[i] = null;
+      tiles[i] = null;
+    }
+    nbAllocatedTiles = 0;
+    bkColor = color;
+    blankTile = null;
+    invalidateComposed();
+  }
+
+  /**
+   * Releases all tiles and the graphics contexts.
+   */
+  public void dispose()
+  {
+    clear(bkColor);
+  }
+
+  /**
+   * Applies the given painter to all tiles intersecting with the given
+   * bounds (in surface coordinates). Missing tiles are allocated.
+   */
+  public void paint(Rectangle bounds, Painter painter)
+  {
+    Rectangle r = bounds.intersection(new Rectangle(0, 0, width, height));
+    if (r.isEmpty())
+      return;
+    int txStart = r.x / tileSize;
+    int txEnd = (r.x + r.width - 1) / tileSize;
+    int tyStart = r.y / tileSize;
+    int tyEnd = (r.y + r.height - 1) / tileSize;
+    for (int ty = tyStart; ty <= tyEnd; ty++)
+    {
+      for (int tx = txStart; tx <= txEnd; tx++)
+        painter.paint(getTileG2D(tx, ty));
+    }
+    invalidateComposed();
+  }
+
+  /**
+   * Draws the outline of the given shape with given color and stroke.
+   */
+  public void draw(final Shape shape, final Color color, final Stroke stroke)
+  {
+    Rectangle bounds = shape.getBounds();
+    int margin = getStrokeMargin(stroke);
+    bounds.grow(margin, margin);
+    paint(bounds, new Painter()
+    {
+      public void paint(Graphics2D g2D)
+      {
+        g2D.setColor(color);
+        g2D.setStroke(stroke);
+        g2D.draw(shape);
+      }
+    });
+  }
+
+  /**
+   * Fills the given shape with given color.
+   */
+  public void fill(final Shape shape, final Color color)
+  {
+    Rectangle bounds = shape.getBounds();
+    bounds.grow(1, 1);
+    paint(bounds, new Painter()
+    {
+      public void paint(Graphics2D g2D)
+      {
+        g2D.setColor(color);
+        g2D.fill(shape);
+      }
+    });
+  }
+
+  /**
+   * Draws the given image transformed by the given transformation.
+   */
+  public void drawImage(final Image img, final AffineTransform at)
+  {
+    Rectangle bounds = at.createTransformedShape(
+      new Rectangle(0, 0, img.getWidth(null), img.getHeight(null))).getBounds();
+    bounds.grow(1, 1);
+    paint(bounds, new Painter()
+    {
+      public void paint(Graphics2D g2D)
+      {
+        g2D.drawImage(img, at, null);
+      }
+    });
+  }
+
+  /**
+   * Returns the ARGB value of the pixel at the given position.
+   * @throws ArrayIndexOutOfBoundsException if the coordinates are not in bounds
+   */
+  public int getRGB(int x, int y)
+  {
+    checkBounds(x, y);
+    BufferedImage tile = tiles[(y / tileSize) * nbXTiles + x / tileSize];
+    if (tile == null)
+      return bkColor.getRGB();
+    return tile.getRGB(x % tileSize, y % tileSize);
+  }
+
+  /**
+   * Sets the ARGB value of the pixel at the given position.
+   * @throws ArrayIndexOutOfBoundsException if the coordinates are not in bounds
+   */
+  public void setRGB(int x, int y, int rgb)
+  {
+    checkBounds(x, y);
+    getTile(x / tileSize, y / tileSize, true).setRGB(x % tileSize, y % tileSize, rgb);
+    invalidateComposed();
+  }
+
+  /**
+   * Draws the part of the surface inside the given clip rectangle
+   * into the given graphics context. Blank tiles are filled
+   * with the background color.
+   * If clip is null, the whole surface is drawn.
+   */
+  public void paintTo(Graphics2D g2D, Rectangle clip)
+  {
+    Rectangle r = new Rectangle(0, 0, width, height);
+    if (clip != null)
+      r = r.intersection(clip);
+    if (r.isEmpty())
+      return;
+    int txStart = r.x / tileSize;
+    int txEnd = (r.x + r.width - 1) / tileSize;
+    int tyStart = r.y / tileSize;
+    int tyEnd = (r.y + r.height - 1) / tileSize;
+    for (int ty = tyStart; ty <= tyEnd; ty++)
+    {
+      for (int tx = txStart; tx <= txEnd; tx++)
+      {
+        BufferedImage tile = tiles[ty * nbXTiles + tx];
+        int x0 = tx * tileSize;
+        int y0 = ty * tileSize;
+        if (tile == null)
+        {
+          g2D.setColor(bkColor);
+          g2D.fillRect(x0, y0,
+            Math.min(tileSize, width - x0), Math.min(tileSize, height - y0));
+        }
+        else
+          g2D.drawImage(tile, x0, y0, null);
+      }
+    }
+  }
+
+  /**
+   * Sets a painter that is applied over the traces when the surface is
+   * read as RenderedImage (e.g. to export the turtle images too).
+   * Set to null to export the traces only.
+   */
+  public void setOverlay(Painter overlay)
+  {
+    this.overlay = overlay;
+    invalidateComposed();
+  }
+
+  // ----------------- Implementation of RenderedImage ------------
+  /**
+   * For internal use only. Implementation of RenderedImage.
+   */
+  public Vector<RenderedImage> getSources()
+  {
+    return null;
+  }
+
+  /**
+   * For internal use only. Implementation of RenderedImage.
+   */
+  public Object getProperty(String name)
+  {
+    return Image.UndefinedProperty;
+  }
+
+  /**
+   * For internal use only. Implementation of RenderedImage.
+   */
+  public String[] getPropertyNames()
+  {
+    return null;
+  }
+
+  /**
+   * For internal use only. Implementation of RenderedImage.
+   */
+  public ColorModel getColorModel()
+  {
+    return colorModel;
+  }
+
+  /**
+   * For internal use only. Implementation of RenderedImage.
+   */
+  public SampleModel getSampleModel()
+  {
+    return sampleModel;
+  }
+
+  /**
+   * Returns the width of the surface (in pixels).
+   */
+  public int getWidth()
+  {
+    return width;
+  }
+
+  /**
+   * Returns the height of the surface (in pixels).
+   */
+  public int getHeight()
+  {
+    return height;
+  }
+
+  /**
+   * For internal use only. Implementation of RenderedImage.
+   */
+  public int getMinX()
+  {
+    return 0;
+  }
+
+  /**
+   * For internal use only. Implementation of RenderedImage.
+   */
+  public int getMinY()
+  {
+    return 0;
+  }
+
+  /**
+   * For internal use only. Implementation of RenderedImage.
+   */
+  public int getNumXTiles()
+  {
+    return nbXTiles;
+  }
+
+  /**
+   * For internal use only. Implementation of RenderedImage.
+   */
+  public int getNumYTiles()
+  {
+    return nbYTiles;
+  }
+
+  /**
+   * For internal use only. Implementation of RenderedImage.
+   */
+  public int getMinTileX()
+  {
+    return 0;
+  }
+
+  /**
+   * For internal use only. Implementation of RenderedImage.
+   */
+  public int getMinTileY()
+  {
+    return 0;
+  }
+
+  /**
+   * For internal use only. Implementation of RenderedImage.
+   */
+  public int getTileWidth()
+  {
+    return tileSize;
+  }
+
+  /**
+   * For internal use only. Implementation of RenderedImage.
+   */
+  public int getTileHeight()
+  {
+    return tileSize;
+  }
+
+  /**
+   * For internal use only. Implementation of RenderedImage.
+   */
+  public int getTileGridXOffset()
+  {
+    return 0;
+  }
+
+  /**
+   * For internal use only. Implementation of RenderedImage.
+   */
+  public int getTileGridYOffset()
+  {
+    return 0;
+  }
+
+  /**
+   * Returns a copy of the given tile with the overlay applied.
+   * Blank tiles are returned filled with the background color.
+   * The returned raster must not be modified.
+   */
+  public Raster getTile(int tx, int ty)
+  {
+    BufferedImage tile = tiles[ty * nbXTiles + tx];
+    if (tile == null && overlay == null)
+    {
+      // All blank tiles share the same raster
+      if (blankTile == null)
+      {
+        blankTile =
+          new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2D = blankTile.createGraphics();
+        g2D.setColor(bkColor);
+        g2D.fillRect(0, 0, tileSize, tileSize);
+        g2D.dispose();
+      }
+      return blankTile.getRaster().createTranslatedChild(tx * tileSize, ty * tileSize);
+    }
+    BufferedImage composed =
+      new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g2D = composed.createGraphics();
+    if (tile == null)
+    {
+      g2D.setColor(bkColor);
+      g2D.fillRect(0, 0, tileSize, tileSize);
+    }
+    else
+      g2D.drawImage(tile, 0, 0, null);
+    if (overlay != null)
+    {
+      g2D.translate(-tx * tileSize, -ty * tileSize);
+      overlay.paint(g2D);
+    }
+    g2D.dispose();
+    return composed.getRaster().createTranslatedChild(tx * tileSize, ty * tileSize);
+  }
+
+  /**
+   * For internal use only. Implementation of RenderedImage.
+   */
+  public Raster getData()
+  {
+    return getData(new Rectangle(0, 0, width, height));
+  }
+
+  /**
+   * For internal use only. Implementation of RenderedImage.
+   */
+  public Raster getData(Rectangle rect)
+  {
+    WritableRaster raster = colorModel.createCompatibleWritableRaster(
+      rect.width, rect.height).createWritableTranslatedChild(rect.x, rect.y);
+    return copyData(raster);
+  }
+
+  /**
+   * For internal use only. Implementation of RenderedImage.
+   */
+  public WritableRaster copyData(WritableRaster raster)
+  {
+    if (raster == null)
+      raster = colorModel.createCompatibleWritableRaster(width, height);
+    Rectangle r = raster.getBounds().intersection(new Rectangle(0, 0, width, height));
+    if (r.isEmpty())
+      return raster;
+    int txStart = r.x / tileSize;
+    int txEnd = (r.x + r.width - 1) / tileSize;
+    int tyStart = r.y / tileSize;
+    int tyEnd = (r.y + r.height - 1) / tileSize;
+    for (int ty = tyStart; ty <= tyEnd; ty++)
+    {
+      // Image writers usually request the data row by row,
+      // so the composed tiles of the current tile row are cached
+      if (ty != composedRowIndex)
+      {
+        for (int i = 0; i < nbXTiles; i++)
+          composedRow[i] = null;
+        composedRowIndex = ty;
+      }
+      for (int tx = txStart; tx <= txEnd; tx++)
+      {
+        if (composedRow[tx] == null)
+          composedRow[tx] = getTile(tx, ty);
+        raster.setRect(composedRow[tx]);
+      }
+    }
+    return raster;
+  }
+
+  // ----------------- End of implementation of RenderedImage ------------
+  private Graphics2D getTileG2D(int tx, int ty)
+  {
+    int index = ty * nbXTiles + tx;
+    if (tileG2D[index] == null)
+    {
+      Graphics2D g2D = getTile(tx, ty, true).createGraphics();
+      applyHints(g2D);
+      g2D.translate(-tx * tileSize, -ty * tileSize);
+      tileG2D[index] = g2D;
+    }
+    return tileG2D[index];
+  }
+
+  private BufferedImage getTile(int tx, int ty, boolean create)
+  {
+    int index = ty * nbXTiles + tx;
+    if (tiles[index] == null && create)
+    {
+      BufferedImage tile =
+        new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB);
+      Graphics2D g2D = tile.createGraphics();
+      g2D.setColor(bkColor);
+      g2D.fillRect(0, 0, tileSize, tileSize);
+      g2D.dispose();
+      tiles[index] = tile;
+      nbAllocatedTiles++;
+    }
+    return tiles[index];
+  }
+
+  private void applyHints(Graphics2D g2D)
+  {
+    g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+      isAntiAliasing ? RenderingHints.VALUE_ANTIALIAS_ON
+      : RenderingHints.VALUE_ANTIALIAS_OFF);
+  }
+
+  private void checkBounds(int x, int y)
+  {
+    if (x < 0 || x >= width || y < 0 || y >= height)
+      throw new ArrayIndexOutOfBoundsException("Coordinate out of bounds!");
+  }
+
+  private void invalidateComposed()
+  {
+    if (composedRowIndex != -1)
+    {
+      for (int i = 0; i < nbXTiles; i++)
+        composedRow[i] = null;
+      composedRowIndex = -1;
+    }
+  }
+
+  // Number of pixels the stroke may extend beyond the shape bounds
+  private static int getStrokeMargin(Stroke stroke)
+  {
+    if (!(stroke instanceof BasicStroke))
+      return 1;
+    BasicStroke bs = (BasicStroke)stroke;
+    float w = bs.getLineWidth();
+    if (bs.getLineJoin() == BasicStroke.JOIN_MITER)
+      w *= Math.max(1, bs.getMiterLimit());
+    return (int)Math.ceil(w / 2) + 1;
+  }
+}
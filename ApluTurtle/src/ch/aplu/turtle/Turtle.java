@@ -214,6 +214,34 @@ public class Turtle implements Cloneable
    * Short for Color.YELLOW.
    */
   public static final Color YELLOW = Color.YELLOW;
+  /**
+   * Batch opcode: moves forward by the given distance.
+   */
+  public static final int BATCH_FORWARD = 0;
+  /**
+   * Batch opcode: moves back by the given distance.
+   */
+  public static final int BATCH_BACK = 1;
+  /**
+   * Batch opcode: turns left by the given angle (in degrees).
+   */
+  public static final int BATCH_LEFT = 2;
+  /**
+   * Batch opcode: turns right by the given angle (in degrees).
+   */
+  public static final int BATCH_RIGHT = 3;
+  /**
+   * Batch opcode: lifts the pen (argument ignored).
+   */
+  public static final int BATCH_PENUP = 4;
+  /**
+   * Batch opcode: lowers the pen (argument ignored).
+   */
+  public static final int BATCH_PENDOWN = 5;
+  /**
+   * Batch opcode: sets the heading to the given angle (in degrees).
+   */
+  public static final int BATCH_HEADING = 6;
 
   protected enum FillMode
   {
@@ -457,7 +485,7 @@ public class Turtle implements Cloneable
   {
     playground = turtlePane;
 
-    if (playground.turtleG2D != null)  // TurtlePane already initialized, put
+    if (playground.isInitialized)  // TurtlePane already initialized, put
     // new turtle in same playground
     {
       MyProperties props = new MyProperties(propertyVerbose);
@@ -1678,6 +1706,178 @@ public class Turtle implements Cloneable
     return this;
   }
 
+  /**
+   * Executes a sequence of turtle commands as one single operation. 
+   * The commands are given as pairs (opcode, argument) with the
+   * opcodes BATCH_FORWARD, BATCH_BACK, BATCH_LEFT, BATCH_RIGHT,
+   * BATCH_PENUP, BATCH_PENDOWN, BATCH_HEADING. 
+   * The turtle moves without animation, the traces are drawn in one pass
+   * and the playground is repainted once at the end. 
+   * Unknown opcodes are ignored.
+   * @param commands the opcodes and arguments: op0, arg0, op1, arg1,...
+   * @return the final turtle state: x, y, heading (in degrees)
+   */
+  public double[] executeBatch(double[] commands)
+  {
+    check();
+    synchronized (playground)
+    {
+      getPlayground().clearTurtle(this);
+      for (int i = 0; i + 1 < commands.length; i += 2)
+      {
+        double arg = commands[i + 1];
+        switch ((int)commands[i])
+        {
+          case BATCH_FORWARD:
+            batchMove(arg);
+            break;
+          case BATCH_BACK:
+            batchMove(-arg);
+            break;
+          case BATCH_LEFT:
+            setAngle(getAngle() - Math.toRadians(arg));
+            break;
+          case BATCH_RIGHT:
+            setAngle(getAngle() + Math.toRadians(arg));
+            break;
+          case BATCH_PENUP:
+            isPenUp = true;
+            break;
+          case BATCH_PENDOWN:
+            isPenUp = false;
+            break;
+          case BATCH_HEADING:
+            setAngle(Math.toRadians(arg));
+            break;
+        }
+      }
+      return endBatch();
+    }
+  }
+
+  /**
+   * Draws the L-system with given axiom and production rules as one
+   * single operation (see executeBatch()). The rules are given as
+   * strings "X=replacement", e.g. "F=F+F--F+F". The axiom is expanded
+   * depth times, but the expanded string is never held in memory.
+   * Symbols interpreted:<br>
+   * F, G: move forward by step and draw<br>
+   * f: move forward by step without drawing<br>
+   * +: turn left by angle<br>
+   * -: turn right by angle<br>
+   * |: turn by 180 degrees<br>
+   * [: push position and heading<br>
+   * ]: pop position and heading<br>
+   * All other symbols are only used for the expansion.
+   * @param axiom the start string
+   * @param rules the production rules
+   * @param depth the number of expansions
+   * @param step the moving distance for F, G and f
+   * @param angle the rotation angle for + and - (in degrees)
+   * @return the final turtle state: x, y, heading (in degrees)
+   */
+  public double[] drawLSystem(String axiom, String[] rules, int depth,
+    double step, double angle)
+  {
+    check();
+    String[] productions = new String[128];
+    for (String rule : rules)
+    {
+      int index = rule.indexOf('=');
+      if (index != 1 || rule.charAt(0) >= productions.length)
+        throw new IllegalArgumentException("Illegal L-system rule: " + rule);
+      productions[rule.charAt(0)] = rule.substring(2);
+    }
+    synchronized (playground)
+    {
+      getPlayground().clearTurtle(this);
+      boolean oldPenUp = isPenUp;
+      ArrayList<double[]> stack = new ArrayList<double[]>();
+      expandLSystem(axiom, productions, depth, step, Math.toRadians(angle), stack);
+      isPenUp = oldPenUp;
+      return endBatch();
+    }
+  }
+
+  private void expandLSystem(String s, String[] productions, int depth,
+    double step, double angle, ArrayList<double[]> stack)
+  {
+    for (int i = 0; i < s.length(); i++)
+    {
+      char c = s.charAt(i);
+      if (depth > 0 && c < productions.length && productions[c] != null)
+      {
+        expandLSystem(productions[c], productions, depth - 1, step, angle, stack);
+        continue;
+      }
+      switch (c)
+      {
+        case 'F':
+        case 'G':
+          batchMove(step);
+          break;
+        case 'f':
+          boolean oldPenUp = isPenUp;
+          isPenUp = true;
+          batchMove(step);
+          isPenUp = oldPenUp;
+          break;
+        case '+':
+          setAngle(getAngle() - angle);
+          break;
+        case '-':
+          setAngle(getAngle() + angle);
+          break;
+        case '|':
+          setAngle(getAngle() + Math.PI);
+          break;
+        case '[':
+          stack.add(new double[]
+          {
+            position.x, position.y, getAngle()
+          });
+          break;
+        case ']':
+          if (!stack.isEmpty())
+          {
+            double[] state = stack.remove(stack.size() - 1);
+            position.setLocation(state[0], state[1]);
+            setAngle(state[2]);
+          }
+          break;
+      }
+    }
+  }
+
+  // Moves without animation and without painting the turtle,
+  // the caller holds the playground lock
+  private void batchMove(double length)
+  {
+    double startX = position.x;
+    double startY = position.y;
+    double x = startX + length * Math.sin(getAngle());
+    double y = startY + length * Math.cos(getAngle());
+    if (!isPenUp())
+    {
+      getLineRenderer().init(startX, startY);
+      getLineRenderer().lineTo(x, y);
+    }
+    position.setLocation(x, y);
+    addPositionToPath();
+  }
+
+  // Updates the turtle image and repaints once at the end of a batch
+  private double[] endBatch()
+  {
+    if (getTurtleRenderer().imageChanged(getAngle()))
+      getTurtleRenderer().setAngle(getAngle());
+    getPlayground().paintTurtles(this);
+    return new double[]
+    {
+      position.x, position.y, Math.toDegrees(getAngle())
+    };
+  }
+
   /**
    * Returns the distance between the current turtle position and an other turtle.
    * The turtle positions are bounded to the playground.
@@ -960,8 +960,12 @@ public class TurtleFrame extends JFrame
   public void dispose()
   {
     setVisible(false);
-    playground.traceG2D.dispose();
-    playground.turtleG2D.dispose();
+    if (playground.traceG2D != null)
+      playground.traceG2D.dispose();
+    if (playground.turtleG2D != null)
+      playground.turtleG2D.dispose();
+    if (playground.getTiledTraceBuffer() != null)
+      playground.getTiledTraceBuffer().dispose();
     if (waitThread != null)
       waitThread.interrupt();  // Take out if hangs in getKeyWait(), getKeyCodeWait()
     isDisposed = true;
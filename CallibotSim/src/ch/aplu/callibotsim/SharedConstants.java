@@ -18,6 +18,8 @@ Author: Aegidius Pluess, www.aplu.ch
  * V1.01 - Aug 2019: - Added simulated wheels
  * V1.02 - Aug 2019: - Adjusted LED positions
  * V1.03 - Aug 2019: - Added trace and rotation center
+ * V1.04 - Oct 2026: - Modified: Ultrasonic sensor uses cached target meshes
+                       in a bounding volume hierarchy
  */
 
 package ch.aplu.callibotsim;  
@@ -47,5 +49,5 @@ public interface SharedConstants
     "OpenSource Free Software\n" +
     "http://www.aplu.ch\n" +
     "All rights reserved";
-  String VERSION = "1.03 - Aug 2019";
+  String VERSION = "1.04 - Oct 2026";
 }
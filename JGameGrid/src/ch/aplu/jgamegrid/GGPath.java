@@ -18,20 +18,30 @@ import java.io.*;
 import java.net.*;
 import java.util.ArrayList;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.jar.*;
 import java.util.zip.*;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /**
- * GGPath is a helper class that simplifies file operations.  
+ * GGPath is a helper class that simplifies file operations.<br><br>
+ * The files of copyTree(), pack(), unpack(), zip() and unzip() are
+ * processed by several threads in parallel, which reduces the time
+ * for trees with many small files considerably.
  */
 public class GGPath
 {
   private final static boolean debug = false;
-  private final static String fs = System.getProperty("file.separator");
   private static ArrayList<File> fileList = new ArrayList<File>();
-  private static File treeSrc;
-  private static File treeDest;
   private static boolean success;
+  private static final int nbThreads =
+    Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+  private static ExecutorService pool = null;
 
   // private Ctor
   private GGPath()
@@ -413,18 +423,10 @@ public class GGPath
   {
     debug("copyFile() with URL = " + url + "\n    and dest = " + dest);
     InputStream in = null;
-    FileOutputStream fos = null;
     try
     {
       in = url.openStream();
-      dest.createNewFile();
-      fos = new FileOutputStream(dest);
-      int chr = in.read();
-      while (chr != -1)
-      {
-        fos.write(chr);
-        chr = in.read();
-      }
+      Files.copy(in, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
     }
     catch (Exception ex)
     {
@@ -440,13 +442,6 @@ public class GGPath
       catch (Exception ex)
       {
       };
-      try
-      {
-        fos.close();
-      }
-      catch (Exception ex)
-      {
-      };
     }
     debug("Copy ok");
     return true;
@@ -471,43 +466,16 @@ public class GGPath
       return false;
     }
 
-    InputStream in = null;
-    OutputStream out = null;
     try
     {
-      in = new FileInputStream(src.getPath());
-      out = new FileOutputStream(dest.getPath());
-
-      // Transfer bytes from in to out
-      byte[] buf = new byte[1024];
-      int len;
-      while ((len = in.read(buf)) > 0)
-      {
-        out.write(buf, 0, len);
-      }
+      // Uses the fastest copy mechanism of the platform
+      Files.copy(src.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
     }
-    catch (IOException ex)
+    catch (Exception ex)
     {
       debug("Copy failed");
       return false;
     }
-    finally
-    {
-      try
-      {
-        in.close();
-      }
-      catch (Exception ex)
-      {
-      }
-      try
-      {
-        out.close();
-      }
-      catch (Exception ex)
-      {
-      }
-    }
     debug("Copy ok");
     return true;
   }
@@ -585,7 +553,14 @@ public class GGPath
    */
   public static boolean copyTree(File srcDir, File destDir)
   {
-    debug("copyTree() with src = " + srcDir + "\n    and dest = " + destDir);
+    return copyTree(srcDir, destDir, null);
+  }
+
+  private static boolean copyTree(File srcDir, File destDir, final String extensionFilter)
+  {
+    debug("copyTree() with src = " + srcDir 
+      + "\n   dest = " + destDir 
+      + "\n   filter = " + extensionFilter);
     if (!srcDir.exists())
       return false;
     if (!destDir.exists())
@@ -599,38 +574,69 @@ public class GGPath
       }
       debug("ok");
     }
-    treeSrc = srcDir;
-    treeDest = destDir;
-    success = true;
-    doCopy(new File(""));
-    return success;
+    final Path src = srcDir.toPath().toAbsolutePath();
+    final Path dest = destDir.toPath().toAbsolutePath();
+    final ArrayList<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+    final boolean[] isWalkOk =
+    {
+      true
+    };
+    try
+    {
+      // The directories are created while walking, the files are copied
+      // in parallel afterwards
+      Files.walkFileTree(src, new SimpleFileVisitor<Path>()
+      {
+        public FileVisitResult preVisitDirectory(Path dir,
+          BasicFileAttributes attrs) throws IOException
+        {
+          Files.createDirectories(dest.resolve(src.relativize(dir)));
+          return FileVisitResult.CONTINUE;
+        }
+
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+        {
+          if (extensionFilter != null)
+          {
+            String fname = file.getFileName().toString();
+            int index = fname.lastIndexOf('.');
+            if (index != -1 && !fname.substring(index + 1).equals(extensionFilter))
+              return FileVisitResult.CONTINUE;
+          }
+          tasks.add(new CopyTask(file.toFile(),
+            dest.resolve(src.relativize(file)).toFile()));
+          return FileVisitResult.CONTINUE;
+        }
+
+        public FileVisitResult visitFileFailed(Path file, IOException ex)
+        {
+          isWalkOk[0] = false;
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    }
+    catch (IOException ex)
+    {
+      debug("Walking tree failed");
+      return false;
+    }
+    return invokeAll(tasks) && isWalkOk[0];
   }
 
-  // Recursively called
-  private static void doCopy(File partialSrc)
-  {
-    debug("doCopy() with partialSrc = " + partialSrc);
-    File currentSrcPath = new File(treeSrc.getAbsolutePath(), partialSrc.getPath());
-    File currentDestPath = new File(treeDest.getAbsolutePath(), partialSrc.getPath());
-    debug("currentSrcPath = " + currentSrcPath.getAbsolutePath());
-    debug("currentDestPath = " + currentDestPath.getAbsolutePath());
-    String[] children = currentSrcPath.list();
-    for (int i = 0; i < children.length; i++)
+  private static class CopyTask implements Callable<Boolean>
+  {
+    private File src;
+    private File dest;
+
+    CopyTask(File src, File dest)
     {
-      File srcFile = new File(currentSrcPath, children[i]);
-      File destFile = new File(currentDestPath, children[i]);
-      if (srcFile.isDirectory())
-      {
-        boolean rc = destFile.mkdir();
-        if (!rc)
-          success = false;
-        doCopy(new File(partialSrc, children[i]));
-      }
-      else
-      {
-        if (!copyFile(srcFile, destFile))
-          success = false;
-      }
+      this.src = src;
+      this.dest = dest;
+    }
+
+    public Boolean call()
+    {
+      return copyFile(src, dest);
     }
   }
 
@@ -692,47 +698,79 @@ public class GGPath
         return false;
     }
 
-    final int BUFFER = 2048;
     //  Must create Manifest directory manually (why?)
     File manifestDir = new File(dirPath, "META-INF");
     manifestDir.mkdir();
+    JarFile jarfile = null;
     try
     {
-      BufferedOutputStream bos = null;
-      BufferedInputStream is = null;
-      JarEntry entry;
-      JarFile jarfile = new JarFile(jarFile);
-      Enumeration e = jarfile.entries();
-      while (e.hasMoreElements())
-      {
-        entry = (JarEntry)e.nextElement();
-        if (entry.isDirectory())
-        {
-          File f = new File(dirPath, entry.getName());
-          f.mkdir();
-          continue;
-        }
-        is = new BufferedInputStream(jarfile.getInputStream(entry));
-        int count;
-        byte data[] = new byte[BUFFER];
-        FileOutputStream fos =
-          new FileOutputStream(dirPath.getAbsolutePath() + fs + entry.getName());
-        bos = new BufferedOutputStream(fos, BUFFER);
-        while ((count = is.read(data, 0, BUFFER)) != -1)
-        {
-          bos.write(data, 0, count);
-        }
-        bos.flush();
-        bos.close();
-        is.close();
-      }
-      jarfile.close();
+      jarfile = new JarFile(jarFile);
+      return extract(jarfile, dirPath);
     }
     catch (IOException ex)
     {
       return false;
     }
-    return true;
+    finally
+    {
+      try
+      {
+        jarfile.close();
+      }
+      catch (Exception ex)
+      {
+      }
+    }
+  }
+
+  // Creates the directories and extracts the files in parallel
+  private static boolean extract(ZipFile zip, File dirPath)
+  {
+    ArrayList<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+    Enumeration<? extends ZipEntry> entries = zip.entries();
+    while (entries.hasMoreElements())
+    {
+      ZipEntry entry = entries.nextElement();
+      File dest = new File(dirPath, entry.getName());
+      if (entry.isDirectory())
+        dest.mkdirs();
+      else
+      {
+        File parent = dest.getParentFile();
+        if (parent != null)
+          parent.mkdirs();
+        tasks.add(new ExtractTask(zip, entry, dest));
+      }
+    }
+    return invokeAll(tasks);
+  }
+
+  private static class ExtractTask implements Callable<Boolean>
+  {
+    private ZipFile zip;
+    private ZipEntry entry;
+    private File dest;
+
+    ExtractTask(ZipFile zip, ZipEntry entry, File dest)
+    {
+      this.zip = zip;
+      this.entry = entry;
+      this.dest = dest;
+    }
+
+    public Boolean call() throws IOException
+    {
+      InputStream is = zip.getInputStream(entry);
+      try
+      {
+        Files.copy(is, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+      finally
+      {
+        is.close();
+      }
+      return true;
+    }
   }
 
   /**
@@ -772,7 +810,190 @@ public class GGPath
       fileList.add(dir);
   }
 
+  // The entries are compressed in parallel and written in the
+  // ZIP format in the given order
   private static boolean doPack(File archiveFile, File[] tobeJared, File workingDir)
+  {
+    if (tobeJared.length >= 0xFFFF)  // Needs ZIP64
+      return doPackSequential(archiveFile, tobeJared, workingDir);
+
+    int dosTime = toDosTime(new Date().getTime());
+    int workingDirLength = workingDir.getPath().length();
+    LinkedList<Future<PackEntry>> pending = new LinkedList<Future<PackEntry>>();
+    OutputStream out = null;
+    try
+    {
+      out = new BufferedOutputStream(new FileOutputStream(archiveFile), 65536);
+      ByteArrayOutputStream central = new ByteArrayOutputStream();
+      long offset = 0;
+      int next = 0;
+      while (next < tobeJared.length || !pending.isEmpty())
+      {
+        // Limit the number of entries held in memory
+        while (next < tobeJared.length && pending.size() < 4 * nbThreads)
+        {
+          String entryName = tobeJared[next].getPath().substring(workingDirLength + 1);
+          entryName = entryName.replaceAll("\\\\+", "/");  // Must insert forward slashes!!!
+          pending.add(getPool().submit(new PackTask(tobeJared[next], entryName)));
+          next++;
+        }
+        PackEntry entry = pending.removeFirst().get();
+        if (offset > 0xFFFFFFFFL - 30 - entry.name.length - entry.data.length)
+          throw new IOException("Archive too large");
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        putInt(header, 0x04034b50);  // Local file header
+        putShort(header, 20);  // Version needed
+        putShort(header, 0x0800);  // Flags: UTF-8 names
+        putShort(header, entry.method);
+        putInt(header, dosTime);
+        putInt(header, (int)entry.crc);
+        putInt(header, entry.data.length);
+        putInt(header, entry.size);
+        putShort(header, entry.name.length);
+        putShort(header, 0);  // Extra field length
+        header.write(entry.name);
+        header.writeTo(out);
+        out.write(entry.data);
+
+        putInt(central, 0x02014b50);  // Central directory header
+        putShort(central, 20);  // Version made by
+        putShort(central, 20);  // Version needed
+        putShort(central, 0x0800);
+        putShort(central, entry.method);
+        putInt(central, dosTime);
+        putInt(central, (int)entry.crc);
+        putInt(central, entry.data.length);
+        putInt(central, entry.size);
+        putShort(central, entry.name.length);
+        putShort(central, 0);  // Extra field length
+        putShort(central, 0);  // Comment length
+        putShort(central, 0);  // Disk number
+        putShort(central, 0);  // Internal attributes
+        putInt(central, 0);  // External attributes
+        putInt(central, (int)offset);
+        central.write(entry.name);
+
+        offset += header.size() + entry.data.length;
+      }
+      ByteArrayOutputStream end = new ByteArrayOutputStream();
+      putInt(end, 0x06054b50);  // End of central directory
+      putShort(end, 0);  // Disk number
+      putShort(end, 0);  // Disk with central directory
+      putShort(end, tobeJared.length);
+      putShort(end, tobeJared.length);
+      putInt(end, central.size());
+      putInt(end, (int)offset);
+      putShort(end, 0);  // Comment length
+      central.writeTo(out);
+      end.writeTo(out);
+      out.close();
+      return true;
+    }
+    catch (Exception ex)
+    {
+      debug("Packing failed: " + ex);
+      for (Future<PackEntry> future : pending)
+        future.cancel(true);
+      try
+      {
+        out.close();
+      }
+      catch (Exception e)
+      {
+      }
+      return false;
+    }
+  }
+
+  private static class PackEntry
+  {
+    private byte[] name;
+    private byte[] data;
+    private int size;
+    private long crc;
+    private int method;
+  }
+
+  private static class PackTask implements Callable<PackEntry>
+  {
+    private File file;
+    private String entryName;
+
+    PackTask(File file, String entryName)
+    {
+      this.file = file;
+      this.entryName = entryName;
+    }
+
+    public PackEntry call() throws IOException
+    {
+      PackEntry entry = new PackEntry();
+      byte[] fileData = Files.readAllBytes(file.toPath());
+      entry.name = entryName.getBytes("UTF-8");
+      entry.size = fileData.length;
+      CRC32 crc = new CRC32();
+      crc.update(fileData);
+      entry.crc = crc.getValue();
+
+      Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+      ByteArrayOutputStream bos = new ByteArrayOutputStream(fileData.length / 2 + 64);
+      try
+      {
+        deflater.setInput(fileData);
+        deflater.finish();
+        byte[] buf = new byte[8192];
+        while (!deflater.finished())
+        {
+          int n = deflater.deflate(buf);
+          bos.write(buf, 0, n);
+        }
+      }
+      finally
+      {
+        deflater.end();
+      }
+      if (bos.size() < fileData.length)
+      {
+        entry.data = bos.toByteArray();
+        entry.method = ZipEntry.DEFLATED;
+      }
+      else
+      {
+        entry.data = fileData;
+        entry.method = ZipEntry.STORED;
+      }
+      return entry;
+    }
+  }
+
+  private static int toDosTime(long time)
+  {
+    Calendar c = Calendar.getInstance();
+    c.setTimeInMillis(time);
+    return (c.get(Calendar.YEAR) - 1980) << 25
+      | (c.get(Calendar.MONTH) + 1) << 21
+      | c.get(Calendar.DAY_OF_MONTH) << 16
+      | c.get(Calendar.HOUR_OF_DAY) << 11
+      | c.get(Calendar.MINUTE) << 5
+      | c.get(Calendar.SECOND) >> 1;
+  }
+
+  private static void putShort(ByteArrayOutputStream bos, int value)
+  {
+    bos.write(value);
+    bos.write(value >> 8);
+  }
+
+  private static void putInt(ByteArrayOutputStream bos, int value)
+  {
+    putShort(bos, value);
+    putShort(bos, value >> 16);
+  }
+
+  // Used for archives with too many entries for the ZIP format written
+  // by doPack(), JarOutputStream switches to ZIP64
+  private static boolean doPackSequential(File archiveFile, File[] tobeJared, File workingDir)
   {
     long systime = new Date().getTime();
 
@@ -842,26 +1063,10 @@ public class GGPath
     }
 
     ZipFile zip = null;
-    InputStream inputStream = null;
     try
     {
       zip = new ZipFile(zipFile);
-      Enumeration<? extends ZipEntry> myEnum = zip.entries();
-      while (myEnum.hasMoreElements())
-      {
-        ZipEntry zipEntry = myEnum.nextElement();
-        if (zipEntry.isDirectory())
-        {
-          File destDirFile = new File(dirPath, zipEntry.getName());
-          destDirFile.mkdirs();
-        }
-        else
-        {
-          File destFile = new File(dirPath, zipEntry.getName());
-          inputStream = zip.getInputStream(zipEntry);
-          writeStream(inputStream, destFile);
-        }
-      }
+      return extract(zip, dirPath);
     }
     catch (IOException ex)
     {
@@ -876,15 +1081,7 @@ public class GGPath
       catch (Exception ex)
       {
       }
-      try
-      {
-        inputStream.close();
-      }
-      catch (Exception ex)
-      {
-      }
     }
-    return true;
   }
 
   /**
@@ -902,39 +1099,49 @@ public class GGPath
     return pack(zipFile, dirPath);
   }
 
-  private static void writeStream(InputStream is, File dest)
+  private static synchronized ExecutorService getPool()
   {
-    BufferedInputStream bis = null;
-    BufferedOutputStream bos = null;
-    try
-    {
-      bis = new BufferedInputStream(is);
-      bos = new BufferedOutputStream(new FileOutputStream(dest));
-
-      int byteData;
-      while ((byteData = bis.read()) != -1)
-        bos.write((byte)byteData);
-    }
-    catch (IOException ex)
+    if (pool == null)
     {
+      pool = Executors.newFixedThreadPool(nbThreads, new ThreadFactory()
+      {
+        public Thread newThread(Runnable r)
+        {
+          Thread t = new Thread(r, "GGPath worker");
+          t.setDaemon(true);
+          return t;
+        }
+      });
     }
-    finally
+    return pool;
+  }
+
+  // Runs the tasks in parallel and returns true, if all succeeded
+  private static boolean invokeAll(List<Callable<Boolean>> tasks)
+  {
+    boolean ok = true;
+    try
     {
-      try
-      {
-        bos.close();
-      }
-      catch (Exception ex)
-      {
-      }
-      try
-      {
-        bis.close();
-      }
-      catch (Exception ex)
+      for (Future<Boolean> future : getPool().invokeAll(tasks))
       {
+        try
+        {
+          if (!future.get())
+            ok = false;
+        }
+        catch (ExecutionException ex)
+        {
+          debug("Task failed: " + ex.getCause());
+          ok = false;
+        }
       }
     }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    return ok;
   }
 
   private static String[] split(String s, String separator)
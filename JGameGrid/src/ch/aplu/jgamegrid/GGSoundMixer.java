@@ -0,0 +1,468 @@
+// GGSoundMixer.java
+
+/*
+This software is part of the JGameGrid package.
+It is Open Source Free Software, so you may
+- run the code for any purpose
+- study how the code works and adapt it to your needs
+- integrate all or parts of the code in your own programs
+- redistribute copies of the code
+- improve the code and release your improvements to the public
+However the use of the code is entirely your responsibility.
+
+Author: Aegidius Pluess, www.aplu.ch
+ */
+
+package ch.aplu.jgamegrid;
+
+import java.io.*;
+import java.net.URL;
+import java.util.EnumMap;
+import javax.sound.sampled.*;
+
+/**
+ * Software mixer for the sound clips of the GGSound enumeration.
+ * The clips are decoded once and kept in memory as 16 bit stereo samples.
+ * Any number of clips may be played at the same time (up to the number of
+ * voices): all voices are mixed by a single thread into a single audio line,
+ * so starting a sound has low latency and does not open a new line or thread.
+ * When all voices are busy, the voice that plays for the longest time is
+ * reused (voice stealing).<br>
+ * Without calling start(), the mixer may be used offline: render() mixes
+ * the active voices into a sample buffer (e.g. for tests without audio device).
+ */
+public class GGSoundMixer
+{
+  /**
+   * The sample rate of the mixer (frames per second).
+   */
+  public static final float SAMPLE_RATE = 44100;
+  private static final int BLOCK_FRAMES = 256;
+
+  private static class Voice
+  {
+    int id = -1;  // -1: free
+    short[] clip;
+    int frame;
+    boolean loop;
+    float gainLeft;
+    float gainRight;
+    long startCount;
+  }
+
+  private final Voice[] voices;
+  private final EnumMap<GGSound, short[]> clips =
+    new EnumMap<GGSound, short[]>(GGSound.class);
+  private final float[] mix = new float[2 * BLOCK_FRAMES];
+  private int nextId = 0;
+  private long startCount = 0;
+  private final int lineFrames;
+  private volatile Thread mixerThread = null;
+  private SourceDataLine line = null;
+  private boolean isFailed = false;  // No audio line could be opened
+
+  /**
+   * Create a mixer with 16 voices and an audio line buffer of 2048 frames
+   * (about 46 ms).
+   */
+  public GGSoundMixer()
+  {
+    this(16, 2048);
+  }
+
+  /**
+   * Create a mixer with the given number of voices and audio line buffer
+   * size (in frames). Smaller buffers give lower latency, but may cause
+   * dropouts on slow systems.
+   */
+  public GGSoundMixer(int nbVoices, int lineFrames)
+  {
+    voices = new Voice[Math.max(1, nbVoices)];
+    for (int i = 0; i < voices.length; i++)
+      voices[i] = new Voice();
+    this.lineFrames = Math.max(BLOCK_FRAMES, lineFrames);
+  }
+
+  /**
+   * Decode the given sound clip and keep it in memory, so that
+   * playing it the first time has no delay.
+   * Return false, if the clip cannot be loaded.
+   */
+  public boolean preload(GGSound sound)
+  {
+    return getClip(sound) != null;
+  }
+
+  /**
+   * Decode all clips of the GGSound enumeration.
+   */
+  public void preloadAll()
+  {
+    for (GGSound sound : GGSound.values())
+      preload(sound);
+  }
+
+  /**
+   * Play the given sound clip with full volume in the center.
+   * Return the voice id used to control the sound, -1 if the clip
+   * cannot be loaded.
+   */
+  public int play(GGSound sound)
+  {
+    return play(sound, 1, 0, false);
+  }
+
+  /**
+   * Play the given sound clip with the given gain (0: silent, 1: original volume)
+   * and pan (-1: left, 0: center, 1: right). If loop is true, the clip is
+   * repeated until stop() is called.
+   * Return the voice id used to control the sound, -1 if the clip
+   * cannot be loaded.
+   */
+  public int play(GGSound sound, double gain, double pan, boolean loop)
+  {
+    short[] clip = getClip(sound);
+    if (clip == null)
+      return -1;
+    synchronized (voices)
+    {
+      Voice voice = null;
+      for (Voice v : voices)
+      {
+        if (v.id == -1)
+        {
+          voice = v;
+          break;
+        }
+      }
+      if (voice == null)
+      {
+        // Steal the oldest voice, prefer voices not looping
+        for (Voice v : voices)
+        {
+          if (voice == null
+            || (voice.loop && !v.loop)
+            || (voice.loop == v.loop && v.startCount < voice.startCount))
+            voice = v;
+        }
+      }
+      voice.id = nextId;
+      nextId = (nextId + 1) & Integer.MAX_VALUE;
+      voice.clip = clip;
+      voice.frame = 0;
+      voice.loop = loop;
+      voice.startCount = startCount++;
+      setGainPan(voice, gain, pan);
+      return voice.id;
+    }
+  }
+
+  /**
+   * Change gain and pan of the given voice (see play()).
+   * Nothing happens, if the voice has ended.
+   */
+  public void setGain(int voiceId, double gain, double pan)
+  {
+    synchronized (voices)
+    {
+      Voice voice = findVoice(voiceId);
+      if (voice != null)
+        setGainPan(voice, gain, pan);
+    }
+  }
+
+  /**
+   * Stop the given voice.
+   */
+  public void stop(int voiceId)
+  {
+    synchronized (voices)
+    {
+      Voice voice = findVoice(voiceId);
+      if (voice != null)
+        voice.id = -1;
+    }
+  }
+
+  /**
+   * Stop all voices.
+   */
+  public void stopAll()
+  {
+    synchronized (voices)
+    {
+      for (Voice v : voices)
+        v.id = -1;
+    }
+  }
+
+  /**
+   * Return true, if the given voice is still playing.
+   */
+  public boolean isPlaying(int voiceId)
+  {
+    synchronized (voices)
+    {
+      return findVoice(voiceId) != null;
+    }
+  }
+
+  /**
+   * Return the number of voices playing.
+   */
+  public int getNbActiveVoices()
+  {
+    synchronized (voices)
+    {
+      int n = 0;
+      for (Voice v : voices)
+      {
+        if (v.id != -1)
+          n++;
+      }
+      return n;
+    }
+  }
+
+  /**
+   * Mix the next nbFrames frames of all active voices into the buffer
+   * (interleaved 16 bit stereo samples, left channel first) and advance the
+   * voices. Used by the mixer thread, but may also be called directly
+   * when the mixer is not started (offline rendering).
+   */
+  public void render(short[] buffer, int nbFrames)
+  {
+    int done = 0;
+    while (done < nbFrames)
+    {
+      int n = Math.min(BLOCK_FRAMES, nbFrames - done);
+      mixBlock(n);
+      for (int i = 0; i < 2 * n; i++)
+      {
+        float s = mix[i];
+        buffer[2 * done + i] =
+          (short)(s > 32767 ? 32767 : (s < -32768 ? -32768 : s));
+      }
+      done += n;
+    }
+  }
+
+  /**
+   * Open the default audio line and start the mixer thread.
+   * Return false, if no audio line is available. A failed attempt is
+   * remembered, further calls return false immediately.
+   */
+  public synchronized boolean start()
+  {
+    if (mixerThread != null)
+      return true;
+    if (isFailed)
+      return false;
+    AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, 2, true, false);
+    try
+    {
+      line = AudioSystem.getSourceDataLine(format);
+      line.open(format, 4 * lineFrames);
+      line.start();
+    }
+    catch (Exception ex)
+    {
+      if (line != null)
+        line.close();
+      line = null;
+      isFailed = true;
+      return false;
+    }
+    mixerThread = new Thread()
+    {
+      public void run()
+      {
+        short[] samples = new short[2 * BLOCK_FRAMES];
+        byte[] bytes = new byte[4 * BLOCK_FRAMES];
+        while (mixerThread == this)
+        {
+          render(samples, BLOCK_FRAMES);
+          for (int i = 0; i < samples.length; i++)
+          {
+            bytes[2 * i] = (byte)samples[i];
+            bytes[2 * i + 1] = (byte)(samples[i] >> 8);
+          }
+          line.write(bytes, 0, bytes.length);  // Blocks while line is full
+        }
+      }
+    };
+    mixerThread.setDaemon(true);
+    mixerThread.setPriority(Thread.MAX_PRIORITY);
+    mixerThread.start();
+    return true;
+  }
+
+  /**
+   * Stop the mixer thread and close the audio line.
+   */
+  public synchronized void close()
+  {
+    Thread t = mixerThread;
+    if (t == null)
+      return;
+    mixerThread = null;
+    try
+    {
+      t.join(1000);
+    }
+    catch (InterruptedException ex)
+    {
+    }
+    line.stop();
+    line.close();
+    line = null;
+  }
+
+  /**
+   * Return true, if the mixer thread is running.
+   */
+  public boolean isStarted()
+  {
+    return mixerThread != null;
+  }
+
+  private void mixBlock(int nbFrames)
+  {
+    for (int i = 0; i < 2 * nbFrames; i++)
+      mix[i] = 0;
+    synchronized (voices)
+    {
+      for (Voice v : voices)
+      {
+        if (v.id == -1)
+          continue;
+        short[] clip = v.clip;
+        int clipFrames = clip.length / 2;
+        int i = 0;
+        while (i < nbFrames)
+        {
+          int n = Math.min(nbFrames - i, clipFrames - v.frame);
+          int src = 2 * v.frame;
+          int dst = 2 * i;
+          for (int k = 0; k < n; k++)
+          {
+            mix[dst++] += clip[src++] * v.gainLeft;
+            mix[dst++] += clip[src++] * v.gainRight;
+          }
+          v.frame += n;
+          i += n;
+          if (v.frame >= clipFrames)
+          {
+            if (v.loop && clipFrames > 0)
+              v.frame = 0;
+            else
+            {
+              v.id = -1;
+              break;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private Voice findVoice(int voiceId)
+  {
+    if (voiceId < 0)
+      return null;
+    for (Voice v : voices)
+    {
+      if (v.id == voiceId)
+        return v;
+    }
+    return null;
+  }
+
+  // Constant power panning
+  private static void setGainPan(Voice voice, double gain, double pan)
+  {
+    pan = Math.max(-1, Math.min(1, pan));
+    double angle = (pan + 1) * Math.PI / 4;
+    voice.gainLeft = (float)(gain * Math.cos(angle) * Math.sqrt(2));
+    voice.gainRight = (float)(gain * Math.sin(angle) * Math.sqrt(2));
+  }
+
+  private short[] getClip(GGSound sound)
+  {
+    synchronized (clips)
+    {
+      if (clips.containsKey(sound))
+        return clips.get(sound);
+      URL url = Thread.currentThread().getContextClassLoader().
+        getResource(sound.getPath());
+      short[] clip = url == null ? null : decode(url);
+      clips.put(sound, clip);  // null: not available, do not try again
+      return clip;
+    }
+  }
+
+  // Decode to 16 bit stereo at the mixer sample rate
+  private static short[] decode(URL url)
+  {
+    AudioInputStream ais = null;
+    try
+    {
+      ais = AudioSystem.getAudioInputStream(url);
+      AudioFormat source = ais.getFormat();
+      int nbChannels = source.getChannels();
+      AudioFormat pcm = new AudioFormat(source.getSampleRate(), 16,
+        nbChannels, true, false);
+      AudioInputStream pcmStream = AudioSystem.getAudioInputStream(pcm, ais);
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      byte[] buf = new byte[8192];
+      int nb;
+      while ((nb = pcmStream.read(buf, 0, buf.length)) != -1)
+        bos.write(buf, 0, nb);
+      pcmStream.close();
+      byte[] bytes = bos.toByteArray();
+
+      int nbFrames = bytes.length / (2 * nbChannels);
+      double step = source.getSampleRate() / SAMPLE_RATE;
+      int nbOut = nbFrames == 0 ? 0 : (int)((nbFrames - 1) / step) + 1;
+      short[] clip = new short[2 * nbOut];
+      for (int i = 0; i < nbOut; i++)
+      {
+        // Linear interpolation between the source frames
+        double t = i * step;
+        int k = (int)t;
+        double frac = t - k;
+        int k2 = Math.min(k + 1, nbFrames - 1);
+        for (int c = 0; c < 2; c++)
+        {
+          int ch = Math.min(c, nbChannels - 1);  // Mono to both channels
+          int s1 = getSample(bytes, (k * nbChannels + ch) * 2);
+          int s2 = getSample(bytes, (k2 * nbChannels + ch) * 2);
+          clip[2 * i + c] = (short)Math.round(s1 + frac * (s2 - s1));
+        }
+      }
+      return clip;
+    }
+    catch (Exception ex)
+    {
+      return null;
+    }
+    finally
+    {
+      if (ais != null)
+      {
+        try
+        {
+          ais.close();
+        }
+        catch (IOException ex)
+        {
+        }
+      }
+    }
+  }
+
+  private static int getSample(byte[] bytes, int offset)
+  {
+    return (bytes[offset + 1] << 8) | (bytes[offset] & 0xFF);
+  }
+}
@@ -689,6 +689,7 @@ public class GameGrid extends Canvas implements GGActListener
   private String statusText;
   private Font statusFont;
   private Color statusColor;
+  private GGSoundMixer soundMixer = null;
 
   /**
    * Constructs the game playground with 10 by 10 cells 
@@ -1706,11 +1707,14 @@ public class GameGrid extends Canvas implements GGActListener
       nbCycles++;
 
       // First call all act() of registered GGActListeners
+      // (outside the lock, because act() may block)
+      GGActListener[] listeners;
       synchronized (actListeners)
       {
-        for (GGActListener listener : actListeners)
-          listener.act();
+        listeners = actListeners.toArray(new GGActListener[actListeners.size()]);
       }
+      for (GGActListener listener : listeners)
+        listener.act();
 
       // Use temporary to avoid concurrency problems
       Vector<Vector<Actor>> sList;
@@ -3295,6 +3299,57 @@ public class GameGrid extends Canvas implements GGActListener
     return player;
   }
 
+  /**
+   * Returns the software mixer used by playMixed(). The mixer is created
+   * and started at the first call and closed when the game grid is disposed.
+   * Call getSoundMixer().preloadAll() at startup to avoid any delay
+   * when a sound is played the first time.
+   * @return the sound mixer of this game grid
+   */
+  public GGSoundMixer getSoundMixer()
+  {
+    synchronized (this)
+    {
+      if (soundMixer == null)
+      {
+        soundMixer = new GGSoundMixer();
+        soundMixer.start();
+      }
+      return soundMixer;
+    }
+  }
+
+  /**
+   * Plays a distributed sound sample with full volume using the software mixer.
+   * In contrast to playSound() no new sound line and thread is created,
+   * so the sound starts with low latency and many sounds may be played
+   * at the same time.
+   * @param sound the named sound sample from the GGSound enumeration
+   * @return the voice id for controlling the sound with the mixer
+   * (-1, if the sound cannot be played)
+   */
+  public int playMixed(GGSound sound)
+  {
+    return playMixed(sound, 1, 0);
+  }
+
+  /**
+   * Same as playMixed(sound) with the given gain (0: silent, 1: original volume)
+   * and pan (-1: left, 0: center, 1: right).
+   * @param sound the named sound sample from the GGSound enumeration
+   * @param gain the volume factor
+   * @param pan the stereo position
+   * @return the voice id for controlling the sound with the mixer
+   * (-1, if the sound cannot be played)
+   */
+  public int playMixed(GGSound sound, double gain, double pan)
+  {
+    GGSoundMixer mixer = getSoundMixer();
+    if (!mixer.isStarted())
+      return -1;
+    return mixer.play(sound, gain, pan, false);
+  }
+
   /**
    * Play continously a distributed sound sample with maximum volume using the default sound device.
    * Deprecated:  Use playLoop(GGSound sound) instead.<br><br>
@@ -4977,6 +5032,8 @@ public class GameGrid extends Canvas implements GGActListener
     hide();
     isDisposed = true;
     myFrame.dispose();
+    if (soundMixer != null)
+      soundMixer.close();
     ToolBarStack.initInstances();  // Needed because class is not reloaded on next run (Jython)
     nbRotSprites = 60;  // ditto
     Monitor.wakeUp();
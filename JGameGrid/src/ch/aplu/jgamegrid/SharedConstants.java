@@ -358,6 +358,10 @@ Author: Aegidius Pluess, www.aplu.ch
  *                   - Added: Actor.addCollisionTiles() with Location[]
  * V2.46 - Jan 2016  - Modified: GameGrid.setStatusText() now takes the last
  *                     call in deferred mode
+ * V2.47 - Oct 2026  - Added: GGSoundMixer, GameGrid.playMixed() for low
+ *                     latency sound effects
+ * V2.48 - Oct 2026  - Modified: GGPath copies files with Files.copy(), copyTree(),
+ *                     pack(), unpack(), zip(), unzip() process the files in parallel
  */
 
 package ch.aplu.jgamegrid;  
@@ -378,5 +382,5 @@ interface SharedConstants
     "OpenSource Free Software\n" +
     "http://www.aplu.ch\n" +
     "All rights reserved";
-  String VERSION = "2.46 - Jan 2016";
+  String VERSION = "2.48 - Oct 2026";
 }
@@ -164,15 +164,12 @@ class IRSensor extends Part
   {
     RobotInstance.checkRobot();
     Tools.delay(1);
-    for (Actor a : RobotContext.obstacles)
-    {
-      if (gameGrid.isActorColliding(a, this))
-      {
-        collisionActor = a;
-        return 1;
-      }
-    }
-    collisionActor = null;
-    return 0;
+    int id = getIdVisible();
+    if (id == -1)
+      collisionActor = null;
+    else
+      collisionActor = ObstacleMap.getObstacle(gameGrid, this,
+        getCurrentCollisionCircle(id));
+    return collisionActor != null ? 1 : 0;
   }
 }
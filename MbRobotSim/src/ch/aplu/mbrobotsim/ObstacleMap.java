@@ -0,0 +1,219 @@
+// ObstacleMap.java
+
+/*
+ This software is part of the MbRobotSim library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+
+ Author: Aegidius Pluess, www.aplu.ch
+ */
+package ch.aplu.mbrobotsim;
+
+import ch.aplu.jgamegrid.*;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+
+// Occupancy bitmap of the obstacles used by the infrared sensors instead of
+// a pixel collision test with each obstacle image in every poll.
+// The cells are half a pixel wide and high: the image center of an obstacle
+// is an integer pixel coordinate, so the upper left vertex of each image
+// pixel is at a cell. The cell of the upper left vertex of a non-transparent
+// pixel holds the index + 1 of the obstacle in RobotContext.obstacles
+// (of the first one, if several obstacles overlap), all other cells are 0.
+// The collision circle of a sensor touches an obstacle if a set cell lies
+// inside the circle.
+// The bitmap is built again when an obstacle is added, removed, moved or
+// shows another sprite. Obstacles with a rotated image are not mapped but
+// tested with GameGrid.isActorColliding() like before.
+class ObstacleMap // not public
+{
+  private static final int MAX_CELLS = 1 << 24;
+  private static ObstacleMap map = null;
+  // State of the obstacles when the map was built: x, y and sprite id
+  private static Obstacle[] obstacles = new Obstacle[0];
+  private static int[] states = new int[0];
+
+  private final Obstacle[] items;
+  private final ArrayList<Obstacle> unmapped = new ArrayList<Obstacle>();
+  private int[] cells = null;
+  private int originX;  // Cell (0, 0) in half pixels
+  private int originY;
+  private int width;  // Size in cells
+  private int height;
+
+  // Returns the first obstacle intersecting the collision circle of the
+  // sensor (in pixel coordinates, as GGCircle.isIntersecting() with an image)
+  static synchronized Obstacle getObstacle(GameGrid gg, Actor sensor, GGCircle circle)
+  {
+    ObstacleMap m = getMap(gg);
+    GGVector center = circle.getCenter();
+    double r = circle.getRadius();
+    int index = m.items.length;
+    if (m.cells != null)
+    {
+      int minY = Math.max(0, (int)Math.ceil(2 * (center.y - r)) - m.originY);
+      int maxY = Math.min(m.height - 1, (int)Math.floor(2 * (center.y + r)) - m.originY);
+      for (int y = minY; y <= maxY; y++)
+      {
+        double dy = (m.originY + y) / 2.0 - center.y;
+        if (dy * dy > r * r)
+          continue;
+        // Cells of the row inside the circle (one more on each side
+        // because of rounding, checked below)
+        double half = Math.sqrt(r * r - dy * dy);
+        int minX = Math.max(0, (int)Math.ceil(2 * (center.x - half)) - 1 - m.originX);
+        int maxX = Math.min(m.width - 1, (int)Math.floor(2 * (center.x + half)) + 1 - m.originX);
+        int offset = y * m.width;
+        for (int x = minX; x <= maxX; x++)
+        {
+          int value = m.cells[offset + x];
+          if (value == 0 || value - 1 >= index)
+            continue;
+          double dx = (m.originX + x) / 2.0 - center.x;
+          if (dx * dx + dy * dy <= r * r)
+            index = value - 1;
+        }
+      }
+    }
+    return m.getObstacle(gg, sensor, index);
+  }
+
+  // Returns the map of the current obstacles
+  private static ObstacleMap getMap(GameGrid gg)
+  {
+    synchronized (RobotContext.obstacles)
+    {
+      int size = RobotContext.obstacles.size();
+      boolean isValid = map != null && obstacles.length == size;
+      Obstacle[] current = new Obstacle[size];
+      int[] currentStates = new int[3 * size];
+      for (int i = 0; i < size; i++)
+      {
+        Obstacle obstacle = RobotContext.obstacles.get(i);
+        current[i] = obstacle;
+        int id = obstacle.getIdVisible();
+        currentStates[3 * i + 2] = id;
+        if (id != -1)
+        {
+          Location loc = obstacle.getLocation();
+          currentStates[3 * i] = loc.x;
+          currentStates[3 * i + 1] = loc.y;
+        }
+        if (isValid && (current[i] != obstacles[i]
+          || currentStates[3 * i] != states[3 * i]
+          || currentStates[3 * i + 1] != states[3 * i + 1]
+          || currentStates[3 * i + 2] != states[3 * i + 2]))
+          isValid = false;
+      }
+      if (!isValid)
+      {
+        map = new ObstacleMap(gg, current);
+        obstacles = current;
+        states = currentStates;
+      }
+      return map;
+    }
+  }
+
+  private ObstacleMap(GameGrid gg, Obstacle[] items)
+  {
+    this.items = items;
+    int size = items.length;
+    int[] ids = new int[size];
+    BufferedImage[] images = new BufferedImage[size];
+    int[] ulx = new int[size];  // Upper left vertex in half pixels
+    int[] uly = new int[size];
+    int minX = Integer.MAX_VALUE;
+    int minY = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE;
+    int maxY = Integer.MIN_VALUE;
+    for (int i = 0; i < size; i++)
+    {
+      Obstacle obstacle = items[i];
+      int id = obstacle.getIdVisible();
+      ids[i] = id;
+      if (id == -1)
+        continue;
+      if (obstacle.isRotatable() && obstacle.getDirection() != 0)
+      {
+        unmapped.add(obstacle);
+        continue;
+      }
+      images[i] = obstacle.getImage(id);
+      Point center = gg.toPoint(obstacle.getLocation());
+      ulx[i] = 2 * center.x - images[i].getWidth();
+      uly[i] = 2 * center.y - images[i].getHeight();
+      minX = Math.min(minX, ulx[i]);
+      minY = Math.min(minY, uly[i]);
+      maxX = Math.max(maxX, ulx[i] + 2 * images[i].getWidth());
+      maxY = Math.max(maxY, uly[i] + 2 * images[i].getHeight());
+    }
+    if (minX > maxX)  // Nothing to map
+      return;
+    if ((long)(maxX - minX) * (maxY - minY) > MAX_CELLS)
+    {
+      // Obstacles too far apart, test them one by one
+      unmapped.clear();
+      for (int i = 0; i < size; i++)
+      {
+        if (ids[i] != -1)
+          unmapped.add(items[i]);
+      }
+      return;
+    }
+    originX = minX;
+    originY = minY;
+    width = maxX - minX;
+    height = maxY - minY;
+    cells = new int[width * height];
+    // Last obstacle first, so that the first one wins where they overlap
+    for (int i = size - 1; i >= 0; i--)
+    {
+      BufferedImage image = images[i];
+      if (image == null)
+        continue;
+      int w = image.getWidth();
+      int[] row = new int[w];
+      for (int k = 0; k < image.getHeight(); k++)
+      {
+        image.getRGB(0, k, w, 1, row, 0, w);
+        int offset = (uly[i] + 2 * k - originY) * width + ulx[i] - originX;
+        for (int j = 0; j < w; j++)
+        {
+          if (row[j] >>> 24 != 0)  // Non-transparent
+            cells[offset + 2 * j] = i + 1;
+        }
+      }
+    }
+  }
+
+  // Returns the obstacle with the given index or an unmapped obstacle
+  // before it that collides with the sensor; null, if there is none
+  private Obstacle getObstacle(GameGrid gg, Actor sensor, int index)
+  {
+    for (Obstacle obstacle : unmapped)
+    {
+      if (indexOf(obstacle) > index)
+        break;
+      if (gg.isActorColliding(obstacle, sensor))
+        return obstacle;
+    }
+    return index < items.length ? items[index] : null;
+  }
+
+  private int indexOf(Obstacle obstacle)
+  {
+    for (int i = 0; i < items.length; i++)
+    {
+      if (items[i] == obstacle)
+        return i;
+    }
+    return -1;
+  }
+}
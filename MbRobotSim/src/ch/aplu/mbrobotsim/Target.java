@@ -27,6 +27,9 @@ public class Target extends Actor
   private Point[] mesh;
   private String imageName = null;
   private BufferedImage bi = null;
+  private Triangle[] triangles = null;
+  private int meshX;  // Location of the triangles
+  private int meshY;
   
   /**
    * Creates a target from given image file using the given mesh points. 
@@ -79,4 +82,26 @@ public class Target extends Actor
       tmp[i] = new Point(mesh[i]);
     return tmp;
   }
+
+  // Returns the mesh triangles in playground coordinates. They are only
+  // created again when the target has moved, so the same array is returned
+  // as long as the target stays at its location
+  Triangle[] getTriangles()
+  {
+    int x = getX();
+    int y = getY();
+    if (triangles != null && x == meshX && y == meshY)
+      return triangles;
+    GGVector center = new GGVector(x, y);
+    int size = mesh.length;
+    Triangle[] tmp = new Triangle[size];
+    for (int i = 0; i < size; i++)
+      tmp[i] = new Triangle(center,
+        center.add(new GGVector(mesh[i])),
+        center.add(new GGVector(mesh[(i + 1) % size])));
+    meshX = x;
+    meshY = y;
+    triangles = tmp;
+    return triangles;
+  }
 }
@@ -16,7 +16,6 @@ package ch.aplu.mbrobotsim;
 
 import ch.aplu.jgamegrid.*;
 import java.awt.Color;
-import java.awt.Point;
 import ch.aplu.util.X11Color;
 
 /**
@@ -131,38 +130,19 @@ public class UltrasonicSensor extends Part
       }
       else
       {
-        for (Target target : RobotContext.targets)
-        {
-          // Triangles created dynamically, because target may change location
-          Point[] mesh = target.getMesh();
-          GGVector targetCenter = new GGVector(target.getX(), target.getY());
-          int size = mesh.length;
-          for (int i = 0; i < size - 1; i++)
-          {
-            Triangle t = new Triangle(
-              targetCenter,
-              targetCenter.add(new GGVector(mesh[i])),
-              targetCenter.add(new GGVector(mesh[i + 1])));
-            if (meshTriangleColor != null)
-              t.drawTriangle(gameGrid.getBg(), meshTriangleColor);
-            cone.addObstacle(t);
-          }
-          Triangle t = new Triangle(
-            targetCenter,
-            targetCenter.add(new GGVector(mesh[size - 1])),
-            targetCenter.add(new GGVector(mesh[0])));
-          if (meshTriangleColor != null)
-            t.drawTriangle(gameGrid.getBg(), meshTriangleColor);
-          cone.addObstacle(t);
-          double measure = (int)cone.getDistanceToClosestObstacle();
-          if (measure == 0)
-            value = -1;
-          else
-            value = (int)(measure + 0.5);
+        TargetTree tree = TargetTree.getTree(RobotContext.targets);
+        if (meshTriangleColor != null)
+          tree.drawTriangles(gameGrid.getBg(), meshTriangleColor);
+        GGVector closest = tree.getClosestPoint(cone);
+        double measure =
+          closest == null ? 0 : (int)closest.sub(center).magnitude();
+        if (measure == 0)
+          value = -1;
+        else
+          value = (int)(measure + 0.5);
 
-          if (proximityCircleColor != null)
-            cone.drawProximityCircle(gameGrid.getBg(), value, proximityCircleColor);
-        }
+        if (proximityCircleColor != null)
+          cone.drawProximityCircle(gameGrid.getBg(), value, proximityCircleColor);
       }
       return (double)value;
     }
@@ -13,11 +13,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DocExtractor
 {
   private static boolean debug = false;
   private final static String ls = System.getProperty("line.separator");
+  private static ConcurrentHashMap<String, DocIndex> indexes =
+    new ConcurrentHashMap<String, DocIndex>();
 
   /**
    * Enables/Disables debug information written to System.out.
@@ -31,7 +35,7 @@ public class DocExtractor
 
   /**
    * Extracts documentation for a given method from a html formatted
-   * doc file.
+   * doc file. The doc file is loaded and indexed at the first call only.
    * @param home the home directory in the JAR file (relative, use '/' separator)
    * @param library the name of the library
    * @param language the language 'de', 'en', 'fr', 'it' appended with
@@ -42,8 +46,72 @@ public class DocExtractor
    */
   public static String getDoc(String home, String library, String language,
     String entry)
+  {
+    DocIndex index = getIndex(home, library, language);
+    if (index == null)
+      return null;
+    String extracted = index.getDoc(entry);
+    if (debug && extracted.length() == 0)
+      System.out.println("item '" + entry + "(' not found");
+    return extracted;
+  }
+
+  /**
+   * Returns the names of the documented methods that start with the given
+   * prefix (e.g. for autocompletion).
+   * @param home the home directory in the JAR file (relative, use '/' separator)
+   * @param library the name of the library
+   * @param language the language 'de', 'en', 'fr', 'it'
+   * @param prefix the start of the names (case sensitive)
+   * @return the names in alphabetical order; null, if the doc file is not found
+   */
+  public static List<String> getNames(String home, String library,
+    String language, String prefix)
+  {
+    DocIndex index = getIndex(home, library, language);
+    if (index == null)
+      return null;
+    return index.getNames(prefix);
+  }
+
+  /**
+   * Returns the names of the documented methods that approximately match
+   * the given pattern (case insensitive). Names starting with the pattern
+   * come first, then names containing the characters of the pattern in
+   * the same order (e.g. "fwd" for "forward") and names starting with a
+   * few typing errors.
+   * @param home the home directory in the JAR file (relative, use '/' separator)
+   * @param library the name of the library
+   * @param language the language 'de', 'en', 'fr', 'it'
+   * @param pattern the typed text
+   * @param maxResults the maximal number of names returned
+   * @return the names, best matches first; null, if the doc file is not found
+   */
+  public static List<String> getFuzzyNames(String home, String library,
+    String language, String pattern, int maxResults)
+  {
+    DocIndex index = getIndex(home, library, language);
+    if (index == null)
+      return null;
+    return index.getFuzzyNames(pattern, maxResults);
+  }
+
+  /**
+   * Removes all loaded doc files from the cache, so they are loaded again
+   * at the next call.
+   */
+  public static void clearCache()
+  {
+    indexes.clear();
+  }
+
+  // Returns null, if the doc file is not found
+  private static DocIndex getIndex(String home, String library, String language)
   {
     String filename = home + "/" + library + "_" + language + ".html";
+    DocIndex index = indexes.get(filename);
+    if (index != null)
+      return index;
     if (debug)
       System.out.println("filename: " + filename);
 
@@ -57,70 +125,9 @@ public class DocExtractor
     }
     if (debug)
       System.out.println("resource successfully loaded");
-
-    // Append opening parameter bracket
-    String item = entry + "(";
-    String extracted = "";
-    int searchIndex = 0;
-    while (true)
-    {
-      int itemloc = text.indexOf(item, searchIndex);
-      if (itemloc == -1)
-      {
-        if (debug && extracted.length() == 0)
-          System.out.println("item '" + item + "' not found");
-        return extracted;
-      }
-      if (debug)
-        System.out.println("itemloc = " + itemloc);
-      extracted += extract(text, itemloc);
-      searchIndex = itemloc + item.length();
-    }
-  }
-
-  // Returns null, if not found
-  private static String extract(String text, int loc)
-  {
-    // ---------- Search for previous <tr> -----------
-    int startloc = loc;
-    boolean found = false;
-    while (startloc > 3)
-    {
-      String tag = text.substring(startloc - 4, startloc);
-      if (tag.equals("<tr>"))
-      {
-        found = true;
-        break;
-      }
-      startloc -= 1;
-    }
-    if (!found)
-    {
-      if (debug)
-        System.out.println("startloc = (not found)");
-      return null;
-    }
-    if (debug)
-      System.out.println("startloc = " + startloc);
-    startloc -= 4;
-
-    // ---------- Search for next </tr> -----------
-    int endloc = text.indexOf("</tr>", loc);
-    if (endloc == -1)
-    {
-      if (debug)
-        System.out.println("endloc = (not found)");
-      return null;
-    }
-    if (debug)
-      System.out.println("endloc = " + endloc);
-    endloc += 5;
-
-    String extracted = text.substring(startloc, endloc);
-    extracted += ls;  // Append ls
-    if (debug)
-      System.out.println("extracted:\n" + extracted);
-    return extracted;
+    index = new DocIndex(text);
+    DocIndex existing = indexes.putIfAbsent(filename, index);
+    return existing != null ? existing : index;
   }
 
   // Returns null, if error
@@ -0,0 +1,212 @@
+// DocIndex.java
+
+package ch.aplu.packagedoc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Index of a html doc file built once when the file is loaded.
+// Each table row <tr>...</tr> is registered under the names of all
+// identifiers followed by an opening parameter bracket in the row,
+// e.g. forward and fd for the row
+// <tr>
+// <td width="28%">forward(distance), fd(distance)</td>
+// <td width="62%">bewegt Turtle vorw&auml;rts </td>
+// </tr>
+class DocIndex // not public
+{
+  private final static String ls = System.getProperty("line.separator");
+  private final String text;
+  // Name -> start and end index of the rows (in the order of the file)
+  private final TreeMap<String, int[]> rows = new TreeMap<String, int[]>();
+
+  DocIndex(String text)
+  {
+    this.text = text;
+    int start = text.indexOf("<tr>");
+    while (start != -1)
+    {
+      int next = text.indexOf("<tr>", start + 4);
+      int end = text.indexOf("</tr>", start + 4);
+      if (end == -1)
+        break;
+      int regionEnd = next == -1 ? end : Math.min(next, end);
+      for (int i = start + 4; i < regionEnd; i++)
+      {
+        if (text.charAt(i) != '(')
+          continue;
+        int k = i;
+        while (k > start + 4 && isNameChar(text.charAt(k - 1)))
+          k--;
+        if (k < i)
+          addRow(text.substring(k, i), start, end + 5);
+      }
+      start = next;
+    }
+  }
+
+  private void addRow(String name, int start, int end)
+  {
+    int[] spans = rows.get(name);
+    if (spans == null)
+    {
+      rows.put(name, new int[]
+      {
+        start, end
+      });
+      return;
+    }
+    if (spans[spans.length - 2] == start)  // Name twice in the same row
+      return;
+    int[] newSpans = new int[spans.length + 2];
+    System.arraycopy(spans, 0, newSpans, 0, spans.length);
+    newSpans[spans.length] = start;
+    newSpans[spans.length + 1] = end;
+    rows.put(name, newSpans);
+  }
+
+  // Returns the rows of the given method, each followed by a line separator
+  String getDoc(String entry)
+  {
+    int[] spans = rows.get(entry);
+    if (spans == null)
+    {
+      if (isName(entry))
+        return "";
+      return scan(entry);
+    }
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < spans.length; i += 2)
+    {
+      sb.append(text, spans[i], spans[i + 1]);
+      sb.append(ls);
+    }
+    return sb.toString();
+  }
+
+  // Returns the sorted names that start with the given prefix
+  List<String> getNames(String prefix)
+  {
+    return new ArrayList<String>(
+      rows.subMap(prefix, prefix + Character.MAX_VALUE).keySet());
+  }
+
+  // Returns the names that approximately match the given pattern, the best
+  // matches first: names starting with the pattern, names containing the
+  // characters of the pattern in the same order and names with a start
+  // that differs by few typing errors (all case insensitive)
+  List<String> getFuzzyNames(String pattern, int maxResults)
+  {
+    final Map<String, Integer> scores = new TreeMap<String, Integer>();
+    String p = pattern.toLowerCase();
+    for (String name : rows.keySet())
+    {
+      int score = getScore(name.toLowerCase(), p);
+      if (score >= 0)
+        scores.put(name, score);
+    }
+    List<String> names = new ArrayList<String>(scores.keySet());
+    Collections.sort(names, new Comparator<String>()
+    {
+      public int compare(String name1, String name2)
+      {
+        int diff = scores.get(name1) - scores.get(name2);
+        return diff != 0 ? diff : name1.compareTo(name2);
+      }
+    });
+    if (names.size() > maxResults)
+      return new ArrayList<String>(names.subList(0, maxResults));
+    return names;
+  }
+
+  // Lower is better, -1 if no match
+  private static int getScore(String name, String pattern)
+  {
+    if (name.startsWith(pattern))
+      return name.length() - pattern.length();
+    // Subsequence
+    int gaps = 0;
+    int k = 0;
+    for (int i = 0; i < name.length() && k < pattern.length(); i++)
+    {
+      if (name.charAt(i) == pattern.charAt(k))
+        k++;
+      else if (k > 0)
+        gaps++;
+    }
+    if (k == pattern.length())
+      return 1000 + gaps;
+    // Typing errors
+    int maxErrors = 1 + pattern.length() / 4;
+    String start = name.substring(0, Math.min(name.length(), pattern.length()));
+    int distance = getDistance(start, pattern);
+    if (distance <= maxErrors)
+      return 2000 + 100 * distance + name.length();
+    return -1;
+  }
+
+  // Levenshtein distance
+  private static int getDistance(String s, String t)
+  {
+    int[] previous = new int[t.length() + 1];
+    int[] current = new int[t.length() + 1];
+    for (int j = 0; j <= t.length(); j++)
+      previous[j] = j;
+    for (int i = 1; i <= s.length(); i++)
+    {
+      current[0] = i;
+      for (int j = 1; j <= t.length(); j++)
+      {
+        int cost = s.charAt(i - 1) == t.charAt(j - 1) ? 0 : 1;
+        current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1),
+          previous[j - 1] + cost);
+      }
+      int[] tmp = previous;
+      previous = current;
+      current = tmp;
+    }
+    return previous[t.length()];
+  }
+
+  // Entries that are not simple names (e.g. with a dot) are searched in
+  // the text like in earlier versions
+  private String scan(String entry)
+  {
+    String item = entry + "(";
+    StringBuilder sb = new StringBuilder();
+    int loc = text.indexOf(item);
+    while (loc != -1)
+    {
+      int start = text.lastIndexOf("<tr>", loc - 4);
+      int end = text.indexOf("</tr>", loc);
+      if (start != -1 && end != -1)
+      {
+        sb.append(text, start, end + 5);
+        sb.append(ls);
+      }
+      loc = text.indexOf(item, loc + item.length());
+    }
+    return sb.toString();
+  }
+
+  private static boolean isName(String s)
+  {
+    if (s.length() == 0)
+      return false;
+    for (int i = 0; i < s.length(); i++)
+    {
+      if (!isNameChar(s.charAt(i)))
+        return false;
+    }
+    return true;
+  }
+
+  private static boolean isNameChar(char ch)
+  {
+    return Character.isLetterOrDigit(ch) || ch == '_' || ch == '$';
+  }
+}
@@ -0,0 +1,176 @@
+// ImageCache.java
+
+package ch.aplu.packagedoc;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+// Application wide cache of the images shown in html documents.
+// The images are decoded by background threads, the listeners are
+// notified by the EDT. The least recently used images are removed when
+// the total size exceeds MAX_BYTES, but their dimensions are kept
+// (in a larger table), so a view can reserve the right space before the
+// image is loaded again. The key of an image file contains its modification
+// time and length, so an image edited on disk is loaded again.
+class ImageCache // not public
+{
+  interface Listener
+  {
+    // Called by the EDT, image is null if loading failed
+    void imageLoaded(String key, BufferedImage image);
+  }
+
+  private static final long MAX_BYTES = 64L << 20;
+  private static final int MAX_SIZES = 4096;
+  private static final int NB_THREADS = 2;
+  private static final LinkedHashMap<String, BufferedImage> images =
+    new LinkedHashMap<String, BufferedImage>(16, 0.75f, true);
+  private static final LinkedHashMap<String, Dimension> sizes =
+    new LinkedHashMap<String, Dimension>(16, 0.75f, true)
+    {
+      protected boolean removeEldestEntry(Map.Entry<String, Dimension> eldest)
+      {
+        return size() > MAX_SIZES;
+      }
+    };
+  private static final HashMap<String, ArrayList<Listener>> pending =
+    new HashMap<String, ArrayList<Listener>>();
+  private static long nbBytes = 0;
+  private static ExecutorService executor = null;
+
+  private ImageCache()
+  {
+  }
+
+  // Returns the key of the image at the given URL
+  static String getKey(URL url)
+  {
+    String key = url.toString();
+    if (!url.getProtocol().equals("file"))
+      return key;
+    try
+    {
+      File file = new File(url.toURI());
+      return key + "#" + file.lastModified() + ":" + file.length();
+    }
+    catch (Exception ex)
+    {
+      return key;
+    }
+  }
+
+  // Returns null, if the image is not in the cache
+  static synchronized BufferedImage get(String key)
+  {
+    return images.get(key);
+  }
+
+  // Returns the dimension of an image loaded before; null, if unknown
+  static synchronized Dimension getSize(String key)
+  {
+    return sizes.get(key);
+  }
+
+  // Loads the image in the background and notifies the listener when done.
+  // Requests for an image that is already loading are merged
+  static synchronized void load(final String key, final URL url, Listener listener)
+  {
+    ArrayList<Listener> listeners = pending.get(key);
+    if (listeners != null)
+    {
+      if (!listeners.contains(listener))
+        listeners.add(listener);
+      return;
+    }
+    listeners = new ArrayList<Listener>();
+    listeners.add(listener);
+    pending.put(key, listeners);
+    getExecutor().execute(new Runnable()
+    {
+      public void run()
+      {
+        BufferedImage image = null;
+        try
+        {
+          image = ImageIO.read(url);
+        }
+        catch (Exception ex)
+        {
+        }
+        notifyListeners(key, image);
+      }
+    });
+  }
+
+  private static void notifyListeners(final String key, final BufferedImage image)
+  {
+    final ArrayList<Listener> listeners;
+    synchronized (ImageCache.class)
+    {
+      if (image != null)
+        put(key, image);
+      listeners = pending.remove(key);
+    }
+    SwingUtilities.invokeLater(new Runnable()
+    {
+      public void run()
+      {
+        for (Listener listener : listeners)
+          listener.imageLoaded(key, image);
+      }
+    });
+  }
+
+  // Must be called with the lock
+  private static void put(String key, BufferedImage image)
+  {
+    sizes.put(key, new Dimension(image.getWidth(), image.getHeight()));
+    long bytes = getBytes(image);
+    if (bytes > MAX_BYTES / 4)  // Too large to keep
+      return;
+    BufferedImage old = images.put(key, image);
+    if (old != null)
+      nbBytes -= getBytes(old);
+    nbBytes += bytes;
+    Iterator<BufferedImage> it = images.values().iterator();
+    while (nbBytes > MAX_BYTES && it.hasNext())
+    {
+      nbBytes -= getBytes(it.next());
+      it.remove();
+    }
+  }
+
+  private static long getBytes(BufferedImage image)
+  {
+    return 4L * image.getWidth() * image.getHeight();
+  }
+
+  private static ExecutorService getExecutor()
+  {
+    if (executor == null)
+    {
+      executor = Executors.newFixedThreadPool(NB_THREADS, new ThreadFactory()
+      {
+        public Thread newThread(Runnable r)
+        {
+          Thread t = new Thread(r, "ImageCache loader");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+    return executor;
+  }
+}
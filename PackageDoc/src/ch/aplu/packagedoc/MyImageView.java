@@ -16,6 +16,7 @@ import java.awt.Toolkit;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.image.BufferedImage;
 import java.awt.image.ImageObserver;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
@@ -25,7 +26,6 @@ import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Dictionary;
-import javax.imageio.ImageIO;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 import javax.swing.JEditorPane;
@@ -48,8 +48,14 @@ import javax.swing.text.html.StyleSheet;
 
 /**
  *  Enhanced Image View for HTML documents. Thanks to JavaWorld for the tip.
+ *  Images from files, resources and relative URLs are taken from the
+ *  application wide ImageCache. If an image is not yet cached, it is loaded
+ *  in the background, the view reserves the image size known from earlier
+ *  loads and is laid out again when the image arrives. Remote GIF images
+ *  are loaded by the toolkit, so that animated GIFs keep their animation.
  */
-class MyImageView extends View implements ImageObserver, MouseListener, MouseMotionListener
+class MyImageView extends View
+  implements ImageObserver, MouseListener, MouseMotionListener, ImageCache.Listener
 {
   // --- Attribute Values ------------------------------------------
   public static final String TOP = "top",
@@ -71,6 +77,8 @@ class MyImageView extends View implements ImageObserver, MouseListener, MouseMot
     synchronized (this)
     {
       loading = true;
+      isPending = false;
+      fKey = null;
       fWidth = fHeight = 0;
     }
     int width = 0;
@@ -96,19 +104,13 @@ class MyImageView extends View implements ImageObserver, MouseListener, MouseMot
           if (cache != null)
             fImage = (Image)cache.get(src);
           else
-            fImage = Toolkit.getDefaultToolkit().getImage(src);
+            fImage = requestRemote(src);
         }
       }
       else if (tag.startsWith("file://"))  // Image from absolut path on disk
       {
         String imgPath = tag.substring(tag.indexOf('/') + 2);
-        try
-        {
-          fImage = ImageIO.read(new File(imgPath));
-        }
-        catch (IOException ex)
-        {
-        }
+        fImage = request(new File(imgPath));
       }
 
       // Html file downloaded from server, image URL relativ
@@ -131,7 +133,7 @@ class MyImageView extends View implements ImageObserver, MouseListener, MouseMot
         if (cache != null)
           fImage = (Image)cache.get(src);
         else
-          fImage = Toolkit.getDefaultToolkit().getImage(src);
+          fImage = requestRemote(src);
       }
       else  // html is local
       {
@@ -142,13 +144,7 @@ class MyImageView extends View implements ImageObserver, MouseListener, MouseMot
           String imgPath = homeUrl.substring(homeUrl.indexOf('/') + 2) + "/" + tag;
           if (HtmlPane.debug)
             System.out.println("loading local file " + imgPath);
-          try
-          {
-            fImage = ImageIO.read(new File(imgPath));
-          }
-          catch (IOException ex)
-          {
-          }
+          fImage = request(new File(imgPath));
         }
         else if (homeUrl.startsWith("res://"))  // from resource
         {
@@ -166,25 +162,25 @@ class MyImageView extends View implements ImageObserver, MouseListener, MouseMot
 
           if (url != null)  // Image found in jar
           {
-            try
-            {
-              fImage = ImageIO.read(url);
-            }
-            catch (IOException e)
-            {
-              // Read error
-            }
+            fImage = request(url);
           }
         }
       }
 
+      Dimension cachedSize = null;
       if (fImage == null)
       {
+        if (!isPending)
+        {
+          if (HtmlPane.debug)
+            System.out.println("MyImageView: image loading failed");
+          return;
+        }
         if (HtmlPane.debug)
-          System.out.println("MyImageView: image loading failed");
-        return;
+          System.out.println("MyImageView: image loading in background");
+        cachedSize = ImageCache.getSize(fKey);
       }
-      if (HtmlPane.debug)
+      else if (HtmlPane.debug)
         System.out.println("MyImageView: image successfully loaded");
 
       // Get height/width from params or image or defaults:
@@ -192,6 +188,8 @@ class MyImageView extends View implements ImageObserver, MouseListener, MouseMot
       customHeight = (height > 0);
       if (!customHeight && fImage != null)
         height = fImage.getHeight(this);
+      else if (!customHeight && cachedSize != null)
+        height = cachedSize.height;
       if (height <= 0)
         height = MyImageView.DEFAULT_HEIGHT;
 
@@ -199,6 +197,8 @@ class MyImageView extends View implements ImageObserver, MouseListener, MouseMot
       customWidth = (width > 0);
       if (!customWidth && fImage != null)
         width = fImage.getWidth(this);
+      else if (!customWidth && cachedSize != null)
+        width = cachedSize.width;
       if (width <= 0)
         width = MyImageView.DEFAULT_WIDTH;
 
@@ -227,6 +227,95 @@ class MyImageView extends View implements ImageObserver, MouseListener, MouseMot
     }
   }
 
+  // Returns the image, if it is in the image cache. Otherwise starts
+  // loading it in the background and returns null
+  private Image request(URL url)
+  {
+    if (url == null)
+      return null;
+    String key = ImageCache.getKey(url);
+    fKey = key;
+    BufferedImage image = ImageCache.get(key);
+    if (image != null)
+      return image;
+    isPending = true;
+    ImageCache.load(key, url, this);
+    return null;
+  }
+
+  // Remote GIF images may be animated, which a decoded BufferedImage is not:
+  // they are loaded by the toolkit without the ImageCache
+  private Image requestRemote(URL url)
+  {
+    if (url != null && url.getPath().toLowerCase().endsWith(".gif"))
+      return Toolkit.getDefaultToolkit().getImage(url);
+    return request(url);
+  }
+
+  private Image request(File file)
+  {
+    try
+    {
+      return request(file.toURI().toURL());
+    }
+    catch (MalformedURLException ex)
+    {
+      return null;
+    }
+  }
+
+  /**
+   * Called by the EDT when an image loaded in the background is available.
+   * Only this view is laid out again (and only if its size changes).
+   */
+  public void imageLoaded(String key, BufferedImage image)
+  {
+    if (!key.equals(fKey) || !isPending)
+      return;  // Meanwhile showing another image
+    isPending = false;
+    if (image == null)
+    {
+      if (HtmlPane.debug)
+        System.out.println("MyImageView: image loading failed");
+      repaint(0);
+      return;
+    }
+    fImage = image;
+    boolean changed = false;
+    synchronized (this)
+    {
+      int width = getIntAttr(HTML.Attribute.WIDTH, -1);
+      if (width <= 0)
+        width = image.getWidth();
+      int height = getIntAttr(HTML.Attribute.HEIGHT, -1);
+      if (height <= 0)
+        height = image.getHeight();
+      if (width != fWidth || height != fHeight)
+      {
+        fWidth = width;
+        fHeight = height;
+        changed = true;
+      }
+    }
+    if (changed && getParent() != null)
+    {
+      Document doc = getDocument();
+      try
+      {
+        if (doc instanceof AbstractDocument)
+          ((AbstractDocument)doc).readLock();
+        preferenceChanged(this, true, true);
+      }
+      finally
+      {
+        if (doc instanceof AbstractDocument)
+          ((AbstractDocument)doc).readUnlock();
+      }
+    }
+    else
+      repaint(0);
+  }
+
   private boolean isOnline()
   {
     if (homeUrl == null)
@@ -454,7 +543,8 @@ class MyImageView extends View implements ImageObserver, MouseListener, MouseMot
       g.drawRect(x, y, width - 1, height - 1);
       g.setColor(oldColor);
       loadIcons();
-      Icon icon = fImage == null ? MyImageView.sMissingImageIcon : MyImageView.sPendingImageIcon;
+      Icon icon = fImage == null && !isPending
+        ? MyImageView.sMissingImageIcon : MyImageView.sPendingImageIcon;
       if (icon != null)
         icon.paintIcon(getContainer(), g, x, y);
     }
@@ -961,6 +1051,8 @@ class MyImageView extends View implements ImageObserver, MouseListener, MouseMot
   /** Set to true, while the receiver is locked, to indicate the reciever
    * is loading the image. This is used in imageUpdate. */
   private boolean loading;
+  private String fKey;  // Key of the image in the ImageCache
+  private boolean isPending;  // Image loading in background
   // --- constants and static stuff --------------------------------
   private static Icon sPendingImageIcon, sMissingImageIcon;
   private static final String PENDING_IMAGE_SRC = "icons/image-delayed.gif"; // both stolen from HotJava
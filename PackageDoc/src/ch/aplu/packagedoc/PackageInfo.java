@@ -10,5 +10,5 @@ public class PackageInfo
   /**
     Current version of package.
   */
-  public static String VERSION = "1.12 - Mar 2016";
+  public static String VERSION = "1.13 - Oct 2026";
 }
\ No newline at end of file
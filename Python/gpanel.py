@@ -378,6 +378,10 @@ def arc(radius, startAngle, extendAngle):
    isGPanelValid()
    p.arc(radius, startAngle, extendAngle)
 
+def beginFrame():
+   isGPanelValid()
+   p.beginFrame()
+
 def bgColor(*args):
    isGPanelValid()
    return p.bgColor(_toColor(*args))
@@ -397,6 +401,10 @@ def clear():
    isGPanelValid()
    p.clear()
 
+def clearFrameBackground():
+   isGPanelValid()
+   p.clearFrameBackground()
+
 def clearStore(*args):
    isGPanelValid()
    p.clearStore(_toColor(*args))
@@ -443,6 +451,10 @@ def rlineto(*args):
         raise TypeError("rlineto(): too many arguments")
     lineto(x + px, y + py)
 
+def endFrame():
+   isGPanelValid()
+   return p.endFrame()
+
 def ellipse(a, b):
    isGPanelValid()
    p.ellipse(a, b)
@@ -604,6 +616,10 @@ def getModifiersText():
    isGPanelValid()
    return p.getModifiersText()
 
+def getNbDroppedFrames():
+   isGPanelValid()
+   return p.getNbDroppedFrames()
+
 def getPixelColor(*args):
    isGPanelValid()
    return do(p.getPixelColor, args)
@@ -722,6 +738,10 @@ def polygon(*args):
    else:
       raise ValueError("Illegal number of arguments")
 
+def polyline(x, y):
+   isGPanelValid()
+   p.polyline(x, y)
+
 def pos(*args):
    isGPanelValid()
    do(p.pos, args)
@@ -746,6 +766,14 @@ def rectangle(*args):
    isGPanelValid()
    do(p.rectangle, args)
 
+def renderPixels(f, min = None, max = None, colormap = None):
+   isGPanelValid()
+   if colormap == None:
+      p.renderPixels(f)
+   else:
+      colors = [makeColor(c) if type(c) in [str, unicode] else c for c in colormap]
+      p.renderPixels(f, min, max, colors)
+
 def repaint():
    isGPanelValid()
    p.repaint()
@@ -754,6 +782,10 @@ def resizable(b):
    isGPanelValid()
    p.resizable(b)
 
+def scatter(x, y):
+   isGPanelValid()
+   p.scatter(x, y)
+
 def setColor(*args):
    isGPanelValid()
    return p.setColor(_toColor(*args))
@@ -762,6 +794,10 @@ def setFocusable(focusable):
    isGPanelValid()
    p.setFocusable(focusable)
 
+def setFrameRate(fps):
+   isGPanelValid()
+   p.setFrameRate(fps)
+
 def setPaintMode():
    isGPanelValid()
    p.setPaintMode()
@@ -782,6 +818,22 @@ def showStatusBar(show):
    isGPanelValid()
    p.showStatusBar(show)
 
+def startRecording(filename):
+   isGPanelValid()
+   return p.startRecording(filename)
+
+def stopFrames():
+   isGPanelValid()
+   p.stopFrames()
+
+def stopRecording():
+   isGPanelValid()
+   return p.stopRecording()
+
+def storeFrameBackground():
+   isGPanelValid()
+   p.storeFrameBackground()
+
 def storeGraphics():
    isGPanelValid()
    p.storeGraphics()
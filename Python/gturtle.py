@@ -12,6 +12,7 @@ from ch.aplu.packagedoc import HtmlPane
 from ch.aplu.simulationbar import *
 import sys
 import time
+import jarray
 from ch.aplu.util import MessageDialog, MessagePane, QuitPane, ModelessOptionPane, Monitor
 from java.awt import Color, Dimension, Cursor, Point, Font
 import java.awt.geom.Point2D.Double
@@ -630,10 +631,18 @@ def drawBkImage(imagePath):
    __g.drawBkImage(imagePath)
    return __g
 
+def drawLSystem(axiom, rules, depth, step, angle):
+   isPlaygroundValid()
+   return list(__g.drawLSystem(axiom, rules, depth, step, angle))
+
 def enableRepaint(b):
    isPlaygroundValid()
    __g.enableRepaint(b)
 
+def executeBatch(commands):
+   isPlaygroundValid()
+   return list(__g.executeBatch(jarray.array(commands, 'd')))
+
 def fd(distance):
    isPlaygroundValid()
    __g.fd(distance)
@@ -596,112 +596,29 @@ def makeAudioFormatStereo(sampleRate):
 # ------------------ FFT --------------------------
 
 def fft(samples, n):
-   from org.jtransforms.fft import FloatFFT_1D
-   from pl.edu.icm.jlargearrays import FloatLargeArray
-   from math import sqrt
+   from ch.aplu.util import FFT
    from jarray import array
-
-   a = [0.0] * 2 * n
-   for i in range(n):
-       a[i] = samples[i]  # fill half of array with input data
-
-   transform = FloatFFT_1D(n)
-   ja = array(a, 'f') 
-   transform.realForwardFull(ja)
-
-   # Get results
-   m = n // 2
-   u = [0.0] * m
-   for i in range(m):
-      u[i] = sqrt(ja[2*i] * ja[2*i] + ja[2*i+1] * ja[2*i+1])
-
-   # normalize        
-   z = max(u)
-   for i in range(m):
-      u[i] = u[i] / z
-   return u
+   return FFT.magnitude(array(samples[:n], 'd'), n).tolist()
 
 def fft_db(samples, n):
-   from org.jtransforms.fft import FloatFFT_1D
-   from pl.edu.icm.jlargearrays import FloatLargeArray
-   from math import sqrt
+   from ch.aplu.util import FFT
    from jarray import array
-
-   a = [0.0] * 2 * n
-   for i in range(n):
-       a[i] = samples[i]  # fill half of array with input data
-
-   transform = FloatFFT_1D(n)
-   ja = array(a, 'f') 
-   transform.realForwardFull(ja)
-
-   # Get results
-   m = n // 2
-   u = [0.0] * m
-   for i in range(m):
-      u[i] = sqrt(ja[2*i] * ja[2*i] + ja[2*i+1] * ja[2*i+1])
-
-   # normalize        
-   z = max(u)
-   for i in range(m):
-      u[i] = 20 * math.log10(u[i] / z)
-   return u
+   return FFT.magnitudeDb(array(samples[:n], 'd'), n).tolist()
 
 def fft_filter(ydata, cutoff, isLowpass):
     # aquidistant samples
     # order 1..len(ydata) // 2
-    from org.jtransforms.fft import FloatFFT_1D
+    from ch.aplu.util import FFT
     from jarray import array
-
-    n = len(ydata)  # order of FFT
-    if cutoff < 0:
-        cutoff = 0
-    if cutoff > n // 2:
-        cutoff = n // 2
-    a = [0] * 2 * n
-    for i in range(n):
-       a[i] = ydata[i]  # fill half of array with input data
-    ja = array(a, 'f') 
-
-    # FFT transform
-    transform = FloatFFT_1D(n)
-    transform.realForward(ja)
-    # remove higher frequencies
-    if isLowpass:
-        for i in range(2 * cutoff, 2 * n):
-            ja[i] = 0
-    else:
-        for i in range(0, 2 * cutoff):
-            ja[i] = 0
-    # Inverse FFT transform
-    transform.realInverse(ja, True)
-  
-    for i in range(n):    
-       ydata[i] = ja[i]
-
+    data = array(ydata, 'd')
+    FFT.filter(data, cutoff, isLowpass)
+    ydata[:] = data.tolist()
 
 def toAequidistant(xrawdata, yrawdata, deltax):
-    xdata = []
-    ydata = []
-    i = 0
-    k = 0
-    size = len(xrawdata) - 1
-    while k < size:
-        x = xrawdata[0] + deltax * i
-        while k < size and not (xrawdata[k] <= x and x < xrawdata[k + 1]):
-            k += 1
-        if k < size:
-            x1 = xrawdata[k]
-            y1 = yrawdata[k]
-            x2 = xrawdata[k + 1]
-            y2 = yrawdata[k + 1]
-            a = (y2 - y1) / (x2 - x1)
-            b = y1 - a * x1
-            y = a * x + b
-            xdata.append(x)
-            ydata.append(y)
-        i += 1
-    return xdata, ydata
+    from ch.aplu.util import Resampler
+    from jarray import array
+    result = Resampler.toEquidistant(array(xrawdata, 'd'), array(yrawdata, 'd'), deltax)
+    return result[0].tolist(), result[1].tolist()
 
 def sine(A, f0, t):
    return int(A * SineWave().f(t, f0))       
@@ -107,25 +107,7 @@ public class LightSensor extends Part
   {
     RobotInstance.checkRobot();
     delay(1);
-    synchronized (RobotContext.shadows)
-    {
-      for (Shadow shadow : RobotContext.shadows)
-      {
-        if (shadow.inShadow(getLocation()))
-          return 0;
-      }
-    }
-    double v = 0;
-    synchronized (RobotContext.torches)
-    {
-      double w;
-      for (Torch torch : RobotContext.torches)
-      {
-        w = torch.getIntensity(getLocation());
-        v += w;
-      }
-    }
-    return (int)v;
+    return (int)LightField.getIntensity(gameGrid, getLocation());
   }
 
   /**
@@ -38,6 +38,7 @@ public class RobotContext
   protected static ArrayList<Location> targetLocations = new ArrayList<Location>();
   protected static ArrayList<Torch> torches = new ArrayList<Torch>();
   protected static ArrayList<Shadow> shadows = new ArrayList<Shadow>();
+  protected static int lightResolution = 4;
   protected static boolean isRun = true;
   protected static int xLoc = -1;
   protected static int yLoc = -1;
@@ -82,6 +83,7 @@ public class RobotContext
     startDirection = -90;
     isNavigationBar = false;
     isStatusBar = false;
+    lightResolution = 4;
 
     if (obstacles == null)
       obstacles = new ArrayList<Obstacle>();
@@ -381,6 +383,20 @@ public class RobotContext
     shadows.add(shadow);
   }
 
+  /**
+   * Sets the spacing of the grid where the intensity of the torches is
+   * computed in advance for the light sensors (default: 4 pixels).
+   * The sensors interpolate the intensity between the grid points,
+   * so a read does not depend on the number of torches.
+   * The intensity of torches lower than 4 times the spacing is computed exactly.
+   * @param resolution the grid spacing in pixels; 0 to compute the
+   * intensity of all torches exactly in every read
+   */
+  public static void setLightResolution(int resolution)
+  {
+    lightResolution = Math.max(0, resolution);
+  }
+
 
   /**
    * Shows the navigation bar of the GameGrid.
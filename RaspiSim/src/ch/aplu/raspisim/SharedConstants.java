@@ -23,6 +23,11 @@ Author: Aegidius Pluess, www.aplu.ch
                        for X11 color strings
  * V1.05 - Oct 2015: - Fixed: IR line sensors exchanged
  * V1.06 - Apr 2016: - Added: Led.startBlinking(), stopBlinking()
+ * V1.07 - Oct 2026: - Modified: Ultrasonic sensor uses cached target meshes
+                       in a bounding volume hierarchy
+ * V1.08 - Oct 2026: - Modified: LightSensor interpolates a cached grid of the
+                       torch intensities
+                     - Added: RobotContext.setLightResolution()
  */
 
 package ch.aplu.raspisim;  
@@ -52,5 +57,5 @@ public interface SharedConstants
     "OpenSource Free Software\n" +
     "http://www.aplu.ch\n" +
     "All rights reserved";
-  String VERSION = "1.06 - Apr 2015";
+  String VERSION = "1.08 - Oct 2026";
 }
@@ -0,0 +1,282 @@
+// TargetTree.java
+
+/*
+ This software is part of the RaspiSim library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+
+ Author: Aegidius Pluess, www.aplu.ch
+ */
+package ch.aplu.raspisim;
+
+import ch.aplu.jgamegrid.*;
+import java.awt.Color;
+import java.util.List;
+
+// Bounding volume hierarchy of the mesh triangles of all targets used by
+// the ultrasonic sensor. The nodes are axis aligned bounding boxes split at
+// the median of the triangle centers. A cone query skips all nodes that lie
+// outside the cone's bounding wedge or farther away than the closest point
+// found so far and performs the exact ViewingCone test only for the triangles
+// of the remaining leaves.
+// The tree is cached and only built again when a target has moved or the
+// targets have been added or removed. All methods must be called with
+// the lock of RobotContext.targets.
+class TargetTree // not public
+{
+  private static final int LEAF_SIZE = 4;
+  private static TargetTree tree = null;
+  private static Triangle[][] meshes = new Triangle[0][];  // Used for the tree
+
+  private final Triangle[] triangles;
+  private final double[] centerX;
+  private final double[] centerY;
+  // Per node: bounding box (minX, minY, maxX, maxY)
+  private final double[] bounds;
+  // Per node: index of the first triangle and number of triangles for leaves,
+  // index of the right child and 0 for inner nodes (the left child follows
+  // its parent)
+  private final int[] start;
+  private final int[] count;
+  private int nbNodes = 0;
+
+  // Returns the tree of the given targets
+  static TargetTree getTree(List<Target> targets)
+  {
+    int size = targets.size();
+    boolean isValid = tree != null && meshes.length == size;
+    Triangle[][] current = new Triangle[size][];
+    for (int i = 0; i < size; i++)
+    {
+      current[i] = targets.get(i).getTriangles();
+      if (isValid && current[i] != meshes[i])
+        isValid = false;
+    }
+    if (!isValid)
+    {
+      tree = new TargetTree(current);
+      meshes = current;
+    }
+    return tree;
+  }
+
+  private TargetTree(Triangle[][] meshes)
+  {
+    int n = 0;
+    for (Triangle[] mesh : meshes)
+      n += mesh.length;
+    triangles = new Triangle[n];
+    centerX = new double[n];
+    centerY = new double[n];
+    int k = 0;
+    for (Triangle[] mesh : meshes)
+    {
+      for (Triangle t : mesh)
+      {
+        GGVector[] v = t.getVertices();
+        triangles[k] = t;
+        centerX[k] = (v[0].x + v[1].x + v[2].x) / 3;
+        centerY[k] = (v[0].y + v[1].y + v[2].y) / 3;
+        k++;
+      }
+    }
+    int maxNodes = Math.max(1, 2 * n);
+    bounds = new double[4 * maxNodes];
+    start = new int[maxNodes];
+    count = new int[maxNodes];
+    if (n > 0)
+      build(0, n);
+  }
+
+  // Returns the index of the node with the triangles from..to-1
+  private int build(int from, int to)
+  {
+    int node = nbNodes++;
+    double minX = Double.MAX_VALUE;
+    double minY = Double.MAX_VALUE;
+    double maxX = -Double.MAX_VALUE;
+    double maxY = -Double.MAX_VALUE;
+    double minCX = Double.MAX_VALUE;
+    double minCY = Double.MAX_VALUE;
+    double maxCX = -Double.MAX_VALUE;
+    double maxCY = -Double.MAX_VALUE;
+    for (int i = from; i < to; i++)
+    {
+      for (GGVector v : triangles[i].getVertices())
+      {
+        minX = Math.min(minX, v.x);
+        minY = Math.min(minY, v.y);
+        maxX = Math.max(maxX, v.x);
+        maxY = Math.max(maxY, v.y);
+      }
+      minCX = Math.min(minCX, centerX[i]);
+      minCY = Math.min(minCY, centerY[i]);
+      maxCX = Math.max(maxCX, centerX[i]);
+      maxCY = Math.max(maxCY, centerY[i]);
+    }
+    bounds[4 * node] = minX;
+    bounds[4 * node + 1] = minY;
+    bounds[4 * node + 2] = maxX;
+    bounds[4 * node + 3] = maxY;
+    if (to - from <= LEAF_SIZE)
+    {
+      start[node] = from;
+      count[node] = to - from;
+      return node;
+    }
+    int mid = (from + to) / 2;
+    select(from, to - 1, mid, maxCX - minCX >= maxCY - minCY);
+    build(from, mid);
+    start[node] = build(mid, to);
+    count[node] = 0;
+    return node;
+  }
+
+  // Reorders the triangles from..to (inclusive), so that the triangle with
+  // the k-th smallest center coordinate is at index k (quickselect)
+  private void select(int from, int to, int k, boolean isX)
+  {
+    double[] c = isX ? centerX : centerY;
+    while (from < to)
+    {
+      double pivot = c[(from + to) / 2];
+      int i = from;
+      int j = to;
+      while (i <= j)
+      {
+        while (c[i] < pivot)
+          i++;
+        while (c[j] > pivot)
+          j--;
+        if (i <= j)
+        {
+          swap(i, j);
+          i++;
+          j--;
+        }
+      }
+      if (k <= j)
+        to = j;
+      else if (k >= i)
+        from = i;
+      else
+        return;
+    }
+  }
+
+  private void swap(int i, int j)
+  {
+    Triangle t = triangles[i];
+    triangles[i] = triangles[j];
+    triangles[j] = t;
+    double tmp = centerX[i];
+    centerX[i] = centerX[j];
+    centerX[j] = tmp;
+    tmp = centerY[i];
+    centerY[i] = centerY[j];
+    centerY[j] = tmp;
+  }
+
+  // Returns the closest point of the triangles visible in the given cone;
+  // null, if no triangle is visible
+  GGVector getClosestPoint(ViewingCone cone)
+  {
+    if (nbNodes == 0)
+      return null;
+    GGVector apex = cone.getStandPoint();
+    GGVector[] v = cone.getVertices();
+    double d1x = v[1].x - apex.x;
+    double d1y = v[1].y - apex.y;
+    double d2x = v[2].x - apex.x;
+    double d2y = v[2].y - apex.y;
+    // Orient the border lines so that the inside of the cone is on the
+    // positive side of both
+    double sign = d1x * d2y - d1y * d2x >= 0 ? 1 : -1;
+    double n1x = -sign * d1y;
+    double n1y = sign * d1x;
+    double n2x = sign * d2y;
+    double n2y = -sign * d2x;
+
+    GGVector best = null;
+    double bestDistance2 = Double.MAX_VALUE;
+    int[] stack = new int[128];
+    int top = 0;
+    stack[top++] = 0;
+    while (top > 0)
+    {
+      int node = stack[--top];
+      if (getDistance2(node, apex) > bestDistance2
+        || isOutside(node, apex, n1x, n1y) || isOutside(node, apex, n2x, n2y))
+        continue;
+      if (count[node] > 0)
+      {
+        for (int i = start[node]; i < start[node] + count[node]; i++)
+        {
+          GGVector p = cone.getClosestPoint(triangles[i], best);
+          if (p != best)
+          {
+            best = p;
+            bestDistance2 = p.sub(apex).magnitude2();
+          }
+        }
+      }
+      else
+      {
+        // Visit the closer child first
+        int left = node + 1;
+        int right = start[node];
+        if (top + 2 > stack.length)
+        {
+          int[] tmp = new int[2 * stack.length];
+          System.arraycopy(stack, 0, tmp, 0, top);
+          stack = tmp;
+        }
+        if (getDistance2(left, apex) <= getDistance2(right, apex))
+        {
+          stack[top++] = right;
+          stack[top++] = left;
+        }
+        else
+        {
+          stack[top++] = left;
+          stack[top++] = right;
+        }
+      }
+    }
+    return best;
+  }
+
+  // Draws all triangles filled with the given color
+  void drawTriangles(GGBackground bg, Color color)
+  {
+    for (Triangle t : triangles)
+      t.drawTriangle(bg, color);
+  }
+
+  // Squared distance from the point to the bounding box of the node
+  private double getDistance2(int node, GGVector p)
+  {
+    double dx = Math.max(0, Math.max(bounds[4 * node] - p.x, p.x - bounds[4 * node + 2]));
+    double dy = Math.max(0, Math.max(bounds[4 * node + 1] - p.y, p.y - bounds[4 * node + 3]));
+    return dx * dx + dy * dy;
+  }
+
+  // Returns true, if all corners of the bounding box of the node lie on the
+  // negative side of the line through the apex with the given normal
+  private boolean isOutside(int node, GGVector apex, double nx, double ny)
+  {
+    for (int i = 0; i < 4; i++)
+    {
+      double x = bounds[4 * node + (i & 1) * 2] - apex.x;
+      double y = bounds[4 * node + 1 + (i >> 1) * 2] - apex.y;
+      if (x * nx + y * ny >= 0)
+        return false;
+    }
+    return true;
+  }
+}
@@ -99,17 +99,22 @@ class ViewingCone extends Triangle
   {
     GGVector best = null;
     for (IObstacle o : obstacles)
-    {
-      GGVector closest = o.closestPointTo(getStandPoint());
-      if (liesInside(closest) && isCloser(closest, best))
-        best = closest; //not possible that intersecting point is closer
-      else
-      {
-        for (GGVector candidate : o.getIntersectionPointsWith(viewBoarderLines))
-          if (isCloser(candidate, best))
-            best = candidate;
-      }
-    }
+      best = getClosestPoint(o, best);
+    return best;
+  }
+
+  /**
+   * Returns the visible point of the given obstacle if it is closer than
+   * best (or best is null), otherwise best.
+   */
+  GGVector getClosestPoint(IObstacle o, GGVector best)
+  {
+    GGVector closest = o.closestPointTo(getStandPoint());
+    if (liesInside(closest) && isCloser(closest, best))
+      return closest; //not possible that intersecting point is closer
+    for (GGVector candidate : o.getIntersectionPointsWith(viewBoarderLines))
+      if (isCloser(candidate, best))
+        best = candidate;
     return best;
   }
 
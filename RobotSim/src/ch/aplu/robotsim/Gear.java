@@ -265,7 +265,7 @@ public class Gear extends Part
    */
   public boolean isMoving()
   {
-    delay(1);
+    Tools.delay(1);
     checkPart();
     return isMoving;
   }
@@ -277,7 +277,7 @@ public class Gear extends Part
    */
   public int getX()
   {
-    delay(1);
+    Tools.delay(1);
     checkPart();
     return super.getX();
   }
@@ -289,7 +289,7 @@ public class Gear extends Part
    */
   public int getY()
   {
-    delay(1);
+    Tools.delay(1);
     checkPart();
     return super.getY();
   }
@@ -301,7 +301,7 @@ public class Gear extends Part
    */
   public Location getLocation()
   {
-    delay(1);
+    Tools.delay(1);
     checkPart();
     return super.getLocation();
   }
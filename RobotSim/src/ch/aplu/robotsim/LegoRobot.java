@@ -123,6 +123,7 @@ public class LegoRobot
     {
       super(true, "sprites/nxtrobot.gif");  // Rotatable
       gg.setSimulationPeriod(SharedConstants.simulationPeriod);
+      clock = RobotContext.isVirtualTime ? new VirtualClock(gg) : null;
       if (RobotContext.xLoc > 0 && RobotContext.yLoc > 0)
         gg.setLocation(RobotContext.xLoc, RobotContext.yLoc);
       gg.setBgColor(Color.white);
@@ -1096,6 +1097,7 @@ public class LegoRobot
   private final int nbRotatableSprites = 360;
   private static GameGrid gg;
   private static Robot robot;
+  private static VirtualClock clock = null;
   private int nbObstacles = 0;
   private Mark mark;
   private String title = "RobotSim V" + SharedConstants.VERSION + " [www.aplu.ch]";
@@ -1253,6 +1255,12 @@ public class LegoRobot
     return robot;
   }
 
+  // Returns the virtual clock or null, if the simulation runs in real time
+  static VirtualClock getVirtualClock()
+  {
+    return clock;
+  }
+
   /**
    * Stops any motion and performs a cleanup of all parts.
    */
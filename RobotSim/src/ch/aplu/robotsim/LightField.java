@@ -0,0 +1,321 @@
+// LightField.java
+
+/*
+ This software is part of the RobotSim library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+
+ Author: Aegidius Pluess, www.aplu.ch
+ */
+package ch.aplu.robotsim;
+
+import ch.aplu.jgamegrid.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+// Irradiance field used by the light sensors pointing upwards instead of
+// testing every shadow and summing the intensity of every torch in each read.
+// The intensity of each torch is sampled at the nodes of a grid with the
+// spacing RobotContext.lightResolution covering the game grid, a read
+// interpolates the sum of all torches bilinearly between the 4 nodes around
+// the sensor. The samples of each torch are kept: when a torch is moved or
+// its height is changed (signaled by Torch.nbChanges), only its contribution
+// is subtracted from the sum, computed again (the rows in parallel) and added.
+// The intensity of torches lower than 4 grid spacings (where the peak of the
+// 1/r^2 law cannot be interpolated) and at locations outside the game grid
+// is summed exactly.
+// A shadow mask with one entry per cell is built again when a shadow is
+// added or removed.
+// With a resolution of 0 all values are computed exactly like before.
+class LightField // not public
+{
+  private static final int nbThreads =
+    Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+  private static ExecutorService pool = null;
+  private static LightField field = null;
+  private static Shadow[] shadows = new Shadow[0];
+  private static boolean[] mask = null;  // Cells in a shadow
+
+  private final GameGrid gg;
+  private final int resolution;
+  private final int nbCols;  // Number of nodes
+  private final int nbRows;
+  private final double[] sum;
+  private Torch[] torches = new Torch[0];
+  // Per torch: x, y and height when the samples were computed
+  private int[] states = new int[0];
+  private double[][] samples = new double[0][];  // null for exact torches
+  private int checkedChanges = -1;  // Torch.nbChanges at the last update
+
+  // Returns the summed intensity of all torches at the given location;
+  // 0, if the location is inside a shadow
+  static synchronized double getIntensity(GameGrid gg, Location loc)
+  {
+    int resolution = RobotContext.lightResolution;
+    if (isInShadow(gg, loc, resolution <= 0))
+      return 0;
+    if (resolution <= 0)
+    {
+      double v = 0;
+      synchronized (RobotContext.torches)
+      {
+        for (Torch torch : RobotContext.torches)
+          v += torch.getIntensity(loc);
+      }
+      return v;
+    }
+    if (field == null || field.gg != gg || field.resolution != resolution)
+      field = new LightField(gg, resolution);
+    return field.getValue(loc);
+  }
+
+  private static boolean isInShadow(GameGrid gg, Location loc, boolean isExact)
+  {
+    int width = gg.getNbHorzCells();
+    int height = gg.getNbVertCells();
+    synchronized (RobotContext.shadows)
+    {
+      int size = RobotContext.shadows.size();
+      boolean isOutside = loc.x < 0 || loc.x >= width
+        || loc.y < 0 || loc.y >= height;
+      if (isExact || isOutside)
+      {
+        for (int i = 0; i < size; i++)
+        {
+          if (RobotContext.shadows.get(i).inShadow(loc))
+            return true;
+        }
+        return false;
+      }
+      boolean isValid = mask != null && mask.length == width * height
+        && shadows.length == size;
+      for (int i = 0; isValid && i < size; i++)
+      {
+        if (RobotContext.shadows.get(i) != shadows[i])
+          isValid = false;
+      }
+      if (!isValid)
+      {
+        shadows = RobotContext.shadows.toArray(new Shadow[size]);
+        mask = new boolean[width * height];
+        for (Shadow shadow : shadows)
+        {
+          for (int y = 0; y < height; y++)
+          {
+            for (int x = 0; x < width; x++)
+            {
+              if (shadow.inShadow(new Location(x, y)))
+                mask[y * width + x] = true;
+            }
+          }
+        }
+      }
+      return mask[loc.y * width + loc.x];
+    }
+  }
+
+  private LightField(GameGrid gg, int resolution)
+  {
+    this.gg = gg;
+    this.resolution = resolution;
+    // One more node, so that each cell has a node at the right and below
+    nbCols = (gg.getNbHorzCells() - 1) / resolution + 2;
+    nbRows = (gg.getNbVertCells() - 1) / resolution + 2;
+    sum = new double[nbCols * nbRows];
+  }
+
+  private double getValue(Location loc)
+  {
+    synchronized (RobotContext.torches)
+    {
+      int nbChanges = Torch.nbChanges;
+      if (nbChanges != checkedChanges
+        || RobotContext.torches.size() != torches.length)
+      {
+        update(RobotContext.torches.toArray(new Torch[0]));
+        checkedChanges = nbChanges;
+      }
+    }
+    double v = 0;
+    for (int i = 0; i < torches.length; i++)
+    {
+      if (samples[i] == null)
+        v += torches[i].getIntensity(loc);
+    }
+    if (loc.x < 0 || loc.x >= gg.getNbHorzCells()
+      || loc.y < 0 || loc.y >= gg.getNbVertCells())
+    {
+      for (int i = 0; i < torches.length; i++)
+      {
+        if (samples[i] != null)
+          v += torches[i].getIntensity(loc);
+      }
+      return v;
+    }
+    int col = loc.x / resolution;
+    int row = loc.y / resolution;
+    double fx = (double)(loc.x - col * resolution) / resolution;
+    double fy = (double)(loc.y - row * resolution) / resolution;
+    int k = row * nbCols + col;
+    double upper = (1 - fx) * sum[k] + fx * sum[k + 1];
+    double lower = (1 - fx) * sum[k + nbCols] + fx * sum[k + nbCols + 1];
+    return v + (1 - fy) * upper + fy * lower;
+  }
+
+  // Brings the samples and the sum up to date with the given torches
+  private void update(Torch[] current)
+  {
+    int size = current.length;
+    int[] currentStates = new int[3 * size];
+    for (int i = 0; i < size; i++)
+    {
+      currentStates[3 * i] = current[i].getX();
+      currentStates[3 * i + 1] = current[i].getY();
+      currentStates[3 * i + 2] = current[i].getHeight();
+    }
+    boolean isSameList = size == torches.length;
+    for (int i = 0; isSameList && i < size; i++)
+    {
+      if (current[i] != torches[i])
+        isSameList = false;
+    }
+    double[][] currentSamples = new double[size][];
+    ArrayList<Integer> changed = new ArrayList<Integer>();
+    for (int i = 0; i < size; i++)
+    {
+      int index = isSameList ? i : indexOf(current[i]);
+      if (index != -1 && states[3 * index] == currentStates[3 * i]
+        && states[3 * index + 1] == currentStates[3 * i + 1]
+        && states[3 * index + 2] == currentStates[3 * i + 2])
+        currentSamples[i] = samples[index];
+      else if (currentStates[3 * i + 2] >= 4 * resolution)
+        changed.add(i);
+    }
+    compute(current, currentStates, currentSamples, changed);
+    if (isSameList)
+    {
+      // Only replace the contribution of the changed torches
+      for (int i = 0; i < size; i++)
+      {
+        if (currentSamples[i] != samples[i])
+        {
+          add(samples[i], -1);
+          add(currentSamples[i], 1);
+        }
+      }
+    }
+    else
+    {
+      Arrays.fill(sum, 0);
+      for (double[] s : currentSamples)
+        add(s, 1);
+    }
+    torches = current;
+    states = currentStates;
+    samples = currentSamples;
+  }
+
+  private int indexOf(Torch torch)
+  {
+    for (int i = 0; i < torches.length; i++)
+    {
+      if (torches[i] == torch)
+        return i;
+    }
+    return -1;
+  }
+
+  private void add(double[] s, int sign)
+  {
+    if (s == null)
+      return;
+    for (int k = 0; k < sum.length; k++)
+      sum[k] += sign * s[k];
+  }
+
+  // Samples the intensity of the changed torches, the rows are split
+  // in bands computed in parallel
+  private void compute(Torch[] current, final int[] currentStates,
+    final double[][] currentSamples, List<Integer> changed)
+  {
+    if (changed.isEmpty())
+      return;
+    List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+    int bandHeight = (nbRows + nbThreads - 1) / nbThreads;
+    for (int i : changed)
+    {
+      final int index = i;
+      final double power = current[i].getPower();
+      currentSamples[i] = new double[nbCols * nbRows];
+      for (int start = 0; start < nbRows; start += bandHeight)
+      {
+        final int from = start;
+        final int to = Math.min(nbRows, start + bandHeight);
+        tasks.add(new Callable<Boolean>()
+        {
+          public Boolean call()
+          {
+            sample(currentSamples[index], power, currentStates[3 * index],
+              currentStates[3 * index + 1], currentStates[3 * index + 2],
+              from, to);
+            return true;
+          }
+        });
+      }
+    }
+    try
+    {
+      getPool().invokeAll(tasks);
+    }
+    catch (InterruptedException ex)
+    {
+      // Complete the samples in the current thread
+      for (int i : changed)
+        sample(currentSamples[i], current[i].getPower(), currentStates[3 * i],
+          currentStates[3 * i + 1], currentStates[3 * i + 2], 0, nbRows);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // Same formula as Torch.getIntensity()
+  private void sample(double[] s, double power, int x, int y, int height,
+    int from, int to)
+  {
+    for (int row = from; row < to; row++)
+    {
+      double dy = y - row * resolution;
+      for (int col = 0; col < nbCols; col++)
+      {
+        double dx = x - col * resolution;
+        s[row * nbCols + col] = 1E7 * power / (dx * dx + dy * dy + height * height);
+      }
+    }
+  }
+
+  private static synchronized ExecutorService getPool()
+  {
+    if (pool == null)
+    {
+      pool = Executors.newFixedThreadPool(nbThreads, new ThreadFactory()
+      {
+        public Thread newThread(Runnable r)
+        {
+          Thread t = new Thread(r, "LightField worker");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+    return pool;
+  }
+}
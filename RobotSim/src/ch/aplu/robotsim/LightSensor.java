@@ -127,28 +127,10 @@ public class LightSensor extends Part
   public int getValue()
   {
     checkPart();
-    delay(1);
+    Tools.delay(1);
     if (upwards)
     {
-      synchronized (RobotContext.shadows)
-      {
-        for (Shadow shadow : RobotContext.shadows)
-        {
-          if (shadow.inShadow(getLocation()))
-            return 0;
-        }
-      }
-      double v = 0;
-      synchronized (RobotContext.torches)
-      {
-        double w;
-        for (Torch torch : RobotContext.torches)
-        {
-          w = torch.getIntensity(getLocation());
-          v += w;
-        }
-      }
-      return (int)v;
+      return (int)LightField.getIntensity(gameGrid, getLocation());
     }
     else
     {
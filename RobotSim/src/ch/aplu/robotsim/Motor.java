@@ -295,7 +295,7 @@ public class Motor extends Part
   public boolean isMoving()
   {
     checkPart();
-    delay(1);
+    Tools.delay(1);
     return isMoving;
   }
 
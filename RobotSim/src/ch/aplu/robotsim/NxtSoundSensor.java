@@ -153,7 +153,7 @@ public class NxtSoundSensor extends Part implements SoundSampleListener
   public int getValue()
   {
     checkPart();
-    delay(1);
+    Tools.delay(1);
     return (int)(150 * ampl / 127.0);
   }
 
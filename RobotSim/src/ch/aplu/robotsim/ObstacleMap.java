@@ -0,0 +1,229 @@
+// ObstacleMap.java
+
+/*
+ This software is part of the RobotSim library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+
+ Author: Aegidius Pluess, www.aplu.ch
+ */
+package ch.aplu.robotsim;
+
+import ch.aplu.jgamegrid.*;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+
+// Occupancy bitmap of the obstacles used by the touch sensors instead of
+// a pixel collision test with each obstacle image in every poll.
+// The cells are half a pixel wide and high: the image center of an obstacle
+// is an integer pixel coordinate, so the upper left vertex of each image
+// pixel is at a cell. The cell of the upper left vertex of a non-transparent
+// pixel holds the index + 1 of the obstacle in RobotContext.obstacles
+// (of the first one, if several obstacles overlap), all other cells are 0.
+// A point lies on a non-transparent pixel if one of the 4 cells where the
+// vertex of a pixel containing the point can be is set.
+// The bitmap is built again when an obstacle is added, removed, moved or
+// shows another sprite. Obstacles with a rotated image are not mapped but
+// tested with GameGrid.isActorColliding() like before.
+class ObstacleMap // not public
+{
+  private static final int MAX_CELLS = 1 << 24;
+  private static ObstacleMap map = null;
+  // State of the obstacles when the map was built: x, y and sprite id
+  private static Obstacle[] obstacles = new Obstacle[0];
+  private static int[] states = new int[0];
+
+  private final Obstacle[] items;
+  private final ArrayList<Obstacle> unmapped = new ArrayList<Obstacle>();
+  private int[] cells = null;
+  private int originX;  // Cell (0, 0) in half pixels
+  private int originY;
+  private int width;  // Size in cells
+  private int height;
+
+  // Returns the first obstacle intersecting the collision line of the sensor
+  // (in pixel coordinates, as GGLine.isIntersecting() with an image)
+  static synchronized Obstacle getObstacle(GameGrid gg, Actor sensor, GGLine line)
+  {
+    ObstacleMap m = getMap(gg);
+    GGVector start = line.getStartVector();
+    GGVector lineVector = line.getEndVector().sub(start);
+    int lineLength = (int)(lineVector.magnitude() + 0.5);
+    if (lineLength > 0)
+      lineVector = lineVector.mult(1.0 / lineLength);  // Unit vector
+    int index = m.items.length;
+    for (int i = 0; i <= lineLength; i++)
+    {
+      GGVector v = start.add(lineVector.mult(i));
+      index = Math.min(index, m.getIndex(v.x, v.y));
+    }
+    return m.getObstacle(gg, sensor, index);
+  }
+
+  // Returns the map of the current obstacles
+  private static ObstacleMap getMap(GameGrid gg)
+  {
+    synchronized (RobotContext.obstacles)
+    {
+      int size = RobotContext.obstacles.size();
+      boolean isValid = map != null && obstacles.length == size;
+      Obstacle[] current = new Obstacle[size];
+      int[] currentStates = new int[3 * size];
+      for (int i = 0; i < size; i++)
+      {
+        Obstacle obstacle = RobotContext.obstacles.get(i);
+        current[i] = obstacle;
+        int id = obstacle.getIdVisible();
+        currentStates[3 * i + 2] = id;
+        if (id != -1)
+        {
+          Location loc = obstacle.getLocation();
+          currentStates[3 * i] = loc.x;
+          currentStates[3 * i + 1] = loc.y;
+        }
+        if (isValid && (current[i] != obstacles[i]
+          || currentStates[3 * i] != states[3 * i]
+          || currentStates[3 * i + 1] != states[3 * i + 1]
+          || currentStates[3 * i + 2] != states[3 * i + 2]))
+          isValid = false;
+      }
+      if (!isValid)
+      {
+        map = new ObstacleMap(gg, current);
+        obstacles = current;
+        states = currentStates;
+      }
+      return map;
+    }
+  }
+
+  private ObstacleMap(GameGrid gg, Obstacle[] items)
+  {
+    this.items = items;
+    int size = items.length;
+    int[] ids = new int[size];
+    BufferedImage[] images = new BufferedImage[size];
+    int[] ulx = new int[size];  // Upper left vertex in half pixels
+    int[] uly = new int[size];
+    int minX = Integer.MAX_VALUE;
+    int minY = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE;
+    int maxY = Integer.MIN_VALUE;
+    for (int i = 0; i < size; i++)
+    {
+      Obstacle obstacle = items[i];
+      int id = obstacle.getIdVisible();
+      ids[i] = id;
+      if (id == -1)
+        continue;
+      if (obstacle.isRotatable() && obstacle.getDirection() != 0)
+      {
+        unmapped.add(obstacle);
+        continue;
+      }
+      images[i] = obstacle.getImage(id);
+      Point center = gg.toPoint(obstacle.getLocation());
+      ulx[i] = 2 * center.x - images[i].getWidth();
+      uly[i] = 2 * center.y - images[i].getHeight();
+      minX = Math.min(minX, ulx[i]);
+      minY = Math.min(minY, uly[i]);
+      maxX = Math.max(maxX, ulx[i] + 2 * images[i].getWidth());
+      maxY = Math.max(maxY, uly[i] + 2 * images[i].getHeight());
+    }
+    if (minX > maxX)  // Nothing to map
+      return;
+    if ((long)(maxX - minX) * (maxY - minY) > MAX_CELLS)
+    {
+      // Obstacles too far apart, test them one by one
+      unmapped.clear();
+      for (int i = 0; i < size; i++)
+      {
+        if (ids[i] != -1)
+          unmapped.add(items[i]);
+      }
+      return;
+    }
+    originX = minX;
+    originY = minY;
+    width = maxX - minX;
+    height = maxY - minY;
+    cells = new int[width * height];
+    // Last obstacle first, so that the first one wins where they overlap
+    for (int i = size - 1; i >= 0; i--)
+    {
+      BufferedImage image = images[i];
+      if (image == null)
+        continue;
+      int w = image.getWidth();
+      int[] row = new int[w];
+      for (int k = 0; k < image.getHeight(); k++)
+      {
+        image.getRGB(0, k, w, 1, row, 0, w);
+        int offset = (uly[i] + 2 * k - originY) * width + ulx[i] - originX;
+        for (int j = 0; j < w; j++)
+        {
+          if (row[j] >>> 24 != 0)  // Non-transparent
+            cells[offset + 2 * j] = i + 1;
+        }
+      }
+    }
+  }
+
+  // Returns the index of the first mapped obstacle with a non-transparent
+  // pixel at the given point; items.length, if there is none
+  private int getIndex(double x, double y)
+  {
+    int index = items.length;
+    if (cells == null)
+      return index;
+    // Vertex of a pixel containing the point: at an integer or a half
+    // pixel coordinate
+    int x0 = 2 * (int)Math.floor(x) - originX;
+    int x1 = 2 * (int)Math.floor(x - 0.5) + 1 - originX;
+    int y0 = 2 * (int)Math.floor(y) - originY;
+    int y1 = 2 * (int)Math.floor(y - 0.5) + 1 - originY;
+    index = Math.min(index, getCell(x0, y0));
+    index = Math.min(index, getCell(x1, y0));
+    index = Math.min(index, getCell(x0, y1));
+    index = Math.min(index, getCell(x1, y1));
+    return index;
+  }
+
+  private int getCell(int x, int y)
+  {
+    if (x < 0 || x >= width || y < 0 || y >= height)
+      return items.length;
+    int value = cells[y * width + x];
+    return value == 0 ? items.length : value - 1;
+  }
+
+  // Returns the obstacle with the given index or an unmapped obstacle
+  // before it that collides with the sensor; null, if there is none
+  private Obstacle getObstacle(GameGrid gg, Actor sensor, int index)
+  {
+    for (Obstacle obstacle : unmapped)
+    {
+      if (indexOf(obstacle) > index)
+        break;
+      if (gg.isActorColliding(obstacle, sensor))
+        return obstacle;
+    }
+    return index < items.length ? items[index] : null;
+  }
+
+  private int indexOf(Obstacle obstacle)
+  {
+    for (int i = 0; i < items.length; i++)
+    {
+      if (items[i] == obstacle)
+        return i;
+    }
+    return -1;
+  }
+}
@@ -34,12 +34,14 @@ public class RobotContext
   protected static int statusBarHeight;
   protected static boolean isTraceEnabled = false;
   protected static boolean isRotCenterEnabled = false;
+  protected static boolean isVirtualTime = false;
   protected static ArrayList<Obstacle> obstacles = new ArrayList<Obstacle>();
   protected static ArrayList<Location> obstacleLocations = new ArrayList<Location>();
   protected static ArrayList<Target> targets = new ArrayList<Target>();
   protected static ArrayList<Location> targetLocations = new ArrayList<Location>();
   protected static ArrayList<Torch> torches = new ArrayList<Torch>();
   protected static ArrayList<Shadow> shadows = new ArrayList<Shadow>();
+  protected static int lightResolution = 4;
   protected static boolean isRun = true;
   protected static int xLoc = -1;
   protected static int yLoc = -1;
@@ -85,6 +87,8 @@ public class RobotContext
     isStatusBar = false;
     isTraceEnabled = false;
     isRotCenterEnabled = false;
+    isVirtualTime = false;
+    lightResolution = 4;
     
     if (obstacles == null)
       obstacles = new ArrayList<Obstacle>();
@@ -397,6 +401,20 @@ public class RobotContext
     shadows.add(shadow);
   }
 
+  /**
+   * Sets the spacing of the grid where the intensity of the torches is
+   * computed in advance for the light sensors (default: 4 pixels).
+   * The sensors interpolate the intensity between the grid points,
+   * so a read does not depend on the number of torches.
+   * The intensity of torches lower than 4 times the spacing is computed exactly.
+   * @param resolution the grid spacing in pixels; 0 to compute the
+   * intensity of all torches exactly in every read
+   */
+  public static void setLightResolution(int resolution)
+  {
+    lightResolution = Math.max(0, resolution);
+  }
+
   /**
    * Shows the navigation bar of the GameGrid.
    * @param doRun if true, runs the simulation immediatetly; otherwise the start
@@ -461,6 +479,25 @@ public class RobotContext
     isRotCenterEnabled = enable;
   }
 
+  /**
+   * Enable/disable the virtual time. In virtual time the program and the
+   * simulation advance in lockstep: the simulation only runs while the
+   * program waits in Tools.delay() or in a sensor read, each simulation
+   * cycle advances the virtual time by the fixed simulation period, but the
+   * cycles are executed as fast as possible. The robot moves the same way
+   * as in real time, but a long run is completed in much shorter time.
+   * Tools.getTime() returns the virtual time.<br>
+   * Close polling loops must call Tools.delay() or read a sensor, otherwise
+   * the simulation stops. When the thread that created the robot terminates,
+   * the simulation continues in real time.
+   * @param enable if true, the simulation runs in virtual time
+   */
+  public static void enableVirtualTime(boolean enable)
+  {
+    checkRobot();
+    isVirtualTime = enable;
+  }
+
 
   public static void checkRobot()
   {
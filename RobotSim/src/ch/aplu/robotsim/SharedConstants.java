@@ -81,6 +81,14 @@ Author: Aegidius Pluess, www.aplu.ch
  * V1.39 - Aug 2019  - Added: Imgages of rotating wheels
  * V1.40 - Aug 2019  - Fixed: Simulation with one motor only
  * V1.41 - Aug 2019  - Added: RobotContext.showTrace(), RobotContext.showRotCenter()
+ * V1.42 - Oct 2026  - Added: RobotContext.enableVirtualTime() to run the simulation
+                       in lockstep with the program as fast as possible
+ * V1.43 - Oct 2026  - Modified: UltrasonicSensor uses cached target meshes
+                       in a bounding volume hierarchy
+ * V1.44 - Oct 2026  - Modified: TouchSensor uses an occupancy bitmap of the obstacles
+ * V1.45 - Oct 2026  - Modified: LightSensor pointing upwards interpolates a cached
+                       grid of the torch intensities
+                     - Added: RobotContext.setLightResolution()
  */
 
 package ch.aplu.robotsim;  
@@ -107,5 +115,5 @@ interface SharedConstants
     "OpenSource Free Software\n" +
     "http://www.aplu.ch\n" +
     "All rights reserved";
-  String VERSION = "1.41 - August 2019";
+  String VERSION = "1.45 - October 2026";
 }
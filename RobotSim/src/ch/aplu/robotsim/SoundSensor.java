@@ -154,7 +154,7 @@ public class SoundSensor extends Part implements SoundSampleListener
   public int getValue()
   {
     checkPart();
-    delay(1);
+    Tools.delay(1);
     return (int)(150 * ampl / 127.0);
   }
 
@@ -23,13 +23,17 @@ public class Tools
 {
 
   private static long startTime = 0L;
+  private static boolean isTimerStarted = false;
 
   /**
    * Starts a timer or restart it by setting its time to zero.
+   * In virtual time (see RobotContext.enableVirtualTime()) the timer
+   * measures the virtual time.
    */
   public static void startTimer()
   {
-    startTime = System.currentTimeMillis();
+    startTime = currentTime();
+    isTimerStarted = true;
   }
 
   /**
@@ -38,23 +42,29 @@ public class Tools
    */
   public static long getTime()
   {
-    if (startTime == 0)
+    if (!isTimerStarted)
       return 0L;
     else
-      return System.currentTimeMillis() - startTime;
+      return currentTime() - startTime;
   }
 
   /**
    * Suspends execution of the current thread for the given amount of time (unless
    * the game grid window is disposed).
+   * In virtual time (see RobotContext.enableVirtualTime()) the simulation
+   * is advanced by the given amount of time as fast as possible.
    * @param duration the duration (in ms)
    */
   public static void delay(int duration)
   {
     if (GameGrid.isDisposed())
       return;
+    VirtualClock clock = LegoRobot.getVirtualClock();
+    if (clock != null && clock.delay(duration))
+      return;
     LegoRobot r = RobotInstance.getRobot();
-    int simulationPeriod = (int)r.getRobot().gameGrid.simulationPeriod;
+    int simulationPeriod = clock != null ? SharedConstants.simulationPeriod
+      : (int)r.getRobot().gameGrid.simulationPeriod;
     if (duration < simulationPeriod)
     {
       _delay(duration);
@@ -66,6 +76,14 @@ public class Tools
       _delay(1);
   }
 
+  private static long currentTime()
+  {
+    VirtualClock clock = LegoRobot.getVirtualClock();
+    if (clock != null)
+      return clock.getTime();
+    return System.currentTimeMillis();
+  }
+
   private static void _delay(long time)
   {
     try
@@ -26,6 +26,8 @@ public class Torch extends Actor
   private double power;
   private Location loc;
   private int height;
+  // Incremented when a torch is created, moved or its height is changed
+  static volatile int nbChanges = 0;
   
   /**
    * Creates a spot light source of given intensity above the given location.
@@ -39,6 +41,7 @@ public class Torch extends Actor
     this.power = power;
     this.loc = loc;
     this.height = height;
+    nbChanges++;
   }
 
   /**
@@ -74,6 +77,36 @@ public class Torch extends Actor
   {
     setLocation(gameGrid.toLocationInGrid(x, y));
   }
+
+  /**
+   * Assigns a new current location.
+   * @param location the location (value copy)
+   */
+  public void setLocation(Location location)
+  {
+    super.setLocation(location);
+    nbChanges++;
+  }
+
+  /**
+   * Assigns a new current horizontal cell coordinate.
+   * @param x the x-coordinate (cell index)
+   */
+  public void setX(int x)
+  {
+    super.setX(x);
+    nbChanges++;
+  }
+
+  /**
+   * Assigns a new current vertical cell coordinate.
+   * @param y the y-coordinate (cell index)
+   */
+  public void setY(int y)
+  {
+    super.setY(y);
+    nbChanges++;
+  }
   
  /**
   * Sets the height of the torch (z-coordinate).
@@ -82,6 +115,17 @@ public class Torch extends Actor
   public void setHeight(int height)
   {
     this.height = height;
+    nbChanges++;
+  }
+
+  double getPower()
+  {
+    return power;
+  }
+
+  int getHeight()
+  {
+    return height;
   }
 
 }
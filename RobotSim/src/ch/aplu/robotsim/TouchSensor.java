@@ -172,16 +172,13 @@ public class TouchSensor extends Part
   {
     checkPart();
     Tools.delay(1);
-    for (Actor a : RobotContext.obstacles)
-    {
-      if (gameGrid.isActorColliding(a, this))
-      {
-        collisionActor = a;
-        return true;
-      }
-    }
-    collisionActor = null;
-    return false;
+    int id = getIdVisible();
+    if (id == -1)
+      collisionActor = null;
+    else
+      collisionActor = ObstacleMap.getObstacle(gameGrid, this,
+        getCurrentCollisionLine(id));
+    return collisionActor != null;
   }
 
   private void checkPart()
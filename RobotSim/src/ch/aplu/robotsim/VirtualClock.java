@@ -0,0 +1,120 @@
+// VirtualClock.java
+
+/*
+ This software is part of the RobotSim library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+
+ Author: Aegidius Pluess, www.aplu.ch
+ */
+package ch.aplu.robotsim;
+
+import ch.aplu.jgamegrid.*;
+import javax.swing.SwingUtilities;
+
+// Virtual time used after RobotContext.enableVirtualTime(true).
+// The program and the simulation cycles advance in lockstep: the game thread
+// waits at the start of each cycle until the program requests the cycle by
+// calling Tools.delay(). Tools.delay() advances the virtual time by the
+// given duration and blocks until all cycles up to the new virtual time are
+// completed. Each cycle stands for SharedConstants.simulationPeriod ms,
+// but the cycles are run without waiting for the wall clock.
+// Because the program never runs while a cycle is in progress, sensors are
+// read at the state of the last completed cycle and the trajectory does not
+// depend on the speed of the computer.
+// The game thread and the Event Dispatch Thread do not take part (they use
+// the real time delays). When the thread that created the robot terminates,
+// the simulation continues in real time.
+class VirtualClock implements GGActListener  // not public
+{
+  private final GameGrid gg;
+  private final Thread programThread;
+  private Thread gameThread = null;
+  private long time = 0;  // Virtual time (in ms)
+  private long nbGranted = 0;  // Cycles requested by the program
+  private long nbStarted = 0;
+  private long nbCompleted = 0;
+  private boolean isReleased = false;
+  private long releaseTime;  // Wall clock time of the release
+
+  VirtualClock(GameGrid gg)
+  {
+    this.gg = gg;
+    programThread = Thread.currentThread();
+    gg.setSimulationPeriod(0);
+    gg.addActListener(this);
+  }
+
+  // Called by the game thread at the start of each simulation cycle
+  public synchronized void act()
+  {
+    gameThread = Thread.currentThread();
+    nbCompleted = nbStarted;  // The previous cycle is finished
+    notifyAll();
+    while (nbStarted >= nbGranted && !isReleased)
+    {
+      if (!programThread.isAlive() || GameGrid.isDisposed())
+      {
+        release();
+        break;
+      }
+      _wait(10);
+    }
+    nbStarted++;
+  }
+
+  // Advances the virtual time by the given duration and waits until the
+  // simulation has reached it. Returns false, if the current thread does not
+  // run in virtual time (the caller must wait in real time)
+  synchronized boolean delay(int duration)
+  {
+    Thread thread = Thread.currentThread();
+    if (isReleased || thread == gameThread
+      || SwingUtilities.isEventDispatchThread())
+      return false;
+    if (duration > 0)
+      time += duration;
+    long nbCycles = time / SharedConstants.simulationPeriod;
+    if (nbCycles > nbGranted)
+    {
+      nbGranted = nbCycles;
+      notifyAll();
+    }
+    while (nbCompleted < nbCycles && !isReleased && !GameGrid.isDisposed())
+      _wait(10);
+    return true;
+  }
+
+  // Returns the virtual time (in ms), after the release increased by the
+  // elapsed real time
+  synchronized long getTime()
+  {
+    if (isReleased)
+      return time + System.currentTimeMillis() - releaseTime;
+    return time;
+  }
+
+  private void release()
+  {
+    isReleased = true;
+    releaseTime = System.currentTimeMillis();
+    gg.setSimulationPeriod(SharedConstants.simulationPeriod);
+    notifyAll();
+  }
+
+  private void _wait(long timeout)
+  {
+    try
+    {
+      wait(timeout);
+    }
+    catch (InterruptedException ex)
+    {
+    }
+  }
+}
@@ -0,0 +1,76 @@
+// BinaryData.java
+
+/*
+ This software is part of the TCPCom library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.tcpcom;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Conversion of primitive arrays to bytes and back for sendBytes() and
+ * onBytes() in binary mode. The values are stored in big endian order
+ * (network byte order) without any header, so the receiver must know the
+ * type of the data.
+ */
+public class BinaryData
+{
+  private BinaryData()
+  {
+  }
+
+  /**
+   * Returns the bytes of the given int values (4 bytes per value).
+   * @param values the values to convert
+   * @return the bytes
+   */
+  public static byte[] fromInts(int[] values)
+  {
+    ByteBuffer bb = ByteBuffer.allocate(4 * values.length);
+    bb.asIntBuffer().put(values);
+    return bb.array();
+  }
+
+  /**
+   * Returns the int values stored in the given bytes.
+   * @param data the bytes (the length must be a multiple of 4)
+   * @return the values
+   */
+  public static int[] toInts(byte[] data)
+  {
+    int[] values = new int[data.length / 4];
+    ByteBuffer.wrap(data).asIntBuffer().get(values);
+    return values;
+  }
+
+  /**
+   * Returns the bytes of the given double values (8 bytes per value).
+   * @param values the values to convert
+   * @return the bytes
+   */
+  public static byte[] fromDoubles(double[] values)
+  {
+    ByteBuffer bb = ByteBuffer.allocate(8 * values.length);
+    bb.asDoubleBuffer().put(values);
+    return bb.array();
+  }
+
+  /**
+   * Returns the double values stored in the given bytes.
+   * @param data the bytes (the length must be a multiple of 8)
+   * @return the values
+   */
+  public static double[] toDoubles(byte[] data)
+  {
+    double[] values = new double[data.length / 8];
+    ByteBuffer.wrap(data).asDoubleBuffer().get(values);
+    return values;
+  }
+}
@@ -0,0 +1,149 @@
+// BinaryFrame.java
+
+/*
+ This software is part of the TCPCom library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.tcpcom;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Binary frame format used after the connection is switched to binary mode:
+// 1 byte type, 4 bytes payload length (big endian), payload.
+// A compressed payload starts with the uncompressed length (4 bytes)
+// followed by the DEFLATE data.
+// The switch is negotiated at connect time: the client sends the message
+// HELLO in \0 terminated mode, a server supporting binary frames replies
+// with ACK (also \0 terminated) and sends binary frames afterwards.
+// The client may still send \0 terminated messages until it receives the
+// ACK, so it confirms the switch with SWITCH (the last \0 terminated
+// message) and the server reads binary frames only after SWITCH.
+// Old servers pass HELLO as ordinary message and the client stays in
+// \0 terminated mode.
+class BinaryFrame // not public
+{
+  static final String HELLO = "#TCPCOM-BINARY-1";
+  static final String ACK = "#TCPCOM-BINARY-OK";
+  static final String SWITCH = "#TCPCOM-BINARY-ON";
+  static final int HEADER_SIZE = 5;
+  // Maximal payload length and uncompressed length accepted from the peer
+  static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+  static final int STRING = 0;
+  static final int BYTES = 1;
+  static final int COMPRESSED = 0x40;  // Flag added to the type
+
+  private BinaryFrame()
+  {
+  }
+
+  // Returns the frame with the UTF-8 encoded message
+  static byte[] encode(String msg, int compressThreshold)
+  {
+    byte[] data = msg.getBytes(Charset.forName("UTF-8"));
+    return encode(STRING, data, compressThreshold);
+  }
+
+  // Returns the frame with the data, compressed if the data is at least
+  // compressThreshold bytes long (0: never) and the compression reduces
+  // the size
+  static byte[] encode(int type, byte[] data, int compressThreshold)
+  {
+    if (compressThreshold > 0 && data.length >= compressThreshold)
+    {
+      byte[] compressed = deflate(data);
+      if (compressed.length + 4 < data.length)
+      {
+        ByteBuffer bb = ByteBuffer.allocate(HEADER_SIZE + 4 + compressed.length);
+        bb.put((byte)(type | COMPRESSED));
+        bb.putInt(4 + compressed.length);
+        bb.putInt(data.length);
+        bb.put(compressed);
+        return bb.array();
+      }
+    }
+    ByteBuffer bb = ByteBuffer.allocate(HEADER_SIZE + data.length);
+    bb.put((byte)type);
+    bb.putInt(data.length);
+    bb.put(data);
+    return bb.array();
+  }
+
+  // Returns the data of the payload, decompressed if needed.
+  // Throws an IOException, if the compressed data is corrupt or does not
+  // inflate to the declared length
+  static byte[] getData(int type, ByteBuffer payload) throws IOException
+  {
+    if ((type & COMPRESSED) == 0)
+    {
+      byte[] data = new byte[payload.remaining()];
+      payload.get(data);
+      return data;
+    }
+    if (payload.remaining() < 4)
+      throw new IOException("Compressed frame too short");
+    int length = payload.getInt();
+    if (length < 0 || length > MAX_FRAME_SIZE)
+      throw new IOException("Invalid uncompressed length: " + length);
+    byte[] compressed = new byte[payload.remaining()];
+    payload.get(compressed);
+    Inflater inflater = new Inflater();
+    try
+    {
+      inflater.setInput(compressed);
+      byte[] data = new byte[length];
+      int n = 0;
+      while (n < length && !inflater.finished())
+      {
+        int nb = inflater.inflate(data, n, length - n);
+        if (nb == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+          break;
+        n += nb;
+      }
+      if (n != length || !inflater.finished())
+        throw new IOException("Compressed data does not match the length");
+      return data;
+    }
+    catch (DataFormatException ex)
+    {
+      throw new IOException("Corrupt compressed data");
+    }
+    finally
+    {
+      inflater.end();
+    }
+  }
+
+  private static byte[] deflate(byte[] data)
+  {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try
+    {
+      deflater.setInput(data);
+      deflater.finish();
+      ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length / 2 + 64);
+      byte[] buf = new byte[8192];
+      while (!deflater.finished())
+      {
+        int n = deflater.deflate(buf);
+        bos.write(buf, 0, n);
+      }
+      return bos.toByteArray();
+    }
+    finally
+    {
+      deflater.end();
+    }
+  }
+}
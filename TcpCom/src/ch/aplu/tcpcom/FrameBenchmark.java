@@ -0,0 +1,85 @@
+// FrameBenchmark.java
+
+/*
+ This software is part of the TCPCom library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.tcpcom;
+
+import java.util.concurrent.CountDownLatch;
+
+// Throughput benchmark of the message framing over the loopback interface.
+// The client sends nbMessages messages to a TCPServer that echoes them,
+// and the received messages are checked.
+// Usage: java -cp tcpcom.jar ch.aplu.tcpcom.FrameBenchmark [nbMessages] [size] [port]
+class FrameBenchmark // not public
+{
+  public static void main(String[] args) throws Exception
+  {
+    final int nbMessages = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+    int size = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+    int port = args.length > 2 ? Integer.parseInt(args[2]) : 22500;
+
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; sb.length() < size; i++)
+      sb.append((char)('a' + i % 26));
+    final String payload = sb.toString();
+
+    final TCPServer server = new TCPServer(port);
+    final CountDownLatch listening = new CountDownLatch(1);
+    server.addTCPServerListener(new TCPServerListener()
+    {
+      public void onStateChanged(String state, String msg)
+      {
+        if (state.equals(TCPServer.MESSAGE))
+          server.sendMessage(msg);
+      }
+    });
+    Thread.sleep(500);  // Wait until the server listens
+
+    final CountDownLatch done = new CountDownLatch(1);
+    final int[] nbReceived = new int[1];
+    final int[] nbErrors = new int[1];
+    TCPClient client = new TCPClient("localhost", port);
+    client.addTCPClientListener(new TCPClientListener()
+    {
+      public void onStateChanged(String state, String msg)
+      {
+        if (!state.equals(TCPClient.MESSAGE))
+          return;
+        String expected = nbReceived[0] + payload;
+        if (!msg.equals(expected))
+          nbErrors[0]++;
+        nbReceived[0]++;
+        if (nbReceived[0] == nbMessages)
+          done.countDown();
+      }
+    });
+    if (!client.connect())
+    {
+      System.out.println("Connection failed");
+      server.terminate();
+      return;
+    }
+
+    long startTime = System.nanoTime();
+    for (int i = 0; i < nbMessages; i++)
+      client.sendMessage(i + payload);
+    done.await();
+    double time = (System.nanoTime() - startTime) / 1E9;
+
+    System.out.println(nbMessages + " messages of " + (size + 1)
+      + " bytes echoed in " + String.format("%.3f", time) + " s");
+    System.out.println(String.format("%.0f messages/s, %.1f MB/s",
+      nbMessages / time, 2 * nbMessages * (size + 1) / time / 1E6));
+    System.out.println("Errors: " + nbErrors[0]);
+    client.disconnect();
+    server.terminate();
+  }
+}
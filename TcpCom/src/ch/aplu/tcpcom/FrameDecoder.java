@@ -0,0 +1,165 @@
+// FrameDecoder.java
+
+/*
+ This software is part of the TCPCom library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.tcpcom;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+// Splits the received bytes into messages terminated by \0.
+// The data is read directly into a reusable direct buffer. Each call of
+// decode() scans only the new bytes and emits all complete messages,
+// a message may span several reads and a read may contain several messages.
+// Each message is decoded from UTF-8 once.
+// After setBinary(true) the data is split into length prefixed binary
+// frames (see BinaryFrame), also in the middle of a decode() call.
+// A frame with a length outside 0..BinaryFrame.MAX_FRAME_SIZE or a
+// \0 terminated message longer than the limit is a protocol error:
+// getBuffer() and decode() throw an IOException and the caller must
+// close the connection.
+class FrameDecoder // not public
+{
+  interface FrameHandler
+  {
+    void frameReceived(String msg);
+
+    // The payload is only valid until the method returns
+    void binaryFrameReceived(int type, ByteBuffer payload)
+      throws IOException;
+  }
+
+  private static final int INITIAL_SIZE = 4096;
+  private ByteBuffer buf = ByteBuffer.allocateDirect(INITIAL_SIZE);
+  private CharBuffer chars = CharBuffer.allocate(INITIAL_SIZE);
+  private final CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder()
+    .onMalformedInput(CodingErrorAction.REPLACE)
+    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  private int scanPos = 0;  // No \0 before this index
+  private boolean isBinary = false;
+
+  // Returns the buffer to read into (in write mode, with space remaining)
+  ByteBuffer getBuffer() throws IOException
+  {
+    if (!buf.hasRemaining())
+    {
+      // Message longer than the buffer
+      if (buf.capacity() >= BinaryFrame.HEADER_SIZE + BinaryFrame.MAX_FRAME_SIZE)
+        throw new IOException("Message too long");
+      ensureCapacity(buf.capacity() + 1);
+    }
+    return buf;
+  }
+
+  // Emits all complete messages read into the buffer
+  void decode(FrameHandler handler) throws IOException
+  {
+    int end = buf.position();
+    int start = 0;
+    int i = scanPos;
+    while (true)
+    {
+      if (isBinary)
+      {
+        if (end - start < BinaryFrame.HEADER_SIZE)
+          break;
+        int type = buf.get(start);
+        int length = buf.getInt(start + 1);
+        if (length < 0 || length > BinaryFrame.MAX_FRAME_SIZE)
+          throw new IOException("Invalid frame length: " + length);
+        int frameEnd = start + BinaryFrame.HEADER_SIZE + length;
+        if (frameEnd > end)
+        {
+          ensureCapacity(BinaryFrame.HEADER_SIZE + length);
+          break;
+        }
+        ByteBuffer payload = buf.duplicate();
+        payload.limit(frameEnd);
+        payload.position(start + BinaryFrame.HEADER_SIZE);
+        if (type == BinaryFrame.STRING)
+          handler.frameReceived(toString(start + BinaryFrame.HEADER_SIZE, frameEnd));
+        else
+          handler.binaryFrameReceived(type, payload);
+        start = frameEnd;
+        i = start;
+      }
+      else
+      {
+        if (i >= end)
+          break;
+        if (buf.get(i) == 0)  // \0
+        {
+          handler.frameReceived(toString(start, i));
+          start = i + 1;
+        }
+        i++;
+      }
+    }
+    // Move the incomplete message to the start of the buffer
+    buf.limit(end);
+    buf.position(start);
+    buf.compact();
+    scanPos = i - start;
+  }
+
+  // Switches to binary frames, called by the handler after the
+  // frame that announces the switch
+  void setBinary(boolean isBinary)
+  {
+    this.isBinary = isBinary;
+  }
+
+  // Drops the received data and releases a grown buffer
+  void reset()
+  {
+    if (buf.capacity() > INITIAL_SIZE)
+      buf = ByteBuffer.allocateDirect(INITIAL_SIZE);
+    buf.clear();
+    scanPos = 0;
+    isBinary = false;
+  }
+
+  // The size must be at most HEADER_SIZE + MAX_FRAME_SIZE
+  private void ensureCapacity(int size)
+  {
+    if (size <= buf.capacity())
+      return;
+    int max = BinaryFrame.HEADER_SIZE + BinaryFrame.MAX_FRAME_SIZE;
+    int capacity = Math.max(size, (int)Math.min(2L * buf.capacity(), max));
+    ByteBuffer newBuf = ByteBuffer.allocateDirect(capacity);
+    int position = buf.position();
+    buf.flip();
+    newBuf.put(buf);
+    buf = newBuf;
+    buf.position(position);
+  }
+
+  private String toString(int start, int end)
+  {
+    if (start == end)
+      return "";
+    ByteBuffer frame = buf.duplicate();
+    frame.limit(end);
+    frame.position(start);
+    int maxChars = (int)(frame.remaining() * decoder.maxCharsPerByte()) + 1;
+    if (chars.capacity() < maxChars)
+      chars = CharBuffer.allocate(Math.max(maxChars, 2 * chars.capacity()));
+    chars.clear();
+    decoder.reset();
+    decoder.decode(frame, chars, true);
+    decoder.flush(chars);
+    return new String(chars.array(), 0, chars.position());
+  }
+}
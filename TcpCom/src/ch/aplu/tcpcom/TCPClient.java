@@ -14,21 +14,40 @@ package ch.aplu.tcpcom;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.Charset;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Class to create a TCP client socket handled by event callbacks.
+ * Class to create a TCP client socket handled by event callbacks.<br><br>
+ * Besides the blocking sendMessage() with a response time, sendRequest()
+ * returns a CompletableFuture for the server reply, so many requests
+ * may be pending at the same time (pipelining).<br><br>
+ * With setBinaryMode(true) the client negotiates length prefixed binary
+ * frames with the server, that support raw byte arrays (sendBytes())
+ * and optional compression of large messages.
  */
 public class TCPClient
 {
 
   // ---------------- Inner class ClientHandler -----------------------
   private class ClientHandler extends Thread
+    implements FrameDecoder.FrameHandler
   {
+    private final FrameDecoder decoder = new FrameDecoder();
+
     public void run()
     {
       debug("Receiver handler thread started");
@@ -36,71 +55,122 @@ public class TCPClient
       {
         try
         {
-          String[] junk = readResponse().split("\0");
           // more than 1 message may be received 
           // if transfer is fast. data: xxxx\0yyyyy\0zzz
-          for (String s : junk)
-          {
-            try
-            {
-              if (listener != null)
-                listener.onStateChanged(MESSAGE, s);
-            }
-            catch (Exception ex)
-            {
-              System.out.println("Caught exception in TCPClient.MESSAGE: " + ex);
-            }
-          }
+          readResponse();
         }
         catch (IOException ex)
         {
-          debug("Exception from is.read(). Stream closed.");
+          debug("Exception from read(). Stream closed.");
           if (checkRefused)
             isRefused = true;
           break;
         }
       }
+      notifyDisconnected("");
+      synchronized (writeLock)
+      {
+        isReceiving = false;
+        failRequests();
+      }
+      debug("Receiver handler thread terminated");
+    }
+
+    public void frameReceived(String msg)
+    {
+      if (isBinaryRequested && !isBinary && msg.equals(BinaryFrame.ACK))
+      {
+        debug("Switching to binary mode");
+        decoder.setBinary(true);
+        synchronized (writeLock)
+        {
+          // Last \0 terminated message, the server reads binary frames
+          // after it
+          write((BinaryFrame.SWITCH + "\0").getBytes(Charset.forName("UTF-8")));
+          isBinary = true;
+        }
+        return;
+      }
+      CompletableFuture<String> reply = nextReply.getAndSet(null);
+      if (reply != null)
+        reply.complete(msg);
+      else
+        completeRequest(msg);
       try
       {
         if (listener != null)
-          listener.onStateChanged(DISCONNECTED, "");
+          listener.onStateChanged(MESSAGE, msg);
       }
       catch (Exception ex)
       {
-        System.out.println("Caught exception in TCPClient.DISCONNECTED:" + ex);
+        System.out.println("Caught exception in TCPClient.MESSAGE: " + ex);
+      }
+    }
+
+    public void binaryFrameReceived(int type, ByteBuffer payload)
+      throws IOException
+    {
+      byte[] data = BinaryFrame.getData(type, payload);
+      if ((type & ~BinaryFrame.COMPRESSED) == BinaryFrame.STRING)
+        frameReceived(new String(data, Charset.forName("UTF-8")));
+      else
+      {
+        try
+        {
+          if (bytesListener != null)
+            bytesListener.onBytes(data);
+        }
+        catch (Exception ex)
+        {
+          System.out.println("Caught exception in TCPClient.onBytes: " + ex);
+        }
       }
-      debug("Receiver handler thread terminated");
     }
 
-    private String readResponse() throws IOException
+    private void readResponse() throws IOException
     {
-      debug("Calling readResponse");
-      int bufSize = 4096;
-      byte[] buf = new byte[bufSize];
-      ByteArrayOutputStream baos = new ByteArrayOutputStream();
-      boolean done = false;
-      int offset = 0;
-      while (!done)
+      debug("Calling blocking read()");
+      ByteBuffer buf;
+      try
+      {
+        buf = decoder.getBuffer();
+      }
+      catch (IOException ex)
+      {
+        throw protocolError(ex);
+      }
+      int len = channel.read(buf);
+      debug("Returned from blocking read().len: " + len);
+      if (len == -1)
+        throw new IOException("Stream closed");
+      try
+      {
+        decoder.decode(this);
+      }
+      catch (IOException ex)
+      {
+        throw protocolError(ex);
+      }
+    }
+
+    // Closes the connection after invalid data from the server
+    private IOException protocolError(IOException ex)
+    {
+      debug("Protocol error: " + ex.getMessage());
+      decoder.reset();
+      try
+      {
+        channel.close();
+      }
+      catch (IOException e)
       {
-        debug("Calling blocking is.read()");
-        int len = is.read(buf);
-        debug("Returned from blocking read().len: " + len);
-        if (len == -1)
-          throw new IOException("Stream closed");
-        baos.write(buf, offset, len);
-        offset += len;
-        if (buf[len - 1] == 0)  // \0
-          done = true;
       }
-      String s = baos.toString("UTF-8");
-      s = s.substring(0, s.length() - 1);  // Remove \0
-      receiverResponse = s;
-      return s;
+      return ex;
     }
   }
 
   // ---------------- End of inner classes -----------------------------
-  private static String VERSION = "1.00 - Feb. 13, 2016";
+  private static String VERSION = "1.10 - Oct. 19, 2026";
   /** State value */
   public static String CONNECTING = "CONNECTING";
   /** State value */
@@ -121,12 +191,32 @@ public class TCPClient
   private boolean isClientConnecting;
   private boolean isClientConnected;
   private ClientHandler clientHandler;
+  private SocketChannel channel;
   private Socket socket;
-  private InputStream is;
   private OutputStream os;
-  private String receiverResponse;
   private boolean checkRefused;
   private boolean isRefused;
+  private final Object writeLock = new Object();
+  private final ConcurrentLinkedQueue<CompletableFuture<String>> requests =
+    new ConcurrentLinkedQueue<CompletableFuture<String>>();
+  private final ConcurrentHashMap<Integer, CompletableFuture<String>> idRequests =
+    new ConcurrentHashMap<Integer, CompletableFuture<String>>();
+  // Reply of the pending sendMessage() with response time
+  private final AtomicReference<CompletableFuture<String>> nextReply =
+    new AtomicReference<CompletableFuture<String>>();
+  private final AtomicBoolean isDisconnectNotified = new AtomicBoolean();
+  private volatile String idSeparator = null;
+  private volatile boolean isBinaryRequested = false;
+  private boolean isBinary = false;  // Guarded by writeLock
+  private volatile int compressThreshold = 0;
+  private TCPClientBytesListener bytesListener = null;
+  private boolean isReceiving = false;
+  private int nextRequestId = 1;
+  private int flushWindow = 0;
+  private ByteArrayOutputStream outBuf = new ByteArrayOutputStream();
+  private Timer flushTimer = null;
+  private boolean isFlushScheduled = false;
+  private static final int MAX_BATCH_SIZE = 65536;
 
   /**
    * Creates a TCP socket client prepared for a connection with a 
@@ -186,14 +276,10 @@ public class TCPClient
 
     try
     {
-      if (timeout > 0)
-      {
-        socket = new Socket();
-        socket.connect(new InetSocketAddress(host, port), 1000 * timeout);
-      }
-      else
-        socket = new Socket(host, port);
-      is = socket.getInputStream();
+      channel = SocketChannel.open();
+      socket = channel.socket();
+      socket.connect(new InetSocketAddress(host, port), 1000 * timeout);
+      socket.setTcpNoDelay(true);
       os = socket.getOutputStream();
     }
     catch (IOException ex)
@@ -214,9 +300,22 @@ public class TCPClient
 
     isClientConnecting = false;
     isClientConnected = true;
+    isDisconnectNotified.set(false);
 
+    synchronized (writeLock)
+    {
+      isReceiving = true;
+      isBinary = false;
+    }
     clientHandler = new ClientHandler();
     clientHandler.start();
+    if (isBinaryRequested)
+    {
+      synchronized (writeLock)
+      {
+        write((BinaryFrame.HELLO + "\0").getBytes(Charset.forName("UTF-8")));
+      }
+    }
 
     // Check if connection is refused
     checkRefused = true;
@@ -291,11 +390,25 @@ public class TCPClient
       debug("Connection already closed");
       return;
     }
+    synchronized (writeLock)
+    {
+      try
+      {
+        flushBuffer();
+      }
+      catch (IOException ex)
+      {
+      }
+      if (flushTimer != null)
+      {
+        flushTimer.cancel();
+        flushTimer = null;
+      }
+    }
     isClientConnected = false;
     debug("Closing socket");
     try
     {
-      is.close();
       os.close();
     }
     catch (Exception ex)
@@ -303,7 +416,7 @@ public class TCPClient
     }
     try
     {
-      socket.close();
+      channel.close();
     }
     catch (Exception ex)
     {
@@ -315,6 +428,9 @@ public class TCPClient
    * (ASCII 0) serves as end of string indicator, it is transparently added
    * and removed).  For responseTime > 0 the method blocks and waits 
    * for maximum responseTime seconds for a server reply. 
+   * The reply is the next message received after sending (it is not
+   * assigned to the requests of sendRequest()). A reply arriving after
+   * the timeout is only passed to the TCPClientListener.
    * @param msg the message to send
    * @param responseTime the maximum time to wait for a server reply (in s)
    * @return the message or null, if a timeout occured
@@ -327,49 +443,325 @@ public class TCPClient
       debug("Not connected");
       return null;
     }
-    String reply = null;
+    if (responseTime <= 0)
+    {
+      send(msg, null);
+      return null;
+    }
+    CompletableFuture<String> reply = new CompletableFuture<String>();
+    synchronized (writeLock)
+    {
+      if (!isReceiving)
+      {
+        debug("Connection closed");
+        return null;
+      }
+      nextReply.set(reply);
+      send(msg, null);
+    }
     try
     {
-      msg += "\0";  // Append \0
-      byte[] ary = msg.getBytes(Charset.forName("UTF-8"));
-      os.write(ary);
-      os.flush();
-      if (responseTime > 0)
-        reply = waitForReply(1000 * responseTime); // blocking
-      return reply;
+      return reply.get(responseTime, TimeUnit.SECONDS); // blocking
     }
-    catch (IOException ex)
+    catch (TimeoutException ex)
+    {
+      debug("Timeout while waiting for reply");
+    }
+    catch (Exception ex)
+    {
+      debug("No reply. Exception: " + ex);
+    }
+    finally
+    {
+      nextReply.compareAndSet(reply, null);
+    }
+    return null;
+  }
+
+  /**
+   * Sends the information msg to the server and returns immediately
+   * a future that is completed with the server reply. Many requests may
+   * be in flight at the same time. The replies are assigned to the requests
+   * in the order of sending (the server must reply to each request in order),
+   * or by the request id, if setRequestIdSeparator() is used.
+   * When the connection is closed, the pending futures complete exceptionally.
+   * To limit the waiting time, call get() with a timeout.
+   * @param msg the message to send
+   * @return the future server reply
+   */
+  public CompletableFuture<String> sendRequest(String msg)
+  {
+    CompletableFuture<String> future = new CompletableFuture<String>();
+    if (!isClientConnected)
+    {
+      future.completeExceptionally(new IOException("Not connected"));
+      return future;
+    }
+    send(msg, future);
+    return future;
+  }
+
+  /**
+   * Assigns the replies to the requests sent by sendRequest() by an id instead
+   * of the order of sending: each request is sent as id + separator + msg
+   * (e.g. "17:getTemperature" with separator ":") and a message from the
+   * server starting with the same id and separator completes the request
+   * (with the text after the separator). The server must copy the id
+   * into its reply. Other messages are only passed to the TCPClientListener.
+   * @param separator the separator after the id; null to assign the replies
+   * in the order of sending (default)
+   */
+  public void setRequestIdSeparator(String separator)
+  {
+    idSeparator = separator;
+  }
+
+  /**
+   * Sets how the messages are written to the network. With window = 0 (default)
+   * each message is written immediately (the Nagle algorithm is disabled).
+   * With window &gt; 0 the messages are collected and written together
+   * at most window milliseconds after the first one, which reduces the number
+   * of network packets when many small messages are sent.
+   * @param window the time window in ms to collect messages; 0 to write immediately
+   */
+  public void setFlushPolicy(int window)
+  {
+    synchronized (writeLock)
+    {
+      flushWindow = Math.max(0, window);
+      if (flushWindow == 0)
+      {
+        try
+        {
+          flushBuffer();
+        }
+        catch (IOException ex)
+        {
+          connectionLost(ex);
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes all collected messages immediately.
+   */
+  public void flush()
+  {
+    synchronized (writeLock)
     {
       try
       {
-        if (listener != null)
-          listener.onStateChanged(DISCONNECTED, host + ":" + port);
+        flushBuffer();
       }
-      catch (Exception e)
+      catch (IOException ex)
       {
-        System.out.println("Caught exception in TCPClient.CONNECTED: " + e);
+        connectionLost(ex);
       }
-      debug("Exception ex: " + ex);
-      disconnect();
     }
-    return null;
   }
 
-  private String waitForReply(int responseTime)
-  // responseTime in ms
+  // The future is registered before the message is written,
+  // so the order of the requests is the order on the network
+  private void send(String msg, CompletableFuture<String> future)
   {
-    debug("Calling waitForReply() with responseTime: " + responseTime);
-    receiverResponse = null;
-    long startTime = System.nanoTime();
-    while (isClientConnected && receiverResponse == null
-      && System.nanoTime() - startTime < 1000000 * responseTime)
-      delay(10);
-    if (receiverResponse == null)
-      debug("Timeout while waiting for reply");
-    else
-      debug("Response = " + receiverResponse + " time elapsed: "
-        + ((int)(System.nanoTime() - startTime) / 1000000) + " ms");
-    return receiverResponse;
+    synchronized (writeLock)
+    {
+      if (future != null)
+      {
+        if (!isReceiving)
+        {
+          future.completeExceptionally(new IOException("Connection closed"));
+          return;
+        }
+        if (idSeparator != null)
+        {
+          int id = nextRequestId++;
+          idRequests.put(id, future);
+          msg = id + idSeparator + msg;
+        }
+        else
+          requests.add(future);
+      }
+      if (isBinary)
+        write(BinaryFrame.encode(msg, compressThreshold));
+      else
+        write((msg + "\0").getBytes(Charset.forName("UTF-8")));  // Append \0
+    }
+  }
+
+  /**
+   * Sends the data to the server. Only possible in binary mode.
+   * Use BinaryData to convert arrays of int or double.
+   * @param data the data to send
+   * @return true, if successful; false, if not connected or not in binary mode
+   */
+  public boolean sendBytes(byte[] data)
+  {
+    synchronized (writeLock)
+    {
+      if (!isClientConnected || !isBinary)
+        return false;
+      write(BinaryFrame.encode(BinaryFrame.BYTES, data, compressThreshold));
+      return isClientConnected;
+    }
+  }
+
+  /**
+   * Requests binary mode for the next connection. When connecting, the client
+   * asks the server to use length prefixed binary frames. If the server supports
+   * them, byte arrays may be sent with sendBytes() and received by a
+   * TCPClientBytesListener; strings are still sent with sendMessage().
+   * Old servers do not answer the request (and receive it as message),
+   * then the client stays in the normal mode.
+   * @param enable true to request binary mode
+   */
+  public void setBinaryMode(boolean enable)
+  {
+    isBinaryRequested = enable;
+  }
+
+  /**
+   * Returns true, if the connection uses binary mode.
+   * @return true, if the server accepted the binary mode
+   */
+  public boolean isBinaryMode()
+  {
+    synchronized (writeLock)
+    {
+      return isBinary;
+    }
+  }
+
+  /**
+   * Compresses the data of messages and sendBytes() in binary mode with
+   * DEFLATE, if it is at least threshold bytes long.
+   * @param threshold the minimal size to compress (in bytes); 0: no compression (default)
+   */
+  public void setCompressThreshold(int threshold)
+  {
+    compressThreshold = threshold;
+  }
+
+  /**
+   * Registers a TCPClientBytesListener to get the data sent by the server
+   * in binary mode.
+   * @param listener the listener to register
+   */
+  public void addTCPClientBytesListener(TCPClientBytesListener listener)
+  {
+    this.bytesListener = listener;
+  }
+
+  // Must be called with writeLock
+  private void write(byte[] ary)
+  {
+    try
+    {
+      if (flushWindow == 0)
+      {
+        os.write(ary);
+        os.flush();
+        return;
+      }
+      outBuf.write(ary);
+      if (outBuf.size() >= MAX_BATCH_SIZE)
+        flushBuffer();
+      else if (!isFlushScheduled)
+      {
+        if (flushTimer == null)
+          flushTimer = new Timer(true);
+        flushTimer.schedule(new TimerTask()
+        {
+          public void run()
+          {
+            flush();
+          }
+        }, flushWindow);
+        isFlushScheduled = true;
+      }
+    }
+    catch (IOException ex)
+    {
+      connectionLost(ex);
+    }
+  }
+
+  // Must be called with writeLock
+  private void flushBuffer() throws IOException
+  {
+    isFlushScheduled = false;
+    if (outBuf.size() == 0)
+      return;
+    outBuf.writeTo(os);
+    outBuf.reset();
+    os.flush();
+  }
+
+  private void connectionLost(IOException ex)
+  {
+    notifyDisconnected(host + ":" + port);
+    debug("Exception ex: " + ex);
+    disconnect();
+  }
+
+  // The connection may be lost by a write and by the receiver thread,
+  // the listener is notified only once
+  private void notifyDisconnected(String info)
+  {
+    if (isDisconnectNotified.getAndSet(true))
+      return;
+    try
+    {
+      if (listener != null)
+        listener.onStateChanged(DISCONNECTED, info);
+    }
+    catch (Exception ex)
+    {
+      System.out.println("Caught exception in TCPClient.DISCONNECTED: " + ex);
+    }
+  }
+
+  private void completeRequest(String msg)
+  {
+    String separator = idSeparator;
+    if (separator != null)
+    {
+      int index = msg.indexOf(separator);
+      if (index > 0)
+      {
+        try
+        {
+          int id = Integer.parseInt(msg.substring(0, index));
+          CompletableFuture<String> future = idRequests.remove(id);
+          if (future != null)
+            future.complete(msg.substring(index + separator.length()));
+        }
+        catch (NumberFormatException ex)
+        {
+        }
+      }
+      return;
+    }
+    CompletableFuture<String> future = requests.poll();
+    if (future != null)
+      future.complete(msg);
+  }
+
+  private void failRequests()
+  {
+    IOException ex = new IOException("Connection closed");
+    CompletableFuture<String> future = nextReply.getAndSet(null);
+    if (future != null)
+      future.completeExceptionally(ex);
+    while ((future = requests.poll()) != null)
+      future.completeExceptionally(ex);
+    for (Integer id : idRequests.keySet())
+    {
+      future = idRequests.remove(id);
+      if (future != null)
+        future.completeExceptionally(ex);
+    }
   }
 
   /**
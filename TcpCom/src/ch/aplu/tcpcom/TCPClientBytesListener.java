@@ -0,0 +1,12 @@
+// TCPClientBytesListener.java
+
+package ch.aplu.tcpcom;
+
+/**
+Callback called when binary data is received from the server
+(only in binary mode, see TCPClient.setBinaryMode()).
+*/
+public interface TCPClientBytesListener
+{
+  void onBytes(byte[] data);
+}
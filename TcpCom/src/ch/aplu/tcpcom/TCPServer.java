@@ -12,65 +12,235 @@
  */
 package ch.aplu.tcpcom;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
- * Class to create a TCP server socket handled by event callbacks.
+ * Class to create a TCP server socket handled by event callbacks.<br><br>
+ * The server may serve many clients on the same port. The clients are
+ * handled by a small number of event loop threads using non-blocking
+ * channels, so no thread per client is needed. Each client gets a
+ * connection id (1, 2, 3,...) that is passed to a registered
+ * TCPServerClientListener and used to send a message to a single client.
+ * The data that cannot be written immediately is queued, a client
+ * that does not read and has more than 16 MB queued is closed.
+ * The callbacks of all listeners are invoked one at a time, even though
+ * the clients are served by several threads.<br><br>
+ * Clients that request binary mode at connect time (TCPClient.setBinaryMode())
+ * exchange length prefixed frames: besides strings, byte arrays may be
+ * sent (sendBytes()) and received (TCPServerBytesListener), optionally
+ * compressed. Other clients keep using \0 terminated strings.
  */
 public class TCPServer extends Thread
 {
-  // ---------------------- Inner class ServerHandler ------------------------
-  class ServerHandler extends Thread
+  // ---------------------- Inner class Client -------------------------------
+  private class Client implements FrameDecoder.FrameHandler
   {
+    private final int id;
+    private final SocketChannel channel;
+    private final String ip;
+    private final EventLoop loop;
+    private SelectionKey key = null;
+    private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<ByteBuffer>();
+    private long pendingSize = 0;  // Bytes in pending
+    private final FrameDecoder decoder = new FrameDecoder();
+    private boolean isBinary = false;  // Guarded by the client
+    private boolean isHelloReceived = false;  // Only used by the event loop
+    private volatile boolean isFailed = false;  // To be closed
+
+    Client(int id, SocketChannel channel, String ip, EventLoop loop)
+    {
+      this.id = id;
+      this.channel = channel;
+      this.ip = ip;
+      this.loop = loop;
+    }
+
+    public void frameReceived(String msg)
+    {
+      if (msg.equals(BinaryFrame.HELLO) && !isHelloReceived)
+      {
+        // From now on binary frames are sent, but the client sends
+        // \0 terminated messages until it confirms with SWITCH
+        debug("Client " + id + " requests binary mode");
+        isHelloReceived = true;
+        synchronized (this)
+        {
+          write(this, (BinaryFrame.ACK + "\0").getBytes(Charset.forName("UTF-8")));
+          isBinary = true;
+        }
+        closeIfFailed(this);
+        return;
+      }
+      if (msg.equals(BinaryFrame.SWITCH) && isHelloReceived)
+      {
+        debug("Client " + id + " switches to binary mode");
+        decoder.setBinary(true);
+        return;
+      }
+      notifyListeners(MESSAGE, msg, id);
+    }
+
+    public void binaryFrameReceived(int type, ByteBuffer payload)
+      throws IOException
+    {
+      byte[] data = BinaryFrame.getData(type, payload);
+      if ((type & ~BinaryFrame.COMPRESSED) == BinaryFrame.STRING)
+        notifyListeners(MESSAGE, new String(data, Charset.forName("UTF-8")), id);
+      else
+      {
+        synchronized (listenerLock)
+        {
+          try
+          {
+            if (bytesListener != null)
+              bytesListener.onBytes(data, id);
+          }
+          catch (Exception ex)
+          {
+            System.out.println("Caught exception in TCPServer.onBytes: " + ex);
+          }
+        }
+      }
+    }
+  }
+  // ---------------------- End of inner class Client ------------------------
+
+  // ---------------------- Inner class EventLoop ----------------------------
+  private class EventLoop extends Thread
+  {
+    private final Selector selector;
+    private final ConcurrentLinkedQueue<Client> newClients =
+      new ConcurrentLinkedQueue<Client>();
+    private final ConcurrentLinkedQueue<Client> writeRequests =
+      new ConcurrentLinkedQueue<Client>();
+
+    EventLoop() throws IOException
+    {
+      selector = Selector.open();
+      setDaemon(true);
+    }
+
+    void register(Client client)
+    {
+      newClients.add(client);
+      selector.wakeup();
+    }
+
+    void requestWrite(Client client)
+    {
+      writeRequests.add(client);
+      selector.wakeup();
+    }
+
     public void run()
     {
-      debug("ServerHandler started");
-      int bufSize = 4096;
-      try
+      debug("EventLoop started");
+      while (!terminateServer)
       {
-        byte[] buf = new byte[bufSize];
-        while (true)
+        try
+        {
+          selector.select();
+        }
+        catch (IOException ex)
+        {
+          break;
+        }
+        Client client;
+        while ((client = newClients.poll()) != null)
+        {
+          synchronized (client)
+          {
+            // Data may be pending from the CONNECTED callback
+            int ops = SelectionKey.OP_READ;
+            if (!client.pending.isEmpty())
+              ops |= SelectionKey.OP_WRITE;
+            try
+            {
+              client.key = client.channel.register(selector, ops, client);
+            }
+            catch (ClosedChannelException ex)
+            {
+              client.isFailed = true;
+            }
+          }
+          closeIfFailed(client);
+        }
+        while ((client = writeRequests.poll()) != null)
+        {
+          if (client.key != null && client.key.isValid())
+            client.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while (it.hasNext())
         {
-          ByteArrayOutputStream baos = new ByteArrayOutputStream();
-          boolean done = false;
-          int offset = 0;
-          while (!done)
+          SelectionKey key = it.next();
+          it.remove();
+          client = (Client)key.attachment();
+          try
+          {
+            if (key.isValid() && key.isReadable())
+              read(client);
+            if (key.isValid() && key.isWritable())
+              flush(client);
+          }
+          catch (RuntimeException ex)
           {
-            debug("Calling blocking read()");
-            int len = is.read(buf);
-            debug("Returned from blocking read().len: " + len);
-            if (len == -1)
-              throw new IOException("Stream closed");
-            baos.write(buf, offset, len);
-            offset += len;
-            if (buf[len - 1] == 0)  // \0
-              done = true;
+            // Do not let one client stop the loop
+            debug("Exception while serving client " + client.id + ". " + ex);
+            closeClient(client);
+            client.decoder.reset();
           }
-          String s = baos.toString("UTF-8");
-          s = s.substring(0, s.length() - 1);  // Remove \0
-          if (listener != null)
-            listener.onStateChanged(MESSAGE, s);
         }
       }
+      try
+      {
+        selector.close();
+      }
       catch (IOException ex)
       {
+      }
+      debug("EventLoop terminated");
+    }
 
+    private void read(Client client)
+    {
+      int len;
+      try
+      {
+        len = client.channel.read(client.decoder.getBuffer());
+        debug("Returned from read(). len: " + len);
+        if (len != -1)
+          client.decoder.decode(client);
+      }
+      catch (IOException ex)
+      {
+        debug("Exception in read(). " + ex);
+        len = -1;
+      }
+      if (len == -1)
+      {
+        closeClient(client);
+        client.decoder.reset();
       }
-      disconnect();
-      debug("ServerHandler terminated");
     }
   }
-  // ---------------------- End of inner class ServerHandler ----------------
+  // ---------------------- End of inner class EventLoop ---------------------
 
-  private static String VERSION = "1.00 - Feb. 13, 2016";
+  private static String VERSION = "1.10 - Oct. 19, 2026";
+  // A client with more unsent data is closed (it does not read)
+  private static final int MAX_PENDING_SIZE = 16 * 1024 * 1024;
   /** State value */
   public static String PORT_IN_USE = "PORT_IN_USE";
   /** State value */
@@ -83,31 +253,70 @@ public class TCPServer extends Thread
   public static String MESSAGE = "MESSAGE";
 
   private TCPServerListener listener = null;
+  private TCPServerClientListener clientListener = null;
+  private TCPServerBytesListener bytesListener = null;
+  private volatile int compressThreshold = 0;
   private int port;
+  private int maxClients;
+  private int nbLoops;
   private static boolean isVerbose;
-  private boolean isClientConnected;
-  private boolean terminateServer;
-  private ServerSocket serverSocket;
-  private InputStream is;
-  private OutputStream os;
+  private volatile boolean terminateServer;
+  private ServerSocketChannel serverChannel = null;
+  private EventLoop[] loops = new EventLoop[0];
+  private final ConcurrentHashMap<Integer, Client> clients =
+    new ConcurrentHashMap<Integer, Client>();
+  private int nextId = 1;
+  private final Object listenerLock = new Object();  // Serializes the callbacks
 
   /**
-   * Creates a TCP socket server that listens on TCP port 
-   * for a connecting client. The server runs in its own thread, so the
+   * Creates a TCP socket server that listens on TCP port for connecting
+   * clients. At most maxClients clients are served at the same time, further
+   * connections are closed immediately. The clients are handled by
+   * nbLoops event loop threads. The server runs in its own thread, so the
    * constructor returns immediately. State changes invoke the callback
    * onStateChanged().
    * @param port the IP port where to listen (0..65535)
+   * @param maxClients the maximal number of clients connected at the same time
+   * @param nbLoops the number of event loop threads (0: one per processor, at most 4)
    * @param isVerbose if true, debug messages are written to System.out
    */
-  public TCPServer(int port, boolean isVerbose)
+  public TCPServer(int port, int maxClients, int nbLoops, boolean isVerbose)
   {
     this.port = port;
+    this.maxClients = Math.max(1, maxClients);
+    if (nbLoops <= 0)
+      nbLoops = Math.min(4, Runtime.getRuntime().availableProcessors());
+    this.nbLoops = Math.min(nbLoops, this.maxClients);
     this.isVerbose = isVerbose;
-    isClientConnected = false;
     terminateServer = false;
     start();
   }
 
+  /**
+   * Same with the default number of event loop threads.
+   * @param port the IP port where to listen (0..65535)
+   * @param maxClients the maximal number of clients connected at the same time
+   * @param isVerbose if true, debug messages are written to System.out
+   */
+  public TCPServer(int port, int maxClients, boolean isVerbose)
+  {
+    this(port, maxClients, 0, isVerbose);
+  }
+
+  /**
+   * Creates a TCP socket server that listens on TCP port
+   * for a connecting client. Only one client is served at the same time,
+   * further connections are closed immediately. The server runs in its
+   * own thread, so the constructor returns immediately. State changes
+   * invoke the callback onStateChanged().
+   * @param port the IP port where to listen (0..65535)
+   * @param isVerbose if true, debug messages are written to System.out
+   */
+  public TCPServer(int port, boolean isVerbose)
+  {
+    this(port, 1, 1, isVerbose);
+  }
+
   /**
    * Same with isVerbose = false.
    * @param port the IP port where to listen (0..65535)
@@ -123,30 +332,28 @@ public class TCPServer extends Thread
     try
     {
       debug("TCPServer thread started");
-      serverSocket = new ServerSocket(port);
-      try
-      {
-        if (listener != null)
-          listener.onStateChanged(LISTENING, "" + port);
-      }
-      catch (Exception ex)
+      serverChannel = ServerSocketChannel.open();
+      serverChannel.socket().setReuseAddress(true);
+      serverChannel.socket().bind(new InetSocketAddress(port));
+      EventLoop[] eventLoops = new EventLoop[nbLoops];
+      for (int i = 0; i < nbLoops; i++)
       {
-        System.out.println("Caught exception in TCPServer.LISTENING: " + ex);
+        eventLoops[i] = new EventLoop();
+        eventLoops[i].start();
       }
+      loops = eventLoops;
+      notifyListeners(LISTENING, "" + port, 0);
       while (true)
       {
         // wait to accept a connection - blocking call
         debug("Calling blocking accept()...");
-        Socket socket = serverSocket.accept(); // Blocking-------------------
-        if (isClientConnected)
+        SocketChannel channel = serverChannel.accept(); // Blocking----------
+        if (clients.size() >= maxClients)
         {
           debug("Returning form blocking accept(). Client refused");
-          InputStream is1 = new DataInputStream(socket.getInputStream());
-          OutputStream os1 = new DataOutputStream(socket.getOutputStream());
           try
           {
-            is1.close();
-            os1.close();
+            channel.close();
           }
           catch (Exception ex)
           {
@@ -154,52 +361,31 @@ public class TCPServer extends Thread
           continue;
         }
 
-        isClientConnected = true;
         debug("Returning form blocking accept()");
-        is = new DataInputStream(socket.getInputStream());
-        os = new DataOutputStream(socket.getOutputStream());
-        ServerHandler serverHandler = new ServerHandler();
-        serverHandler.setDaemon(true);
-        serverHandler.start();
-        String clientIP = socket.getInetAddress().toString();
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        String clientIP = channel.socket().getInetAddress().toString();
         if (clientIP.equals("/0:0:0:0:0:0:0:1"))
           clientIP = "localhost";
-        try
-        {
-          if (listener != null)
-            listener.onStateChanged(CONNECTED, clientIP);
-        }
-        catch (Exception ex)
-        {
-          System.out.println("Caught exception in TCPServer.CONNECTED: " + ex);
-        }
+        int id = nextId++;
+        Client client = new Client(id, channel, clientIP, loops[id % nbLoops]);
+        clients.put(id, client);
+        notifyListeners(CONNECTED, clientIP, id);
+        client.loop.register(client);
       }
     }
     catch (java.net.BindException ex)
     {
-      try
-      {
-        if (listener != null)
-          listener.onStateChanged(PORT_IN_USE, "");
-      }
-      catch (Exception e)
-      {
-        System.out.println("Caught exception in TCPServer.PORT_IN_USE: " + e);
-      }
+      notifyListeners(PORT_IN_USE, "", 0);
     }
     catch (IOException ex)
     {
       debug("Exception in blocking accept(). " + ex);
-      try
-      {
-        if (listener != null)
-          listener.onStateChanged(TERMINATED, "");
-      }
-      catch (Exception e)
-      {
-        System.out.println("Caught exception in TCPServer.TERMINATED: " + e);
-      }
+      notifyListeners(TERMINATED, "", 0);
     }
+    terminateServer = true;
+    for (EventLoop loop : loops)
+      loop.selector.wakeup();
     debug("Main server thread terminated");
   }
 
@@ -212,70 +398,122 @@ public class TCPServer extends Thread
     this.listener = listener;
   }
 
+  /**
+   * Registers a TCPServerClientListener to get state change notifications
+   * together with the connection id of the client.
+   * @param listener the listener to register
+   */
+  public void addTCPServerClientListener(TCPServerClientListener listener)
+  {
+    this.clientListener = listener;
+  }
+
+  /**
+   * Registers a TCPServerBytesListener to get the data sent by clients
+   * in binary mode.
+   * @param listener the listener to register
+   */
+  public void addTCPServerBytesListener(TCPServerBytesListener listener)
+  {
+    this.bytesListener = listener;
+  }
+
   /**
    * Returns  true, if a client is connected to the server.
-   * @return true, if the communication link is establed
+   * @return true, if at least one communication link is establed
    */
   public boolean isConnected()
   {
-    return isClientConnected;
+    return !clients.isEmpty();
+  }
+
+  /**
+   * Returns true, if the client with given connection id is connected.
+   * @param clientId the connection id of the client
+   * @return true, if the communication link with this client is establed
+   */
+  public boolean isConnected(int clientId)
+  {
+    return clients.containsKey(clientId);
+  }
+
+  /**
+   * Returns the number of connected clients.
+   * @return the number of clients
+   */
+  public int getNbClients()
+  {
+    return clients.size();
+  }
+
+  /**
+   * Returns the connection ids of the connected clients.
+   * @return the connection ids in ascending order
+   */
+  public int[] getClientIds()
+  {
+    Object[] keys = clients.keySet().toArray();
+    int[] ids = new int[keys.length];
+    for (int i = 0; i < keys.length; i++)
+      ids[i] = (Integer)keys[i];
+    java.util.Arrays.sort(ids);
+    return ids;
   }
 
   /**
-   * Closes the connection with the client and enters 
-   * the LISTENING state.
+   * Returns the IP address of the client with given connection id.
+   * @param clientId the connection id of the client
+   * @return the IP address; null, if the client is not connected
+   */
+  public String getClientIP(int clientId)
+  {
+    Client client = clients.get(clientId);
+    return client == null ? null : client.ip;
+  }
+
+  /**
+   * Closes the connection with all clients. Each closed connection
+   * invokes the LISTENING state.
    */
   public void disconnect()
   {
     debug("Calling Server.disconnect()");
-    if (isClientConnected)
-    {
-      isClientConnected = false;
-      try
-      {
-        if (listener != null)
-          listener.onStateChanged(LISTENING, new Integer(port).toString());
-      }
-      catch (Exception ex)
-      {
-        System.out.println("Caught exception in TCPServer.LISTENING: " + ex);
-      }
-      debug("Closing streams");
-      try
-      {
-        is.close();
-        os.close();
-      }
-      catch (Exception ex)
-      {
-      }
-    }
+    for (Client client : clients.values())
+      closeClient(client);
+  }
+
+  /**
+   * Closes the connection with the client with given connection id
+   * and invokes the LISTENING state.
+   * @param clientId the connection id of the client
+   */
+  public void disconnect(int clientId)
+  {
+    Client client = clients.get(clientId);
+    if (client != null)
+      closeClient(client);
   }
 
   /**
-   * Closes the connection and terminates the server thread. 
+   * Closes the connections and terminates the server thread.
    * Releases the IP port.
    */
   public void terminate()
   {
     debug("Calling Server.terminate()");
     terminateServer = true;
+    for (Client client : clients.values())
+      closeChannel(client);
+    clients.clear();
     try
     {
-      os.close();
-      is.close();
-    }
-    catch (Exception ex)
-    {
-      // maybe os, is = null
-    }
-    try
-    {
-      serverSocket.close();  // take it out of socket.accept()
+      serverChannel.close();  // take it out of accept()
     }
     catch (Exception ex)
     {
     }
+    for (EventLoop loop : loops)
+      loop.selector.wakeup();
   }
 
   /**
@@ -288,32 +526,111 @@ public class TCPServer extends Thread
   }
 
   /**
-   * Sends the information msg to the client (as String, the character \0 (ASCII 0) serves as end of 
-   * string indicator, it is transparently added and removed)
+   * Sends the information msg to all connected clients (as String, the
+   * character \0 (ASCII 0) serves as end of string indicator, it is
+   * transparently added and removed)
    * @param msg the message to send
    */
   public void sendMessage(String msg)
   {
     debug("sendMessage() with msg: " + msg);
-    if (!isClientConnected)
+    if (clients.isEmpty())
     {
       debug("Not connected");
       return;
     }
-    msg = msg + "\0";
-    byte[] ary = msg.getBytes(Charset.forName("UTF-8"));
-    try
+    byte[] ary = (msg + "\0").getBytes(Charset.forName("UTF-8"));
+    byte[] frame = null;  // Only encoded if a client uses binary mode
+    for (Client client : clients.values())
+    {
+      synchronized (client)
+      {
+        if (client.isBinary && frame == null)
+          frame = BinaryFrame.encode(msg, compressThreshold);
+        write(client, client.isBinary ? frame : ary);
+      }
+      closeIfFailed(client);
+    }
+  }
+
+  /**
+   * Sends the information msg to the client with given connection id.
+   * Nothing happens, if this client is not connected.
+   * @param msg the message to send
+   * @param clientId the connection id of the client
+   */
+  public void sendMessage(String msg, int clientId)
+  {
+    debug("sendMessage() with msg: " + msg + " to client: " + clientId);
+    Client client = clients.get(clientId);
+    if (client == null)
     {
-      os.write(ary);
-      os.flush();
+      debug("Not connected");
+      return;
     }
-    catch (Exception ex)  // Also catch null pointer, if os = null
-                          // because connection is not yet fully valid
+    synchronized (client)
     {
-      debug("Exception in sendMessage(). ex: " + ex);
+      if (client.isBinary)
+        write(client, BinaryFrame.encode(msg, compressThreshold));
+      else
+        write(client, (msg + "\0").getBytes(Charset.forName("UTF-8")));
+    }
+    closeIfFailed(client);
+  }
+
+  /**
+   * Sends the data to all connected clients that use binary mode
+   * (see TCPClient.setBinaryMode()).
+   * @param data the data to send
+   */
+  public void sendBytes(byte[] data)
+  {
+    byte[] frame = BinaryFrame.encode(BinaryFrame.BYTES, data, compressThreshold);
+    for (Client client : clients.values())
+      send(client, null, frame);
+  }
+
+  /**
+   * Sends the data to the client with given connection id.
+   * @param data the data to send
+   * @param clientId the connection id of the client
+   * @return true, if the client is connected and uses binary mode; otherwise false
+   */
+  public boolean sendBytes(byte[] data, int clientId)
+  {
+    Client client = clients.get(clientId);
+    if (client == null)
+      return false;
+    return send(client, null,
+      BinaryFrame.encode(BinaryFrame.BYTES, data, compressThreshold));
+  }
+
+  /**
+   * Returns true, if the client with given connection id uses binary mode.
+   * @param clientId the connection id of the client
+   * @return true, if sendBytes() may be used for this client
+   */
+  public boolean isBinaryMode(int clientId)
+  {
+    Client client = clients.get(clientId);
+    if (client == null)
+      return false;
+    synchronized (client)
+    {
+      return client.isBinary;
     }
   }
 
+  /**
+   * Compresses the data of messages and sendBytes() to clients in binary
+   * mode with DEFLATE, if it is at least threshold bytes long.
+   * @param threshold the minimal size to compress (in bytes); 0: no compression (default)
+   */
+  public void setCompressThreshold(int threshold)
+  {
+    compressThreshold = threshold;
+  }
+
   /**
    * Returns the library version.
    * @return the current version of the library
@@ -323,6 +640,136 @@ public class TCPServer extends Thread
     return VERSION;
   }
 
+  // Writes the text or the binary frame depending on the mode of the client
+  // (nothing, if it is null)
+  private boolean send(Client client, byte[] text, byte[] frame)
+  {
+    boolean isSent;
+    synchronized (client)
+    {
+      byte[] data = client.isBinary ? frame : text;
+      isSent = data != null && write(client, data);
+    }
+    closeIfFailed(client);
+    return isSent;
+  }
+
+  // Must be called with the client lock. As much as possible is written
+  // immediately, the rest is written by the event loop when the channel
+  // is writable. A client that fails or whose unsent data would exceed
+  // MAX_PENDING_SIZE is only marked: the caller closes it with
+  // closeIfFailed() after releasing the lock, because the listeners
+  // notified by closeClient() may lock other clients
+  private boolean write(Client client, byte[] data)
+  {
+    if (client.isFailed)
+      return false;
+    ByteBuffer buf = ByteBuffer.wrap(data);
+    try
+    {
+      if (client.pending.isEmpty())
+        client.channel.write(buf);
+      if (buf.hasRemaining())
+      {
+        if (client.pendingSize + buf.remaining() > MAX_PENDING_SIZE)
+        {
+          debug("Client " + client.id + " does not read. Closing it");
+          client.isFailed = true;
+          return false;
+        }
+        boolean isFirst = client.pending.isEmpty();
+        client.pending.add(buf);
+        client.pendingSize += buf.remaining();
+        if (isFirst)
+          client.loop.requestWrite(client);
+      }
+    }
+    catch (IOException ex)
+    {
+      debug("Exception in sendMessage(). ex: " + ex);
+      client.isFailed = true;
+      return false;
+    }
+    return true;
+  }
+
+  private void flush(Client client)
+  {
+    synchronized (client)
+    {
+      try
+      {
+        while (!client.pending.isEmpty())
+        {
+          ByteBuffer buf = client.pending.peek();
+          client.pendingSize -= client.channel.write(buf);
+          if (buf.hasRemaining())
+            return;
+          client.pending.poll();
+        }
+        client.key.interestOps(SelectionKey.OP_READ);
+      }
+      catch (IOException ex)
+      {
+        client.isFailed = true;
+      }
+    }
+    closeIfFailed(client);
+  }
+
+  // Must be called without the client lock
+  private void closeIfFailed(Client client)
+  {
+    if (client.isFailed)
+      closeClient(client);
+  }
+
+  private void closeClient(Client client)
+  {
+    if (clients.remove(client.id) == null)
+      return;  // Already closed
+    debug("Closing client " + client.id);
+    closeChannel(client);
+    if (!terminateServer)
+      notifyListeners(LISTENING, "" + port, client.id);
+  }
+
+  private void closeChannel(Client client)
+  {
+    synchronized (client)
+    {
+      client.pending.clear();  // Release the unsent data
+      client.pendingSize = 0;
+    }
+    if (client.key != null)
+      client.key.cancel();
+    try
+    {
+      client.channel.close();
+    }
+    catch (IOException ex)
+    {
+    }
+  }
+
+  private void notifyListeners(String state, String msg, int clientId)
+  {
+    synchronized (listenerLock)
+    {
+      try
+      {
+        if (listener != null)
+          listener.onStateChanged(state, msg);
+        if (clientListener != null)
+          clientListener.onStateChanged(state, msg, clientId);
+      }
+      catch (Exception ex)
+      {
+        System.out.println("Caught exception in TCPServer." + state + ": " + ex);
+      }
+    }
+  }
+
   private void debug(String msg)
   {
     if (isVerbose)
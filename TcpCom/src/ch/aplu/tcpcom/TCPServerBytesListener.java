@@ -0,0 +1,12 @@
+// TCPServerBytesListener.java
+
+package ch.aplu.tcpcom;
+
+/**
+Callback called when binary data is received from a client
+that uses binary mode (see TCPClient.setBinaryMode()).
+*/
+public interface TCPServerBytesListener
+{
+  void onBytes(byte[] data, int clientId);
+}
@@ -0,0 +1,18 @@
+// TCPServerClientListener.java
+
+package ch.aplu.tcpcom;
+
+/**
+Callback called at state change events with the connection id of the
+client concerned (0, if the event does not concern a client).<br> 
+state: TCPServer.PORT_IN_USE, msg: port, clientId: 0<br> 
+state: TCPServer.CONNECTED, msg: IP address of client<br>
+state: TCPServer.LISTENING, msg: port, clientId: client disconnected 
+(0 when the server starts)<br> 
+state: TCPSever.TERMINATED, msg: empty, clientId: 0<br> 
+state: TCPServer.MESSAGE, msg: message received from client<br>
+*/
+public interface TCPServerClientListener
+{
+  void onStateChanged(String state, String msg, int clientId);
+}
@@ -0,0 +1,220 @@
+// CaptureSource.java
+
+/*
+ This software is part of the JEX (Java Exemplarisch) Utility Library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.util;
+
+import java.io.*;
+import javax.sound.sampled.*;
+
+/**
+ * Interface for the source of the sound data captured by a SoundRecorder.
+ * Besides the sound card (LineSource) an AudioInputStream (StreamSource)
+ * or a sound file (FileSource) may be used, e.g. to test an application
+ * without microphone.
+ * @see ch.aplu.util.SoundRecorder#SoundRecorder(CaptureSource)
+ */
+public interface CaptureSource
+{
+  /**
+   * Returns the audio format of the delivered data.
+   * @return the audio format
+   */
+  public AudioFormat getFormat();
+
+  /**
+   * Prepares the source for reading. Called by the recorder when the
+   * capture starts.
+   * @throws LineUnavailableException if the source cannot be opened
+   */
+  public void open() throws LineUnavailableException;
+
+  /**
+   * Reads sound data (whole frames) into the given buffer. Blocks until
+   * data is available.
+   * @param buf the buffer
+   * @param offset the index of the first byte to store
+   * @param length the maximal number of bytes to store
+   * @return the number of bytes stored; -1 if the source has no more data
+   * @throws IOException if the data cannot be read
+   */
+  public int read(byte[] buf, int offset, int length) throws IOException;
+
+  /**
+   * Releases the source. Called by the recorder when the capture stops.
+   */
+  public void close();
+
+  /**
+   * Capture source for a sound device.
+   */
+  class LineSource implements CaptureSource
+  {
+    private AudioFormat audioFormat;
+    private int mixerIndex;
+    private TargetDataLine targetDataLine = null;
+
+    /**
+     * Creates a source for the given sound device.
+     * @param audioFormat the audio format to record
+     * @param mixerIndex the index of the recording device in
+     * SoundRecorder.getAvailableMixers(); -1 for the default device
+     */
+    public LineSource(AudioFormat audioFormat, int mixerIndex)
+    {
+      this.audioFormat = audioFormat;
+      this.mixerIndex = mixerIndex;
+    }
+
+    public AudioFormat getFormat()
+    {
+      return audioFormat;
+    }
+
+    public void open() throws LineUnavailableException
+    {
+      DataLine.Info dataLineInfo =
+        new DataLine.Info(TargetDataLine.class, audioFormat);
+
+      Mixer.Info[] mixerInfo = AudioSystem.getMixerInfo();
+      int nbMixers = mixerInfo.length;
+      if (mixerIndex < -1 || mixerIndex >= nbMixers)
+        mixerIndex = -1;
+
+      if (mixerIndex != -1)  // Use specified mixer
+      {
+        Mixer mixer = AudioSystem.getMixer(mixerInfo[mixerIndex]);
+        targetDataLine =
+          (TargetDataLine)mixer.getLine(dataLineInfo);
+      }
+      else // Use default mixer
+        targetDataLine =
+          (TargetDataLine)AudioSystem.getLine(dataLineInfo);
+
+      targetDataLine.open(audioFormat);
+      targetDataLine.start();
+    }
+
+    public int read(byte[] buf, int offset, int length)
+    {
+      return targetDataLine.read(buf, offset, length);
+    }
+
+    public void close()
+    {
+      if (targetDataLine == null)
+        return;
+      targetDataLine.stop();
+      targetDataLine.close();
+      targetDataLine = null;
+    }
+
+    /**
+     * Returns the current index of the mixer (sound device).
+     * @return the mixer index; -1 if the default sound device is used
+     */
+    public int getMixerIndex()
+    {
+      return mixerIndex;
+    }
+  }
+
+  /**
+   * Capture source for an AudioInputStream.
+   */
+  class StreamSource implements CaptureSource
+  {
+    private AudioInputStream ais;
+    private boolean isRealtime;
+    private long startTime;
+    private long nbBytes;
+
+    /**
+     * Creates a source that delivers the data of the given stream.
+     * @param ais the audio stream
+     * @param isRealtime if true, the data is delivered with the speed
+     * given by the sample rate like a sound device; otherwise as fast as possible
+     */
+    public StreamSource(AudioInputStream ais, boolean isRealtime)
+    {
+      this.ais = ais;
+      this.isRealtime = isRealtime;
+    }
+
+    public AudioFormat getFormat()
+    {
+      return ais.getFormat();
+    }
+
+    public void open()
+    {
+      startTime = System.nanoTime();
+      nbBytes = 0;
+    }
+
+    public int read(byte[] buf, int offset, int length) throws IOException
+    {
+      AudioFormat format = ais.getFormat();
+      int frameSize = Math.max(1, format.getFrameSize());
+      int nb = ais.read(buf, offset, length - length % frameSize);
+      if (nb > 0 && isRealtime)
+      {
+        nbBytes += nb;
+        // Wait until the data would have been recorded
+        double bytesPerNs = format.getFrameRate() * frameSize / 1E9;
+        long due = startTime + (long)(nbBytes / bytesPerNs);
+        long delay = due - System.nanoTime();
+        if (delay > 0)
+        {
+          try
+          {
+            Thread.sleep(delay / 1000000, (int)(delay % 1000000));
+          }
+          catch (InterruptedException ex)
+          {
+          }
+        }
+      }
+      return nb;
+    }
+
+    public void close()
+    {
+      try
+      {
+        ais.close();
+      }
+      catch (IOException ex)
+      {
+      }
+    }
+  }
+
+  /**
+   * Capture source that replays a sound file (e.g. WAV).
+   */
+  class FileSource extends StreamSource
+  {
+    /**
+     * Creates a source that delivers the data of the given sound file.
+     * @param file the sound file
+     * @param isRealtime if true, the data is delivered with the speed
+     * given by the sample rate like a sound device; otherwise as fast as possible
+     * @throws IOException if the file cannot be read
+     * @throws UnsupportedAudioFileException if the file format is not supported
+     */
+    public FileSource(File file, boolean isRealtime)
+      throws IOException, UnsupportedAudioFileException
+    {
+      super(AudioSystem.getAudioInputStream(file), isRealtime);
+    }
+  }
+}
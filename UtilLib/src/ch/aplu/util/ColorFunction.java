@@ -0,0 +1,29 @@
+// ColorFunction.java
+
+/*
+ This software is part of the JEX (Java Exemplarisch) Utility Library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.util;
+
+import java.awt.Color;
+
+/**
+ * Interface for a function that assigns a color to every point of the
+ * GPanel window (used by GPanel.renderPixels()).
+ * The function is called from several threads in parallel, so
+ * it must not modify shared data.
+ */
+public interface ColorFunction
+{
+  /**
+   * Returns the color of the pixel at the given window coordinates.
+   */
+  public Color getColor(double x, double y);
+}
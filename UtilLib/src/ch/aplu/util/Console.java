@@ -16,6 +16,9 @@ package ch.aplu.util;
 import java.io.*;
 import java.awt.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.awt.event.*;
 import javax.swing.*;
 import java.awt.print.*;
@@ -29,6 +32,11 @@ import javax.swing.JOptionPane;
  * To avoid creating an object, the static factory method init() may be used.<br>
  * Only 7-bit-ASCII characters are supported.<br><br>
  *
+ * Printing only appends the text to a queue, that is emptied into the
+ * window by the EDT in one step, so programs printing in tight loops are
+ * not slowed down by the GUI. The number of lines kept in the window is
+ * limited (see setMaxLines()).<br><br>
+ *
  * All Swing GUI methods are invoked from the Event Dispatch Thread (EDT)
  * if it's not done by the caller.<br><br>
  * 
@@ -86,23 +94,6 @@ public class Console implements Runnable, Printable
     public synchronized void windowClosed(WindowEvent evt)
     {
       _quit = true;
-      notifyAll();     // Take all threads out of wait state
-      try
-      {
-        _reader1.join(1000);
-        _pin1.close();
-      }
-      catch (Exception e)
-      {
-      }
-      try
-      {
-        _reader2.join(1000);
-        _pin2.close();
-      }
-      catch (Exception e)
-      {
-      }
       if (_closingMode == ClosingMode.TerminateOnClose
         || _closingMode == ClosingMode.AskOnClose)
         System.exit(0);
@@ -223,44 +214,32 @@ public class Console implements Runnable, Printable
     // ActionListener for button 'clear'. Called by EDT, so Swing calls allowed
     public synchronized void actionPerformed(ActionEvent evt)
     {
-      _textArea.setText("");
-      setCaretPosition(0);
-      _charCount = 0;
+      clearText();
       _textArea.requestFocus();
     }
   }
 
-  static class InsertThread extends Thread
+  static class ConsoleStream extends OutputStream
   {
-    private String _msg;
-    private int _charCount;
-
-    InsertThread(String msg)
-    {
-      _msg = msg;
-      _charCount = -1;
-    }
-
-    InsertThread(String msg, int charCount)
-    {
-      _msg = msg;
-      _charCount = charCount;
-    }
-
-    public void run()
+    public void write(int b)
     {
-      if (_charCount == -1)
-        _textArea.setText(_msg);
-      else
-        _textArea.insert(_msg, _charCount);
+      write(new byte[]
+      {
+        (byte)b
+      }, 0, 1);
     }
-  }
 
-  static class GetTextThread extends Thread
-  {
-    public void run()
+    public void write(byte[] b, int off, int len)
     {
-      _textAreaText = _textArea.getText();
+      char[] chars = new char[len];
+      int n = 0;
+      for (int i = off; i < off + len; i++)
+      {
+        if ((b[i] >= 32 && b[i] < 127) || b[i] == '\n' || b[i] == '\t' || b[i] == '\b')
+          chars[n++] = (char)b[i];
+      }
+      if (n > 0)
+        append(new String(chars, 0, n));
     }
   }
 
@@ -377,21 +356,22 @@ public class Console implements Runnable, Printable
   private static int _instanceCount = 0;
   private static JFrame _frame;
   private static JTextArea _textArea;
-  private static String _textAreaText;
   private static JScrollPane _scrollPane;
   private static Caret _caret;
   private static int _caretPosition = 0;
-  private static Thread _reader1;
-  private static Thread _reader2;
-  private static boolean _quit;
+  private static volatile boolean _quit;
   private static boolean _gotKey = false;
   private static char _keyChar = KeyEvent.CHAR_UNDEFINED;
   private static int _keyCode = 0;
   private static int _modifiers = 0;
   private static String _modifiersText = "";
-  private static int _charCount = 0;
-  private static PipedInputStream _pin1 = new PipedInputStream();
-  private static PipedInputStream _pin2 = new PipedInputStream();
+  private static ConcurrentLinkedQueue<String> _outQueue =
+    new ConcurrentLinkedQueue<String>();
+  private static AtomicInteger _nbPending = new AtomicInteger();  // Chars in queue
+  private static AtomicBoolean _isDrainScheduled = new AtomicBoolean();
+  private static final int MAX_PENDING = 1 << 22;
+  private static Runnable _drainer;
+  private static volatile int _maxLines = 10000;
   private static double _scale;
   private static boolean _isVisible = true;
   private static boolean _isRedirectToFile = false;
@@ -471,6 +451,10 @@ public class Console implements Runnable, Printable
       _consoleFont = props.getStringValue("ConsoleFont");
       if (_consoleFont != null)
         _consoleFont = _consoleFont.trim();
+
+      Integer maxLines = props.getIntValue("ConsoleMaxLines");
+      if (maxLines != null && maxLines >= 0)
+        _maxLines = maxLines;
     }
 
     // Create all components and add them
@@ -597,8 +581,7 @@ public class Console implements Runnable, Printable
       }
       else
       {
-        PipedOutputStream pout1 = new PipedOutputStream(_pin1);
-        _ps = new PrintStream(pout1, true);
+        _ps = new PrintStream(new ConsoleStream(), true);
       }
       _oldPs1 = new PrintStream(System.out);
       System.setOut(_ps);
@@ -629,8 +612,7 @@ public class Console implements Runnable, Printable
         }
         else
         {
-          PipedOutputStream pout2 = new PipedOutputStream(_pin2);
-          ps = new PrintStream(pout2, true);
+          ps = new PrintStream(new ConsoleStream(), true);
         }
         _oldPs2 = new PrintStream(System.err);
         System.setErr(ps);
@@ -639,29 +621,18 @@ public class Console implements Runnable, Printable
       {
         String msg = "Couldn't redirect STDERR to this console\n"
           + io.getMessage();
-        _textArea.insert(msg, _charCount);
-        _charCount += msg.length();
+        _textArea.append(msg);
       }
       catch (SecurityException se)
       {
         String msg = "Couldn't redirect STDERR to this console\n"
           + se.getMessage();
-        _textArea.insert(msg, _charCount);
-        _charCount += msg.length();
+        _textArea.append(msg);
       }
     }
 
-    _quit = false;    // signals the Threads that they should exit
-
-    // Starting two separate threads to read from the PipedInputStreams
-    // First
-    _reader1 = new Thread(this);
-    _reader1.setDaemon(true);
-    _reader1.start();
-    // Second
-    _reader2 = new Thread(this);
-    _reader2.setDaemon(true);
-    _reader2.start();
+    _quit = false;
+    _drainer = this;
     _frame.setVisible(_isVisible);
   }
 
@@ -909,27 +880,8 @@ public class Console implements Runnable, Printable
 
     _quit = true;
     System.setOut(_oldPs1);
-    try
-    {
-      _console._reader1.join(1000);
-      _console._pin1.close();
-    }
-    catch (Exception e)
-    {
-    }
-
     if (_closingMode != ClosingMode.ReleaseOnClose)
-    {
       System.setErr(_oldPs2);
-      try
-      {
-        _console._reader2.join(1000);
-        _console._pin2.close();
-      }
-      catch (Exception e)
-      {
-      }
-    }
 
     if (EventQueue.isDispatchThread())
       _frame.dispose();
@@ -960,21 +912,23 @@ public class Console implements Runnable, Printable
       return;
 
     if (SwingUtilities.isEventDispatchThread())
-    {
-      _textArea.setText("");
-    }
+      clearText();
     else
     {
       try
       {
-        SwingUtilities.invokeAndWait(new InsertThread("", -1));
+        SwingUtilities.invokeAndWait(new Runnable()
+        {
+          public void run()
+          {
+            clearText();
+          }
+        });
       }
       catch (Exception ex)
       {
       }
     }
-    setCaretPosition(0);
-    _charCount = 0;
     _gotKey = false;
   }
 
@@ -1012,86 +966,109 @@ public class Console implements Runnable, Printable
   /**
    * For internal use only.
    */
-  public synchronized void run()
+  public void run()
   {
-    try
+    // Called by the EDT: insert all queued text in one step
+    _isDrainScheduled.set(false);
+    StringBuilder sb = new StringBuilder();
+    int nbDelete = 0;  // Number of chars to delete at the end of the text
+    String s;
+    while ((s = _outQueue.poll()) != null)
     {
-      while (Thread.currentThread() == _reader1)
+      _nbPending.addAndGet(-s.length());
+      for (int i = 0; i < s.length(); i++)
       {
-        try
-        {
-          wait(100);
-        }
-        catch (InterruptedException ie)
-        {
-        }
-
-        if (_pin1.available() != 0)
-        {
-          String input = pushLine(_pin1);
-          if (input.contains("\b"))
-          {
-            deleteLastChar();
-            continue;
-          }
-
-          try
-          {
-            SwingUtilities.invokeAndWait(new InsertThread(input, _charCount));
-          }
-          catch (Exception ex)
-          {
-          }
-//          _textArea.insert(input, _charCount);
-          _charCount += input.length();
-//          System.err.println(offsetStartOfLine);
-          setCaretPosition(_charCount);  // Not from EDT
-        }
-        if (_quit)
-          return;
+        char ch = s.charAt(i);
+        if (ch != '\b')
+          sb.append(ch);
+        else if (sb.length() > 0)
+          sb.setLength(sb.length() - 1);
+        else
+          nbDelete++;
       }
+    }
+    if (_textArea == null || (sb.length() == 0 && nbDelete == 0))
+      return;
 
-      while (Thread.currentThread() == _reader2)
+    Document doc = _textArea.getDocument();
+    try
+    {
+      if (nbDelete > 0)
       {
-        try
-        {
-          wait(100);
-        }
-        catch (InterruptedException ie)
-        {
-        }
-
-        if (_pin2.available() != 0)
+        int n = Math.min(nbDelete, doc.getLength());
+        doc.remove(doc.getLength() - n, n);
+      }
+      if (_maxLines > 0)
+      {
+        // Skip the lines that would be removed anyway
+        int nbLines = 0;
+        for (int i = sb.length() - 1; i >= 0; i--)
         {
-          String input = pushLine(_pin2);
-          try
+          if (sb.charAt(i) == '\n' && ++nbLines == _maxLines)
           {
-            SwingUtilities.invokeAndWait(new InsertThread(input, _charCount));
+            sb.delete(0, i + 1);
+            doc.remove(0, doc.getLength());
+            break;
           }
-          catch (Exception ex)
-          {
-          }
-//          _textArea.insert(input, _charCount);
-          _charCount += input.length();
-          setCaretPosition(_charCount);
         }
-        if (_quit)
-          return;
       }
-    }
-    catch (Exception e)
-    {
-      String msg = "\nConsole reports an internal error: " + e.getMessage();
-      try
+      doc.insertString(doc.getLength(), sb.toString(), null);
+      if (_maxLines > 0)
       {
-        SwingUtilities.invokeAndWait(new InsertThread(msg, _charCount));
+        Element root = doc.getDefaultRootElement();
+        int nbExcess = root.getElementCount() - _maxLines;
+        if (nbExcess > 0)
+          doc.remove(0, root.getElement(nbExcess - 1).getEndOffset());
       }
-      catch (Exception ex)
-      {
-      }
-//      _textArea.insert(msg, _charCount);
-      _charCount += msg.length();
     }
+    catch (BadLocationException ex)
+    {
+    }
+    setCaretPosition(doc.getLength());
+  }
+
+  // Called by any thread, the text is inserted later by the EDT
+  private static void append(String text)
+  {
+    // Wait if the EDT does not follow to keep the memory bounded
+    while (_nbPending.get() > MAX_PENDING && !_quit
+      && !SwingUtilities.isEventDispatchThread())
+      delay(1);
+    _nbPending.addAndGet(text.length());
+    _outQueue.add(text);
+    if (_drainer != null && _isDrainScheduled.compareAndSet(false, true))
+      EventQueue.invokeLater(_drainer);
+  }
+
+  // Called by the EDT
+  private static void clearText()
+  {
+    String s;
+    while ((s = _outQueue.poll()) != null)
+      _nbPending.addAndGet(-s.length());
+    _textArea.setText("");
+    setCaretPosition(0);
+  }
+
+  /**
+   * Set the maximal number of lines kept in the console window.
+   * When more lines are printed, the oldest lines are removed.
+   * Default: 10000 or value read from aplu_util.properties.
+   * @param maxLines the maximal number of lines; 0 for no limit
+   */
+  public static void setMaxLines(int maxLines)
+  {
+    if (maxLines >= 0)
+      _maxLines = maxLines;
+  }
+
+  /**
+   * Return the maximal number of lines kept in the console window.
+   * @return the maximal number of lines; 0, if there is no limit
+   */
+  public static int getMaxLines()
+  {
+    return _maxLines;
   }
 
   private static void setCaretPosition(int pos)
@@ -1157,26 +1134,6 @@ public class Console implements Runnable, Printable
     }
   }
 
-  private synchronized String pushLine(PipedInputStream pin) throws IOException
-  {
-    String input = "";
-    do
-    {
-      int available = pin.available();
-      if (available == 0)
-        break;
-      byte b[] = new byte[available];
-      pin.read(b);
-      for (int i = 0; i < b.length; i++)
-      {
-        if ((b[i] >= 32 && b[i] < 127) || b[i] == '\n' || b[i] == '\t' || b[i] == '\b')
-          input += (char)b[i];
-      }
-    }
-    while (!input.endsWith("\n") && !input.endsWith("\r\n") && !_quit);
-    return input;
-  }
-
   /**
    * Return true if a key was hit since the last time the one-character buffer
    * was read with getKey() oder getKeyWait(). The one-character buffer
@@ -1306,22 +1263,7 @@ public class Console implements Runnable, Printable
 
     Monitor.putSleep(monitor);
     char ch = getKey();
-    if (SwingUtilities.isEventDispatchThread())
-    {
-      _textArea.insert(Character.toString(ch), _charCount);
-    }
-    else
-    {
-      try
-      {
-        SwingUtilities.invokeAndWait(
-          new InsertThread(Character.toString(ch), _charCount));
-      }
-      catch (Exception ex)
-      {
-      }
-    }
-    _charCount++;
+    append(Character.toString(ch));
     return ch;
   }
 
@@ -1345,25 +1287,7 @@ public class Console implements Runnable, Printable
       {
         if (s.length() > 0)
         {
-          if (SwingUtilities.isEventDispatchThread())
-          {
-            _textAreaText = _textArea.getText();
-            _textArea.setText(_textAreaText.substring(0, _textAreaText.length() - 1));
-          }
-          else
-          {
-            try
-            {
-              SwingUtilities.invokeAndWait(new GetTextThread());  // Return text in _textAreaText
-              SwingUtilities.invokeAndWait(new InsertThread(
-                _textAreaText.substring(0, _textAreaText.length() - 1), -1));
-            }
-            catch (Exception ex)
-            {
-            }
-          }
-          _charCount--;
-          setCaretPosition(_charCount);
+          append("\b");
           s = s.substring(0, s.length() - 1);
         }
       }
@@ -1373,23 +1297,7 @@ public class Console implements Runnable, Printable
           && getLastModifiers() < 2
           && !(getLastModifiers() == 1 && getLastKeyCode() == 16)) // Shift key alone
         {
-          if (SwingUtilities.isEventDispatchThread())
-          {
-            _textArea.insert(Character.toString(ch), _charCount);
-          }
-          else
-          {
-            try
-            {
-              SwingUtilities.invokeAndWait(
-                new InsertThread(Character.toString(ch), _charCount));
-            }
-            catch (Exception ex)
-            {
-            }
-          }
-          _charCount++;
-          setCaretPosition(_charCount);
+          append(Character.toString(ch));
           if (ch != '\n')
             s = s + Character.toString(ch);
         }
@@ -2100,23 +2008,7 @@ public class Console implements Runnable, Printable
     if (_instanceCount == 0)
       return;
 
-    _charCount -= 1;
-    String text = _textArea.getText().substring(0, _charCount);
-    if (SwingUtilities.isEventDispatchThread())
-    {
-      _textArea.setText(_textArea.getText().substring(0, _charCount));
-    }
-    else
-    {
-      try
-      {
-        SwingUtilities.invokeAndWait(new InsertThread(text));
-      }
-      catch (Exception ex)
-      {
-      }
-    }
-    setCaretPosition(_charCount);
+    append("\b");
   }
 
   /**
@@ -2162,21 +2054,20 @@ public class Console implements Runnable, Printable
     _instanceCount = 0;
     _frame = null;
     _textArea = null;
-    _textAreaText = null;
     _scrollPane = null;
     _caret = null;
     _caretPosition = 0;
-    _reader1 = null;
-    _reader2 = null;
     _quit = false;
     _gotKey = false;
     _keyChar = KeyEvent.CHAR_UNDEFINED;
     _keyCode = 0;
     _modifiers = 0;
     _modifiersText = "";
-    _charCount = 0;
-    _pin1 = new PipedInputStream();
-    _pin2 = new PipedInputStream();
+    _outQueue.clear();
+    _nbPending.set(0);
+    _isDrainScheduled.set(false);
+    _drainer = null;
+    _maxLines = 10000;
     _scale = 1;
     _isVisible = true;
     _isRedirectToFile = false;
@@ -0,0 +1,79 @@
+// Envelope.java
+
+/*
+ This software is part of the JEX (Java Exemplarisch) Utility Library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.util;
+
+/**
+ * ADSR envelope (attack, decay, sustain, release) to shape the volume
+ * of a tone played by FunctionPlayer. The level rises linearly from 0 to 1
+ * during the attack time, falls linearly to the sustain level during the
+ * decay time and falls linearly to 0 during the release time at the end
+ * of the tone.
+ * @see ch.aplu.util.FunctionPlayer#setEnvelope(Envelope)
+ */
+public class Envelope
+{
+  private final double attack;
+  private final double decay;
+  private final double sustain;
+  private final double release;
+
+  /**
+   * Creates an envelope with given times (in seconds) and sustain level (0..1).
+   * @param attack the time to reach the full level
+   * @param decay the time to fall from the full level to the sustain level
+   * @param sustain the level after the decay time
+   * @param release the time to fall to zero at the end of the tone
+   */
+  public Envelope(double attack, double decay, double sustain, double release)
+  {
+    if (attack < 0 || decay < 0 || release < 0 || sustain < 0 || sustain > 1)
+      throw new IllegalArgumentException("Illegal envelope parameter");
+    this.attack = attack;
+    this.decay = decay;
+    this.sustain = sustain;
+    this.release = release;
+  }
+
+  /**
+   * Returns the level at given time for a tone of given duration.
+   * @param t the time since the start of the tone (in seconds)
+   * @param duration the duration of the tone (in seconds)
+   * @return the level (0..1)
+   */
+  public double getLevel(double t, double duration)
+  {
+    if (t < 0 || t >= duration)
+      return 0;
+    double level;
+    if (t < attack)
+      level = t / attack;
+    else if (t < attack + decay)
+      level = 1 - (1 - sustain) * (t - attack) / decay;
+    else
+      level = sustain;
+    double remaining = duration - t;
+    if (remaining < release)
+      level = Math.min(level, level * remaining / release);
+    return level;
+  }
+
+  /**
+   * Returns class information.
+   * @return information
+   */
+  public String toString()
+  {
+    return "Envelope(" + attack + ", " + decay + ", " + sustain + ", "
+      + release + ")";
+  }
+}
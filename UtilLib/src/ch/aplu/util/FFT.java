@@ -0,0 +1,428 @@
+// FFT.java
+
+/*
+ This software is part of the JEX (Java Exemplarisch) Utility Library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.util;
+
+/**
+ * Fast Fourier Transform of complex or real data in primitive arrays.
+ * The transform is done in place. Sizes that are a power of 2 are transformed
+ * with a radix-2 algorithm, all other sizes with the Bluestein algorithm
+ * (convolution of power-of-2 size), so every size is O(n log n).
+ * All tables are computed in the constructor, so create one instance per size
+ * and reuse it. An instance must not be used by several threads at the same time.<br><br>
+ * The static methods magnitude(), magnitudeDb() and filter() are
+ * shortcuts for common tasks with sound samples.
+ */
+public class FFT
+{
+  private final int n;
+  private final int m;  // Size of the radix-2 transform
+  private final double[] cos;
+  private final double[] sin;
+  private final int[] rev;
+  // Bluestein
+  private double[] chirpRe;
+  private double[] chirpIm;
+  private double[] bRe;
+  private double[] bIm;
+  private double[] workRe;
+  private double[] workIm;
+  // Real transform
+  private FFT half;
+  private double[] halfRe;
+  private double[] halfIm;
+  private double[] realCos;
+  private double[] realSin;
+
+  /**
+   * Create a transform for n complex or n real values (n > 0).
+   */
+  public FFT(int n)
+  {
+    if (n < 1)
+      throw new IllegalArgumentException("FFT size must be > 0");
+    this.n = n;
+    if (isPowerOf2(n))
+      m = n;
+    else
+    {
+      int size = 1;
+      while (size < 2 * n - 1)
+        size <<= 1;
+      m = size;
+    }
+    cos = new double[m / 2];
+    sin = new double[m / 2];
+    for (int k = 0; k < m / 2; k++)
+    {
+      cos[k] = Math.cos(2 * Math.PI * k / m);
+      sin[k] = Math.sin(2 * Math.PI * k / m);
+    }
+    rev = new int[m];
+    int bits = Integer.numberOfTrailingZeros(m);
+    for (int i = 0; i < m; i++)
+      rev[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+    if (m != n)
+      initBluestein();
+  }
+
+  /**
+   * Return the size of the transform.
+   */
+  public int getSize()
+  {
+    return n;
+  }
+
+  /**
+   * Forward transform of the complex values (re[k], im[k]), k = 0..n-1
+   * (not normalized).
+   */
+  public void transform(double[] re, double[] im)
+  {
+    if (m == n)
+      radix2(re, im, false);
+    else
+      bluestein(re, im);
+  }
+
+  /**
+   * Inverse transform of the complex values (re[k], im[k]), k = 0..n-1,
+   * normalized by 1/n, so inverse(transform(x)) = x.
+   */
+  public void inverse(double[] re, double[] im)
+  {
+    if (m == n)
+      radix2(re, im, true);
+    else
+    {
+      // inverse(x) = conj(transform(conj(x)))
+      for (int k = 0; k < n; k++)
+        im[k] = -im[k];
+      bluestein(re, im);
+      for (int k = 0; k < n; k++)
+        im[k] = -im[k];
+    }
+    for (int k = 0; k < n; k++)
+    {
+      re[k] /= n;
+      im[k] /= n;
+    }
+  }
+
+  /**
+   * Forward transform of n real values (n must be even).
+   * The result replaces the data in packed form:
+   * data[0] = Re[0], data[1] = Re[n/2],
+   * data[2k] = Re[k], data[2k+1] = Im[k] for 0 < k < n/2
+   * (the same layout as JTransforms realForward()).
+   */
+  public void realForward(double[] data)
+  {
+    checkEven();
+    int h = n / 2;
+    for (int k = 0; k < h; k++)
+    {
+      halfRe[k] = data[2 * k];
+      halfIm[k] = data[2 * k + 1];
+    }
+    half.transform(halfRe, halfIm);
+    data[0] = halfRe[0] + halfIm[0];
+    data[1] = halfRe[0] - halfIm[0];
+    for (int k = 1; k < h; k++)
+    {
+      double a = halfRe[k];
+      double b = halfIm[k];
+      double c = halfRe[h - k];
+      double d = halfIm[h - k];
+      double er = (a + c) / 2;
+      double ei = (b - d) / 2;
+      double or = (b + d) / 2;
+      double oi = (c - a) / 2;
+      data[2 * k] = er + realCos[k] * or + realSin[k] * oi;
+      data[2 * k + 1] = ei + realCos[k] * oi - realSin[k] * or;
+    }
+  }
+
+  /**
+   * Inverse of realForward(), normalized by 1/n.
+   */
+  public void realInverse(double[] data)
+  {
+    checkEven();
+    int h = n / 2;
+    halfRe[0] = (data[0] + data[1]) / 2;
+    halfIm[0] = (data[0] - data[1]) / 2;
+    for (int k = 1; k < h; k++)
+    {
+      double xr = data[2 * k];
+      double xi = data[2 * k + 1];
+      double yr = data[2 * (h - k)];
+      double yi = -data[2 * (h - k) + 1];  // conj X[h-k]
+      double er = (xr + yr) / 2;
+      double ei = (xi + yi) / 2;
+      double dr = (xr - yr) / 2;
+      double di = (xi - yi) / 2;
+      // O = d * e^(2 pi i k / n)
+      double or = dr * realCos[k] - di * realSin[k];
+      double oi = dr * realSin[k] + di * realCos[k];
+      halfRe[k] = er - oi;
+      halfIm[k] = ei + or;
+    }
+    half.inverse(halfRe, halfIm);
+    for (int k = 0; k < h; k++)
+    {
+      data[2 * k] = halfRe[k];
+      data[2 * k + 1] = halfIm[k];
+    }
+  }
+
+  /**
+   * Return the magnitudes of the first n/2 frequencies of the
+   * first n samples, normalized to a maximum of 1.
+   * The frequency of index k is k * sampleRate / n.
+   * If there are less than n samples, zeros are appended.
+   */
+  public static double[] magnitude(double[] samples, int n)
+  {
+    double[] u = spectrum(samples, n);
+    double max = 0;
+    for (int k = 0; k < u.length; k++)
+      max = Math.max(max, u[k]);
+    if (max > 0)
+    {
+      for (int k = 0; k < u.length; k++)
+        u[k] /= max;
+    }
+    return u;
+  }
+
+  /**
+   * Same as magnitude(double[], int) for integer sound samples.
+   */
+  public static double[] magnitude(int[] samples, int n)
+  {
+    return magnitude(toDouble(samples), n);
+  }
+
+  /**
+   * Same as magnitude(), but the magnitudes are returned
+   * in decibel relative to the maximum (0 dB).
+   */
+  public static double[] magnitudeDb(double[] samples, int n)
+  {
+    double[] u = magnitude(samples, n);
+    for (int k = 0; k < u.length; k++)
+      u[k] = 20 * Math.log10(u[k]);
+    return u;
+  }
+
+  /**
+   * Same as magnitudeDb(double[], int) for integer sound samples.
+   */
+  public static double[] magnitudeDb(int[] samples, int n)
+  {
+    return magnitudeDb(toDouble(samples), n);
+  }
+
+  /**
+   * Filter the equidistant data in place by removing frequencies
+   * in the Fourier domain. If isLowpass is true, the frequency indices
+   * from cutoff on are removed, otherwise all indices below cutoff.
+   * (The frequency of index k is k * sampleRate / data.length.)
+   */
+  public static void filter(double[] data, int cutoff, boolean isLowpass)
+  {
+    int n = data.length;
+    if (n == 0)
+      return;
+    cutoff = Math.max(0, Math.min(cutoff, n / 2));
+    FFT fft = new FFT(n);
+    double[] re = data.clone();
+    double[] im = new double[n];
+    fft.transform(re, im);
+    for (int k = 0; k <= n / 2; k++)
+    {
+      boolean remove = isLowpass ? k >= cutoff : k < cutoff;
+      if (remove)
+      {
+        re[k] = 0;
+        im[k] = 0;
+        if (k > 0)
+        {
+          re[n - k] = 0;
+          im[n - k] = 0;
+        }
+      }
+    }
+    fft.inverse(re, im);
+    System.arraycopy(re, 0, data, 0, n);
+  }
+
+  /**
+   * Return a copy of the integer samples as double values.
+   */
+  public static double[] toDouble(int[] samples)
+  {
+    double[] data = new double[samples.length];
+    for (int i = 0; i < samples.length; i++)
+      data[i] = samples[i];
+    return data;
+  }
+
+  // Magnitudes of the first n/2 frequencies
+  private static double[] spectrum(double[] samples, int n)
+  {
+    double[] u = new double[n / 2];
+    int nb = Math.min(n, samples.length);
+    FFT fft = new FFT(n);
+    if (n % 2 == 0)
+    {
+      double[] data = new double[n];
+      System.arraycopy(samples, 0, data, 0, nb);
+      fft.realForward(data);
+      if (u.length > 0)
+        u[0] = Math.abs(data[0]);
+      for (int k = 1; k < u.length; k++)
+        u[k] = Math.sqrt(data[2 * k] * data[2 * k]
+          + data[2 * k + 1] * data[2 * k + 1]);
+    }
+    else
+    {
+      double[] re = new double[n];
+      double[] im = new double[n];
+      System.arraycopy(samples, 0, re, 0, nb);
+      fft.transform(re, im);
+      for (int k = 0; k < u.length; k++)
+        u[k] = Math.sqrt(re[k] * re[k] + im[k] * im[k]);
+    }
+    return u;
+  }
+
+  private void checkEven()
+  {
+    if (n % 2 != 0)
+      throw new IllegalArgumentException("Real FFT size must be even");
+    if (half == null)
+    {
+      int h = n / 2;
+      half = new FFT(h);
+      halfRe = new double[h];
+      halfIm = new double[h];
+      realCos = new double[h];
+      realSin = new double[h];
+      for (int k = 0; k < h; k++)
+      {
+        realCos[k] = Math.cos(2 * Math.PI * k / n);
+        realSin[k] = Math.sin(2 * Math.PI * k / n);
+      }
+    }
+  }
+
+  private void radix2(double[] re, double[] im, boolean inverse)
+  {
+    for (int i = 0; i < m; i++)
+    {
+      int j = rev[i];
+      if (j > i)
+      {
+        double t = re[i];
+        re[i] = re[j];
+        re[j] = t;
+        t = im[i];
+        im[i] = im[j];
+        im[j] = t;
+      }
+    }
+    for (int size = 2; size <= m; size <<= 1)
+    {
+      int h = size >> 1;
+      int step = m / size;
+      for (int start = 0; start < m; start += size)
+      {
+        for (int k = 0; k < h; k++)
+        {
+          double c = cos[k * step];
+          double s = inverse ? sin[k * step] : -sin[k * step];
+          int i = start + k;
+          int j = i + h;
+          double tr = re[j] * c - im[j] * s;
+          double ti = re[j] * s + im[j] * c;
+          re[j] = re[i] - tr;
+          im[j] = im[i] - ti;
+          re[i] += tr;
+          im[i] += ti;
+        }
+      }
+    }
+  }
+
+  private void initBluestein()
+  {
+    chirpRe = new double[n];
+    chirpIm = new double[n];
+    for (int k = 0; k < n; k++)
+    {
+      // k * k mod 2n avoids loss of precision for large k
+      double angle = Math.PI * ((long)k * k % (2L * n)) / n;
+      chirpRe[k] = Math.cos(angle);
+      chirpIm[k] = -Math.sin(angle);
+    }
+    bRe = new double[m];
+    bIm = new double[m];
+    bRe[0] = chirpRe[0];
+    bIm[0] = -chirpIm[0];
+    for (int k = 1; k < n; k++)
+    {
+      bRe[k] = bRe[m - k] = chirpRe[k];
+      bIm[k] = bIm[m - k] = -chirpIm[k];
+    }
+    radix2(bRe, bIm, false);
+    workRe = new double[m];
+    workIm = new double[m];
+  }
+
+  private void bluestein(double[] re, double[] im)
+  {
+    for (int k = 0; k < n; k++)
+    {
+      workRe[k] = re[k] * chirpRe[k] - im[k] * chirpIm[k];
+      workIm[k] = re[k] * chirpIm[k] + im[k] * chirpRe[k];
+    }
+    for (int k = n; k < m; k++)
+    {
+      workRe[k] = 0;
+      workIm[k] = 0;
+    }
+    radix2(workRe, workIm, false);
+    for (int k = 0; k < m; k++)
+    {
+      double r = workRe[k] * bRe[k] - workIm[k] * bIm[k];
+      double i = workRe[k] * bIm[k] + workIm[k] * bRe[k];
+      workRe[k] = r;
+      workIm[k] = i;
+    }
+    radix2(workRe, workIm, true);
+    for (int k = 0; k < n; k++)
+    {
+      double r = workRe[k] / m;
+      double i = workIm[k] / m;
+      re[k] = r * chirpRe[k] - i * chirpIm[k];
+      im[k] = r * chirpIm[k] + i * chirpRe[k];
+    }
+  }
+
+  private static boolean isPowerOf2(int n)
+  {
+    return (n & (n - 1)) == 0;
+  }
+}
@@ -0,0 +1,91 @@
+// FilePathBenchmark.java
+
+/*
+ This software is part of the JEX (Java Exemplarisch) Utility Library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.util;
+
+import java.io.*;
+import java.util.Random;
+
+// Benchmark of the FilePath tree operations with many small files.
+// Creates a tree with nbFiles files of about size bytes in nbDirs
+// subdirectories in a temporary directory, runs copyTree(), zip(), unzip(),
+// pack() and unpack() and checks the number of files of the results.
+// Usage: java -cp aplu5.jar ch.aplu.util.FilePathBenchmark [nbFiles] [size] [nbDirs]
+class FilePathBenchmark // not public
+{
+  public static void main(String[] args) throws Exception
+  {
+    int nbFiles = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+    int size = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+    int nbDirs = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+    File root = File.createTempFile("filepath", "");
+    root.delete();
+    File src = new File(root, "src");
+    Random random = new Random(1);
+    byte[] data = new byte[size];
+    for (int i = 0; i < nbFiles; i++)
+    {
+      File dir = new File(src, "dir" + i % nbDirs);
+      dir.mkdirs();
+      // Half random (incompressible), half text like data
+      for (int k = 0; k < size; k++)
+        data[k] = k < size / 2 ? (byte)random.nextInt() : (byte)('a' + k % 7);
+      FileOutputStream fos = new FileOutputStream(new File(dir, "file" + i + ".dat"));
+      fos.write(data, 0, size - i % 100);
+      fos.close();
+    }
+    System.out.println(nbFiles + " files of about " + size + " bytes in "
+      + nbDirs + " directories");
+
+    long startTime = System.nanoTime();
+    boolean rc = FilePath.copyTree(src, new File(root, "copy"));
+    report("copyTree()", startTime, rc, countFiles(new File(root, "copy")), nbFiles);
+
+    startTime = System.nanoTime();
+    rc = FilePath.zip(new File(root, "test.zip"), src);
+    report("zip()", startTime, rc, nbFiles, nbFiles);
+
+    startTime = System.nanoTime();
+    rc = FilePath.unzip(new File(root, "test.zip"), new File(root, "unzip"));
+    report("unzip()", startTime, rc, countFiles(new File(root, "unzip")), nbFiles);
+
+    startTime = System.nanoTime();
+    rc = FilePath.pack(new File(root, "test.jar"), src);
+    report("pack()", startTime, rc, nbFiles, nbFiles);
+
+    startTime = System.nanoTime();
+    rc = FilePath.unpack(new File(root, "test.jar"), new File(root, "unpack"));
+    report("unpack()", startTime, rc, countFiles(new File(root, "unpack")), nbFiles);
+
+    FilePath.removeDir(root);
+  }
+
+  private static void report(String operation, long startTime, boolean rc,
+    int nbFound, int nbExpected)
+  {
+    double time = (System.nanoTime() - startTime) / 1E6;
+    System.out.println(String.format("%-12s %8.1f ms  %s", operation, time,
+      rc && nbFound == nbExpected ? "ok" : "FAILED"));
+  }
+
+  private static int countFiles(File dir)
+  {
+    int nb = 0;
+    File[] files = dir.listFiles();
+    if (files == null)
+      return 0;
+    for (File file : files)
+      nb += file.isDirectory() ? countFiles(file) : 1;
+    return nb;
+  }
+}
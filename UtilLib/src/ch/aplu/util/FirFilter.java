@@ -0,0 +1,132 @@
+// FirFilter.java
+
+/*
+ This software is part of the JEX (Java Exemplarisch) Utility Library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.util;
+
+/**
+ * Finite impulse response (FIR) filter.
+ * The filter keeps the last samples, so a stream of samples can be
+ * filtered block by block. The static methods lowpass(), highpass()
+ * and bandpass() design the coefficients with a windowed sinc function.
+ */
+public class FirFilter
+{
+  private final double[] coeffs;
+  private final double[] delay;  // Samples stored twice, no modulo needed
+  private int pos = 0;
+
+  /**
+   * Create a filter with the given coefficients (impulse response).
+   */
+  public FirFilter(double[] coefficients)
+  {
+    if (coefficients.length == 0)
+      throw new IllegalArgumentException("No filter coefficients");
+    coeffs = coefficients.clone();
+    delay = new double[2 * coeffs.length];
+  }
+
+  /**
+   * Filter a single sample and return the filtered value.
+   */
+  public double process(double x)
+  {
+    int n = coeffs.length;
+    pos = (pos == 0 ? n : pos) - 1;
+    delay[pos] = x;
+    delay[pos + n] = x;
+    // delay[pos + k] is the sample k steps ago
+    double y = 0;
+    for (int k = 0; k < n; k++)
+      y += coeffs[k] * delay[pos + k];
+    return y;
+  }
+
+  /**
+   * Filter the samples in place.
+   */
+  public void process(double[] data)
+  {
+    for (int i = 0; i < data.length; i++)
+      data[i] = process(data[i]);
+  }
+
+  /**
+   * Clear the stored samples.
+   */
+  public void reset()
+  {
+    for (int i = 0; i < delay.length; i++)
+      delay[i] = 0;
+    pos = 0;
+  }
+
+  /**
+   * Return the coefficients of a lowpass filter with the given cutoff
+   * frequency. nbTaps should be odd, more taps give a steeper filter.
+   */
+  public static double[] lowpass(int nbTaps, double cutoff, double sampleRate)
+  {
+    double fc = cutoff / sampleRate;
+    double[] h = new double[nbTaps];
+    double[] w = Windowing.hamming(nbTaps);
+    double mid = (nbTaps - 1) / 2.0;
+    double sum = 0;
+    for (int i = 0; i < nbTaps; i++)
+    {
+      h[i] = 2 * fc * sinc(2 * fc * (i - mid)) * w[i];
+      sum += h[i];
+    }
+    for (int i = 0; i < nbTaps; i++)  // Unity gain at 0 Hz
+      h[i] /= sum;
+    return h;
+  }
+
+  /**
+   * Return the coefficients of a highpass filter with the given cutoff
+   * frequency. nbTaps must be odd.
+   */
+  public static double[] highpass(int nbTaps, double cutoff, double sampleRate)
+  {
+    if (nbTaps % 2 == 0)
+      throw new IllegalArgumentException("Number of taps must be odd");
+    double[] h = lowpass(nbTaps, cutoff, sampleRate);
+    for (int i = 0; i < nbTaps; i++)
+      h[i] = -h[i];
+    h[nbTaps / 2] += 1;
+    return h;
+  }
+
+  /**
+   * Return the coefficients of a bandpass filter passing the frequencies
+   * between low and high. nbTaps must be odd.
+   */
+  public static double[] bandpass(int nbTaps, double low, double high,
+    double sampleRate)
+  {
+    if (nbTaps % 2 == 0)
+      throw new IllegalArgumentException("Number of taps must be odd");
+    double[] hLow = lowpass(nbTaps, low, sampleRate);
+    double[] hHigh = lowpass(nbTaps, high, sampleRate);
+    double[] h = new double[nbTaps];
+    for (int i = 0; i < nbTaps; i++)
+      h[i] = hHigh[i] - hLow[i];
+    return h;
+  }
+
+  static double sinc(double x)
+  {
+    if (x == 0)
+      return 1;
+    return Math.sin(Math.PI * x) / (Math.PI * x);
+  }
+}
@@ -38,12 +38,22 @@ import java.io.*;
  <font color="#000000">}</font></code><br><br>
  * To check what you have done, you may display the function using Waveform.WavePlot.
  * Waveform also contains some predefined waveforms like sine, square, sawtooth,
- * triangle, etc.
+ * triangle, etc.<br><br>
+ * The predefined periodic waveforms are generated from band limited tables,
+ * so that high frequencies are not distorted by aliasing. The sound data
+ * is generated block by block when needed: play() streams a tone or a
+ * chord of any duration into the sound device using little memory.
+ * An Envelope may be set to shape the volume of the tones.
  * @see ch.aplu.util.Waveform
+ * @see ch.aplu.util.Envelope
  */
 public class FunctionPlayer extends ClipPlayer
 {
-  private ByteArrayOutputStream data = null;
+  private Waveform wf = null;
+  private double duration;
+  private double[] frequencies;
+  private Envelope envelope = null;
+  private volatile Thread streamThread = null;
 
   /**
    * Creates a FunctionPlayer with given audio format. There are simple predefined
@@ -65,6 +75,15 @@ public class FunctionPlayer extends ClipPlayer
     super(AudioFormats.dvd_mono);
   }
 
+  /**
+   * Sets the envelope used for the tones loaded or played afterwards.
+   * @param envelope the envelope to use; null to play with constant volume (default)
+   */
+  public void setEnvelope(Envelope envelope)
+  {
+    this.envelope = envelope;
+  }
+
   /**
    * Loads the audio data using the function from given Waveform. The clip will
    * be played during the given duration with given frequency and amplitude. To
@@ -75,93 +94,136 @@ public class FunctionPlayer extends ClipPlayer
    * @param frequency the frequency in Hertz
    */
   public void load(Waveform wf, double duration, double frequency)
+  {
+    load(wf, duration, new double[]{frequency});
+  }
+
+  /**
+   * Loads the audio data of a chord: the tones with given frequencies are
+   * played at the same time, each with 1 / (number of tones) of the amplitude.
+   * @param wf the Waveform that defines the function to play
+   * @param duration the time in seconds the clip is played
+   * @param frequencies the frequencies of the tones in Hertz
+   */
+  public void load(Waveform wf, double duration, double[] frequencies)
   {
     if (clip != null)
     {
       stop();
+      clip.close();
       clip = null;
     }
+    this.wf = wf;
+    this.duration = duration;
+    this.frequencies = frequencies.clone();
+    audioInputStream = createStream();
+  }
+
+  /**
+   * Plays a tone with given waveform, duration and frequency. The sound data
+   * is generated while playing, so the memory used does not depend on the
+   * duration. Any tone played by this player is stopped.
+   * @param wf the Waveform that defines the function to play
+   * @param duration the time in seconds the tone is played
+   * @param frequency the frequency in Hertz
+   * @param blocking if true, the method blocks until the tone is finished
+   * @return true, if successful; otherwise false (sound card errors)
+   */
+  public boolean play(Waveform wf, double duration, double frequency,
+    boolean blocking)
+  {
+    return play(wf, duration, new double[]{frequency}, blocking);
+  }
 
-    data = new ByteArrayOutputStream();
-    float sampleRate = audioFormat.getSampleRate();
-    int nbFrames = (int)(duration * sampleRate);
-    double amplitude;
-    if (audioFormat.getSampleSizeInBits() == 8)
-      amplitude = 127.0;
-    else
-      amplitude = 32767.0;
-    double t = 0;
-    double dt = 1.0 / sampleRate;
-    int soundData;
-
-    for (int i = 0; i < nbFrames; i++)
+  /**
+   * Same as play(Waveform, double, double, boolean) for a chord:
+   * the tones with given frequencies are played at the same time,
+   * each with 1 / (number of tones) of the amplitude.
+   * @param wf the Waveform that defines the function to play
+   * @param duration the time in seconds the chord is played
+   * @param frequencies the frequencies of the tones in Hertz
+   * @param blocking if true, the method blocks until the chord is finished
+   * @return true, if successful; otherwise false (sound card errors)
+   */
+  public boolean play(Waveform wf, double duration, double[] frequencies,
+    boolean blocking)
+  {
+    stopStream();
+    final SynthStream stream =
+      new SynthStream(audioFormat, wf, duration, frequencies, envelope);
+    final SourceDataLine line;
+    try
     {
-      soundData = (int)(amplitude * wf.f(t, frequency));
-      if (!audioFormat.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED))
+      line = AudioSystem.getSourceDataLine(audioFormat);
+      line.open(audioFormat);
+    }
+    catch (Exception ex)
+    {
+      return false;
+    }
+    line.start();
+    streamThread = new Thread()
+    {
+      public void run()
       {
-        if (audioFormat.getSampleSizeInBits() == 8)
-          soundData += 127;
+        // Write 1/20 s per block, the line blocks while it is full
+        int frameSize = audioFormat.getFrameSize();
+        byte[] buf =
+          new byte[Math.max(1, (int)(audioFormat.getSampleRate() / 20)) * frameSize];
+        try
+        {
+          int nb;
+          while (streamThread == this && (nb = stream.read(buf, 0, buf.length)) != -1)
+            line.write(buf, 0, nb);
+        }
+        catch (IOException ex)
+        {
+        }
+        if (streamThread == this)
+          line.drain();
         else
-          soundData += 32767;
+          line.flush();
+        line.close();
       }
-      t += dt;
-      byte low = (byte)(soundData & 0xFF);
-      byte high = (byte)((soundData >> 8) & 0xFF);
-      if (audioFormat.isBigEndian())
+    };
+    streamThread.start();
+    if (blocking)
+    {
+      try
       {
-        if (audioFormat.getSampleSizeInBits() == 16)
-          data.write(high);
-        data.write(low);
-        if (audioFormat.getChannels() == 2)
-        {
-          if (audioFormat.getSampleSizeInBits() == 16)
-            data.write(high);
-          data.write(low);
-        }
+        streamThread.join();
       }
-      else
+      catch (InterruptedException ex)
       {
-        data.write(low);
-        if (audioFormat.getSampleSizeInBits() == 16)
-          data.write(high);
-        if (audioFormat.getChannels() == 2)
-        {
-          data.write(low);
-          if (audioFormat.getSampleSizeInBits() == 16)
-            data.write(high);
-        }
       }
     }
+    return true;
+  }
 
-    InputStream is =
-      new ByteArrayInputStream(data.toByteArray());
-    audioInputStream =
-      new AudioInputStream(is, audioFormat,
-      data.size()
-      / audioFormat.getFrameSize());
+  /**
+   * Stops playing the sound clip and any tone started with play().
+   */
+  public void stop()
+  {
+    super.stop();
+    stopStream();
   }
 
   /**
    * Save the loaded sound data to the given WAV file using the current
-   * audio format.
+   * audio format. The data is generated while writing, so the memory
+   * used does not depend on the duration.
    * @param file the WAV file to be created. If it already exists, it is overwritten.
    * @return true, if successful; otherwise false
    */
   public boolean save(File file)
   {
-    if (data == null)
+    if (wf == null)
       return false;
 
-    byte[] audioData = data.toByteArray();
-    InputStream byteArrayInputStream =
-      new ByteArrayInputStream(audioData);
-    AudioInputStream audioInputStream =
-      new AudioInputStream(byteArrayInputStream, audioFormat,
-      audioData.length
-      / audioFormat.getFrameSize());
     try
     {
-      AudioSystem.write(audioInputStream,
+      AudioSystem.write(createStream(),
         AudioFileFormat.Type.WAVE, file);
     }
     catch (IOException ex)
@@ -171,4 +233,26 @@ public class FunctionPlayer extends ClipPlayer
     return true;
   }
 
+  private AudioInputStream createStream()
+  {
+    SynthStream stream =
+      new SynthStream(audioFormat, wf, duration, frequencies, envelope);
+    return new AudioInputStream(stream, audioFormat, stream.getFrameLength());
+  }
+
+  private void stopStream()
+  {
+    Thread t = streamThread;
+    if (t == null)
+      return;
+    streamThread = null;
+    try
+    {
+      t.join();
+    }
+    catch (InterruptedException ex)
+    {
+    }
+  }
+
 }
@@ -1124,6 +1124,66 @@ public class GPane extends JPanel implements FocusListener, Printable
     _wnd.drawPolygon(corner, true);
   }
 
+  /**
+   * Draw a polyline through the given points in window coordinates
+   * using the current color and line width (e.g. a measurement series).
+   * (Both arrays must be of equal size.)
+   * The whole polyline is drawn with one stroke setup and one repaint.
+   * If the x-values are monotone and there are more points than pixel columns, 
+   * only the first, minimum, maximum and last point of each column is drawn, 
+   * so the drawing time is bounded by the window width.
+   * The graph position is set to the last point.
+   */
+  public void polyline(double[] x, double[] y)
+  {
+    if (waitForReady())
+      return;
+    _wnd.drawPolyline(x, y, Math.min(x.length, y.length));
+  }
+
+  /**
+   * Draw a single point at each of the given window coordinates
+   * using the current color and line width.
+   * (Both arrays must be of equal size.)
+   * Each pixel is drawn only once and the window is repainted once,
+   * so the drawing time is bounded by the window size.
+   * The graph position is set to the last point.
+   */
+  public void scatter(double[] x, double[] y)
+  {
+    if (waitForReady())
+      return;
+    _wnd.drawScatter(x, y, Math.min(x.length, y.length));
+  }
+
+  /**
+   * Set the color of every pixel of the window to the color returned by
+   * the given function of the window coordinates (e.g. a Mandelbrot set).
+   * The window is divided into tiles that are calculated in parallel on all
+   * processor cores and shown as soon as they are finished.
+   * Returns when all pixels are set.
+   */
+  public void renderPixels(ColorFunction f)
+  {
+    if (waitForReady())
+      return;
+    _wnd.renderPixels(f);
+  }
+
+  /**
+   * Same as renderPixels(ColorFunction), but the function returns a value
+   * that is converted to a color using the given colormap: min is mapped to
+   * colormap[0], max to the last color and values in between linearly
+   * to the nearest color (values outside the range are clamped).
+   */
+  public void renderPixels(PixelFunction f, double min, double max,
+    Color[] colormap)
+  {
+    if (waitForReady())
+      return;
+    _wnd.renderPixels(f, min, max, colormap);
+  }
+
   /**
    * Draw a quadratic bezier curve.
    * A quadratic bezier curve is a Bezier curve of degree 2 and 
@@ -1734,6 +1794,116 @@ public class GPane extends JPanel implements FocusListener, Printable
     _wnd.clearStore(color);
   }
 
+  /**
+   * Start a new animation frame. All following drawings go into a
+   * (hardware accelerated) back buffer that is initialized with the frame
+   * background (see storeFrameBackground()) or the background color.
+   * Nothing is shown until endFrame() is called. This replaces the
+   * sequence enableRepaint(false), clear(), ..., repaint(), delay().
+   */
+  public void beginFrame()
+  {
+    if (waitForReady())
+      return;
+    _wnd.beginFrame();
+  }
+
+  /**
+   * End the current frame and show it on the screen. If a frame rate is
+   * set (see setFrameRate()), wait until the time of the next frame.
+   * The frame times are fixed in advance, so the frame rate does not
+   * drift when drawing takes a variable amount of time.
+   * Return the number of frames dropped because the frame ended too late
+   * (0, if the frame is on time).
+   */
+  public int endFrame()
+  {
+    if (waitForReady())
+      return 0;
+    return _wnd.endFrame();
+  }
+
+  /**
+   * Set the frame rate used by endFrame() (in frames per second).
+   * If fps is 0 (default), endFrame() shows the frame immediately.
+   */
+  public void setFrameRate(double fps)
+  {
+    if (waitForReady())
+      return;
+    _wnd.setFrameRate(fps);
+  }
+
+  /**
+   * Return the total number of frames dropped by endFrame().
+   */
+  public int getNbDroppedFrames()
+  {
+    if (waitForReady())
+      return 0;
+    return _wnd.getNbDroppedFrames();
+  }
+
+  /**
+   * Copy the current graphics to the frame background. Every following
+   * beginFrame() starts with this static background (drawn with a
+   * single image copy), so it must not be redrawn in each frame.
+   */
+  public void storeFrameBackground()
+  {
+    if (waitForReady())
+      return;
+    _wnd.storeFrameBackground();
+  }
+
+  /**
+   * Remove the frame background. Every following beginFrame() starts with
+   * a window cleared with the background color.
+   */
+  public void clearFrameBackground()
+  {
+    if (waitForReady())
+      return;
+    _wnd.clearFrameBackground();
+  }
+
+  /**
+   * Stop showing the frames of beginFrame()/endFrame() and show the
+   * normal graphics buffer again.
+   */
+  public void stopFrames()
+  {
+    if (waitForReady())
+      return;
+    _wnd.stopFrames();
+  }
+
+  /**
+   * Start recording all following drawing operations into the given
+   * SVG file (resolution independent vector graphics). Every operation is
+   * written immediately, so even very large drawings need no additional
+   * memory. Images, flood fills and other raster operations are embedded
+   * as PNG images. Drawings made before the call are not recorded.
+   * Return false, if the file cannot be created.
+   */
+  public boolean startRecording(String filename)
+  {
+    if (waitForReady())
+      return false;
+    return _wnd.startRecording(filename);
+  }
+
+  /**
+   * Stop recording and close the SVG file.
+   * Return false, if not recording or if an error occurred while writing.
+   */
+  public boolean stopRecording()
+  {
+    if (waitForReady())
+      return false;
+    return _wnd.stopRecording();
+  }
+
   /**
    * Return version information
    */
@@ -1819,8 +1989,10 @@ public class GPane extends JPanel implements FocusListener, Printable
       _isReady = true;
     }
 
-    BufferedImage bi = _wnd.getBufferedImage();
     Graphics2D g2D = (Graphics2D)g;
+    if (_wnd.paintFrame(g2D))
+      return;
+    BufferedImage bi = _wnd.getBufferedImage();
     g2D.drawImage(bi, _wnd.getAffineScale(), this);
   }
 
@@ -22,6 +22,8 @@ import java.awt.font.TextLayout;
 import javax.swing.*;
 import java.awt.geom.*;
 import java.text.AttributedString;
+import java.util.BitSet;
+import java.io.IOException;
 
 /*
  * Window coordinates:  (wx, wy)
@@ -145,6 +147,7 @@ public class GWindow extends JFrame
   private double _yCurrent;
   private Color _color = Color.black;
   private int _lineWidth = 1;
+  private BasicStroke _stroke = null;
   private boolean _isFullscreen = false;
   private boolean _isUndecorated = false;
   private int _leftInset;
@@ -159,6 +162,18 @@ public class GWindow extends JFrame
   private double _ymax = DEFAULT_YMAX;
   private BufferedImage _saveImage;
   private Graphics2D _saveGraphics;
+  private VolatileImage _frameImage = null;
+  private BufferedImage _frameBackground = null;
+  private Graphics2D _bufferG2D = null;  // Offscreen context outside of frames
+  private boolean _isInFrame = false;
+  private boolean _isFrameMode = false;
+  private boolean _isBiStale = false;  // Last frame not yet copied to _bi
+  private BufferedImage _pixelImage = null;  // For pixel reads in frames
+  private boolean _frameRepaint;
+  private long _framePeriod = 0;  // ns, 0: no pacing
+  private long _nextFrameTime = 0;
+  private int _nbDroppedFrames = 0;
+  private SvgRecorder _recorder = null;
   private int _reduceSize = 0;
   private int _emptyBorder = 0;
   private int _panelMode = GPanel.STANDARD;
@@ -366,6 +381,8 @@ public class GWindow extends JFrame
     _offG2D.setPaint(_bgColor);
     _offG2D.fill(new Rectangle.Double(0, 0, _width, _height));
     _offG2D.setPaint(Color.black);
+    if (_recorder != null)
+      _recorder.clear(_width, _height, _bgColor);
     if (_panel != null)
       _panel.setBackground(_bgColor);
     setBackground(_bgColor);
@@ -404,6 +421,15 @@ public class GWindow extends JFrame
    */
   public void setWinSize(Size size)
   {
+    // A frame cannot survive the new buffers, end it unseen
+    if (_isInFrame)
+      finishFrame();
+    if (_frameImage != null)
+    {
+      _frameImage.flush();
+      _frameImage = null;
+    }
+    _isBiStale = false;
     _width = size.getWidth();
     _height = size.getHeight();
     setSize(_width, _height);
@@ -516,6 +542,7 @@ public class GWindow extends JFrame
    */
   public BufferedImage getBufferedImage()
   {
+    syncBufferedImage();
     return _bi;
   }
 
@@ -916,6 +943,8 @@ public class GWindow extends JFrame
     _offG2D.setPaint(_bgColor);
     _offG2D.fill(new Rectangle.Double(0, 0, _width, _height));
     _offG2D.setPaint(paint);
+    if (_recorder != null)
+      _recorder.clear(_width, _height, _bgColor);
   }
 
   /**
@@ -1110,7 +1139,7 @@ public class GWindow extends JFrame
   {
     _saveImage = new BufferedImage(_width, _height, BufferedImage.TYPE_INT_RGB);
     _saveGraphics = _saveImage.createGraphics();
-    _saveGraphics.drawImage(_bi, null, 0, 0);
+    _saveGraphics.drawImage(getCurrentImage(), 0, 0, null);
   }
 
   /**
@@ -1119,7 +1148,11 @@ public class GWindow extends JFrame
   public void recallGraphics()
   {
     if (_saveGraphics != null)
+    {
       _offG2D.drawImage(_saveImage, null, 0, 0);
+      if (_recorder != null)
+        _recorder.image(_saveImage, 0, 0);
+    }
   }
 
   /**
@@ -1131,6 +1164,272 @@ public class GWindow extends JFrame
     _saveGraphics.fill(new Rectangle.Double(0, 0, _width, _height));
   }
 
+  /**
+   * Copy the current offscreen buffer to the frame background.
+   * Every following beginFrame() starts with this background
+   * (drawn with a single image copy).
+   */
+  public void storeFrameBackground()
+  {
+    _frameBackground = new BufferedImage(_width, _height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g2D = _frameBackground.createGraphics();
+    g2D.drawImage(getCurrentImage(), 0, 0, null);
+    g2D.dispose();
+  }
+
+  /**
+   * Remove the frame background. Every following beginFrame() starts with
+   * a window cleared with the background color.
+   */
+  public void clearFrameBackground()
+  {
+    _frameBackground = null;
+  }
+
+  /**
+   * Set the frame rate used by endFrame() (in frames per second).
+   * If fps is 0, endFrame() shows the frame immediately.
+   */
+  public void setFrameRate(double fps)
+  {
+    _framePeriod = fps > 0 ? (long)(1E9 / fps) : 0;
+    _nextFrameTime = 0;
+  }
+
+  /**
+   * Return the total number of frames that could not be shown in time.
+   */
+  public int getNbDroppedFrames()
+  {
+    return _nbDroppedFrames;
+  }
+
+  /**
+   * Start a new animation frame. All following drawings go into
+   * a (hardware accelerated) back buffer that is initialized with the
+   * frame background or the background color.
+   * The drawings are shown all together when endFrame() is called.
+   */
+  public void beginFrame()
+  {
+    if (_isInFrame)
+      return;
+    if (!validateFrameImage())
+      return;  // No back buffer available, draw into offscreen buffer
+    _isInFrame = true;
+    _frameRepaint = _doRepaint;
+    _doRepaint = false;
+    Graphics2D g2D = _frameImage.createGraphics();
+    g2D.setRenderingHints(_offG2D.getRenderingHints());
+    g2D.setFont(_offG2D.getFont());
+    if (_frameBackground != null)
+      g2D.drawImage(_frameBackground, 0, 0, null);
+    else
+    {
+      g2D.setColor(_bgColor);
+      g2D.fillRect(0, 0, _width, _height);
+    }
+    _bufferG2D = _offG2D;
+    _offG2D = g2D;
+  }
+
+  /**
+   * End the current frame and show it. If a frame rate is set, wait
+   * until the time of the next frame has come. The frame times are
+   * fixed in advance, so delays do not accumulate.
+   * Return the number of frames dropped because the previous frame
+   * ended too late (0, if the frame is on time).
+   */
+  public int endFrame()
+  {
+    int nbDropped = 0;
+    if (_framePeriod > 0)
+    {
+      long now = System.nanoTime();
+      if (_nextFrameTime == 0)
+        _nextFrameTime = now;
+      else if (now > _nextFrameTime + _framePeriod)
+      {
+        // Too late: skip the missed frame times
+        nbDropped = (int)((now - _nextFrameTime) / _framePeriod);
+        _nextFrameTime += nbDropped * _framePeriod;
+        _nbDroppedFrames += nbDropped;
+      }
+      long wait = _nextFrameTime - now;
+      if (wait > 0)
+      {
+        try
+        {
+          Thread.sleep(wait / 1000000, (int)(wait % 1000000));
+        }
+        catch (InterruptedException ex)
+        {
+        }
+      }
+      _nextFrameTime += _framePeriod;
+    }
+
+    if (!_isInFrame)
+    {
+      if (_doRepaint)
+        _panel.repaint();
+      return nbDropped;
+    }
+    finishFrame();
+    _isFrameMode = true;
+    _isBiStale = true;  // Copied only when the offscreen buffer is used
+
+    // Active rendering: show the frame without waiting for the repaint manager
+    Graphics g = _panel.getGraphics();
+    if (g != null)
+    {
+      paintFrame((Graphics2D)g);
+      g.dispose();
+      Toolkit.getDefaultToolkit().sync();
+    }
+    return nbDropped;
+  }
+
+  /**
+   * Stop showing the frames of beginFrame()/endFrame() and show the
+   * offscreen buffer again (which gets a copy of the last frame).
+   */
+  public void stopFrames()
+  {
+    if (_isInFrame)
+      finishFrame();
+    syncBufferedImage();
+    _isFrameMode = false;
+    _nextFrameTime = 0;
+    if (_frameImage != null)
+    {
+      _frameImage.flush();
+      _frameImage = null;
+    }
+    _panel.repaint();
+  }
+
+  // Leave the current frame, drawings go into the offscreen buffer again
+  private void finishFrame()
+  {
+    _offG2D.dispose();
+    _offG2D = _bufferG2D;
+    _bufferG2D = null;
+    _doRepaint = _frameRepaint;
+    _isInFrame = false;
+  }
+
+  // Copy the last frame to the offscreen buffer, if it was not done yet.
+  // If the back buffer is lost meanwhile, the offscreen buffer keeps
+  // its former content
+  private void syncBufferedImage()
+  {
+    if (!_isBiStale)
+      return;
+    _isBiStale = false;
+    if (_frameImage == null || _frameImage.contentsLost())
+      return;
+    Graphics2D g2D = _bi.createGraphics();
+    g2D.drawImage(_frameImage, 0, 0, null);
+    g2D.dispose();
+  }
+
+  // Return the image with the current drawings: the back buffer during
+  // a frame, the offscreen buffer otherwise
+  private Image getCurrentImage()
+  {
+    if (_isInFrame)
+      return _frameImage;
+    syncBufferedImage();
+    return _bi;
+  }
+
+  // Same, but a copy of the back buffer during a frame
+  private BufferedImage getCurrentBufferedImage()
+  {
+    if (_isInFrame)
+      return _frameImage.getSnapshot();
+    syncBufferedImage();
+    return _bi;
+  }
+
+  // Read one pixel of the back buffer without copying the whole image
+  private int getFramePixel(int x, int y)
+  {
+    if (x < 0 || x >= _width || y < 0 || y >= _height)
+      throw new ArrayIndexOutOfBoundsException("Coordinate out of bounds!");
+    if (_pixelImage == null)
+      _pixelImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g2D = _pixelImage.createGraphics();
+    g2D.drawImage(_frameImage, 0, 0, 1, 1, x, y, x + 1, y + 1, null);
+    g2D.dispose();
+    return _pixelImage.getRGB(0, 0);
+  }
+
+  // Paint the last frame, return false if there is none. When the back
+  // buffer is lost, the caller paints the offscreen buffer instead
+  boolean paintFrame(Graphics2D g2D)
+  {
+    if (!_isFrameMode || _frameImage == null || _frameImage.contentsLost())
+      return false;
+    g2D.drawImage(_frameImage, getAffineScale(), null);
+    return true;
+  }
+
+  // Create or restore the back buffer, return false if not possible
+  private boolean validateFrameImage()
+  {
+    if (_panel == null || !_panel.isDisplayable())
+      return false;
+    GraphicsConfiguration gc = _panel.getGraphicsConfiguration();
+    if (_frameImage == null
+      || _frameImage.getWidth() != _width
+      || _frameImage.getHeight() != _height
+      || _frameImage.validate(gc) == VolatileImage.IMAGE_INCOMPATIBLE)
+    {
+      if (_frameImage != null)
+        _frameImage.flush();
+      _frameImage = _panel.createVolatileImage(_width, _height);
+    }
+    return _frameImage != null;
+  }
+
+  /**
+   * Start recording all following drawing operations into the given
+   * SVG file. Every operation is written immediately, so even very large
+   * drawings need no additional memory. Raster operations (images, flood
+   * fill, recallGraphics(), renderPixels()) are embedded as PNG images.
+   * Drawings made before the call are not recorded.
+   * Return false, if the file cannot be created.
+   */
+  public boolean startRecording(String filename)
+  {
+    stopRecording();
+    try
+    {
+      _recorder = new SvgRecorder(filename, _width, _height, _bgColor);
+    }
+    catch (IOException ex)
+    {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Stop recording and close the SVG file.
+   * Return false, if not recording or if an error occurred while writing.
+   */
+  public boolean stopRecording()
+  {
+    if (_recorder == null)
+      return false;
+    _recorder.close();
+    boolean isOk = _recorder.isOk();
+    _recorder = null;
+    return isOk;
+  }
+
   /**
    * Transform offscreen buffer with given affine transformation.
    */
@@ -1148,13 +1447,15 @@ public class GWindow extends JFrame
     g2D.setPaint(paint);
 
     // Copy transformed offscreen buffer in backup buffer
-    g2D.drawImage(_bi, at, null);
+    g2D.drawImage(getCurrentImage(), at, null);
 
     // Copy backup buffer to offscreen buffer
     _offG2D.drawImage(bi, null, null);
 
     // Dispose new buffer
     g2D.dispose();
+    if (_recorder != null)
+      _recorder.image(bi, 0, 0);
 
     if (_doRepaint)
       _panel.repaint();
@@ -1165,7 +1466,11 @@ public class GWindow extends JFrame
    */
   public Color getPixelColor(double x, double y)
   {
-    return new Color(_bi.getRGB(_toUserX(x), _toUserY(y)));
+    int xPix = _toUserX(x);
+    int yPix = _toUserY(y);
+    if (_isInFrame)
+      return new Color(getFramePixel(xPix, yPix));
+    return new Color(getCurrentBufferedImage().getRGB(xPix, yPix));
   }
 
   /**
@@ -1210,7 +1515,7 @@ public class GWindow extends JFrame
 
   void line(double x1, double y1, double x2, double y2)
   {
-    BasicStroke stroke = new BasicStroke(_lineWidth);
+    BasicStroke stroke = getStroke();
     _offG2D.setStroke(stroke);
     _offG2D.setPaint(_color);
     int xStart = _toUserX(x1);
@@ -1219,6 +1524,7 @@ public class GWindow extends JFrame
     int yEnd = _toUserY(y2);
     Line2D line = new Line2D.Double(xStart, yStart, xEnd, yEnd);
     _offG2D.draw(line);
+    record(line, false);
     _xCurrent = x2;
     _yCurrent = y2;
 
@@ -1261,6 +1567,21 @@ public class GWindow extends JFrame
     _lineWidth = lineWidth;
   }
 
+  // The stroke is reused as long as the line width is unchanged
+  private BasicStroke getStroke()
+  {
+    if (_stroke == null || _stroke.getLineWidth() != _lineWidth)
+      _stroke = new BasicStroke(_lineWidth);
+    return _stroke;
+  }
+
+  // Write the shape to the SVG file, if recording
+  private void record(Shape shape, boolean fill)
+  {
+    if (_recorder != null)
+      _recorder.shape(shape, _color, _lineWidth, fill);
+  }
+
   int getLineWidth()
   {
     return _lineWidth;
@@ -1268,7 +1589,7 @@ public class GWindow extends JFrame
 
   void drawCircle(double radius, boolean fill)
   {
-    BasicStroke stroke = new BasicStroke(_lineWidth);
+    BasicStroke stroke = getStroke();
     _offG2D.setStroke(stroke);
     _offG2D.setPaint(_color);
 
@@ -1282,13 +1603,14 @@ public class GWindow extends JFrame
       _offG2D.fill(ellipse);
     else
       _offG2D.draw(ellipse);
+    record(ellipse, fill);
 
     repaintArea(ellipse);
   }
 
   void drawEllipse(double a, double b, boolean fill)
   {
-    BasicStroke stroke = new BasicStroke(_lineWidth);
+    BasicStroke stroke = getStroke();
     _offG2D.setStroke(stroke);
     _offG2D.setPaint(_color);
 
@@ -1303,13 +1625,14 @@ public class GWindow extends JFrame
       _offG2D.fill(ellipse);
     else
       _offG2D.draw(ellipse);
+    record(ellipse, fill);
 
     repaintArea(ellipse);
   }
 
   void drawRectangle(double width, double height, boolean fill)
   {
-    BasicStroke stroke = new BasicStroke(_lineWidth);
+    BasicStroke stroke = getStroke();
     _offG2D.setStroke(stroke);
     _offG2D.setPaint(_color);
 
@@ -1331,6 +1654,7 @@ public class GWindow extends JFrame
       _offG2D.fill(rectangle);
     else
       _offG2D.draw(rectangle);
+    record(rectangle, fill);
 
     repaintArea(rectangle);
   }
@@ -1338,7 +1662,7 @@ public class GWindow extends JFrame
   void drawArc(double radius, double startAngle, double extendAngle,
     boolean fill)
   {
-    BasicStroke stroke = new BasicStroke(_lineWidth);
+    BasicStroke stroke = getStroke();
     _offG2D.setStroke(stroke);
     _offG2D.setPaint(_color);
 
@@ -1362,13 +1686,14 @@ public class GWindow extends JFrame
       _offG2D.fill(arc);
     else
       _offG2D.draw(arc);
+    record(arc, fill);
 
     repaintArea(arc);
   }
 
   void drawPolygon(double[] x, double[] y, int nbPoints, boolean fill)
   {
-    BasicStroke stroke = new BasicStroke(_lineWidth);
+    BasicStroke stroke = getStroke();
     _offG2D.setStroke(stroke);
     _offG2D.setPaint(_color);
 
@@ -1385,10 +1710,156 @@ public class GWindow extends JFrame
       _offG2D.fill(polygon);
     else
       _offG2D.draw(polygon);
+    record(polygon, fill);
 
     repaintArea(polygon);
   }
 
+  void drawPolyline(double[] x, double[] y, int nbPoints)
+  {
+    if (nbPoints < 1)
+      return;
+    _offG2D.setStroke(getStroke());
+    _offG2D.setPaint(_color);
+
+    // Transform all points to user coordinates in one pass and check
+    // if they are monotone in x (e.g. a time series)
+    int[] xUser = new int[nbPoints];
+    int[] yUser = new int[nbPoints];
+    boolean isIncreasing = true;
+    boolean isDecreasing = true;
+    for (int i = 0; i < nbPoints; i++)
+    {
+      xUser[i] = _toUserX(x[i]);
+      yUser[i] = _toUserY(y[i]);
+      if (i > 0)
+      {
+        if (xUser[i] < xUser[i - 1])
+          isIncreasing = false;
+        if (xUser[i] > xUser[i - 1])
+          isDecreasing = false;
+      }
+    }
+
+    Path2D.Float path = new Path2D.Float(Path2D.WIND_NON_ZERO,
+      Math.min(nbPoints, 4 * _width + 4));
+    path.moveTo(xUser[0], yUser[0]);
+    if ((isIncreasing || isDecreasing) && nbPoints > 2 * _width)
+    {
+      // Many points per pixel column: only the first, minimum,
+      // maximum and last point of every column are drawn
+      int start = 0;
+      while (start < nbPoints)
+      {
+        int end = start;
+        int min = start;
+        int max = start;
+        while (end + 1 < nbPoints && xUser[end + 1] == xUser[start])
+        {
+          end++;
+          if (yUser[end] < yUser[min])
+            min = end;
+          if (yUser[end] > yUser[max])
+            max = end;
+        }
+        path.lineTo(xUser[start], yUser[start]);
+        if (min < max)
+        {
+          path.lineTo(xUser[start], yUser[min]);
+          path.lineTo(xUser[start], yUser[max]);
+        }
+        else
+        {
+          path.lineTo(xUser[start], yUser[max]);
+          path.lineTo(xUser[start], yUser[min]);
+        }
+        path.lineTo(xUser[end], yUser[end]);
+        start = end + 1;
+      }
+    }
+    else
+    {
+      for (int i = 1; i < nbPoints; i++)
+        path.lineTo(xUser[i], yUser[i]);
+    }
+    _offG2D.draw(path);
+    record(path, false);
+    _xCurrent = x[nbPoints - 1];
+    _yCurrent = y[nbPoints - 1];
+
+    repaintArea(path);
+  }
+
+  void drawScatter(double[] x, double[] y, int nbPoints)
+  {
+    if (nbPoints < 1)
+      return;
+    // Every pixel is drawn only once, even if many points fall on it
+    BitSet drawn = new BitSet(_width * _height);
+    Graphics g = (Graphics)_offG2D;
+    g.setColor(_color);
+    Line2D.Double line = null;
+    if (_lineWidth > 1)
+    {
+      _offG2D.setStroke(getStroke());
+      _offG2D.setPaint(_color);
+      line = new Line2D.Double();
+    }
+    int xMin = Integer.MAX_VALUE;
+    int yMin = Integer.MAX_VALUE;
+    int xMax = Integer.MIN_VALUE;
+    int yMax = Integer.MIN_VALUE;
+    for (int i = 0; i < nbPoints; i++)
+    {
+      int xPoint = _toUserX(x[i]);
+      int yPoint = _toUserY(y[i]);
+      if (xPoint < 0 || xPoint >= _width || yPoint < 0 || yPoint >= _height)
+        continue;
+      int index = yPoint * _width + xPoint;
+      if (drawn.get(index))
+        continue;
+      drawn.set(index);
+      if (line != null)
+      {
+        line.setLine(xPoint, yPoint, xPoint, yPoint);
+        _offG2D.draw(line);
+      }
+      else
+        g.drawLine(xPoint, yPoint, xPoint, yPoint);
+      if (_recorder != null)
+        _recorder.point(xPoint, yPoint, _color, _lineWidth);
+      xMin = Math.min(xMin, xPoint);
+      xMax = Math.max(xMax, xPoint);
+      yMin = Math.min(yMin, yPoint);
+      yMax = Math.max(yMax, yPoint);
+    }
+    _xCurrent = x[nbPoints - 1];
+    _yCurrent = y[nbPoints - 1];
+
+    if (xMin <= xMax)
+      repaintArea(new Rectangle(xMin, yMin, xMax - xMin + 1, yMax - yMin + 1));
+  }
+
+  void renderPixels(ColorFunction f)
+  {
+    renderPixels(new PixelRenderer(this, f));
+  }
+
+  void renderPixels(PixelFunction f, double min, double max, Color[] colormap)
+  {
+    renderPixels(new PixelRenderer(this, f, min, max, colormap));
+  }
+
+  private void renderPixels(PixelRenderer renderer)
+  {
+    BufferedImage bi = getCurrentBufferedImage();
+    renderer.render(bi, _a, _b, _c, _d);
+    if (_isInFrame)
+      _offG2D.drawImage(bi, null, 0, 0);
+    if (_recorder != null)
+      _recorder.image(bi, 0, 0);
+  }
+
   void drawPolygon(Point2D.Double[] corner, boolean fill)
   {
     int nbCorner = corner.length;
@@ -1404,7 +1875,7 @@ public class GWindow extends JFrame
 
   void drawGeneralPath(GeneralPath gp, boolean fill)
   {
-    BasicStroke stroke = new BasicStroke(_lineWidth);
+    BasicStroke stroke = getStroke();
     _offG2D.setStroke(stroke);
     _offG2D.setPaint(_color);
 
@@ -1413,6 +1884,7 @@ public class GWindow extends JFrame
       _offG2D.fill(sh);
     else
       _offG2D.draw(sh);
+    record(sh, fill);
 
     repaintArea(sh);
   }
@@ -1421,7 +1893,7 @@ public class GWindow extends JFrame
     Point2D.Double ptc, Point2D.Double pt2)
 
   {
-    BasicStroke stroke = new BasicStroke(_lineWidth);
+    BasicStroke stroke = getStroke();
     _offG2D.setStroke(stroke);
     _offG2D.setPaint(_color);
 
@@ -1432,6 +1904,7 @@ public class GWindow extends JFrame
         _toUserX(ptc.x), _toUserY(ptc.y),
         _toUserX(pt2.x), _toUserY(pt2.y));
     _offG2D.draw(quadCurve);
+    record(quadCurve, false);
 
     repaintArea(quadCurve);
   }
@@ -1439,7 +1912,7 @@ public class GWindow extends JFrame
   void drawCubicBezier(Point2D.Double pt1, Point2D.Double ptc1,
     Point2D.Double ptc2, Point2D.Double pt2)
   {
-    BasicStroke stroke = new BasicStroke(_lineWidth);
+    BasicStroke stroke = getStroke();
     _offG2D.setStroke(stroke);
     _offG2D.setPaint(_color);
 
@@ -1450,6 +1923,7 @@ public class GWindow extends JFrame
       _toUserX(ptc2.x), _toUserY(ptc2.y),
       _toUserX(pt2.x), _toUserY(pt2.y));
     _offG2D.draw(cubicCurve);
+    record(cubicCurve, false);
 
     repaintArea(cubicCurve);
   }
@@ -1458,6 +1932,9 @@ public class GWindow extends JFrame
   {
     _offG2D.setPaint(_color);
     _offG2D.drawString(s, _toUserX(_xCurrent), _toUserY(_yCurrent));
+    if (_recorder != null)
+      _recorder.text(s, _toUserX(_xCurrent), _toUserY(_yCurrent),
+        _offG2D.getFont(), _color);
 
     if (_doRepaint)
       _panel.repaint();
@@ -1467,6 +1944,8 @@ public class GWindow extends JFrame
   {
     _offG2D.setPaint(_color);
     _offG2D.drawString(s, _toUserX(x), _toUserY(y));
+    if (_recorder != null)
+      _recorder.text(s, _toUserX(x), _toUserY(y), _offG2D.getFont(), _color);
 
     if (_doRepaint)
       _panel.repaint();
@@ -1483,6 +1962,8 @@ public class GWindow extends JFrame
     as.addAttribute(TextAttribute.BACKGROUND, bgColor);
     //  as.addAttribute(TextAttribute.BACKGROUND, gp); 
     _offG2D.drawString(as.getIterator(), _toUserX(x), _toUserY(y));
+    if (_recorder != null)
+      _recorder.text(text, _toUserX(x), _toUserY(y), font, textColor);
 
     if (_doRepaint)
       _panel.repaint();
@@ -1548,7 +2029,7 @@ public class GWindow extends JFrame
     int yPoint = _toUserY(y);
     if (_lineWidth > 1)
     {
-      BasicStroke stroke = new BasicStroke(_lineWidth);
+      BasicStroke stroke = getStroke();
       _offG2D.setStroke(stroke);
       _offG2D.setPaint(_color);
       Line2D line = new Line2D.Double(xPoint, yPoint, xPoint, yPoint);
@@ -1560,6 +2041,8 @@ public class GWindow extends JFrame
       g.setColor(_color);
       g.drawLine(xPoint, yPoint, xPoint, yPoint);
     }
+    if (_recorder != null)
+      _recorder.point(xPoint, yPoint, _color, _lineWidth);
 
     // Must map point to actual screen coordinates
     AffineTransform aft = getAffineScale();
@@ -1587,6 +2070,8 @@ public class GWindow extends JFrame
     else
       at.translate(x, y);
     _offG2D.drawImage(bi, at, _panel);
+    if (_recorder != null)
+      _recorder.image(bi, at);
   }
 
   boolean showImage(String imagePath, double x, double y)
@@ -1602,7 +2087,7 @@ public class GWindow extends JFrame
 
   void fill(Point pt, Color color, Color replacement)
   {
-    BufferedImage bi = GBitmap.floodFill(_bi, pt, color, replacement);
+    BufferedImage bi = GBitmap.floodFill(getCurrentBufferedImage(), pt, color, replacement);
     drawImage(bi, 0, 0, false);
     if (_doRepaint)
       _panel.repaint();
@@ -0,0 +1,118 @@
+// IirFilter.java
+
+/*
+ This software is part of the JEX (Java Exemplarisch) Utility Library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.util;
+
+/**
+ * Infinite impulse response (IIR) filter
+ * y[i] = b[0] x[i] + b[1] x[i-1] + ... - a[1] y[i-1] - a[2] y[i-2] - ...
+ * (direct form II transposed).
+ * The filter keeps its state, so a stream of samples can be filtered
+ * block by block. The static methods lowpass(), highpass() and bandpass()
+ * create second order filters (biquads) with the formulas of R. Bristow-Johnson.
+ */
+public class IirFilter
+{
+  private final double[] b;
+  private final double[] a;
+  private final double[] state;
+
+  /**
+   * Create a filter with the given coefficients. The coefficients
+   * are normalized, so that a[0] is 1.
+   */
+  public IirFilter(double[] b, double[] a)
+  {
+    if (a.length == 0 || a[0] == 0)
+      throw new IllegalArgumentException("a[0] must not be 0");
+    int n = Math.max(b.length, a.length);
+    this.b = new double[n];
+    this.a = new double[n];
+    for (int i = 0; i < b.length; i++)
+      this.b[i] = b[i] / a[0];
+    for (int i = 0; i < a.length; i++)
+      this.a[i] = a[i] / a[0];
+    state = new double[n];
+  }
+
+  /**
+   * Filter a single sample and return the filtered value.
+   */
+  public double process(double x)
+  {
+    int n = b.length;
+    double y = b[0] * x + state[0];
+    for (int i = 1; i < n; i++)
+      state[i - 1] = b[i] * x - a[i] * y + (i < n - 1 ? state[i] : 0);
+    return y;
+  }
+
+  /**
+   * Filter the samples in place.
+   */
+  public void process(double[] data)
+  {
+    for (int i = 0; i < data.length; i++)
+      data[i] = process(data[i]);
+  }
+
+  /**
+   * Clear the filter state.
+   */
+  public void reset()
+  {
+    for (int i = 0; i < state.length; i++)
+      state[i] = 0;
+  }
+
+  /**
+   * Create a second order lowpass filter with the given cutoff frequency
+   * and quality factor (0.707 for a flat passband).
+   */
+  public static IirFilter lowpass(double cutoff, double sampleRate, double q)
+  {
+    double w0 = 2 * Math.PI * cutoff / sampleRate;
+    double cos = Math.cos(w0);
+    double alpha = Math.sin(w0) / (2 * q);
+    return new IirFilter(
+      new double[]{(1 - cos) / 2, 1 - cos, (1 - cos) / 2},
+      new double[]{1 + alpha, -2 * cos, 1 - alpha});
+  }
+
+  /**
+   * Create a second order highpass filter with the given cutoff frequency
+   * and quality factor (0.707 for a flat passband).
+   */
+  public static IirFilter highpass(double cutoff, double sampleRate, double q)
+  {
+    double w0 = 2 * Math.PI * cutoff / sampleRate;
+    double cos = Math.cos(w0);
+    double alpha = Math.sin(w0) / (2 * q);
+    return new IirFilter(
+      new double[]{(1 + cos) / 2, -(1 + cos), (1 + cos) / 2},
+      new double[]{1 + alpha, -2 * cos, 1 - alpha});
+  }
+
+  /**
+   * Create a second order bandpass filter with the given center frequency
+   * and quality factor (center frequency / bandwidth), gain 1 at the center.
+   */
+  public static IirFilter bandpass(double center, double sampleRate, double q)
+  {
+    double w0 = 2 * Math.PI * center / sampleRate;
+    double cos = Math.cos(w0);
+    double alpha = Math.sin(w0) / (2 * q);
+    return new IirFilter(
+      new double[]{alpha, 0, -alpha},
+      new double[]{1 + alpha, -2 * cos, 1 - alpha});
+  }
+}
@@ -0,0 +1,157 @@
+// PixelRenderer.java
+
+/*
+ This software is part of the JEX (Java Exemplarisch) Utility Library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.util;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluates a color or value function for every pixel of the offscreen
+ * buffer. The buffer is divided into square tiles that are calculated
+ * in parallel and written directly into the image raster. Every finished
+ * tile is repainted at once, so the image builds up progressively.
+ */
+class PixelRenderer
+{
+  static final int TILE_SIZE = 64;
+  private static ForkJoinPool pool = null;
+
+  private final GWindow wnd;
+  private final ColorFunction colorFunction;
+  private final PixelFunction pixelFunction;
+  private final double min;
+  private final double max;
+  private final int[] palette;
+  private BufferedImage bi;
+  private double a, b, c, d;
+  private int nbTilesX;
+  private int nbTiles;
+
+  PixelRenderer(GWindow wnd, ColorFunction colorFunction)
+  {
+    this.wnd = wnd;
+    this.colorFunction = colorFunction;
+    pixelFunction = null;
+    min = 0;
+    max = 0;
+    palette = null;
+  }
+
+  PixelRenderer(GWindow wnd, PixelFunction pixelFunction,
+    double min, double max, Color[] colormap)
+  {
+    if (colormap == null || colormap.length == 0)
+      throw new IllegalArgumentException("Colormap must not be empty");
+    this.wnd = wnd;
+    this.pixelFunction = pixelFunction;
+    colorFunction = null;
+    this.min = min;
+    this.max = max;
+    palette = new int[colormap.length];
+    for (int i = 0; i < colormap.length; i++)
+      palette[i] = colormap[i].getRGB();
+  }
+
+  // Transform parameters of the offscreen buffer: xUser = a * x + b,
+  // yUser = c * y + d
+  void render(BufferedImage bi, double a, double b, double c, double d)
+  {
+    this.bi = bi;
+    this.a = a;
+    this.b = b;
+    this.c = c;
+    this.d = d;
+    nbTilesX = (bi.getWidth() + TILE_SIZE - 1) / TILE_SIZE;
+    int nbTilesY = (bi.getHeight() + TILE_SIZE - 1) / TILE_SIZE;
+    nbTiles = nbTilesX * nbTilesY;
+    getPool().invoke(new TileTask(0, nbTiles));
+  }
+
+  private static synchronized ForkJoinPool getPool()
+  {
+    if (pool == null)
+      pool = new ForkJoinPool();
+    return pool;
+  }
+
+  // Tiles are numbered row by row, so the image builds up from top to bottom
+  private class TileTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+    private final int start;
+    private final int end;
+
+    TileTask(int start, int end)
+    {
+      this.start = start;
+      this.end = end;
+    }
+
+    protected void compute()
+    {
+      if (end - start == 1)
+      {
+        renderTile(start);
+        return;
+      }
+      int mid = (start + end) >>> 1;
+      invokeAll(new TileTask(start, mid), new TileTask(mid, end));
+    }
+  }
+
+  private void renderTile(int tile)
+  {
+    int ulx = (tile % nbTilesX) * TILE_SIZE;
+    int uly = (tile / nbTilesX) * TILE_SIZE;
+    int width = Math.min(TILE_SIZE, bi.getWidth() - ulx);
+    int height = Math.min(TILE_SIZE, bi.getHeight() - uly);
+    int[] rgb = new int[width * height];
+    int index = 0;
+    for (int j = 0; j < height; j++)
+    {
+      double y = (uly + j - d) / c;
+      for (int i = 0; i < width; i++)
+      {
+        double x = (ulx + i - b) / a;
+        rgb[index++] = getRGB(x, y);
+      }
+    }
+    if (bi.getType() == BufferedImage.TYPE_INT_RGB
+      || bi.getType() == BufferedImage.TYPE_INT_ARGB)
+      bi.getRaster().setDataElements(ulx, uly, width, height, rgb);
+    else
+      bi.setRGB(ulx, uly, width, height, rgb, 0, width);
+    wnd.repaintArea(new Rectangle(ulx, uly, width, height));
+  }
+
+  private int getRGB(double x, double y)
+  {
+    if (colorFunction != null)
+    {
+      Color color = colorFunction.getColor(x, y);
+      return color == null ? 0 : color.getRGB();
+    }
+    double value = pixelFunction.getValue(x, y);
+    int n = palette.length;
+    if (Double.isNaN(value) || max == min)
+      return palette[0];
+    int k = (int)((value - min) / (max - min) * (n - 1) + 0.5);
+    if (k < 0)
+      k = 0;
+    if (k >= n)
+      k = n - 1;
+    return palette[k];
+  }
+}
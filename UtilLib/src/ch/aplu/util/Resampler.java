@@ -0,0 +1,127 @@
+// Resampler.java
+
+/*
+ This software is part of the JEX (Java Exemplarisch) Utility Library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.util;
+
+/**
+ * Conversion of sampled data to another sample rate or to
+ * equidistant samples.
+ */
+public class Resampler
+{
+  private static final int NB_ZERO_CROSSINGS = 16;
+  private static final int TABLE_RESOLUTION = 256;
+
+  private Resampler()
+  {
+  }
+
+  /**
+   * Return the samples converted from the sample rate fromRate
+   * to the sample rate toRate using band limited (windowed sinc)
+   * interpolation. When the rate is reduced, the frequencies above
+   * the new Nyquist frequency are removed.
+   */
+  public static double[] resample(double[] data, double fromRate,
+    double toRate)
+  {
+    double ratio = fromRate / toRate;
+    int nbOut = (int)Math.floor((data.length - 1) / ratio) + 1;
+    if (data.length == 0)
+      nbOut = 0;
+    double[] out = new double[nbOut];
+    double fc = Math.min(1, toRate / fromRate);  // Relative cutoff
+    int width = (int)Math.ceil(NB_ZERO_CROSSINGS / fc);
+
+    // Kernel sinc * Blackman window over +-width samples, tabulated
+    // for |x| with TABLE_RESOLUTION entries per sample
+    double[] kernel = new double[width * TABLE_RESOLUTION + 2];
+    for (int i = 0; i < kernel.length; i++)
+    {
+      double x = (double)i / TABLE_RESOLUTION;
+      if (x < width)
+      {
+        double w = 0.42 + 0.5 * Math.cos(Math.PI * x / width)
+          + 0.08 * Math.cos(2 * Math.PI * x / width);
+        kernel[i] = fc * FirFilter.sinc(fc * x) * w;
+      }
+    }
+
+    for (int j = 0; j < nbOut; j++)
+    {
+      double t = j * ratio;
+      int center = (int)Math.floor(t);
+      int start = Math.max(0, center - width + 1);
+      int end = Math.min(data.length - 1, center + width);
+      double sum = 0;
+      double weightSum = 0;
+      for (int k = start; k <= end; k++)
+      {
+        double pos = Math.abs(t - k) * TABLE_RESOLUTION;
+        int index = (int)pos;
+        double frac = pos - index;
+        double weight = kernel[index] + frac * (kernel[index + 1] - kernel[index]);
+        sum += data[k] * weight;
+        weightSum += weight;
+      }
+      // Normalize, so that the gain is 1 also near the borders
+      out[j] = weightSum != 0 ? sum / weightSum : 0;
+    }
+    return out;
+  }
+
+  /**
+   * Same as resample(double[], double, double) for integer sound samples.
+   * The result is rounded and clipped to the range of the given number
+   * of bits per sample (e.g. 16).
+   */
+  public static int[] resample(int[] data, double fromRate, double toRate,
+    int bitsPerSample)
+  {
+    double[] out = resample(FFT.toDouble(data), fromRate, toRate);
+    int max = (1 << (bitsPerSample - 1)) - 1;
+    int min = -max - 1;
+    int[] result = new int[out.length];
+    for (int i = 0; i < out.length; i++)
+      result[i] = (int)Math.max(min, Math.min(max, Math.round(out[i])));
+    return result;
+  }
+
+  /**
+   * Return equidistant samples (with distance dx) of the data points
+   * (x[i], y[i]) by linear interpolation. The x values must be increasing.
+   * result[0] contains the new x values, result[1] the y values.
+   */
+  public static double[][] toEquidistant(double[] x, double[] y, double dx)
+  {
+    int n = Math.min(x.length, y.length);
+    if (n < 2 || dx <= 0)
+      return new double[][]{new double[0], new double[0]};
+    int nbOut = (int)Math.floor((x[n - 1] - x[0]) / dx);
+    if (x[0] + nbOut * dx >= x[n - 1])  // Last point exclusive
+      nbOut--;
+    nbOut++;
+    double[] xOut = new double[nbOut];
+    double[] yOut = new double[nbOut];
+    int k = 0;
+    for (int i = 0; i < nbOut; i++)
+    {
+      double xi = x[0] + dx * i;
+      while (k < n - 2 && x[k + 1] <= xi)
+        k++;
+      double slope = (y[k + 1] - y[k]) / (x[k + 1] - x[k]);
+      xOut[i] = xi;
+      yOut[i] = y[k] + slope * (xi - x[k]);
+    }
+    return new double[][]{xOut, yOut};
+  }
+}
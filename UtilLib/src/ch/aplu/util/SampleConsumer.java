@@ -0,0 +1,279 @@
+// SampleConsumer.java
+
+/*
+ This software is part of the JEX (Java Exemplarisch) Utility Library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.util;
+
+import java.io.*;
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Interface for a consumer of the sound data captured by a SoundRecorder.
+ * Each consumer runs in its own thread and reads the data from
+ * a ring buffer of fixed size. Predefined consumers are the LevelMeter,
+ * the SpectrumAnalyzer and the WavWriter.
+ * @see ch.aplu.util.SoundRecorder#addSampleConsumer(SampleConsumer, boolean)
+ */
+public interface SampleConsumer
+{
+  /**
+   * Called when the capture starts.
+   * @param format the audio format of the data
+   */
+  public void captureStarted(AudioFormat format);
+
+  /**
+   * Called for each block of sound data (whole frames).
+   * The data is only valid until the method returns.
+   * @param data the buffer with the sound data
+   * @param offset the index of the first byte
+   * @param length the number of bytes
+   */
+  public void samplesReceived(byte[] data, int offset, int length);
+
+  /**
+   * Called when the capture stopped and all data is consumed.
+   */
+  public void captureStopped();
+
+  /**
+   * Consumer that measures the peak and root mean square level of the
+   * last block of sound data (mean of all channels).
+   */
+  class LevelMeter implements SampleConsumer
+  {
+    private AudioFormat format;
+    private int[] samples = new int[0];
+    private volatile double peak = 0;
+    private volatile double rms = 0;
+
+    public void captureStarted(AudioFormat format)
+    {
+      this.format = format;
+    }
+
+    public void samplesReceived(byte[] data, int offset, int length)
+    {
+      int nb = length / format.getFrameSize();
+      if (samples.length < nb)
+        samples = new int[nb];
+      nb = SampleRingBuffer.toMono(data, offset, length, format, samples);
+      if (nb == 0)
+        return;
+      double full = 1L << (format.getSampleSizeInBits() - 1);
+      double max = 0;
+      double sum = 0;
+      for (int i = 0; i < nb; i++)
+      {
+        double y = samples[i] / full;
+        max = Math.max(max, Math.abs(y));
+        sum += y * y;
+      }
+      peak = max;
+      rms = Math.sqrt(sum / nb);
+    }
+
+    public void captureStopped()
+    {
+    }
+
+    /**
+     * Returns the peak level of the last block of data.
+     * @return the peak level (0..1)
+     */
+    public double getPeak()
+    {
+      return peak;
+    }
+
+    /**
+     * Returns the root mean square level of the last block of data.
+     * @return the rms level (0..1)
+     */
+    public double getRms()
+    {
+      return rms;
+    }
+  }
+
+  /**
+   * Consumer that passes the sound data (mean of all channels) to a
+   * Spectrogram.
+   */
+  class SpectrumAnalyzer implements SampleConsumer
+  {
+    private Spectrogram spectrogram;
+    private AudioFormat format;
+    private int[] samples = new int[0];
+
+    /**
+     * Creates a consumer for the given spectrogram.
+     * @param spectrogram the spectrogram that processes the samples
+     */
+    public SpectrumAnalyzer(Spectrogram spectrogram)
+    {
+      this.spectrogram = spectrogram;
+    }
+
+    public void captureStarted(AudioFormat format)
+    {
+      this.format = format;
+      spectrogram.reset();
+    }
+
+    public void samplesReceived(byte[] data, int offset, int length)
+    {
+      int nb = length / format.getFrameSize();
+      if (samples.length < nb)
+        samples = new int[nb];
+      nb = SampleRingBuffer.toMono(data, offset, length, format, samples);
+      spectrogram.process(samples, 0, nb);
+    }
+
+    public void captureStopped()
+    {
+    }
+  }
+
+  /**
+   * Consumer that writes the sound data into a WAV file. The data is
+   * written as it is received, so the memory used does not depend on
+   * the duration.
+   */
+  class WavWriter implements SampleConsumer
+  {
+    private File file;
+    private RandomAccessFile raf = null;
+    private long nbBytes;
+    private volatile boolean isOk = true;
+
+    /**
+     * Creates a consumer that writes to the given file.
+     * @param file the WAV file to be created. If it already exists,
+     * it is overwritten.
+     */
+    public WavWriter(File file)
+    {
+      this.file = file;
+    }
+
+    public void captureStarted(AudioFormat format)
+    {
+      nbBytes = 0;
+      try
+      {
+        raf = new RandomAccessFile(file, "rw");
+        raf.setLength(0);
+        raf.write(header(format, 0));
+        isOk = true;
+      }
+      catch (IOException ex)
+      {
+        close();
+      }
+      if (format.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED)
+        && format.getSampleSizeInBits() == 8)
+        close();  // 8 bit WAV must be unsigned
+    }
+
+    public void samplesReceived(byte[] data, int offset, int length)
+    {
+      if (raf == null)
+        return;
+      try
+      {
+        raf.write(data, offset, length);
+        nbBytes += length;
+      }
+      catch (IOException ex)
+      {
+        close();
+      }
+    }
+
+    public void captureStopped()
+    {
+      if (raf == null)
+        return;
+      try
+      {
+        // Update RIFF and data chunk sizes
+        raf.seek(4);
+        raf.write(toLittleEndian(36 + nbBytes, 4));
+        raf.seek(40);
+        raf.write(toLittleEndian(nbBytes, 4));
+        raf.close();
+        raf = null;
+      }
+      catch (IOException ex)
+      {
+        close();
+      }
+    }
+
+    /**
+     * Returns true, if all data was written successfully.
+     * @return false, if an error occurred or the format is not supported
+     */
+    public boolean isOk()
+    {
+      return isOk;
+    }
+
+    private void close()
+    {
+      isOk = false;
+      if (raf == null)
+        return;
+      try
+      {
+        raf.close();
+      }
+      catch (IOException ex)
+      {
+      }
+      raf = null;
+    }
+
+    private static byte[] header(AudioFormat format, long nbBytes)
+      throws IOException
+    {
+      int nbChannels = format.getChannels();
+      int bits = format.getSampleSizeInBits();
+      int sampleRate = (int)format.getSampleRate();
+      int blockAlign = nbChannels * ((bits + 7) / 8);
+      if (format.isBigEndian() && bits > 8)
+        throw new IOException("Big endian data not supported");
+      ByteArrayOutputStream bos = new ByteArrayOutputStream(44);
+      bos.write("RIFF".getBytes("US-ASCII"));
+      bos.write(toLittleEndian(36 + nbBytes, 4));
+      bos.write("WAVEfmt ".getBytes("US-ASCII"));
+      bos.write(toLittleEndian(16, 4));
+      bos.write(toLittleEndian(1, 2));  // PCM
+      bos.write(toLittleEndian(nbChannels, 2));
+      bos.write(toLittleEndian(sampleRate, 4));
+      bos.write(toLittleEndian((long)sampleRate * blockAlign, 4));
+      bos.write(toLittleEndian(blockAlign, 2));
+      bos.write(toLittleEndian(bits, 2));
+      bos.write("data".getBytes("US-ASCII"));
+      bos.write(toLittleEndian(nbBytes, 4));
+      return bos.toByteArray();
+    }
+
+    private static byte[] toLittleEndian(long value, int nb)
+    {
+      byte[] b = new byte[nb];
+      for (int i = 0; i < nb; i++)
+        b[i] = (byte)(value >> (8 * i));
+      return b;
+    }
+  }
+}
@@ -0,0 +1,220 @@
+// SampleRingBuffer.java
+
+/*
+ This software is part of the JEX (Java Exemplarisch) Utility Library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.util;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+import javax.sound.sampled.AudioFormat;
+
+// Ring buffer of fixed size with a single producer (the capture thread)
+// and any number of readers, each with its own read position. No locks
+// are used: the write position is only changed by the producer, a read
+// position only by its reader. The producer waits for readers that are
+// not lossy (backpressure), lossy readers skip the data that is overwritten.
+// Before it overwrites data, the producer claims the space (seqlock):
+// a lossy reader checks the claim after copying and discards a copy that
+// may be partly overwritten.
+class SampleRingBuffer // not public
+{
+  private static final long WAIT_NS = 1000000;  // 1 ms
+
+  class Reader
+  {
+    private volatile long readPos;
+    private final boolean isLossy;
+    private volatile boolean isRemoved = false;
+    private volatile long nbDropped = 0;
+    private volatile boolean barrier;  // See read()
+
+    private Reader(boolean isLossy)
+    {
+      this.isLossy = isLossy;
+    }
+
+    long getNbDropped()
+    {
+      return nbDropped;
+    }
+  }
+
+  private final byte[] buf;
+  private final int mask;
+  private final int frameSize;
+  private volatile long writePos = 0;
+  // writePos + length of the write in progress
+  private volatile long claimPos = 0;
+  private volatile boolean barrier;  // See write()
+  private volatile boolean isClosed = false;
+  private final CopyOnWriteArrayList<Reader> readers =
+    new CopyOnWriteArrayList<Reader>();
+
+  // The capacity is rounded up to a power of 2
+  SampleRingBuffer(int capacity, int frameSize)
+  {
+    int size = Integer.highestOneBit(Math.max(capacity, 2 * frameSize) - 1) << 1;
+    buf = new byte[size];
+    mask = size - 1;
+    this.frameSize = frameSize;
+  }
+
+  int getCapacity()
+  {
+    return buf.length;
+  }
+
+  // New readers get the data written after the registration
+  Reader addReader(boolean isLossy)
+  {
+    Reader reader = new Reader(isLossy);
+    reader.readPos = writePos;
+    readers.add(reader);
+    return reader;
+  }
+
+  void removeReader(Reader reader)
+  {
+    reader.isRemoved = true;
+    readers.remove(reader);
+  }
+
+  // Called by the producer only; blocks while a reader that is
+  // not lossy has no space
+  void write(byte[] data, int offset, int length)
+  {
+    while (length > 0)
+    {
+      long pos = writePos;
+      int free = (int)(buf.length - (pos - minReadPos(pos)));
+      if (free == 0)
+      {
+        if (isClosed)
+          return;
+        LockSupport.parkNanos(WAIT_NS);
+        continue;
+      }
+      int index = (int)(pos & mask);
+      int n = Math.min(Math.min(length, free), buf.length - index);
+      claimPos = pos + n;
+      // A volatile read after the volatile write of the claim, so the copy
+      // cannot be moved before the claim
+      boolean b = barrier;
+      System.arraycopy(data, offset, buf, index, n);
+      offset += n;
+      length -= n;
+      writePos = pos + n;  // Publishes the data
+    }
+  }
+
+  // No more data will be written, waiting readers return -1
+  // after reading the remaining data
+  void close()
+  {
+    isClosed = true;
+  }
+
+  // Called by the given reader only; blocks until at least one frame
+  // is available. Returns the number of bytes (whole frames) copied
+  // or -1 if the buffer is closed and empty or the reader is removed
+  int read(Reader reader, byte[] data, int offset, int length)
+  {
+    length -= length % frameSize;
+    while (true)
+    {
+      if (reader.isRemoved)
+        return -1;
+      long pos = reader.readPos;
+      long wp = writePos;
+      long cp = claimPos;
+      if (reader.isLossy && cp - pos > buf.length)
+      {
+        // Overrun: skip to the oldest data that is not overwritten
+        long skip = cp - pos - buf.length;
+        skip += (frameSize - skip % frameSize) % frameSize;
+        pos += skip;
+        reader.nbDropped += skip;
+        reader.readPos = pos;
+      }
+      int available = (int)Math.max(0, wp - pos);
+      int n = Math.min(available, length);
+      n -= n % frameSize;
+      if (n == 0)
+      {
+        if (isClosed && writePos == wp)
+          return -1;
+        LockSupport.parkNanos(WAIT_NS);
+        continue;
+      }
+      int index = (int)(pos & mask);
+      int n1 = Math.min(n, buf.length - index);
+      System.arraycopy(buf, index, data, offset, n1);
+      if (n1 < n)
+        System.arraycopy(buf, 0, data, offset + n1, n - n1);
+      if (reader.isLossy)
+      {
+        // A volatile write after the copy, so the copy cannot be moved
+        // after the volatile read of the claim
+        reader.barrier = true;
+        if (claimPos - pos > buf.length)
+          continue;  // Overwritten while copying, try again
+      }
+      reader.readPos = pos + n;
+      return n;
+    }
+  }
+
+  private long minReadPos(long pos)
+  {
+    long min = pos;
+    for (Reader reader : readers)
+    {
+      if (!reader.isLossy)
+        min = Math.min(min, reader.readPos);
+    }
+    return min;
+  }
+
+  // Converts the sound data to one sample per frame (mean of the channels),
+  // returns the number of samples
+  static int toMono(byte[] data, int offset, int length,
+    AudioFormat format, int[] samples)
+  {
+    int nbChannels = format.getChannels();
+    int bytesPerSample = (format.getSampleSizeInBits() + 7) / 8;
+    int frameSize = nbChannels * bytesPerSample;
+    boolean isBigEndian = format.isBigEndian();
+    boolean isSigned = format.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED);
+    int shift = 32 - 8 * bytesPerSample;
+    int nbFrames = Math.min(length / frameSize, samples.length);
+    for (int i = 0; i < nbFrames; i++)
+    {
+      long sum = 0;
+      for (int c = 0; c < nbChannels; c++)
+      {
+        int pos = offset + i * frameSize + c * bytesPerSample;
+        int value = 0;
+        for (int k = 0; k < bytesPerSample; k++)
+        {
+          int b = data[pos + (isBigEndian ? k : bytesPerSample - 1 - k)] & 0xFF;
+          value = (value << 8) | b;
+        }
+        if (isSigned)
+          value = (value << shift) >> shift;  // Sign extension
+        else
+          value -= 1 << (8 * bytesPerSample - 1);
+        sum += value;
+      }
+      samples[i] = (int)(sum / nbChannels);
+    }
+    return nbFrames;
+  }
+}
@@ -299,6 +299,49 @@
   - Modified: EntryItems: if setEnable(false) the mouse callbacks are also disabled
  V3.17 - Mar 2017
   - Added: GWindow.setScreenLocation(), getScreenLocation(), getLastScreenLocation()
+ V3.19 - Oct 2026
+  - Added: GPanel, GPane.polyline(), scatter() for large data sets
+  - Modified: GWindow reuses the stroke while the line width is unchanged
+ V3.20 - Oct 2026
+  - Added: GPanel, GPane.renderPixels() for parallel per-pixel rendering
+  - Added: interfaces ColorFunction, PixelFunction
+ V3.21 - Oct 2026
+  - Added: class StripChart (scrolling chart with ring buffer per channel)
+ V3.22 - Oct 2026
+  - Added: GPanel, GPane, GWindow.beginFrame(), endFrame() with back buffer,
+    frame background and frame rate
+ V3.23 - Oct 2026
+  - Added: GPanel, GPane, GWindow.startRecording(), stopRecording() to
+    record the drawing into a SVG file
+ V3.24 - Oct 2026
+  - Added: classes FFT, Windowing, Spectrogram, FirFilter, IirFilter, Resampler
+    and interface SpectrogramListener for signal processing on primitive arrays
+ V3.25 - Oct 2026
+  - Added: class WavReader (memory mapped WAV and raw PCM files)
+  - Modified: SoundPlayer.getWavStereo(), getWavMono() use WavReader for WAV files,
+    getStereo(), getMono() read the whole stream
+ V3.26 - Oct 2026
+  - Added: class Envelope, FunctionPlayer.play() streaming tones and chords,
+    FunctionPlayer.load() for chords, FunctionPlayer.setEnvelope()
+  - Modified: FunctionPlayer uses band limited wavetables for the predefined
+    waveforms and generates the sound data block by block
+ V3.27 - Oct 2026
+  - Added: interfaces CaptureSource, SampleConsumer with predefined sources
+    and consumers, SoundRecorder.start(), addSampleConsumer() to pass the
+    captured data by a ring buffer of fixed size
+  - Modified: SoundRecorder reads from a CaptureSource, no System.exit()
+    on read errors
+ V3.28 - Oct 2026
+  - Modified: Console output is queued and inserted by the EDT in batches
+    instead of using piped streams and polling reader threads
+  - Added: Console.setMaxLines() and key ConsoleMaxLines in aplu_util.properties
+    to limit the number of lines kept in the console window
+ V3.29 - Oct 2026
+  - Modified: FilePath copies files with Files.copy(), copyTree(), pack(),
+    unpack(), zip(), unzip() process the files in parallel
+ V3.30 - Oct 2026
+  - Modified: images in HtmlPane are decoded in background and kept in a
+    size limited cache shared by all documents
  */
 package ch.aplu.util;
 
@@ -314,5 +357,5 @@ interface SharedConstants
     + "OpenSource Free Software\n"
     + "http://www.aplu.ch\n"
     + "All rights reserved";
-  String VERSION = "3.18 - Mar 2017";
+  String VERSION = "3.30 - Oct 2026";
 }
@@ -1032,11 +1032,8 @@ public class SoundPlayer
     try
     {
       format = ais.getFormat();
-
-      numBytes = ais.available();
-      buffer = new byte[numBytes];
-      ais.read(buffer, 0, numBytes);
-      ais.close();
+      buffer = readAll(ais);
+      numBytes = buffer.length;
     }
     catch (Exception ex)
     {
@@ -1201,10 +1198,15 @@ public class SoundPlayer
    * Sample data is grouped in pairs: left channel, right channel. For
    * mono WAV files, both channels contain the same data. <br>
    * 
-   * The values are in range -32768..37768 for 8 and 16 bit formats.
+   * The values are in range -32768..37768 for 8 and 16 bit formats.<br>
+   * PCM WAV files are decoded by WavReader, so 24 and 32 bit
+   * samples are supported too (scaled to the 16 bit range).
    */
   public static int[] getWavStereo(String filename)
   {
+    int[] data = readWav(filename, false);
+    if (data != null)
+      return data;
     AudioInputStream ais;
     try
     {
@@ -1249,16 +1251,10 @@ public class SoundPlayer
   public static int[] getMono(AudioInputStream ais)
   {
     AudioFormat format = ais.getFormat();
-    ArrayList<Byte> buffer = new ArrayList<Byte>(100000);
+    byte[] buffer;
     try
     {
-      int nb = 0;
-      byte[] buf = new byte[10000];
-      while ((nb = ais.read(buf, 0, buf.length)) != -1)
-      {
-        for (int i = 0; i < nb; i++)
-          buffer.add(buf[i]);
-      }
+      buffer = readAll(ais);
     }
     catch (Exception ex)
     {
@@ -1267,7 +1263,7 @@ public class SoundPlayer
     }
 
     int[] data = null;
-    int numBytes = buffer.size();
+    int numBytes = buffer.length;
 
     // -------------------- Mono ---------------------------
     if (format.getChannels() == 1)
@@ -1279,14 +1275,14 @@ public class SoundPlayer
           // Untested  
           data = new int[numBytes];
           for (int i = 0; i < numBytes; i++)
-            data[i] = 256 * buffer.get(i);
+            data[i] = 256 * buffer[i];
         }
         if (format.getEncoding() == AudioFormat.Encoding.PCM_UNSIGNED)
         {
           // Tested  
           data = new int[numBytes];
           for (int i = 0; i < numBytes; i++)
-            data[i] = 256 * ((buffer.get(i) & 0xFF) - 128);
+            data[i] = 256 * ((buffer[i] & 0xFF) - 128);
         }
       }
 
@@ -1299,14 +1295,14 @@ public class SoundPlayer
             // Untested  
             data = new int[numBytes / 2];
             for (int i = 0; i < numBytes / 2; i++)
-              data[i] = 256 * buffer.get(2 * i) + buffer.get(2 * i + 1);
+              data[i] = 256 * buffer[2 * i] + buffer[2 * i + 1];
           }
           else
           {
             // Tested  
             data = new int[numBytes / 2];
             for (int i = 0; i < numBytes / 2; i++)
-              data[i] = buffer.get(2 * i) + 256 * buffer.get(2 * i + 1);
+              data[i] = buffer[2 * i] + 256 * buffer[2 * i + 1];
           }
         }
 
@@ -1327,15 +1323,15 @@ public class SoundPlayer
           // Untested  
           data = new int[numBytes / 2];
           for (int i = 0; i < numBytes / 2; i++)
-            data[i] = 128 * (buffer.get(2 * i) + buffer.get(2 * i + 1));
+            data[i] = 128 * (buffer[2 * i] + buffer[2 * i + 1]);
         }
         if (format.getEncoding() == AudioFormat.Encoding.PCM_UNSIGNED)
         {
           // Tested  
           data = new int[numBytes / 2];
           for (int i = 0; i < numBytes / 2; i++)
-            data[i] = 128 * (((buffer.get(2 * i) & 0xFF) - 128)
-              + ((buffer.get(2 * i + 1) & 0xFF) - 128));
+            data[i] = 128 * (((buffer[2 * i] & 0xFF) - 128)
+              + ((buffer[2 * i + 1] & 0xFF) - 128));
         }
       }
       if (format.getSampleSizeInBits() == 16)  // 16 bit
@@ -1347,16 +1343,16 @@ public class SoundPlayer
             // Untested  
             data = new int[numBytes / 4];
             for (int i = 0; i < numBytes / 4; i++)
-              data[i] = ((256 * buffer.get(4 * i) + buffer.get(4 * i + 1))
-                + (256 * buffer.get(4 * i) + buffer.get(4 * i + 1))) / 2;
+              data[i] = ((256 * buffer[4 * i] + buffer[4 * i + 1])
+                + (256 * buffer[4 * i] + buffer[4 * i + 1])) / 2;
           }
           else
           {
             // Tested  
             data = new int[numBytes / 4];
             for (int i = 0; i < numBytes / 4; i++)
-              data[i] = ((buffer.get(4 * i) + 256 * buffer.get(4 * i + 1))
-                + (buffer.get(4 * i) + 256 * buffer.get(4 * i + 1))) / 2;
+              data[i] = ((buffer[4 * i] + 256 * buffer[4 * i + 1])
+                + (buffer[4 * i] + 256 * buffer[4 * i + 1])) / 2;
           }
         }
 
@@ -1378,10 +1374,15 @@ public class SoundPlayer
    * - 8bit signed, unsigned, 16bit signed<br><br>
    * For stereo WAV files, the left and right channel values are averaged. <br>
    * 
-   * The values are in range -32768..37768 for 8 and 16 bit formats.
+   * The values are in range -32768..37768 for 8 and 16 bit formats.<br>
+   * PCM WAV files are decoded by WavReader, so 24 and 32 bit
+   * samples are supported too (scaled to the 16 bit range).
    */
   public static int[] getWavMono(String filename)
   {
+    int[] data = readWav(filename, true);
+    if (data != null)
+      return data;
     AudioInputStream ais;
     try
     {
@@ -1412,6 +1413,72 @@ public class SoundPlayer
     return getMono(ais);
   }
 
+  // Decode PCM WAV files with WavReader (all sample sizes), return null for
+  // other files. The file is read without mapping, so it is released
+  // by close() and may be overwritten or deleted afterwards
+  private static int[] readWav(String filename, boolean mono)
+  {
+    WavReader reader;
+    try
+    {
+      reader = new WavReader(filename, false);
+    }
+    catch (IOException ex)
+    {
+      return null;
+    }
+    try
+    {
+      long nbFrames = reader.getNbFrames();
+      if (mono)
+      {
+        if (nbFrames > Integer.MAX_VALUE)
+          return null;
+        int[] data = new int[(int)nbFrames];
+        reader.readMono(0, data, data.length);
+        return data;
+      }
+      if (reader.getNbChannels() > 2 || 2 * nbFrames > Integer.MAX_VALUE)
+        return null;
+      int[] data = new int[(int)(2 * nbFrames)];
+      if (reader.getNbChannels() == 2)
+        reader.read(0, data, (int)nbFrames);
+      else
+      {
+        // Both channels contain the same data
+        int[] block = new int[65536];
+        for (long frame = 0; frame < nbFrames; frame += block.length)
+        {
+          int n = reader.read(frame, block, block.length);
+          for (int i = 0; i < n; i++)
+            data[(int)(2 * (frame + i))] = data[(int)(2 * (frame + i)) + 1] = block[i];
+        }
+      }
+      return data;
+    }
+    catch (IllegalStateException ex)
+    {
+      return null;  // Read error
+    }
+    finally
+    {
+      reader.close();
+    }
+  }
+
+  // Read the stream until the end (available() and a single read()
+  // may return less than the whole stream)
+  private static byte[] readAll(AudioInputStream ais) throws IOException
+  {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    byte[] buf = new byte[65536];
+    int nb;
+    while ((nb = ais.read(buf, 0, buf.length)) != -1)
+      bos.write(buf, 0, nb);
+    ais.close();
+    return bos.toByteArray();
+  }
+
   /**
    * Return the audio file format information.
    */
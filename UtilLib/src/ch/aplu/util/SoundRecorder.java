@@ -14,9 +14,19 @@ package ch.aplu.util;
 
 import javax.sound.sampled.*;
 import java.io.*;
+import java.util.ArrayList;
 
 /**
- * Class for recording sound and save it to a WAV file.
+ * Class for recording sound and save it to a WAV file.<br><br>
+ * The sound data is read from a CaptureSource, normally the sound card.
+ * To test an application without microphone, a StreamSource or FileSource
+ * may be used instead.<br>
+ * For continuous monitoring, call start() instead of capture() and
+ * attach SampleConsumers (e.g. LevelMeter, SpectrumAnalyzer, WavWriter).
+ * The data is passed to the consumers by a ring buffer of fixed size,
+ * so the memory used does not grow with the recording time.
+ * @see ch.aplu.util.CaptureSource
+ * @see ch.aplu.util.SampleConsumer
  */
 public class SoundRecorder
 {
@@ -29,32 +39,91 @@ public class SoundRecorder
       {
         while (isCapturing)
         {
-          int cnt = targetDataLine.read(buf, 0, buf.length);
+          int cnt = source.read(buf, 0, buf.length);
+          if (cnt == -1)
+            break;
           if (cnt > 0)
           {
-            data.write(buf, 0, cnt);
+            if (data != null)
+              data.write(buf, 0, cnt);
+            ringBuffer.write(buf, 0, cnt);
             if (soundSampleListener != null)
               soundSampleListener.sampleReceived(cnt);
           }
         }
-        data.close();
+        if (data != null)
+          data.close();
       }
       catch (IOException ex)
       {
         System.out.println(ex);
-        System.exit(1);
       }
+      ringBuffer.close();
     }
   }
+
+  private class ConsumerThread extends Thread
+  {
+    private SampleConsumer consumer;
+    private SampleRingBuffer ring;
+    private SampleRingBuffer.Reader reader;
+
+    ConsumerThread(SampleConsumer consumer, SampleRingBuffer ring, boolean isLossy)
+    {
+      this.consumer = consumer;
+      this.ring = ring;
+      reader = ring.addReader(isLossy);
+      setDaemon(true);
+    }
+
+    // A consumer that throws an exception is stopped, its reader is removed
+    // in any case, so the capture thread never waits for it
+    public void run()
+    {
+      byte[] buf = new byte[bufSize];
+      int nb;
+      try
+      {
+        while ((nb = ring.read(reader, buf, 0, buf.length)) != -1)
+          consumer.samplesReceived(buf, 0, nb);
+        consumer.captureStopped();
+      }
+      catch (RuntimeException ex)
+      {
+        System.out.println("Caught exception in SampleConsumer: " + ex);
+      }
+      finally
+      {
+        ring.removeReader(reader);
+      }
+    }
+  }
+
+  private class Consumer
+  {
+    private SampleConsumer consumer;
+    private boolean isLossy;
+    private ConsumerThread thread = null;
+
+    Consumer(SampleConsumer consumer, boolean isLossy)
+    {
+      this.consumer = consumer;
+      this.isLossy = isLossy;
+    }
+  }
+
   private ByteArrayOutputStream data;
   private ByteArrayOutputStream baos;
   private AudioFormat audioFormat;
-  private TargetDataLine targetDataLine;
+  private CaptureSource source;
   private RecorderThread recorderThread;
   private volatile boolean isCapturing = false;
-  private int mixerIndex;
   private static final int defaultBufSize = 10000;
+  private static final int defaultRingSize = 1 << 20;
   private int bufSize;
+  private int ringSize;
+  private SampleRingBuffer ringBuffer;
+  private final ArrayList<Consumer> consumers = new ArrayList<Consumer>();
   private SoundSampleListener soundSampleListener = null;
 
   /**
@@ -92,11 +161,34 @@ public class SoundRecorder
    */
   public SoundRecorder(int bufSize, AudioFormat audioFormat, int mixerIndex)
   {
+    this(new CaptureSource.LineSource(audioFormat, mixerIndex), bufSize,
+      defaultRingSize);
+  }
+
+  /**
+   * Same as SoundRecorder(source, bufSize, ringSize) with default buffer
+   * size (10000 bytes) and ring buffer size (1 MB).
+   */
+  public SoundRecorder(CaptureSource source)
+  {
+    this(source, defaultBufSize, defaultRingSize);
+  }
+
+  /**
+   * Create a recorder instance that reads the sound data from the given source.
+   * @param source the capture source
+   * @param bufSize the number of bytes read at once from the source
+   * @param ringSize the size of the ring buffer (in bytes) used to pass the
+   * data to the sample consumers (rounded up to a power of 2)
+   */
+  public SoundRecorder(CaptureSource source, int bufSize, int ringSize)
+  {
+    this.source = source;
     this.bufSize = bufSize;
-    this.audioFormat = audioFormat;
-    this.mixerIndex = mixerIndex;
+    this.ringSize = Math.max(ringSize, bufSize);
+    this.audioFormat = source.getFormat();
   }
-  
+
   /**
    * Register a SoundSampleLister to get notifications for each recorded
    * sound sample (default sample size: 10000 bytes).
@@ -105,7 +197,55 @@ public class SoundRecorder
   {
     this.soundSampleListener = listener;
   }
-  
+
+  /**
+   * Register a SampleConsumer that receives the captured data in its
+   * own thread. If the consumer is not lossy and too slow, the capture
+   * waits until there is space in the ring buffer (backpressure); a lossy
+   * consumer (e.g. a LevelMeter) skips the data that was overwritten.
+   * Consumers may be added while capturing.
+   * @param consumer the consumer to register
+   * @param isLossy true, if the consumer may skip data
+   */
+  public void addSampleConsumer(SampleConsumer consumer, boolean isLossy)
+  {
+    synchronized (consumers)
+    {
+      Consumer c = new Consumer(consumer, isLossy);
+      consumers.add(c);
+      if (isCapturing)
+        startConsumer(c);
+    }
+  }
+
+  /**
+   * Unregister the given SampleConsumer.
+   * @param consumer the consumer to unregister
+   */
+  public void removeSampleConsumer(SampleConsumer consumer)
+  {
+    Consumer removed = null;
+    synchronized (consumers)
+    {
+      for (Consumer c : consumers)
+      {
+        if (c.consumer == consumer)
+        {
+          removed = c;
+          break;
+        }
+      }
+      if (removed == null)
+        return;
+      consumers.remove(removed);
+    }
+    if (removed.thread != null)
+    {
+      removed.thread.ring.removeReader(removed.thread.reader);
+      join(removed.thread);
+    }
+  }
+
   /**
    * Same as capture(ByteArrayOutputStream data), but store data
    * in an internal buffer that can be read-out by getRecordedData().
@@ -136,50 +276,92 @@ public class SoundRecorder
   public void capture(ByteArrayOutputStream data)
     throws LineUnavailableException
   {
+    if (isCapturing)
+      stopCapture();
     this.data = data;
-
-    DataLine.Info dataLineInfo =
-      new DataLine.Info(TargetDataLine.class, audioFormat);
-
-    Mixer.Info[] mixerInfo = AudioSystem.getMixerInfo();
-    int nbMixers = mixerInfo.length;
-    if (mixerIndex < -1 || mixerIndex >= nbMixers)
-      mixerIndex = -1;
-
-    if (mixerIndex != -1)  // Use specified mixer
+    source.open();
+    ringBuffer = new SampleRingBuffer(ringSize, audioFormat.getFrameSize());
+    synchronized (consumers)
     {
-      Mixer mixer = AudioSystem.getMixer(mixerInfo[mixerIndex]);
-      targetDataLine =
-        (TargetDataLine)mixer.getLine(dataLineInfo);
+      isCapturing = true;
+      for (Consumer c : consumers)
+        startConsumer(c);
     }
-    else // Use default mixer
-      targetDataLine =
-        (TargetDataLine)AudioSystem.getLine(dataLineInfo);
-
-    targetDataLine.open(audioFormat);
-    targetDataLine.start();
-    isCapturing = true;
     recorderThread = new RecorderThread();
     recorderThread.start();
   }
 
   /**
-   * Stop the capturing process and return after the capture thread terminates.
+   * Start capturing the sound in a separate capture thread without storing
+   * the data. The data is only passed to the registered SampleConsumers and
+   * SoundSampleListener, so the memory used does not grow with the recording time.
+   * @throws javax.sound.sampled.LineUnavailableException if the sound 
+   * card is not available
+   */
+  public void start()
+    throws LineUnavailableException
+  {
+    capture(null);
+  }
+
+  /**
+   * Stop the capturing process and return after the capture thread
+   * and all SampleConsumers terminate.
    */
   public void stopCapture()
   {
-    if (!isCapturing)
+    if (recorderThread == null)
       return;
     isCapturing = false;
-    try
+    join(recorderThread);
+    recorderThread = null;
+    source.close();
+    synchronized (consumers)
     {
-      recorderThread.join();
+      for (Consumer c : consumers)
+      {
+        if (c.thread != null)
+          join(c.thread);
+      }
     }
-    catch (InterruptedException ex)
+  }
+
+  /**
+   * Wait until the capture source has no more data (e.g. the end of a
+   * FileSource is reached) and all SampleConsumers terminated.
+   * Then the capture is stopped.
+   */
+  public void waitForEnd()
+  {
+    if (recorderThread == null)
+      return;
+    join(recorderThread);
+    stopCapture();
+  }
+
+  /**
+   * Return true, if the capture thread is running.
+   */
+  public boolean isCapturing()
+  {
+    return recorderThread != null && recorderThread.isAlive();
+  }
+
+  /**
+   * Return the number of bytes skipped by the given lossy SampleConsumer
+   * since the last capture started.
+   */
+  public long getNbDropped(SampleConsumer consumer)
+  {
+    synchronized (consumers)
     {
+      for (Consumer c : consumers)
+      {
+        if (c.consumer == consumer && c.thread != null)
+          return c.thread.reader.getNbDropped();
+      }
     }
-    targetDataLine.stop();
-    targetDataLine.close();
+    return 0;
   }
 
   /**
@@ -290,7 +472,9 @@ public class SoundRecorder
    */
   public int getMixerIndex()
   {
-    return mixerIndex;
+    if (source instanceof CaptureSource.LineSource)
+      return ((CaptureSource.LineSource)source).getMixerIndex();
+    return -1;
   }
   
   /** 
@@ -300,4 +484,22 @@ public class SoundRecorder
   {
     return audioFormat;
   }
+
+  private void startConsumer(Consumer c)
+  {
+    c.consumer.captureStarted(audioFormat);
+    c.thread = new ConsumerThread(c.consumer, ringBuffer, c.isLossy);
+    c.thread.start();
+  }
+
+  private static void join(Thread t)
+  {
+    try
+    {
+      t.join();
+    }
+    catch (InterruptedException ex)
+    {
+    }
+  }
 }
@@ -0,0 +1,178 @@
+// Spectrogram.java
+
+/*
+ This software is part of the JEX (Java Exemplarisch) Utility Library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.util;
+
+import java.util.ArrayList;
+
+/**
+ * Short time Fourier transform (STFT) of a stream of samples.
+ * The samples are passed in blocks of any size by calling process().
+ * Every hopSize samples the last fftSize samples are multiplied with the
+ * window and transformed, and the magnitudes of the frequencies
+ * 0..fftSize/2 are passed to the SpectrogramListener. The frequency of
+ * index k is k * sampleRate / fftSize.<br>
+ * All buffers are allocated in the constructor.
+ */
+public class Spectrogram
+{
+  private final int fftSize;
+  private final int hopSize;
+  private final double[] window;
+  private final SpectrogramListener listener;
+  private final FFT fft;
+  private final double[] buffer;
+  private final double[] frame;
+  private final double[] magnitudes;
+  private int nbBuffered = 0;
+  private int nbSkip = 0;
+  private long frameIndex = 0;
+
+  /**
+   * Create a spectrogram with the given FFT size (must be even), hop size
+   * (number of samples between two spectra) and window (of size fftSize,
+   * null for a Hann window). For each spectrum the listener is called.
+   */
+  public Spectrogram(int fftSize, int hopSize, double[] window,
+    SpectrogramListener listener)
+  {
+    if (fftSize < 2 || fftSize % 2 != 0)
+      throw new IllegalArgumentException("FFT size must be even and > 0");
+    if (hopSize < 1)
+      throw new IllegalArgumentException("Hop size must be > 0");
+    this.fftSize = fftSize;
+    this.hopSize = hopSize;
+    this.window = window == null ? Windowing.hann(fftSize) : window;
+    if (this.window.length != fftSize)
+      throw new IllegalArgumentException("Window size must be equal to FFT size");
+    this.listener = listener;
+    fft = new FFT(fftSize);
+    buffer = new double[fftSize];
+    frame = new double[fftSize];
+    magnitudes = new double[fftSize / 2 + 1];
+  }
+
+  /**
+   * Pass length samples starting at offset.
+   */
+  public synchronized void process(double[] samples, int offset, int length)
+  {
+    int end = offset + length;
+    int i = offset;
+    while (i < end)
+    {
+      if (nbSkip > 0)
+      {
+        int n = Math.min(nbSkip, end - i);
+        nbSkip -= n;
+        i += n;
+        continue;
+      }
+      int n = Math.min(fftSize - nbBuffered, end - i);
+      System.arraycopy(samples, i, buffer, nbBuffered, n);
+      nbBuffered += n;
+      i += n;
+      if (nbBuffered == fftSize)
+        nextFrame();
+    }
+  }
+
+  /**
+   * Pass all samples.
+   */
+  public void process(double[] samples)
+  {
+    process(samples, 0, samples.length);
+  }
+
+  /**
+   * Pass length integer samples (e.g. sound samples) starting at offset.
+   */
+  public synchronized void process(int[] samples, int offset, int length)
+  {
+    double[] block = new double[Math.min(length, 4096)];
+    while (length > 0)
+    {
+      int n = Math.min(length, block.length);
+      for (int k = 0; k < n; k++)
+        block[k] = samples[offset + k];
+      process(block, 0, n);
+      offset += n;
+      length -= n;
+    }
+  }
+
+  /**
+   * Discard the buffered samples and restart the frame count.
+   */
+  public synchronized void reset()
+  {
+    nbBuffered = 0;
+    nbSkip = 0;
+    frameIndex = 0;
+  }
+
+  /**
+   * Return the spectra of all samples (with a Hann window).
+   * result[i][k] is the magnitude of frequency k of the i-th block.
+   */
+  public static double[][] compute(double[] samples, int fftSize, int hopSize)
+  {
+    final ArrayList<double[]> spectra = new ArrayList<double[]>();
+    Spectrogram spectrogram = new Spectrogram(fftSize, hopSize, null,
+      new SpectrogramListener()
+      {
+        public void spectrumReceived(double[] magnitudes, long frameIndex)
+        {
+          spectra.add(magnitudes.clone());
+        }
+      });
+    spectrogram.process(samples);
+    return spectra.toArray(new double[spectra.size()][]);
+  }
+
+  /**
+   * Same as compute(double[], int, int) for integer sound samples.
+   */
+  public static double[][] compute(int[] samples, int fftSize, int hopSize)
+  {
+    return compute(FFT.toDouble(samples), fftSize, hopSize);
+  }
+
+  private void nextFrame()
+  {
+    for (int k = 0; k < fftSize; k++)
+      frame[k] = buffer[k] * window[k];
+    fft.realForward(frame);
+    int h = fftSize / 2;
+    magnitudes[0] = Math.abs(frame[0]);
+    magnitudes[h] = Math.abs(frame[1]);
+    for (int k = 1; k < h; k++)
+      magnitudes[k] = Math.sqrt(frame[2 * k] * frame[2 * k]
+        + frame[2 * k + 1] * frame[2 * k + 1]);
+    if (listener != null)
+      listener.spectrumReceived(magnitudes, frameIndex);
+    frameIndex++;
+
+    // Keep the overlapping samples for the next frame
+    if (hopSize < fftSize)
+    {
+      System.arraycopy(buffer, hopSize, buffer, 0, fftSize - hopSize);
+      nbBuffered = fftSize - hopSize;
+    }
+    else
+    {
+      nbBuffered = 0;
+      nbSkip = hopSize - fftSize;
+    }
+  }
+}
@@ -0,0 +1,29 @@
+// SpectrogramListener.java
+
+/*
+ This software is part of the JEX (Java Exemplarisch) Utility Library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.util;
+
+/**
+ * Declaration of a Spectrogram callback method.
+ */
+public interface SpectrogramListener
+{
+  /**
+   * Event callback method called each time the spectrum of a new block
+   * of samples is available.
+   * @param magnitudes the magnitudes of the frequencies 0..fftSize/2
+   * (the array is reused for the next block, copy it to keep the values)
+   * @param frameIndex the number of the block (starting with 0)
+   */
+  public void spectrumReceived(double[] magnitudes, long frameIndex);
+
+}
@@ -0,0 +1,298 @@
+// StripChart.java
+
+/*
+ This software is part of the JEX (Java Exemplarisch) Utility Library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.util;
+
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.image.*;
+import javax.swing.Timer;
+
+/**
+ * Scrolling strip chart (oscilloscope display) that uses the whole
+ * client area of a GPanel.
+ * Every channel keeps the last values in a ring buffer. When new values
+ * arrive, the existing graphics is shifted to the left and only the new
+ * line segments are drawn at the right border, so the drawing time does
+ * not depend on the number of values shown.<br>
+ * append() may be called from any thread. To limit the CPU load at high
+ * data rates, the display is updated at most every 20 ms, values appended
+ * in between are shown with the next update at the latest 20 ms later.
+ * Call flush() to show the values appended since the last update
+ * immediately.<br>
+ * The chart draws directly into the GPanel's offscreen buffer. Other drawings
+ * in the GPanel are scrolled away together with the chart.
+ */
+public class StripChart
+{
+  /**
+   * The minimal time between two display updates (in ms).
+   */
+  public static final int UPDATE_PERIOD = 20;
+
+  private static final Color[] DEFAULT_COLORS =
+  {
+    Color.blue, Color.red, Color.green.darker(), Color.magenta,
+    Color.orange, Color.cyan.darker(), Color.black, Color.gray
+  };
+
+  private final GWindow wnd;
+  private final int nbChannels;
+  private final double yMin;
+  private final double yMax;
+  private final int step;
+  private final Color[] colors;
+  private double[][] values;
+  private int capacity;
+  private long[] count;  // Number of values appended per channel
+  private long[] drawn;  // Number of values drawn per channel
+  private long head;     // Number of columns scrolled in
+  private long lastUpdate = 0;
+  private BufferedImage bi = null;
+  private Graphics2D g2D = null;
+  private final Timer timer;  // Shows throttled values
+
+  /**
+   * Create a strip chart with the given number of channels in the given
+   * GPanel. The values from yMin to yMax fill the whole window height.
+   * Consecutive values of a channel are 1 pixel apart.
+   */
+  public StripChart(GPanel p, int nbChannels, double yMin, double yMax)
+  {
+    this(p, nbChannels, yMin, yMax, 1);
+  }
+
+  /**
+   * Same as StripChart(p, nbChannels, yMin, yMax), but consecutive
+   * values of a channel are step pixels apart.
+   */
+  public StripChart(GPanel p, int nbChannels, double yMin, double yMax,
+    int step)
+  {
+    if (nbChannels < 1)
+      throw new IllegalArgumentException("Number of channels must be > 0");
+    if (yMin >= yMax)
+      throw new IllegalArgumentException("yMin must be smaller than yMax");
+    wnd = p.getWindow();
+    this.nbChannels = nbChannels;
+    this.yMin = yMin;
+    this.yMax = yMax;
+    this.step = Math.max(1, step);
+    colors = new Color[nbChannels];
+    for (int i = 0; i < nbChannels; i++)
+      colors[i] = DEFAULT_COLORS[i % DEFAULT_COLORS.length];
+    count = new long[nbChannels];
+    drawn = new long[nbChannels];
+    init();
+    timer = new Timer(UPDATE_PERIOD, new ActionListener()
+    {
+      public void actionPerformed(ActionEvent evt)
+      {
+        flush();
+      }
+    });
+    timer.setRepeats(false);
+  }
+
+  /**
+   * Set the color used to draw the given channel.
+   */
+  public synchronized void setColor(int channel, Color color)
+  {
+    colors[channel] = color;
+  }
+
+  /**
+   * Append a value to the given channel (0..nbChannels - 1).
+   * The display is updated if the last update is more than
+   * UPDATE_PERIOD ms ago, otherwise UPDATE_PERIOD ms later.
+   */
+  public synchronized void append(int channel, double value)
+  {
+    values[channel][(int)(count[channel] % capacity)] = value;
+    count[channel]++;
+    checkUpdate();
+  }
+
+  /**
+   * Append one value to each channel (values[i] to channel i).
+   */
+  public synchronized void append(double[] values)
+  {
+    int n = Math.min(values.length, nbChannels);
+    for (int i = 0; i < n; i++)
+    {
+      this.values[i][(int)(count[i] % capacity)] = values[i];
+      count[i]++;
+    }
+    checkUpdate();
+  }
+
+  /**
+   * Show all values appended since the last display update.
+   */
+  public synchronized void flush()
+  {
+    lastUpdate = System.nanoTime();
+    update();
+  }
+
+  /**
+   * Remove all values and clear the chart.
+   */
+  public synchronized void clear()
+  {
+    for (int i = 0; i < nbChannels; i++)
+    {
+      count[i] = 0;
+      drawn[i] = 0;
+    }
+    head = 0;
+    checkBuffer();
+    g2D.setColor(wnd.getBgColor());
+    g2D.fillRect(0, 0, bi.getWidth(), bi.getHeight());
+    wnd.repaintArea(new Rectangle(0, 0, bi.getWidth(), bi.getHeight()));
+  }
+
+  /**
+   * Redraw the whole chart from the values in the ring buffers
+   * (e.g. after the GPanel was cleared or resized).
+   */
+  public synchronized void redraw()
+  {
+    checkBuffer();
+    head = 0;
+    for (int i = 0; i < nbChannels; i++)
+      drawn[i] = 0;
+    update();
+  }
+
+  /**
+   * Return the number of values that are kept per channel
+   * (enough to fill the window width).
+   */
+  public synchronized int getCapacity()
+  {
+    return capacity;
+  }
+
+  private void checkUpdate()
+  {
+    long now = System.nanoTime();
+    if (now - lastUpdate >= UPDATE_PERIOD * 1000000L)
+    {
+      lastUpdate = now;
+      update();
+    }
+    else if (!timer.isRunning())
+      timer.start();
+  }
+
+  // Allocate the ring buffers for the current window width
+  private void init()
+  {
+    bi = wnd.getBufferedImage();
+    capacity = bi.getWidth() / step + 2;
+    values = new double[nbChannels][capacity];
+    if (g2D != null)
+      g2D.dispose();
+    g2D = bi.createGraphics();
+  }
+
+  // The offscreen buffer is replaced when the window size changes
+  private void checkBuffer()
+  {
+    if (wnd.getBufferedImage() == bi)
+      return;
+    double[][] oldValues = values;
+    int oldCapacity = capacity;
+    init();
+    for (int i = 0; i < nbChannels; i++)
+    {
+      long first = Math.max(0, count[i] - Math.min(oldCapacity, capacity));
+      for (long k = first; k < count[i]; k++)
+        values[i][(int)(k % capacity)] = oldValues[i][(int)(k % oldCapacity)];
+    }
+    head = 0;
+    for (int i = 0; i < nbChannels; i++)
+      drawn[i] = 0;
+  }
+
+  private void update()
+  {
+    checkBuffer();
+    int width = bi.getWidth();
+    int height = bi.getHeight();
+    long newHead = 0;
+    for (int i = 0; i < nbChannels; i++)
+      newHead = Math.max(newHead, count[i]);
+    long shift = newHead - head;
+    if (shift == 0)
+      return;
+
+    if (head == 0 || shift * step >= width)
+    {
+      // Nothing to scroll: draw everything that is still in the buffers
+      g2D.setColor(wnd.getBgColor());
+      g2D.fillRect(0, 0, width, height);
+      for (int i = 0; i < nbChannels; i++)
+        drawn[i] = 0;
+    }
+    else
+    {
+      int dx = (int)(shift * step);
+      g2D.copyArea(dx, 0, width - dx, height, -dx, 0);
+      g2D.setColor(wnd.getBgColor());
+      g2D.fillRect(width - dx, 0, dx, height);
+    }
+    head = newHead;
+
+    for (int i = 0; i < nbChannels; i++)
+    {
+      // Oldest value still visible and still in the ring buffer
+      long first = Math.max(Math.max(0, count[i] - capacity),
+        head - width / step - 1);
+      long start = Math.max(first, drawn[i] - 1);
+      g2D.setColor(colors[i]);
+      for (long k = start; k < count[i]; k++)
+      {
+        int x = toX(k, width);
+        int y = toY(values[i][(int)(k % capacity)], height);
+        if (k > first)
+        {
+          int xPrev = toX(k - 1, width);
+          int yPrev = toY(values[i][(int)((k - 1) % capacity)], height);
+          g2D.drawLine(xPrev, yPrev, x, y);
+        }
+        else
+          g2D.drawLine(x, y, x, y);
+      }
+      drawn[i] = count[i];
+    }
+    wnd.repaintArea(new Rectangle(0, 0, width, height));
+  }
+
+  private int toX(long index, int width)
+  {
+    return (int)(width - 1 - (head - 1 - index) * step);
+  }
+
+  private int toY(double value, int height)
+  {
+    double y = (height - 1) * (yMax - value) / (yMax - yMin);
+    if (y < -1)
+      y = -1;
+    if (y > height)
+      y = height;
+    return (int)Math.rint(y);
+  }
+}
@@ -0,0 +1,319 @@
+// SvgRecorder.java
+
+/*
+ This software is part of the JEX (Java Exemplarisch) Utility Library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.util;
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.awt.image.*;
+import java.io.*;
+import java.util.Base64;
+import javax.imageio.ImageIO;
+
+/**
+ * Writes the drawing primitives of a GWindow into a SVG file.
+ * Every primitive is written as soon as it is drawn, so the memory
+ * used does not depend on the size of the drawing.
+ * Coordinates are the pixel coordinates of the offscreen buffer.
+ * If writing fails, the recording stops silently and isOk() returns false.
+ */
+class SvgRecorder
+{
+  private Writer out;
+  private boolean isOk = true;
+  private final StringBuilder sb = new StringBuilder();
+  private final double[] coords = new double[6];
+
+  SvgRecorder(String filename, int width, int height, Color bgColor)
+    throws IOException
+  {
+    out = new BufferedWriter(new OutputStreamWriter(
+      new FileOutputStream(filename), "UTF-8"));
+    out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" "
+      + "xmlns:xlink=\"http://www.w3.org/1999/xlink\" version=\"1.1\" "
+      + "width=\"" + width + "\" height=\"" + height + "\" "
+      + "viewBox=\"0 0 " + width + " " + height + "\">\n");
+    clear(width, height, bgColor);
+  }
+
+  boolean isOk()
+  {
+    return isOk;
+  }
+
+  void close()
+  {
+    if (out == null)
+      return;
+    try
+    {
+      out.write("</svg>\n");
+      out.close();
+    }
+    catch (IOException ex)
+    {
+      isOk = false;
+    }
+    out = null;
+  }
+
+  // Covers everything recorded so far
+  void clear(int width, int height, Color bgColor)
+  {
+    sb.setLength(0);
+    sb.append("<rect x=\"0\" y=\"0\" width=\"").append(width)
+      .append("\" height=\"").append(height).append("\"");
+    appendColor("fill", bgColor);
+    sb.append("/>\n");
+    write();
+  }
+
+  void shape(Shape shape, Color color, int lineWidth, boolean fill)
+  {
+    sb.setLength(0);
+    sb.append("<path d=\"");
+    PathIterator pi = shape.getPathIterator(null);
+    while (!pi.isDone())
+    {
+      switch (pi.currentSegment(coords))
+      {
+        case PathIterator.SEG_MOVETO:
+          sb.append('M');
+          appendCoords(2);
+          break;
+        case PathIterator.SEG_LINETO:
+          sb.append('L');
+          appendCoords(2);
+          break;
+        case PathIterator.SEG_QUADTO:
+          sb.append('Q');
+          appendCoords(4);
+          break;
+        case PathIterator.SEG_CUBICTO:
+          sb.append('C');
+          appendCoords(6);
+          break;
+        case PathIterator.SEG_CLOSE:
+          sb.append('Z');
+          break;
+      }
+      pi.next();
+    }
+    sb.append('"');
+    if (pi.getWindingRule() == PathIterator.WIND_EVEN_ODD)
+      sb.append(" fill-rule=\"evenodd\"");
+    if (fill)
+    {
+      appendColor("fill", color);
+    }
+    else
+    {
+      sb.append(" fill=\"none\"");
+      appendColor("stroke", color);
+      sb.append(" stroke-width=\"").append(lineWidth).append('"');
+      sb.append(" stroke-linecap=\"square\"");  // As BasicStroke
+    }
+    sb.append("/>\n");
+    write();
+  }
+
+  // Points are drawn as squares with side lineWidth
+  void point(int x, int y, Color color, int lineWidth)
+  {
+    double d = lineWidth / 2.0;
+    sb.setLength(0);
+    sb.append("<rect x=\"");
+    appendNumber(lineWidth > 1 ? x - d : x);
+    sb.append("\" y=\"");
+    appendNumber(lineWidth > 1 ? y - d : y);
+    sb.append("\" width=\"").append(lineWidth)
+      .append("\" height=\"").append(lineWidth).append('"');
+    appendColor("fill", color);
+    sb.append("/>\n");
+    write();
+  }
+
+  void text(String text, int x, int y, Font font, Color color)
+  {
+    sb.setLength(0);
+    sb.append("<text x=\"").append(x).append("\" y=\"").append(y)
+      .append("\" font-family=\"");
+    appendEscaped(font.getFamily());
+    sb.append("\" font-size=\"").append(font.getSize()).append('"');
+    if (font.isBold())
+      sb.append(" font-weight=\"bold\"");
+    if (font.isItalic())
+      sb.append(" font-style=\"italic\"");
+    appendColor("fill", color);
+    sb.append(" xml:space=\"preserve\">");
+    appendEscaped(text);
+    sb.append("</text>\n");
+    write();
+  }
+
+  void image(BufferedImage bi, int x, int y)
+  {
+    image(bi, AffineTransform.getTranslateInstance(x, y));
+  }
+
+  // The image is embedded as PNG, encoded while it is written
+  void image(BufferedImage bi, AffineTransform at)
+  {
+    sb.setLength(0);
+    sb.append("<image x=\"0\" y=\"0\" width=\"").append(bi.getWidth())
+      .append("\" height=\"").append(bi.getHeight()).append('"');
+    if (!at.isIdentity())
+    {
+      // SVG matrix(a b c d e f) has the order of getMatrix()
+      double[] m = new double[6];
+      at.getMatrix(m);
+      sb.append(" transform=\"matrix(");
+      for (int i = 0; i < 6; i++)
+      {
+        if (i > 0)
+          sb.append(' ');
+        if (i < 4)
+          sb.append(m[i]);  // Rotations need full precision
+        else
+          appendNumber(m[i]);
+      }
+      sb.append(")\"");
+    }
+    sb.append(" xlink:href=\"data:image/png;base64,");
+    write();
+    if (!isOk)
+      return;
+    try
+    {
+      OutputStream base64 = Base64.getEncoder().wrap(new AsciiOutput(out));
+      ImageIO.write(bi, "png", base64);
+      base64.close();
+      out.write("\"/>\n");
+    }
+    catch (IOException ex)
+    {
+      fail();
+    }
+  }
+
+  private void appendCoords(int n)
+  {
+    for (int i = 0; i < n; i++)
+    {
+      if (i > 0)
+        sb.append(i % 2 == 0 ? ' ' : ',');
+      appendNumber(coords[i]);
+    }
+  }
+
+  private void appendNumber(double value)
+  {
+    long rounded = Math.round(value * 100);
+    if (rounded % 100 == 0)
+      sb.append(rounded / 100);
+    else
+      sb.append(rounded / 100.0);
+  }
+
+  private void appendColor(String attribute, Color color)
+  {
+    sb.append(' ').append(attribute).append("=\"rgb(")
+      .append(color.getRed()).append(',')
+      .append(color.getGreen()).append(',')
+      .append(color.getBlue()).append(")\"");
+    if (color.getAlpha() < 255)
+    {
+      sb.append(' ').append(attribute).append("-opacity=\"");
+      appendNumber(color.getAlpha() / 255.0);
+      sb.append('"');
+    }
+  }
+
+  private void appendEscaped(String s)
+  {
+    for (int i = 0; i < s.length(); i++)
+    {
+      char ch = s.charAt(i);
+      switch (ch)
+      {
+        case '<':
+          sb.append("&lt;");
+          break;
+        case '>':
+          sb.append("&gt;");
+          break;
+        case '&':
+          sb.append("&amp;");
+          break;
+        case '"':
+          sb.append("&quot;");
+          break;
+        default:
+          sb.append(ch);
+      }
+    }
+  }
+
+  private void write()
+  {
+    if (!isOk)
+      return;
+    try
+    {
+      out.append(sb);
+    }
+    catch (IOException ex)
+    {
+      fail();
+    }
+  }
+
+  private void fail()
+  {
+    isOk = false;
+    try
+    {
+      out.close();
+    }
+    catch (IOException ex)
+    {
+    }
+  }
+
+  // Passes the characters written by the Base64 encoder to the writer
+  private static class AsciiOutput extends OutputStream
+  {
+    private final Writer out;
+
+    AsciiOutput(Writer out)
+    {
+      this.out = out;
+    }
+
+    public void write(int b) throws IOException
+    {
+      out.write(b & 0xFF);
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+      for (int i = off; i < off + len; i++)
+        out.write(b[i] & 0xFF);
+    }
+
+    // Does not close the writer
+    public void close()
+    {
+    }
+  }
+}
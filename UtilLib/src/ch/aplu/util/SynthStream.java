@@ -0,0 +1,172 @@
+// SynthStream.java
+
+/*
+ This software is part of the JEX (Java Exemplarisch) Utility Library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.util;
+
+import java.io.*;
+import javax.sound.sampled.AudioFormat;
+
+// Input stream that generates the PCM data of a tone or chord
+// block by block when it is read, so the memory used does not
+// depend on the duration
+class SynthStream extends InputStream // not public
+{
+  private static final int BLOCK_FRAMES = 1024;
+
+  private final Waveform wf;
+  private final double[] freqs;
+  private final float[][] tables;
+  private final double[] phases;
+  private final double duration;
+  private final Envelope envelope;
+  private final double sampleRate;
+  private final long nbFrames;
+  private final int frameSize;
+  private final int bytesPerSample;
+  private final int nbChannels;
+  private final boolean isBigEndian;
+  private final int offset;  // For unsigned encoding
+  private final double amplitude;
+  private final double[] block = new double[BLOCK_FRAMES];
+  private final byte[] frame;  // For single byte reads
+  private int framePos;
+  private long pos = 0;  // Frame index
+
+  SynthStream(AudioFormat audioFormat, Waveform wf, double duration,
+    double[] freqs, Envelope envelope)
+  {
+    this.wf = wf;
+    this.freqs = freqs.clone();
+    this.duration = duration;
+    this.envelope = envelope;
+    sampleRate = audioFormat.getSampleRate();
+    nbFrames = (long)(duration * sampleRate);
+    nbChannels = audioFormat.getChannels();
+    int bits = audioFormat.getSampleSizeInBits();
+    bytesPerSample = (bits + 7) / 8;
+    frameSize = bytesPerSample * nbChannels;
+    isBigEndian = audioFormat.isBigEndian();
+    boolean isSigned =
+      audioFormat.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED);
+    offset = isSigned ? 0 : 1 << (bits - 1);
+    amplitude = (1 << (bits - 1)) - 1;
+    tables = new float[freqs.length][];
+    for (int i = 0; i < freqs.length; i++)
+      tables[i] = Wavetable.get(wf, freqs[i], sampleRate);
+    phases = new double[freqs.length];
+    frame = new byte[frameSize];
+    framePos = frameSize;
+  }
+
+  long getFrameLength()
+  {
+    return nbFrames;
+  }
+
+  public int read() throws IOException
+  {
+    if (framePos == frameSize)
+    {
+      if (read(frame, 0, frameSize) == -1)
+        return -1;
+      framePos = 0;
+    }
+    return frame[framePos++] & 0xFF;
+  }
+
+  public int read(byte[] b, int off, int len) throws IOException
+  {
+    if (pos >= nbFrames)
+      return -1;
+    int n = (int)Math.min(len / frameSize, nbFrames - pos);
+    int done = 0;
+    while (done < n)
+    {
+      int size = Math.min(BLOCK_FRAMES, n - done);
+      generate(size);
+      off = toBytes(size, b, off);
+      done += size;
+    }
+    return n * frameSize;
+  }
+
+  public int available()
+  {
+    return (int)Math.min(Integer.MAX_VALUE / frameSize, nbFrames - pos)
+      * frameSize;
+  }
+
+  // Mix the next size frames of all voices into block
+  private void generate(int size)
+  {
+    for (int i = 0; i < size; i++)
+      block[i] = 0;
+    double scale = freqs.length > 1 ? 1.0 / freqs.length : 1;
+    for (int v = 0; v < freqs.length; v++)
+    {
+      float[] table = tables[v];
+      if (table != null)
+      {
+        double phase = phases[v];
+        double inc = freqs[v] / sampleRate * Wavetable.SIZE;
+        for (int i = 0; i < size; i++)
+        {
+          int index = (int)phase;
+          double frac = phase - index;
+          block[i] += table[index] + frac * (table[index + 1] - table[index]);
+          phase += inc;
+          if (phase >= Wavetable.SIZE)
+            phase -= Wavetable.SIZE;
+          else if (phase < 0)
+            phase += Wavetable.SIZE;
+        }
+        phases[v] = phase;
+      }
+      else
+      {
+        for (int i = 0; i < size; i++)
+          block[i] += wf.f((pos + i) / sampleRate, freqs[v]);
+      }
+    }
+    for (int i = 0; i < size; i++)
+    {
+      double y = scale * block[i];
+      if (envelope != null)
+        y *= envelope.getLevel((pos + i) / sampleRate, duration);
+      block[i] = y;
+    }
+    pos += size;
+  }
+
+  private int toBytes(int size, byte[] b, int off)
+  {
+    for (int i = 0; i < size; i++)
+    {
+      double y = Math.max(-1, Math.min(1, block[i]));
+      int value = (int)Math.round(amplitude * y) + offset;
+      for (int c = 0; c < nbChannels; c++)
+      {
+        if (isBigEndian)
+        {
+          for (int k = bytesPerSample - 1; k >= 0; k--)
+            b[off++] = (byte)(value >> (8 * k));
+        }
+        else
+        {
+          for (int k = 0; k < bytesPerSample; k++)
+            b[off++] = (byte)(value >> (8 * k));
+        }
+      }
+    }
+    return off;
+  }
+}
@@ -0,0 +1,497 @@
+// WavReader.java
+
+/*
+ This software is part of the JEX (Java Exemplarisch) Utility Library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.util;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Reader for WAV files (RIFF or RIFX) and raw PCM files with
+ * 8, 16, 24 or 32 bit signed or unsigned samples, any number of channels
+ * and both byte orders.<br>
+ * The sample data is memory mapped and decoded only when requested,
+ * so even very long recordings need no heap memory. The samples may be
+ * read block by block (read()) or at any frame index (read(frame, ...)).
+ * A frame contains one sample per channel, the samples of all channels
+ * are interleaved in the buffers.<br>
+ * Integer samples are scaled to the 16 bit range -32768..32767 (as
+ * SoundPlayer.getWavStereo()), double samples to the range -1..1.
+ */
+public class WavReader
+{
+  private static final int SEGMENT_SIZE = 1 << 30;  // Mapping limit 2 GB
+  private static final int BLOCK_SIZE = 1 << 16;  // Read without mapping
+  private RandomAccessFile raf;
+  private FileChannel channel;
+  private final boolean isMapped;
+  private AtomicReferenceArray<MappedByteBuffer> segments;
+  private ByteBuffer block = null;  // Last block read without mapping
+  private int blockIndex = -1;
+  private long dataOffset;
+  private long nbFrames;
+  private int nbChannels;
+  private int bytesPerSample;
+  private int frameSize;
+  private int framesPerSegment;
+  private float sampleRate;
+  private boolean isSigned;
+  private boolean isBigEndian;
+  private long position = 0;
+
+  /**
+   * Open the given WAV file.
+   * @exception IOException if the file cannot be read or is not a
+   * PCM WAV file
+   */
+  public WavReader(String filename) throws IOException
+  {
+    this(filename, true);
+  }
+
+  // Without mapping, the data is read block by block with the file channel
+  // (for a single thread only). The file is released at once by close(),
+  // while a mapped file stays locked on some systems until the mapping is
+  // garbage collected
+  WavReader(String filename, boolean isMapped) throws IOException
+  {
+    this.isMapped = isMapped;
+    raf = new RandomAccessFile(filename, "r");
+    boolean isOpen = false;
+    try
+    {
+      channel = raf.getChannel();
+      readHeader();
+      init();
+      isOpen = true;
+    }
+    finally
+    {
+      if (!isOpen)
+        raf.close();
+    }
+  }
+
+  /**
+   * Open a raw PCM file with the given audio format. The samples
+   * start at the given byte offset.
+   */
+  public WavReader(String filename, AudioFormat format, long offset)
+    throws IOException
+  {
+    isMapped = true;
+    nbChannels = format.getChannels();
+    bytesPerSample = (format.getSampleSizeInBits() + 7) / 8;
+    sampleRate = format.getSampleRate();
+    isSigned = format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED;
+    isBigEndian = format.isBigEndian();
+    dataOffset = offset;
+    if (bytesPerSample < 1 || bytesPerSample > 4 || nbChannels < 1)
+      throw new IOException("Audio format not supported");
+    raf = new RandomAccessFile(filename, "r");
+    boolean isOpen = false;
+    try
+    {
+      channel = raf.getChannel();
+      nbFrames = Math.max(0, channel.size() - offset)
+        / (nbChannels * bytesPerSample);
+      init();
+      isOpen = true;
+    }
+    finally
+    {
+      if (!isOpen)
+        raf.close();
+    }
+  }
+
+  /**
+   * Return the number of channels (1: mono, 2: stereo).
+   */
+  public int getNbChannels()
+  {
+    return nbChannels;
+  }
+
+  /**
+   * Return the sample rate (frames per second).
+   */
+  public float getSampleRate()
+  {
+    return sampleRate;
+  }
+
+  /**
+   * Return the number of bits per sample.
+   */
+  public int getBitsPerSample()
+  {
+    return 8 * bytesPerSample;
+  }
+
+  /**
+   * Return the number of frames (samples per channel).
+   */
+  public long getNbFrames()
+  {
+    return nbFrames;
+  }
+
+  /**
+   * Return the audio format of the samples.
+   */
+  public AudioFormat getAudioFormat()
+  {
+    return new AudioFormat(isSigned ? AudioFormat.Encoding.PCM_SIGNED
+      : AudioFormat.Encoding.PCM_UNSIGNED, sampleRate, 8 * bytesPerSample,
+      nbChannels, frameSize, sampleRate, isBigEndian);
+  }
+
+  /**
+   * Return the index of the next frame returned by read(buffer).
+   */
+  public synchronized long getPosition()
+  {
+    return position;
+  }
+
+  /**
+   * Set the index of the next frame returned by read(buffer).
+   */
+  public synchronized void setPosition(long frame)
+  {
+    position = Math.max(0, Math.min(frame, nbFrames));
+  }
+
+  /**
+   * Read the next frames into the buffer (as much as fit)
+   * and advance the position.
+   * Return the number of frames read, -1 at the end of the data.
+   */
+  public synchronized int read(int[] buffer)
+  {
+    if (position >= nbFrames)
+      return -1;
+    int n = read(position, buffer, buffer.length / nbChannels);
+    position += n;
+    return n;
+  }
+
+  /**
+   * Same as read(int[]), but the samples are scaled to -1..1.
+   */
+  public synchronized int read(double[] buffer)
+  {
+    if (position >= nbFrames)
+      return -1;
+    int n = read(position, buffer, buffer.length / nbChannels);
+    position += n;
+    return n;
+  }
+
+  /**
+   * Read nb frames starting at the given frame index into the buffer.
+   * The position used by read(buffer) is not changed.
+   * Return the number of frames read (less than nb at the end of the data).
+   */
+  public int read(long frame, int[] buffer, int nb)
+  {
+    nb = checkRange(frame, nb);
+    int shift = 8 * bytesPerSample - 16;
+    int index = 0;
+    for (int i = 0; i < nb; i++)
+    {
+      long f = frame + i;
+      ByteBuffer bb = getSegment(f);
+      int offset = (int)(f % framesPerSegment) * frameSize;
+      for (int c = 0; c < nbChannels; c++)
+      {
+        int value = rawSample(bb, offset);
+        buffer[index++] = shift >= 0 ? value >> shift : value << -shift;
+        offset += bytesPerSample;
+      }
+    }
+    return nb;
+  }
+
+  /**
+   * Same as read(long, int[], int), but the samples are scaled to -1..1.
+   */
+  public int read(long frame, double[] buffer, int nb)
+  {
+    nb = checkRange(frame, nb);
+    double scale = 1.0 / (1L << (8 * bytesPerSample - 1));
+    int index = 0;
+    for (int i = 0; i < nb; i++)
+    {
+      long f = frame + i;
+      ByteBuffer bb = getSegment(f);
+      int offset = (int)(f % framesPerSegment) * frameSize;
+      for (int c = 0; c < nbChannels; c++)
+      {
+        buffer[index++] = rawSample(bb, offset) * scale;
+        offset += bytesPerSample;
+      }
+    }
+    return nb;
+  }
+
+  /**
+   * Read nb frames starting at the given frame index into the buffer,
+   * one value per frame (the average of all channels).
+   * Return the number of frames read.
+   */
+  public int readMono(long frame, int[] buffer, int nb)
+  {
+    nb = checkRange(frame, nb);
+    int shift = 8 * bytesPerSample - 16;
+    for (int i = 0; i < nb; i++)
+    {
+      long f = frame + i;
+      ByteBuffer bb = getSegment(f);
+      int offset = (int)(f % framesPerSegment) * frameSize;
+      long sum = 0;
+      for (int c = 0; c < nbChannels; c++)
+      {
+        sum += rawSample(bb, offset);
+        offset += bytesPerSample;
+      }
+      int value = (int)(sum / nbChannels);
+      buffer[i] = shift >= 0 ? value >> shift : value << -shift;
+    }
+    return nb;
+  }
+
+  /**
+   * Return the sample of the given channel at the given frame index
+   * (scaled to the 16 bit range).
+   */
+  public int getSample(long frame, int channel)
+  {
+    if (frame < 0 || frame >= nbFrames || channel < 0 || channel >= nbChannels)
+      throw new IndexOutOfBoundsException("Frame or channel out of range");
+    int offset = (int)(frame % framesPerSegment) * frameSize
+      + channel * bytesPerSample;
+    int shift = 8 * bytesPerSample - 16;
+    int value = rawSample(getSegment(frame), offset);
+    return shift >= 0 ? value >> shift : value << -shift;
+  }
+
+  /**
+   * Close the file. The mapped data is released by the garbage collector.
+   */
+  public synchronized void close()
+  {
+    try
+    {
+      raf.close();
+    }
+    catch (IOException ex)
+    {
+    }
+    for (int i = 0; i < segments.length(); i++)
+      segments.set(i, null);
+    block = null;
+    blockIndex = -1;
+  }
+
+  private void readHeader() throws IOException
+  {
+    ByteBuffer header = ByteBuffer.allocate(12);
+    readFully(header, 0);
+    String riff = getTag(header, 0);
+    if (riff.equals("RIFF"))
+      isBigEndian = false;
+    else if (riff.equals("RIFX"))
+      isBigEndian = true;
+    else
+      throw new IOException("Not a WAV file");
+    if (!getTag(header, 8).equals("WAVE"))
+      throw new IOException("Not a WAV file");
+
+    ByteOrder order = isBigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    long pos = 12;
+    boolean hasFormat = false;
+    long size = channel.size();
+    while (pos + 8 <= size)
+    {
+      ByteBuffer chunk = ByteBuffer.allocate(8).order(order);
+      readFully(chunk, pos);
+      String id = getTag(chunk, 0);
+      long length = chunk.getInt(4) & 0xFFFFFFFFL;
+      pos += 8;
+      if (id.equals("fmt "))
+      {
+        if (length < 16)
+          throw new IOException("Invalid format chunk");
+        ByteBuffer fmt = ByteBuffer.allocate((int)Math.min(length, 40)).order(order);
+        readFully(fmt, pos);
+        int formatTag = fmt.getShort(0) & 0xFFFF;
+        if (formatTag == 0xFFFE && fmt.capacity() >= 26)  // Extensible
+          formatTag = fmt.getShort(24) & 0xFFFF;
+        if (formatTag != 1)
+          throw new IOException("Only PCM WAV files supported");
+        nbChannels = fmt.getShort(2) & 0xFFFF;
+        sampleRate = fmt.getInt(4);
+        int bitsPerSample = fmt.getShort(14) & 0xFFFF;
+        bytesPerSample = (bitsPerSample + 7) / 8;
+        if (bytesPerSample < 1 || bytesPerSample > 4 || nbChannels < 1
+          || sampleRate <= 0)
+          throw new IOException("Audio format not supported");
+        isSigned = bytesPerSample > 1;  // 8 bit WAV samples are unsigned
+        hasFormat = true;
+      }
+      else if (id.equals("data"))
+      {
+        if (!hasFormat)
+          throw new IOException("Missing format chunk");
+        dataOffset = pos;
+        // Tolerate wrong lengths of truncated files
+        length = Math.min(length, size - pos);
+        nbFrames = length / (nbChannels * bytesPerSample);
+        return;
+      }
+      pos += length + (length & 1);  // Chunks are word aligned
+    }
+    throw new IOException("Missing data chunk");
+  }
+
+  private void init()
+  {
+    frameSize = nbChannels * bytesPerSample;
+    framesPerSegment = (isMapped ? SEGMENT_SIZE : BLOCK_SIZE) / frameSize;
+    int nbSegments = (int)((nbFrames + framesPerSegment - 1) / framesPerSegment);
+    segments = new AtomicReferenceArray<MappedByteBuffer>(
+      isMapped ? Math.max(1, nbSegments) : 0);
+  }
+
+  // Segments are mapped when first used
+  private ByteBuffer getSegment(long frame)
+  {
+    int index = (int)(frame / framesPerSegment);
+    if (!isMapped)
+      return readBlock(index);
+    MappedByteBuffer segment = segments.get(index);
+    if (segment == null)
+    {
+      synchronized (this)
+      {
+        segment = segments.get(index);
+        if (segment == null)
+        {
+          long start = (long)index * framesPerSegment;
+          long length = Math.min(framesPerSegment, nbFrames - start) * frameSize;
+          try
+          {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY,
+              dataOffset + start * frameSize, length);
+          }
+          catch (IOException ex)
+          {
+            throw new IllegalStateException("Cannot map WAV data: " + ex);
+          }
+          segments.set(index, segment);
+        }
+      }
+    }
+    return segment;
+  }
+
+  private ByteBuffer readBlock(int index)
+  {
+    if (index == blockIndex)
+      return block;
+    long start = (long)index * framesPerSegment;
+    int length = (int)(Math.min(framesPerSegment, nbFrames - start) * frameSize);
+    if (block == null)
+      block = ByteBuffer.allocate(framesPerSegment * frameSize);
+    block.clear();
+    block.limit(length);
+    blockIndex = -1;
+    try
+    {
+      readFully(block, dataOffset + start * frameSize);
+    }
+    catch (IOException ex)
+    {
+      throw new IllegalStateException("Cannot read WAV data: " + ex);
+    }
+    blockIndex = index;
+    return block;
+  }
+
+  // Signed sample value with the original number of bits
+  private int rawSample(ByteBuffer bb, int offset)
+  {
+    int value;
+    switch (bytesPerSample)
+    {
+      case 1:
+        value = bb.get(offset) & 0xFF;
+        break;
+      case 2:
+        if (isBigEndian)
+          value = (bb.get(offset) & 0xFF) << 8 | (bb.get(offset + 1) & 0xFF);
+        else
+          value = (bb.get(offset + 1) & 0xFF) << 8 | (bb.get(offset) & 0xFF);
+        break;
+      case 3:
+        if (isBigEndian)
+          value = (bb.get(offset) & 0xFF) << 16
+            | (bb.get(offset + 1) & 0xFF) << 8 | (bb.get(offset + 2) & 0xFF);
+        else
+          value = (bb.get(offset + 2) & 0xFF) << 16
+            | (bb.get(offset + 1) & 0xFF) << 8 | (bb.get(offset) & 0xFF);
+        break;
+      default:
+        if (isBigEndian)
+          value = (bb.get(offset) & 0xFF) << 24 | (bb.get(offset + 1) & 0xFF) << 16
+            | (bb.get(offset + 2) & 0xFF) << 8 | (bb.get(offset + 3) & 0xFF);
+        else
+          value = (bb.get(offset + 3) & 0xFF) << 24 | (bb.get(offset + 2) & 0xFF) << 16
+            | (bb.get(offset + 1) & 0xFF) << 8 | (bb.get(offset) & 0xFF);
+    }
+    int bits = 8 * bytesPerSample;
+    if (!isSigned)
+      value ^= 1 << (bits - 1);  // Offset binary to two's complement
+    // Sign extension
+    return (value << (32 - bits)) >> (32 - bits);
+  }
+
+  private int checkRange(long frame, int nb)
+  {
+    if (frame < 0 || frame > nbFrames)
+      throw new IndexOutOfBoundsException("Frame index out of range: " + frame);
+    return (int)Math.min(Math.max(nb, 0), nbFrames - frame);
+  }
+
+  private void readFully(ByteBuffer bb, long pos) throws IOException
+  {
+    while (bb.hasRemaining())
+    {
+      int n = channel.read(bb, pos + bb.position());
+      if (n < 0)
+        throw new EOFException("Unexpected end of WAV file");
+    }
+  }
+
+  private static String getTag(ByteBuffer bb, int offset)
+  {
+    char[] tag = new char[4];
+    for (int i = 0; i < 4; i++)
+      tag[i] = (char)(bb.get(offset + i) & 0xFF);
+    return new String(tag);
+  }
+}
@@ -0,0 +1,96 @@
+// Wavetable.java
+
+/*
+ This software is part of the JEX (Java Exemplarisch) Utility Library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.util;
+
+import java.util.HashMap;
+
+// Band limited tables of one period of the predefined periodic waveforms.
+// The tables are computed by additive synthesis with all harmonics
+// below the Nyquist frequency, one table per octave (number of harmonics
+// a power of 2), and shared by all players.
+class Wavetable // not public
+{
+  static final int SIZE = 4096;  // Power of 2
+  private static final HashMap<String, float[]> tables =
+    new HashMap<String, float[]>();
+
+  private Wavetable()
+  {
+  }
+
+  // Returns the table for the given waveform and frequency or null,
+  // if the waveform is not tabulated (user defined or not periodic)
+  static float[] get(Waveform wf, double freq, double sampleRate)
+  {
+    Class<?> c = wf.getClass();
+    if (c != Waveform.SineWave.class && c != Waveform.SquareWave.class
+      && c != Waveform.SawtoothWave.class && c != Waveform.TriangleWave.class)
+      return null;
+    int nbHarmonics = 1;
+    if (c != Waveform.SineWave.class)
+    {
+      double max = 0.5 * sampleRate / Math.abs(freq);
+      while (2 * nbHarmonics <= max && nbHarmonics < SIZE / 4)
+        nbHarmonics *= 2;
+    }
+    String key = c.getName() + nbHarmonics;
+    synchronized (tables)
+    {
+      float[] table = tables.get(key);
+      if (table == null)
+      {
+        table = create(c, nbHarmonics);
+        tables.put(key, table);
+      }
+      return table;
+    }
+  }
+
+  private static float[] create(Class<?> c, int nbHarmonics)
+  {
+    // Fourier series with the same phase as the Waveform functions
+    double[] a = new double[nbHarmonics + 1];  // Sine coefficients
+    for (int k = 1; k <= nbHarmonics; k++)
+    {
+      if (c == Waveform.SineWave.class)
+        a[k] = k == 1 ? 1 : 0;
+      else if (c == Waveform.SquareWave.class)
+        a[k] = k % 2 == 1 ? 4 / (Math.PI * k) : 0;
+      else if (c == Waveform.SawtoothWave.class)
+        a[k] = (k % 2 == 1 ? 2 : -2) / (Math.PI * k);
+      else  // Triangle
+        a[k] = k % 2 == 1 ? (k % 4 == 1 ? 8 : -8) / (Math.PI * Math.PI * k * k) : 0;
+    }
+    double[] values = new double[SIZE];
+    double max = 0;
+    for (int i = 0; i < SIZE; i++)
+    {
+      double x = 2 * Math.PI * i / SIZE;
+      double y = 0;
+      for (int k = 1; k <= nbHarmonics; k++)
+      {
+        if (a[k] != 0)
+          y += a[k] * Math.sin(k * x);
+      }
+      values[i] = y;
+      max = Math.max(max, Math.abs(y));
+    }
+    // Limit the overshoot (Gibbs phenomenon) to the range -1..1
+    double scale = max > 1 ? 1 / max : 1;
+    float[] table = new float[SIZE + 1];  // Guard point for interpolation
+    for (int i = 0; i < SIZE; i++)
+      table[i] = (float)(scale * values[i]);
+    table[SIZE] = table[0];
+    return table;
+  }
+}
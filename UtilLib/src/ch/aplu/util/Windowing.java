@@ -0,0 +1,87 @@
+// Windowing.java
+
+/*
+ This software is part of the JEX (Java Exemplarisch) Utility Library.
+ It is Open Source Free Software, so you may
+ - run the code for any purpose
+ - study how the code works and adapt it to your needs
+ - integrate all or parts of the code in your own programs
+ - redistribute copies of the code
+ - improve the code and release your improvements to the public
+ However the use of the code is entirely your responsibility.
+ */
+package ch.aplu.util;
+
+/**
+ * Window functions used to reduce the leakage of a Fourier transform
+ * of a finite block of samples (see FFT, Spectrogram).
+ * All methods return a new array of n window coefficients.
+ */
+public class Windowing
+{
+  private Windowing()
+  {
+  }
+
+  /**
+   * Rectangular window (all coefficients 1).
+   */
+  public static double[] rectangular(int n)
+  {
+    double[] w = new double[n];
+    for (int i = 0; i < n; i++)
+      w[i] = 1;
+    return w;
+  }
+
+  /**
+   * Hann window.
+   */
+  public static double[] hann(int n)
+  {
+    return cosineSum(n, 0.5, 0.5, 0);
+  }
+
+  /**
+   * Hamming window.
+   */
+  public static double[] hamming(int n)
+  {
+    return cosineSum(n, 0.54, 0.46, 0);
+  }
+
+  /**
+   * Blackman window.
+   */
+  public static double[] blackman(int n)
+  {
+    return cosineSum(n, 0.42, 0.5, 0.08);
+  }
+
+  /**
+   * Multiply the data in place with the window coefficients.
+   */
+  public static void apply(double[] data, double[] window)
+  {
+    int n = Math.min(data.length, window.length);
+    for (int i = 0; i < n; i++)
+      data[i] *= window[i];
+  }
+
+  // Symmetric window a0 - a1 cos(2 pi i / (n-1)) + a2 cos(4 pi i / (n-1))
+  private static double[] cosineSum(int n, double a0, double a1, double a2)
+  {
+    double[] w = new double[n];
+    if (n == 1)
+    {
+      w[0] = 1;
+      return w;
+    }
+    for (int i = 0; i < n; i++)
+    {
+      double x = 2 * Math.PI * i / (n - 1);
+      w[i] = a0 - a1 * Math.cos(x) + a2 * Math.cos(2 * x);
+    }
+    return w;
+  }
+}